@@ -0,0 +1,161 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.dom.address.AddressList;
+import org.apache.james.mime4j.field.address.DefaultAddressParser;
+import org.apache.james.mime4j.field.address.LenientAddressParser;
+import org.apache.james.mime4j.stream.ParserCursor;
+import org.apache.james.mime4j.util.ByteSequence;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Parses a corpus of 10000 address headers of the kinds found in
+ * <code>From</code>, <code>To</code> and <code>Cc</code> fields of real
+ * mail and reports time and bytes allocated per header for the lenient and
+ * the strict address parser.
+ * Allocation is measured with the HotSpot specific
+ * <code>com.sun.management.ThreadMXBean</code>.
+ */
+public class AddressHeaderBench {
+
+    private static final String[] NAMES = { "John Doe", "Jane Roe", "Dr. Who",
+            "\"Doe, John\"", "\"O'Brien, Pat (IT)\"", "=?UTF-8?Q?J=C3=BCrgen_M=C3=BCller?=",
+            "=?ISO-2022-JP?B?GyRCJTUlJCVIGyhC?=", "support", "\"Support Team\"" };
+    private static final String[] LOCAL_PARTS = { "john.doe", "jane", "no-reply",
+            "first.last+tag", "\"quoted local\"", "postmaster", "u12345" };
+    private static final String[] DOMAINS = { "example.org", "mail.example.com",
+            "lists.example.net", "sub.domain.example.co.uk", "[192.0.2.1]" };
+
+    // keeps the parsed lists reachable so that their allocation is not elided
+    static volatile AddressList sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        // lenient, strict or both; use separate runs for stable numbers
+        String variant = args.length > 1 ? args[1] : "both";
+
+        String[] headers = createCorpus(10000, new Random(4711));
+        ByteSequence[] raw = new ByteSequence[headers.length];
+        long chars = 0;
+        for (int i = 0; i < headers.length; i++) {
+            raw[i] = ContentUtil.encode(headers[i]);
+            chars += headers[i].length();
+        }
+        System.out.println("Headers per iteration: " + headers.length);
+        System.out.println("Average header length: " + chars / headers.length);
+
+        for (String v : new String[] { "lenient", "strict" }) {
+            if (!variant.equals("both") && !variant.equals(v)) {
+                continue;
+            }
+            boolean lenient = v.equals("lenient");
+            long t0 = System.currentTimeMillis();
+            while (System.currentTimeMillis() - t0 < 2000) {
+                parse(lenient, headers, raw, 1);
+            }
+            long tid = Thread.currentThread().getId();
+            long bytes0 = allocatedBytes(tid);
+            long start = System.nanoTime();
+            int addresses = parse(lenient, headers, raw, iterations);
+            long finish = System.nanoTime();
+            long bytes = allocatedBytes(tid) - bytes0;
+            long count = (long) iterations * headers.length;
+            System.out.printf("%-8s %8.1f ns/header %8.1f bytes/header (%d)\n", v,
+                    (finish - start) / (double) count, bytes / (double) count, addresses);
+        }
+    }
+
+    private static long allocatedBytes(long tid) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(tid);
+    }
+
+    private static int parse(boolean lenient, String[] headers, ByteSequence[] raw,
+            int iterations) throws Exception {
+        int addresses = 0;
+        for (int n = 0; n < iterations; n++) {
+            for (int i = 0; i < headers.length; i++) {
+                AddressList list;
+                if (lenient) {
+                    list = LenientAddressParser.DEFAULT.parseAddressList(raw[i],
+                            new ParserCursor(0, raw[i].length()));
+                } else {
+                    list = DefaultAddressParser.DEFAULT.parseAddressList(headers[i],
+                            DecodeMonitor.SILENT);
+                }
+                addresses += list.size();
+                sink = list;
+            }
+        }
+        return addresses;
+    }
+
+    static String[] createCorpus(int count, Random random) {
+        String[] headers = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                sb.append("undisclosed-recipients:;");
+            } else if (kind == 1) {
+                sb.append("Team: ");
+                appendMailboxes(random, sb, 1 + random.nextInt(4));
+                sb.append(';');
+            } else {
+                // mostly single recipients, sometimes distribution lists
+                int recipients = kind < 7 ? 1 : 1 + random.nextInt(kind == 9 ? 40 : 6);
+                appendMailboxes(random, sb, recipients);
+            }
+            headers[i] = sb.toString();
+        }
+        return headers;
+    }
+
+    private static void appendMailboxes(Random random, StringBuilder sb, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(random.nextInt(4) == 0 ? ",\t" : ", ");
+            }
+            String addrSpec = LOCAL_PARTS[random.nextInt(LOCAL_PARTS.length)] + "@"
+                    + DOMAINS[random.nextInt(DOMAINS.length)];
+            switch (random.nextInt(4)) {
+            case 0:
+                sb.append(addrSpec);
+                break;
+            case 1:
+                sb.append('<').append(addrSpec).append('>');
+                break;
+            case 2:
+                sb.append(addrSpec).append(" (").append(NAMES[random.nextInt(3)]).append(')');
+                break;
+            default:
+                sb.append(NAMES[random.nextInt(NAMES.length)]).append(" <").append(addrSpec)
+                    .append('>');
+            }
+        }
+    }
+
+}
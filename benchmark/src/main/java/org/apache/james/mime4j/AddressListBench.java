@@ -0,0 +1,102 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.dom.address.AddressList;
+import org.apache.james.mime4j.field.address.DefaultAddressParser;
+import org.apache.james.mime4j.field.address.LenientAddressParser;
+
+/**
+ * Measures how many address list headers per second the strict and the
+ * lenient address parsers process, using a distribution list style
+ * <code>Cc</code> header with a configurable number of recipients.
+ */
+public class AddressListBench {
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int recipients = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        // strict, lenient or both; use separate runs for stable numbers
+        String variant = args.length > 2 ? args[2] : "both";
+
+        String header = createHeader(recipients);
+        System.out.println("Recipients per header: " + recipients);
+        System.out.println("Header length: " + header.length());
+
+        if (!variant.equals("lenient")) {
+            run("strict", header, true, repetitions);
+        }
+        if (!variant.equals("strict")) {
+            run("lenient", header, false, repetitions);
+        }
+    }
+
+    static String createHeader(int recipients) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < recipients; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            switch (i % 4) {
+            case 0:
+                sb.append("\"Doe, John ").append(i).append("\" <john.doe").append(i)
+                    .append("@example.org>");
+                break;
+            case 1:
+                sb.append("Jane Roe <jane.roe").append(i).append("@mail.example.com>");
+                break;
+            case 2:
+                sb.append("=?UTF-8?Q?J=C3=BCrgen_M=C3=BCller?= <juergen").append(i)
+                    .append("@example.de>");
+                break;
+            default:
+                sb.append("list-member").append(i).append("@lists.example.net (Member)");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void run(String name, String header, boolean strict, int repetitions)
+            throws Exception {
+        long t0 = System.currentTimeMillis();
+        while (System.currentTimeMillis() - t0 < 1500) {
+            parse(header, strict, 10);
+        }
+        long start = System.nanoTime();
+        int addresses = parse(header, strict, repetitions);
+        long finish = System.nanoTime();
+        double seconds = (finish - start) / 1000000000.0;
+        System.out.printf("%-8s %10.0f headers/sec (%d)\n", name, repetitions / seconds, addresses);
+    }
+
+    private static int parse(String header, boolean strict, int repetitions) throws Exception {
+        int addresses = 0;
+        for (int i = 0; i < repetitions; i++) {
+            AddressList list = strict
+                    ? DefaultAddressParser.DEFAULT.parseAddressList(header, DecodeMonitor.SILENT)
+                    : LenientAddressParser.DEFAULT.parseAddressList(header);
+            addresses += list.size();
+        }
+        return addresses;
+    }
+
+}
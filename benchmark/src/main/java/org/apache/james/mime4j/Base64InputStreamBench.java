@@ -24,16 +24,25 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import org.apache.commons.io.output.NullOutputStream;
+import org.apache.james.mime4j.codec.Base64Decoder;
 import org.apache.james.mime4j.codec.Base64InputStream;
 import org.apache.james.mime4j.codec.EncoderUtil;
 import org.apache.james.mime4j.util.ContentUtil;
 
+/**
+ * Measures Base-64 decoding throughput of {@link Base64InputStream} and of
+ * {@link Base64Decoder} working directly on buffers.
+ */
 public class Base64InputStreamBench {
 
     public static void main(String[] args) throws Exception {
+        // stream, decoder or both; use separate runs for stable numbers
+        String variant = args.length > 0 ? args[0] : "both";
+
         byte[] data = initData(2 * 1024 * 1024);
         byte[] encoded = encode(data);
 
@@ -41,14 +50,23 @@ public class Base64InputStreamBench {
 
         testDecode(data, encoded);
 
-        // warmup
+        if (!variant.equals("decoder")) {
+            run("Base64InputStream", encoded, data.length, false);
+        }
+        if (!variant.equals("stream")) {
+            run("Base64Decoder", encoded, data.length, true);
+        }
+    }
 
+    private static void run(String name, byte[] encoded, int length, boolean bulk)
+            throws IOException, InterruptedException {
         OutputStream nullOut = new NullOutputStream();
+        ByteBuffer dst = ByteBuffer.allocate(4096);
+
+        // warmup
 
         for (int i = 0; i < 5; i++) {
-            ByteArrayInputStream ed = new ByteArrayInputStream(encoded);
-            InputStream in = new Base64InputStream(ed);
-            ContentUtil.copy(in, nullOut);
+            decode(encoded, bulk, nullOut, dst);
         }
         Thread.sleep(100);
 
@@ -58,21 +76,36 @@ public class Base64InputStreamBench {
 
         final int repetitions = 50;
         for (int i = 0; i < repetitions; i++) {
-            ByteArrayInputStream ed = new ByteArrayInputStream(encoded);
-            InputStream in = new Base64InputStream(ed);
-            ContentUtil.copy(in, nullOut);
+            decode(encoded, bulk, nullOut, dst);
         }
 
         long dt = System.currentTimeMillis() - t0;
-        long totalBytes = data.length * (long) repetitions;
+        long totalBytes = length * (long) repetitions;
 
         double mbPerSec = (totalBytes / 1024.0 / 1024) / (dt / 1000.0);
 
+        System.out.println(name);
         System.out.println(dt + " ms");
         System.out.println(totalBytes + " bytes");
         System.out.println(mbPerSec + " mb/sec");
     }
 
+    private static void decode(byte[] encoded, boolean bulk, OutputStream out, ByteBuffer dst)
+            throws IOException {
+        if (!bulk) {
+            ContentUtil.copy(new Base64InputStream(new ByteArrayInputStream(encoded)), out);
+            return;
+        }
+        Base64Decoder decoder = new Base64Decoder();
+        ByteBuffer src = ByteBuffer.wrap(encoded);
+        while (src.hasRemaining() && !decoder.isFinished()) {
+            dst.clear();
+            decoder.decode(src, dst);
+            out.write(dst.array(), 0, dst.position());
+        }
+        decoder.finish();
+    }
+
     private static byte[] initData(int size) {
         Random random = new Random(size);
         byte[] data = new byte[size];
@@ -95,6 +128,10 @@ public class Base64InputStreamBench {
         ContentUtil.copy(in, out);
 
         compare(data, out.toByteArray());
+
+        out.reset();
+        decode(encoded, true, out, ByteBuffer.allocate(4096));
+        compare(data, out.toByteArray());
     }
 
     private static void compare(byte[] expected, byte[] actual) {
@@ -0,0 +1,161 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.james.mime4j.io.BoundaryMatcher;
+import org.apache.james.mime4j.io.BufferedLineReaderInputStream;
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Compares boundary scanning with a per-call shift table against a shared
+ * {@link BoundaryMatcher} on a multipart message with many small parts.
+ */
+public class BoundaryMatcherBench {
+
+    private static final String BOUNDARY = "----=_Part_4711_1234567890.1234567890123";
+
+    public static void main(String[] args) throws Exception {
+
+        int parts = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        byte[] content = createMessage(parts);
+
+        int testNumber = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+        Test[] tests = new Test[] {
+                new PatternScanTest(),
+                new MatcherScanTest(),
+                new MimeTokenStreamTest() };
+
+        System.out.println("Boundary scan of a multipart message.");
+        System.out.println("No of parts: " + parts);
+        System.out.println("No of repetitions: " + repetitions);
+        System.out.println("Content length: " + content.length);
+
+        for (int i = 0; i < tests.length; i++) {
+            if (testNumber >= 0 && testNumber != i) {
+                continue;
+            }
+            Test test = tests[i];
+            System.out.println("--------------------------------");
+            System.out.println("Test: " + test.getClass().getSimpleName());
+
+            long t0 = System.currentTimeMillis();
+            while (System.currentTimeMillis() - t0 < 1500) {
+                test.run(content, 10);
+            }
+
+            long start = System.currentTimeMillis();
+            int found = test.run(content, repetitions);
+            long finish = System.currentTimeMillis();
+
+            double seconds = (finish - start) / 1000.0;
+            double mb = content.length * (long) repetitions / 1024.0 / 1024;
+            System.out.println("Boundaries per message: " + found / repetitions);
+            System.out.printf("Execution time: %f sec\n", seconds);
+            System.out.printf("%.2f messages/sec\n", repetitions / seconds);
+            System.out.printf("%.2f mb/sec\n", mb / seconds);
+        }
+    }
+
+    private static byte[] createMessage(int parts) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: multipart/mixed; boundary=\"").append(BOUNDARY).append("\"\r\n");
+        sb.append("\r\n");
+        sb.append("This is a multi-part message in MIME format.\r\n");
+        for (int i = 0; i < parts; i++) {
+            sb.append("--").append(BOUNDARY).append("\r\n");
+            sb.append("Content-Type: text/plain; charset=us-ascii\r\n");
+            sb.append("\r\n");
+            sb.append("Part ").append(i).append(": a short line of text.\r\n");
+        }
+        sb.append("--").append(BOUNDARY).append("--\r\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ContentUtil.toAsciiByteArray(sb.toString()));
+        return out.toByteArray();
+    }
+
+    private interface Test {
+        int run(byte[] content, int repetitions) throws Exception;
+    }
+
+    private static final class PatternScanTest implements Test {
+        public int run(byte[] content, int repetitions) throws Exception {
+            byte[] pattern = ContentUtil.toAsciiByteArray("--" + BOUNDARY);
+            int found = 0;
+            for (int i = 0; i < repetitions; i++) {
+                BufferedLineReaderInputStream instream = new BufferedLineReaderInputStream(
+                        new ByteArrayInputStream(content), content.length);
+                instream.fillBuffer();
+                int off = 0;
+                int i1;
+                while ((i1 = instream.indexOf(pattern, off, content.length - off)) != -1) {
+                    found++;
+                    off = i1 + pattern.length;
+                }
+            }
+            return found;
+        }
+    }
+
+    private static final class MatcherScanTest implements Test {
+        public int run(byte[] content, int repetitions) throws Exception {
+            BoundaryMatcher matcher = new BoundaryMatcher(BOUNDARY);
+            int found = 0;
+            for (int i = 0; i < repetitions; i++) {
+                BufferedLineReaderInputStream instream = new BufferedLineReaderInputStream(
+                        new ByteArrayInputStream(content), content.length);
+                instream.fillBuffer();
+                int off = 0;
+                int i1;
+                while ((i1 = instream.indexOf(matcher, off, content.length - off)) != -1) {
+                    found++;
+                    off = i1 + matcher.length();
+                }
+            }
+            return found;
+        }
+    }
+
+    private static final class MimeTokenStreamTest implements Test {
+        public int run(byte[] content, int repetitions) throws Exception {
+            MimeTokenStream stream = new MimeTokenStream();
+            int found = 0;
+            for (int i = 0; i < repetitions; i++) {
+                stream.parse(new ByteArrayInputStream(content));
+                for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream
+                        .next()) {
+                    if (state == EntityState.T_START_BODYPART) {
+                        found++;
+                    }
+                }
+            }
+            return found;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.ChannelMessageWriter;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.mime4j.storage.StorageBodyFactory;
+import org.apache.james.mime4j.storage.TempFileStorageProvider;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Measures how fast a message whose bodies are held in temporary files is
+ * written to a file channel by {@link DefaultMessageWriter} through a
+ * channel output stream and by {@link ChannelMessageWriter}. The message is
+ * parsed with content decoding disabled so that the stored base64 content
+ * is written as is.
+ */
+public class ChannelMessageWriterBench {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4 * 1024 * 1024;
+        int parts = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        // stream, channel or both; use separate runs for stable numbers
+        String variant = args.length > 3 ? args[3] : "both";
+
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setBodyFactory(new StorageBodyFactory(new TempFileStorageProvider(), null));
+        builder.setContentDecoding(false);
+        Message message = builder.parseMessage(new ByteArrayInputStream(createMessage(size, parts)));
+
+        File file = File.createTempFile("mime4j-bench", ".msg");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            System.out.println("Message size: " + write(message, channel, false));
+            if (!variant.equals("channel")) {
+                run("DefaultMessageWriter", message, channel, repetitions, false);
+            }
+            if (!variant.equals("stream")) {
+                run("ChannelMessageWriter", message, channel, repetitions, true);
+            }
+        } finally {
+            raf.close();
+            message.dispose();
+        }
+    }
+
+    private static void run(String name, Message message, FileChannel channel, int repetitions,
+            boolean gathering) throws IOException {
+
+        // warmup
+
+        long t0 = System.currentTimeMillis();
+        while (System.currentTimeMillis() - t0 < 1500) {
+            write(message, channel, gathering);
+        }
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < repetitions; i++) {
+            bytes += write(message, channel, gathering);
+        }
+        long finish = System.nanoTime();
+
+        double seconds = (finish - start) / 1000000000.0;
+        System.out.println("--------------------------------");
+        System.out.println(name);
+        System.out.printf("%.3f ms/message\n", seconds * 1000 / repetitions);
+        System.out.printf("%.1f mb/sec\n", bytes / 1024.0 / 1024 / seconds);
+    }
+
+    private static long write(Message message, FileChannel channel, boolean gathering)
+            throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        if (gathering) {
+            new ChannelMessageWriter().writeMessage(message, channel);
+        } else {
+            OutputStream out = Channels.newOutputStream(channel);
+            new DefaultMessageWriter().writeMessage(message, out);
+        }
+        return channel.position();
+    }
+
+    private static byte[] createMessage(int size, int parts) {
+        StringBuilder sb = new StringBuilder(size + 1024);
+        sb.append("From: Sender <sender@example.org>\r\n");
+        sb.append("To: Recipient <recipient@example.com>\r\n");
+        sb.append("Subject: Stored attachments\r\n");
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: multipart/mixed; boundary=\"boundary\"\r\n");
+        sb.append("\r\n");
+        String line = "QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWZnaGlqa2xtbm9wcXJzdHV2d3h5ejAx\r\n";
+        for (int i = 0; i < parts; i++) {
+            sb.append("--boundary\r\n");
+            sb.append("Content-Type: text/plain\r\n\r\n");
+            sb.append("Part ").append(i).append(", see attachment.\r\n");
+            sb.append("--boundary\r\n");
+            sb.append("Content-Type: application/octet-stream\r\n");
+            sb.append("Content-Disposition: attachment; filename=\"part").append(i).append(".bin\"\r\n");
+            sb.append("Content-Transfer-Encoding: base64\r\n\r\n");
+            for (int n = 0; n < size / parts; n += line.length()) {
+                sb.append(line);
+            }
+        }
+        sb.append("--boundary--\r\n");
+        return ContentUtil.toAsciiByteArray(sb.toString());
+    }
+
+}
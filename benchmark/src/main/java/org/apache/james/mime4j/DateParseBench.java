@@ -0,0 +1,187 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.james.mime4j.field.LenientDateTimeParser;
+import org.apache.james.mime4j.field.datetime.parser.DateTimeParser;
+import org.apache.james.mime4j.field.datetime.parser.ParseException;
+import org.apache.james.mime4j.field.datetime.parser.TokenMgrError;
+
+/**
+ * Compares the throughput of date-time parsers over a corpus of
+ * <code>Date</code> field bodies as found in real world mail: the
+ * <code>SimpleDateFormat</code> cascade formerly used by the lenient field
+ * parser, the JavaCC based <code>DateTimeParser</code> of the strict field
+ * parser and {@link LenientDateTimeParser}.
+ */
+public class DateParseBench {
+
+    private static final String[] CORPUS = {
+        "Wed, 16 Jul 2008 17:12:33 +0200",
+        "Thu, 14 Feb 2008 12:30:00 +0000 (GMT)",
+        "Mon, 3 Mar 2014 09:05:11 -0800 (PST)",
+        "Tue, 17 Jul 2012 22:23:35.882 0000",
+        "Fri, 05 Jan 2018 16:18:28 Z",
+        "16 Jul 2008 17:12:33 +0200",
+        "Sat, 1 Nov 97 07:01:00 -0500",
+        "Sun, 30 Jun 2019 23:59:59 GMT",
+        "Wed, 28 Mar 2007 13:32:39 +1000",
+        "Mon, 26 Aug 2013 10:01:02 -0400 (EDT)",
+        "Thu, 1 Jan 1970 00:00:00 +0000",
+        "Fri, 13 Dec 2019 08:15:00 EST",
+        "Tue, 2 Feb 2016 14:20:05 +0100 (CET)",
+        "Wed, 9 Oct 2002 11:40:20 +0900",
+        "Mon, 26 Aug 2013 10:01:02 GMT+02:00",
+        "not a date" };
+
+    private static final String[] LEGACY_DATE_FORMATS = {
+        "EEE, dd MMM yy HH:mm:ss ZZZZ",
+        "dd MMM yy HH:mm:ss ZZZZ",
+        "EEE, dd MMM yy HH:mm:ss.SSS 0000",
+        "EEE, dd MMM yy HH:mm:ss 0000",
+        "EEE, dd MMM yyyy HH:mm:ss ZZZZ",
+        "dd MMM yyyy HH:mm:ss ZZZZ",
+        "EEE, dd MMM yyyy HH:mm:ss.SSS 0000",
+        "EEE, dd MMM yyyy HH:mm:ss 0000",
+        "EEE, dd MMM yy HH:mm:ss X",
+        "dd MMM yy HH:mm:ss X",
+        "EEE, dd MMM yy HH:mm:ss.SSS X",
+        "EEE, dd MMM yy HH:mm:ss X",
+        "EEE, dd MMM yyyy HH:mm:ss X",
+        "dd MMM yyyy HH:mm:ss X",
+        "EEE, dd MMM yyyy HH:mm:ss.SSS X",
+        "EEE, dd MMM yyyy HH:mm:ss X",
+    };
+
+    public static void main(String[] args) throws Exception {
+
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        int testNumber = args.length > 1 ? Integer.parseInt(args[1]) : -1;
+        Test[] tests = new Test[] {
+                new LegacyTest(),
+                new JavaccTest(),
+                new LenientTest() };
+
+        System.out.println("Date-time parsing.");
+        System.out.println("No of repetitions: " + repetitions);
+        System.out.println("Corpus size: " + CORPUS.length);
+
+        for (int i = 0; i < tests.length; i++) {
+            if (testNumber >= 0 && testNumber != i) {
+                continue;
+            }
+            Test test = tests[i];
+            System.out.println("--------------------------------");
+            System.out.println("Test: " + test);
+
+            long t0 = System.currentTimeMillis();
+            while (System.currentTimeMillis() - t0 < 1500) {
+                run(test, 100);
+            }
+
+            long start = System.currentTimeMillis();
+            int parsed = run(test, repetitions);
+            long finish = System.currentTimeMillis();
+
+            double seconds = (finish - start) / 1000.0;
+            System.out.println("Parsed per repetition: " + parsed / repetitions);
+            System.out.printf("Execution time: %f sec\n", seconds);
+            System.out.printf("%.2f dates/sec\n", repetitions * CORPUS.length / seconds);
+        }
+    }
+
+    private static int run(Test test, int repetitions) {
+        int parsed = 0;
+        for (int i = 0; i < repetitions; i++) {
+            for (String value : CORPUS) {
+                if (test.parse(value) != null) {
+                    parsed++;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private interface Test {
+
+        Date parse(String value);
+
+    }
+
+    private static final class LegacyTest implements Test {
+
+        public Date parse(String value) {
+            String body = value.trim();
+            for (String datePattern : LEGACY_DATE_FORMATS) {
+                try {
+                    SimpleDateFormat parser = new SimpleDateFormat(datePattern, Locale.US);
+                    parser.setTimeZone(TimeZone.getTimeZone("GMT"));
+                    parser.setLenient(true);
+                    return parser.parse(body);
+                } catch (java.text.ParseException ignore) {
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "SimpleDateFormat";
+        }
+    }
+
+    private static final class JavaccTest implements Test {
+
+        public Date parse(String value) {
+            try {
+                return new DateTimeParser(new StringReader(value)).parseAll().getDate();
+            } catch (ParseException ex) {
+                return null;
+            } catch (TokenMgrError ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DateTimeParser";
+        }
+    }
+
+    private static final class LenientTest implements Test {
+
+        public Date parse(String value) {
+            return LenientDateTimeParser.parse(value);
+        }
+
+        @Override
+        public String toString() {
+            return "LenientDateTimeParser";
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.james.mime4j.codec.Base64InputStream;
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.codec.DecoderUtil;
+import org.apache.james.mime4j.codec.EncoderUtil;
+import org.apache.james.mime4j.codec.QuotedPrintableInputStream;
+import org.apache.james.mime4j.util.CharsetUtil;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Decodes a corpus of multilingual <code>Subject</code> field bodies with
+ * {@link DecoderUtil#decodeEncodedWords(String, DecodeMonitor)} and with the
+ * former implementation based on a regular expression and the decoding
+ * streams.
+ */
+public class EncodedWordBench {
+
+    private static final String[][] SUBJECTS = {
+            { "UTF-8", "Grüße aus München – Einladung zum Sommerfest" },
+            { "ISO-8859-1", "Réunion de l'équipe à 14h, salle Étoile" },
+            { "ISO-8859-15", "Presupuesto en € para el año próximo" },
+            { "UTF-8", "Отчёт о продажах за третий квартал" },
+            { "KOI8-R", "Приглашение на конференцию" },
+            { "ISO-2022-JP", "会議の議事録を送付します" },
+            { "Shift_JIS", "お見積りのご依頼について" },
+            { "GB2312", "关于下周项目评审的通知" },
+            { "Big5", "年度報告已上傳" },
+            { "EUC-KR", "회의 일정 변경 안내" },
+            { "UTF-8", "Ελάτε στη συνάντηση της Δευτέρας" },
+            { "windows-1252", "Status update – “final” version" },
+            { "UTF-8", "Re: [dev] Build broken on master 🚧" },
+            { null, "Re: Quarterly numbers, plain ASCII subject" } };
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        // legacy, scanner or both; use separate runs for stable numbers
+        String variant = args.length > 1 ? args[1] : "both";
+
+        List<String> corpus = createCorpus();
+        System.out.println("Subjects in corpus: " + corpus.size());
+        for (String subject : corpus) {
+            String expected = LegacyDecoder.decodeEncodedWords(subject);
+            if (!expected.equals(DecoderUtil.decodeEncodedWords(subject, DecodeMonitor.SILENT))) {
+                throw new IllegalStateException("Decoders disagree on " + subject);
+            }
+        }
+
+        if (!variant.equals("scanner")) {
+            run("legacy", corpus, true, repetitions);
+        }
+        if (!variant.equals("legacy")) {
+            run("scanner", corpus, false, repetitions);
+        }
+    }
+
+    private static List<String> createCorpus() throws IOException {
+        List<String> corpus = new ArrayList<String>();
+        for (String[] subject : SUBJECTS) {
+            if (subject[0] == null) {
+                corpus.add(subject[1]);
+                continue;
+            }
+            byte[] bytes = subject[1].getBytes(subject[0]);
+            corpus.add("=?" + subject[0] + "?B?" + EncoderUtil.encodeB(bytes) + "?=");
+            corpus.add("=?" + subject[0] + "?Q?"
+                    + EncoderUtil.encodeQ(bytes, EncoderUtil.Usage.TEXT_TOKEN) + "?=");
+            // a folded subject split into two words with a plain prefix
+            int half = subject[1].length() / 2;
+            byte[] first = subject[1].substring(0, half).getBytes(subject[0]);
+            byte[] second = subject[1].substring(half).getBytes(subject[0]);
+            corpus.add("Re: =?" + subject[0] + "?B?" + EncoderUtil.encodeB(first) + "?=\r\n =?"
+                    + subject[0] + "?B?" + EncoderUtil.encodeB(second) + "?=");
+        }
+        return corpus;
+    }
+
+    private static void run(String name, List<String> corpus, boolean legacy, int repetitions)
+            throws IOException {
+        long t0 = System.currentTimeMillis();
+        while (System.currentTimeMillis() - t0 < 1500) {
+            decode(corpus, legacy, 100);
+        }
+        long start = System.nanoTime();
+        int chars = decode(corpus, legacy, repetitions);
+        long finish = System.nanoTime();
+        double seconds = (finish - start) / 1000000000.0;
+        System.out.printf("%-8s %12.0f subjects/sec (%d)\n", name,
+                (double) repetitions * corpus.size() / seconds, chars);
+    }
+
+    private static int decode(List<String> corpus, boolean legacy, int repetitions)
+            throws IOException {
+        int chars = 0;
+        for (int i = 0; i < repetitions; i++) {
+            for (String subject : corpus) {
+                String decoded = legacy ? LegacyDecoder.decodeEncodedWords(subject)
+                        : DecoderUtil.decodeEncodedWords(subject, DecodeMonitor.SILENT);
+                chars += decoded.length();
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * The decoder used before the scanner.
+     */
+    private static final class LegacyDecoder {
+
+        private static final Pattern PATTERN_ENCODED_WORD = Pattern.compile(
+                "=\\?(.+?)\\?(\\w)\\?(.*?)\\?=", Pattern.DOTALL);
+
+        static String decodeEncodedWords(String body) throws IOException {
+            int tailIndex = 0;
+            boolean lastMatchValid = false;
+            StringBuilder sb = new StringBuilder();
+            for (Matcher matcher = PATTERN_ENCODED_WORD.matcher(body); matcher.find();) {
+                String separator = body.substring(tailIndex, matcher.start());
+                String decoded = decode(matcher.group(1), matcher.group(2), matcher.group(3));
+                if (decoded == null) {
+                    sb.append(separator);
+                    sb.append(matcher.group(0));
+                } else {
+                    if (!lastMatchValid || !CharsetUtil.isWhitespace(separator)) {
+                        sb.append(separator);
+                    }
+                    sb.append(decoded);
+                }
+                tailIndex = matcher.end();
+                lastMatchValid = decoded != null;
+            }
+            if (tailIndex == 0) {
+                return body;
+            }
+            sb.append(body.substring(tailIndex));
+            return sb.toString();
+        }
+
+        private static String decode(String mimeCharset, String encoding, String encodedText)
+                throws IOException {
+            Charset charset = CharsetUtil.lookup(mimeCharset);
+            if (charset == null) {
+                return null;
+            }
+            if (encoding.equalsIgnoreCase("Q")) {
+                byte[] bytes = ContentUtil.buffer(new QuotedPrintableInputStream(
+                        new ByteArrayInputStream(ContentUtil.toAsciiByteArray(
+                                encodedText.replace("_", "=20"))), DecodeMonitor.SILENT));
+                return new String(bytes, charset.name());
+            } else if (encoding.equalsIgnoreCase("B")) {
+                byte[] bytes = ContentUtil.buffer(new Base64InputStream(
+                        new ByteArrayInputStream(ContentUtil.toAsciiByteArray(encodedText)),
+                        DecodeMonitor.SILENT));
+                return new String(bytes, charset.name());
+            } else {
+                return null;
+            }
+        }
+    }
+
+}
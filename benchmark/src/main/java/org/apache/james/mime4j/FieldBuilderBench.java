@@ -0,0 +1,176 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.stream.ArenaFieldBuilder;
+import org.apache.james.mime4j.stream.DefaultFieldBuilder;
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.FieldBuilder;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.stream.RawField;
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Measures time and bytes allocated per header field when building fields
+ * with {@link DefaultFieldBuilder} and {@link ArenaFieldBuilder}, both for
+ * the builder alone and for tokenizing a header with
+ * {@link MimeTokenStream}.
+ * Allocation is measured with the HotSpot specific
+ * <code>com.sun.management.ThreadMXBean</code>.
+ */
+public class FieldBuilderBench {
+
+    // keeps the built fields reachable so that their allocation is not elided
+    static volatile RawField sink;
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        byte[] message = createMessage();
+
+        List<List<ByteArrayBuffer>> fields = splitFields(message);
+
+        System.out.println("Header size " + message.length + ", fields " + fields.size());
+        for (String variant : new String[] { "default", "arena", "default", "arena" }) {
+            System.out.println("--------------------------------");
+            runBuilder(variant, fields, 2000);
+            long tid = Thread.currentThread().getId();
+            long bytes0 = allocatedBytes(tid);
+            long start = System.nanoTime();
+            long lines = runBuilder(variant, fields, repetitions);
+            long finish = System.nanoTime();
+            long bytes = allocatedBytes(tid) - bytes0;
+            System.out.printf("%-8s builder %8.1f ns/line %8.1f bytes/line\n", variant,
+                    (finish - start) / (double) lines, bytes / (double) lines);
+
+            runStream(variant, message, 2000);
+            bytes0 = allocatedBytes(tid);
+            start = System.nanoTime();
+            lines = runStream(variant, message, repetitions);
+            finish = System.nanoTime();
+            bytes = allocatedBytes(tid) - bytes0;
+            System.out.printf("%-8s stream  %8.1f ns/line %8.1f bytes/line\n", variant,
+                    (finish - start) / (double) lines, bytes / (double) lines);
+        }
+    }
+
+    private static long allocatedBytes(long tid) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(tid);
+    }
+
+    private static FieldBuilder createFieldBuilder(String variant) {
+        return variant.equals("arena")
+                ? new ArenaFieldBuilder(MimeConfig.DEFAULT.getMaxHeaderLen())
+                : new DefaultFieldBuilder(MimeConfig.DEFAULT.getMaxHeaderLen());
+    }
+
+    /**
+     * Feeds the lines of the fields directly to a field builder, as
+     * <code>MimeEntity</code> does for stream input.
+     */
+    private static long runBuilder(String variant, List<List<ByteArrayBuffer>> fields,
+            int repetitions) throws Exception {
+        FieldBuilder fieldBuilder = createFieldBuilder(variant);
+        long lines = 0;
+        for (int i = 0; i < repetitions; i++) {
+            for (List<ByteArrayBuffer> field : fields) {
+                fieldBuilder.reset();
+                for (ByteArrayBuffer line : field) {
+                    fieldBuilder.append(line);
+                }
+                sink = fieldBuilder.build();
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static List<List<ByteArrayBuffer>> splitFields(byte[] message) {
+        List<List<ByteArrayBuffer>> fields = new ArrayList<List<ByteArrayBuffer>>();
+        int pos = 0;
+        for (;;) {
+            int end = pos;
+            while (message[end] != '\n') {
+                end++;
+            }
+            end++;
+            if (end - pos == 2) {
+                return fields;
+            }
+            ByteArrayBuffer line = new ByteArrayBuffer(end - pos);
+            line.append(message, pos, end - pos);
+            if (message[pos] == ' ' || message[pos] == '\t') {
+                fields.get(fields.size() - 1).add(line);
+            } else {
+                List<ByteArrayBuffer> field = new ArrayList<ByteArrayBuffer>();
+                field.add(line);
+                fields.add(field);
+            }
+            pos = end;
+        }
+    }
+
+    private static long runStream(String variant, byte[] message, int repetitions)
+            throws Exception {
+        MimeTokenStream stream = new MimeTokenStream(MimeConfig.DEFAULT, null,
+                createFieldBuilder(variant), null);
+        long lines = 0;
+        for (int i = 0; i < repetitions; i++) {
+            stream.parseHeaders(new ByteArrayInputStream(message), true);
+            for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                    state = stream.next()) {
+                if (state == EntityState.T_FIELD) {
+                    lines++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static byte[] createMessage() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append("Received: from mail").append(i).append(".example.org (mail.example.org [192.0.2.1])\r\n");
+            sb.append("\tby mx.example.com with ESMTP id 4711").append(i).append("; Thu, 14 Feb 2008 12:00:00 +0000\r\n");
+        }
+        for (int i = 0; i < 20; i++) {
+            sb.append("X-Custom-Header-").append(i).append(": some value of a custom header ").append(i).append("\r\n");
+        }
+        sb.append("From: Sender <sender@example.org>\r\n");
+        sb.append("To: Recipient <recipient@example.com>\r\n");
+        sb.append("Subject: Header tokenization\r\n");
+        sb.append("Date: Thu, 14 Feb 2008 12:00:00 +0000\r\n");
+        sb.append("Message-ID: <4711@example.org>\r\n");
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: text/plain; charset=us-ascii\r\n");
+        sb.append("\r\n");
+        sb.append("Body\r\n");
+        return ContentUtil.toAsciiByteArray(sb.toString());
+    }
+
+}
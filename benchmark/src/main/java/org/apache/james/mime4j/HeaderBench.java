@@ -0,0 +1,230 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.james.mime4j.dom.Header;
+import org.apache.james.mime4j.message.HeaderImpl;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.RawFieldParser;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Compares {@link HeaderImpl} with the former header layout based on a
+ * <code>LinkedList</code> and a <code>HashMap</code> of
+ * <code>LinkedList</code>s when building, looking up and iterating headers
+ * of 30 and 100 fields.
+ */
+public class HeaderBench {
+
+    private static final String[] NAMES = { "Received", "Received", "Received",
+            "Return-Path", "DKIM-Signature", "Authentication-Results", "From", "To", "Cc",
+            "Subject", "Date", "Message-ID", "In-Reply-To", "References", "MIME-Version",
+            "Content-Type", "X-Mailer", "X-Spam-Status", "X-Spam-Score", "List-Id" };
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        // legacy, compact or both; use separate runs for stable numbers
+        String variant = args.length > 1 ? args[1] : "both";
+        boolean[] variants;
+        if (variant.equals("legacy")) {
+            variants = new boolean[] { true };
+        } else if (variant.equals("compact")) {
+            variants = new boolean[] { false };
+        } else {
+            variants = new boolean[] { true, false };
+        }
+
+        for (int count : new int[] { 30, 100 }) {
+            List<Field> fields = createFields(count);
+            System.out.println("--------------------------------");
+            System.out.println("Fields per header: " + count);
+            run("build", new Build(fields), variants, repetitions);
+            run("lookup", new Lookup(fields), variants, repetitions);
+            run("iterate", new Iterate(fields), variants, repetitions);
+        }
+    }
+
+    private static List<Field> createFields(int count) throws Exception {
+        List<Field> fields = new ArrayList<Field>(count);
+        for (int i = 0; i < count; i++) {
+            String name = i < NAMES.length ? NAMES[i] : "X-Custom-" + (i % 25);
+            fields.add(RawFieldParser.DEFAULT.parseField(
+                    ContentUtil.encode(name + ": value " + i)));
+        }
+        return fields;
+    }
+
+    private static void run(String name, Op op, boolean[] variants, int repetitions) {
+        for (boolean legacy : variants) {
+            long t0 = System.currentTimeMillis();
+            while (System.currentTimeMillis() - t0 < 1000) {
+                op.run(legacy, 1000);
+            }
+            long start = System.nanoTime();
+            int result = op.run(legacy, repetitions);
+            long finish = System.nanoTime();
+            double seconds = (finish - start) / 1000000000.0;
+            System.out.printf("%-8s %-8s %12.0f ops/sec (%d)\n", name,
+                    legacy ? "legacy" : "compact", repetitions / seconds, result);
+        }
+    }
+
+    private static Header newHeader(boolean legacy) {
+        return legacy ? new LegacyHeader() : new HeaderImpl();
+    }
+
+    private static Header fill(Header header, List<Field> fields) {
+        for (Field field : fields) {
+            header.addField(field);
+        }
+        return header;
+    }
+
+    private interface Op {
+        int run(boolean legacy, int repetitions);
+    }
+
+    private static final class Build implements Op {
+        private final List<Field> fields;
+
+        Build(List<Field> fields) {
+            this.fields = fields;
+        }
+
+        public int run(boolean legacy, int repetitions) {
+            int n = 0;
+            for (int i = 0; i < repetitions; i++) {
+                n += fill(newHeader(legacy), fields).getFields().size();
+            }
+            return n;
+        }
+    }
+
+    private static final class Lookup implements Op {
+        private final List<Field> fields;
+        private final String[] queries = { "subject", "FROM", "Content-Type",
+                "X-Custom-7", "Received", "X-Not-There" };
+
+        Lookup(List<Field> fields) {
+            this.fields = fields;
+        }
+
+        public int run(boolean legacy, int repetitions) {
+            Header header = fill(newHeader(legacy), fields);
+            int n = 0;
+            for (int i = 0; i < repetitions; i++) {
+                for (String query : queries) {
+                    if (header.getField(query) != null) {
+                        n++;
+                    }
+                    n += header.getFields(query).size();
+                }
+            }
+            return n;
+        }
+    }
+
+    private static final class Iterate implements Op {
+        private final List<Field> fields;
+
+        Iterate(List<Field> fields) {
+            this.fields = fields;
+        }
+
+        public int run(boolean legacy, int repetitions) {
+            Header header = fill(newHeader(legacy), fields);
+            int n = 0;
+            for (int i = 0; i < repetitions; i++) {
+                for (Field field : header) {
+                    n += field.getName().length();
+                }
+            }
+            return n;
+        }
+    }
+
+    /**
+     * The header layout used before the compact implementation.
+     */
+    private static final class LegacyHeader implements Header {
+
+        private final List<Field> fields = new LinkedList<Field>();
+        private final Map<String, List<Field>> fieldMap = new HashMap<String, List<Field>>();
+
+        public void addField(Field field) {
+            List<Field> values = fieldMap.get(field.getName().toLowerCase(Locale.US));
+            if (values == null) {
+                values = new LinkedList<Field>();
+                fieldMap.put(field.getName().toLowerCase(Locale.US), values);
+            }
+            values.add(field);
+            fields.add(field);
+        }
+
+        public List<Field> getFields() {
+            return Collections.unmodifiableList(fields);
+        }
+
+        public Field getField(String name) {
+            List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
+            return l != null && !l.isEmpty() ? l.get(0) : null;
+        }
+
+        public <F extends Field> F getField(String name, Class<F> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        public List<Field> getFields(String name) {
+            List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
+            if (l == null || l.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(l);
+        }
+
+        public <F extends Field> List<F> getFields(String name, Class<F> clazz) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Iterator<Field> iterator() {
+            return Collections.unmodifiableList(fields).iterator();
+        }
+
+        public int removeFields(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void setField(Field field) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,176 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.stream.RecursionMode;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Measures how many top level headers per second can be extracted from
+ * large messages, draining the token stream in non recursive mode versus
+ * the header-only mode of {@link MimeTokenStream}.
+ */
+public class HeaderOnlyParseBench {
+
+    public static void main(String[] args) throws Exception {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4 * 1024 * 1024;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        byte[] content = createMessage(size);
+        File file = File.createTempFile("mime4j-bench", ".msg");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+
+        int testNumber = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+        Test[] tests = new Test[] {
+                new NoRecurseTest(),
+                new HeaderOnlyTest(false),
+                new HeaderOnlyTest(true) };
+
+        System.out.println("Header extraction from large messages.");
+        System.out.println("No of repetitions: " + repetitions);
+        System.out.println("Content length: " + content.length);
+
+        for (int i = 0; i < tests.length; i++) {
+            if (testNumber >= 0 && testNumber != i) {
+                continue;
+            }
+            Test test = tests[i];
+            System.out.println("--------------------------------");
+            System.out.println("Test: " + test);
+
+            long t0 = System.currentTimeMillis();
+            while (System.currentTimeMillis() - t0 < 1500) {
+                test.run(file, 5);
+            }
+
+            long start = System.currentTimeMillis();
+            int fields = test.run(file, repetitions);
+            long finish = System.currentTimeMillis();
+
+            double seconds = (finish - start) / 1000.0;
+            System.out.println("Fields per message: " + fields / repetitions);
+            System.out.printf("Execution time: %f sec\n", seconds);
+            System.out.printf("%.2f headers/sec\n", repetitions / seconds);
+        }
+    }
+
+    private static byte[] createMessage(int size) {
+        StringBuilder sb = new StringBuilder(size + 1024);
+        sb.append("Return-Path: <sender@example.org>\r\n");
+        sb.append("Received: from mail.example.org (mail.example.org [192.0.2.1])\r\n");
+        sb.append("\tby mx.example.com with ESMTP id 4711; Thu, 14 Feb 2008 12:00:00 +0000\r\n");
+        sb.append("From: Sender <sender@example.org>\r\n");
+        sb.append("To: Recipient <recipient@example.com>\r\n");
+        sb.append("Subject: Large attachment\r\n");
+        sb.append("Date: Thu, 14 Feb 2008 12:00:00 +0000\r\n");
+        sb.append("Message-ID: <4711@example.org>\r\n");
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: multipart/mixed; boundary=\"boundary\"\r\n");
+        sb.append("\r\n");
+        sb.append("--boundary\r\n");
+        sb.append("Content-Type: text/plain\r\n\r\n");
+        sb.append("See attachment.\r\n");
+        sb.append("--boundary\r\n");
+        sb.append("Content-Type: application/octet-stream\r\n");
+        sb.append("Content-Transfer-Encoding: base64\r\n\r\n");
+        String line = "QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWZnaGlqa2xtbm9wcXJzdHV2d3h5ejAx\r\n";
+        while (sb.length() < size) {
+            sb.append(line);
+        }
+        sb.append("--boundary--\r\n");
+        return ContentUtil.toAsciiByteArray(sb.toString());
+    }
+
+    private static abstract class Test {
+
+        int run(File file, int repetitions) throws Exception {
+            MimeTokenStream stream = new MimeTokenStream();
+            int fields = 0;
+            for (int i = 0; i < repetitions; i++) {
+                InputStream instream = new FileInputStream(file);
+                try {
+                    parse(stream, instream);
+                    boolean header = true;
+                    for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream
+                            .next()) {
+                        if (header && state == EntityState.T_FIELD) {
+                            fields++;
+                        } else if (state == EntityState.T_END_HEADER) {
+                            header = false;
+                        }
+                    }
+                } finally {
+                    instream.close();
+                }
+            }
+            return fields;
+        }
+
+        abstract void parse(MimeTokenStream stream, InputStream instream);
+
+    }
+
+    private static final class NoRecurseTest extends Test {
+        @Override
+        void parse(MimeTokenStream stream, InputStream instream) {
+            stream.setRecursionMode(RecursionMode.M_NO_RECURSE);
+            stream.parse(instream);
+        }
+
+        @Override
+        public String toString() {
+            return "NoRecurse";
+        }
+    }
+
+    private static final class HeaderOnlyTest extends Test {
+
+        private final boolean skipBody;
+
+        HeaderOnlyTest(boolean skipBody) {
+            this.skipBody = skipBody;
+        }
+
+        @Override
+        void parse(MimeTokenStream stream, InputStream instream) {
+            stream.parseHeaders(instream, skipBody);
+        }
+
+        @Override
+        public String toString() {
+            return skipBody ? "HeaderOnlySkipBody" : "HeaderOnly";
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.mime4j.message.MessageSizeCalculator;
+import org.apache.james.mime4j.message.MultipartBuilder;
+
+/**
+ * Measures how long it takes to determine the size of a message with a
+ * quoted-printable text part and a base64 attachment, by writing it into a
+ * counting stream and with {@link MessageSizeCalculator}, for a first and
+ * for repeated queries.
+ */
+public class MessageSizeBench {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024 * 1024;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Message message = createMessage(size);
+        long expected = writtenSize(message);
+        if (expected != new MessageSizeCalculator().getMessageSize(message)) {
+            throw new AssertionError("Sizes differ");
+        }
+        System.out.println("Message size: " + expected);
+        System.out.println("No of repetitions: " + repetitions);
+
+        run("Counting stream", message, repetitions, 0);
+        run("Calculator, first query", message, repetitions, 1);
+        run("Calculator, repeated query", message, repetitions, 2);
+    }
+
+    private static void run(String name, Message message, int repetitions, int variant)
+            throws IOException {
+        MessageSizeCalculator shared = new MessageSizeCalculator();
+
+        // warmup
+
+        long t0 = System.currentTimeMillis();
+        while (System.currentTimeMillis() - t0 < 1500) {
+            size(message, variant, shared);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            size(message, variant, shared);
+        }
+        long finish = System.nanoTime();
+
+        System.out.println("--------------------------------");
+        System.out.println(name);
+        System.out.printf("%.3f ms/message\n", (finish - start) / 1000000.0 / repetitions);
+    }
+
+    private static long size(Message message, int variant, MessageSizeCalculator shared)
+            throws IOException {
+        switch (variant) {
+        case 0:
+            return writtenSize(message);
+        case 1:
+            return new MessageSizeCalculator().getMessageSize(message);
+        default:
+            return shared.getMessageSize(message);
+        }
+    }
+
+    private static long writtenSize(Message message) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        new DefaultMessageWriter().writeMessage(message, out);
+        return out.getByteCount();
+    }
+
+    private static Message createMessage(int size) throws Exception {
+        String[] words = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+                "r\u00e9sum\u00e9", "regards", "meeting" };
+        Random random = new Random(size);
+        StringBuilder text = new StringBuilder(size);
+        while (text.length() < size / 4) {
+            text.append(words[random.nextInt(words.length)]);
+            text.append(random.nextInt(10) == 0 ? "\r\n" : " ");
+        }
+        byte[] bin = new byte[size];
+        random.nextBytes(bin);
+
+        return Message.Builder.of()
+            .setFrom("sender@example.org")
+            .setTo("recipient@example.com")
+            .setSubject("Size test")
+            .setBody(MultipartBuilder.create("mixed")
+                .addTextPart(text.toString(), Charsets.ISO_8859_1)
+                .addBinaryPart(bin, "application/octet-stream")
+                .build())
+            .build();
+    }
+
+}
@@ -0,0 +1,112 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Reports bytes allocated per parsed message for a long lived
+ * {@link MimeTokenStream}, with and without buffer recycling. Requires a JVM
+ * exposing <code>com.sun.management.ThreadMXBean</code>.
+ */
+public class ParseAllocationBench {
+
+    public static void main(String[] args) throws Exception {
+
+        byte[] content = loadMessage("long-multipart.msg");
+        if (content == null) {
+            System.err.println("Test message not found");
+            return;
+        }
+
+        ThreadMXBean mxbean = ManagementFactory.getThreadMXBean();
+        if (!(mxbean instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("Thread allocation counters not supported by this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) mxbean;
+
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        System.out.println("Multipart message allocation.");
+        System.out.println("No of repetitions: " + repetitions);
+        System.out.println("Content length: " + content.length);
+
+        MimeConfig[] configs = new MimeConfig[] {
+                MimeConfig.DEFAULT,
+                MimeConfig.custom().setRecycleBuffers(true).build() };
+
+        for (MimeConfig config : configs) {
+            MimeTokenStream stream = new MimeTokenStream(config);
+            // warmup
+            run(stream, content, repetitions);
+
+            long threadId = Thread.currentThread().getId();
+            long start = System.currentTimeMillis();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            run(stream, content, repetitions);
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            long finish = System.currentTimeMillis();
+
+            double seconds = (finish - start) / 1000.0;
+            System.out.println("--------------------------------");
+            System.out.println("Recycle buffers: " + config.isRecycleBuffers());
+            System.out.printf("%.2f messages/sec\n", repetitions / seconds);
+            System.out.printf("%d bytes allocated/message\n", (after - before) / repetitions);
+        }
+    }
+
+    private static void run(MimeTokenStream stream, byte[] content, int repetitions) throws Exception {
+        for (int i = 0; i < repetitions; i++) {
+            stream.parse(new ByteArrayInputStream(content));
+            for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream
+                    .next()) {
+            }
+        }
+    }
+
+    private static byte[] loadMessage(String resourceName) throws IOException {
+        ClassLoader cl = ParseAllocationBench.class.getClassLoader();
+
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        InputStream instream = cl.getResourceAsStream(resourceName);
+        if (instream == null) {
+            return null;
+        }
+        try {
+            ContentUtil.copy(instream, outstream);
+        } finally {
+            instream.close();
+        }
+
+        return outstream.toByteArray();
+    }
+
+}
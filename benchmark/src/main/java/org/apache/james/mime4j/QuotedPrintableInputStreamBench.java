@@ -24,31 +24,53 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import org.apache.commons.io.output.NullOutputStream;
-import org.apache.james.mime4j.codec.EncoderUtil;
+import org.apache.james.mime4j.codec.QuotedPrintableDecoder;
 import org.apache.james.mime4j.codec.QuotedPrintableInputStream;
+import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
 import org.apache.james.mime4j.util.ContentUtil;
 
+/**
+ * Measures Quoted-Printable decoding throughput of
+ * {@link QuotedPrintableInputStream} and of {@link QuotedPrintableDecoder}
+ * working directly on buffers, for binary content and for text.
+ */
 public class QuotedPrintableInputStreamBench {
 
     public static void main(String[] args) throws Exception {
-        byte[] data = initData(2 * 1024 * 1024);
-        byte[] encoded = encode(data);
+        // stream, decoder or both; use separate runs for stable numbers
+        String variant = args.length > 0 ? args[0] : "both";
+        // binary: random bytes, mostly escaped; text: mostly literal ASCII
+        boolean text = args.length > 1 && args[1].equals("text");
+
+        byte[] data = text ? initText(2 * 1024 * 1024) : initData(2 * 1024 * 1024);
+        byte[] encoded = encode(data, text);
 
         // decoder test to make sure everything is okay
 
         testDecode(data, encoded);
 
-        // warmup
+        System.out.println((text ? "Text" : "Binary") + " content, encoded length: " + encoded.length);
+        if (!variant.equals("decoder")) {
+            run("QuotedPrintableInputStream", encoded, data.length, false);
+        }
+        if (!variant.equals("stream")) {
+            run("QuotedPrintableDecoder", encoded, data.length, true);
+        }
+    }
 
+    private static void run(String name, byte[] encoded, int length, boolean bulk)
+            throws IOException, InterruptedException {
         OutputStream nullOut = new NullOutputStream();
+        ByteBuffer dst = ByteBuffer.allocate(4096);
+
+        // warmup
 
         for (int i = 0; i < 5; i++) {
-            ByteArrayInputStream ed = new ByteArrayInputStream(encoded);
-            InputStream in = new QuotedPrintableInputStream(ed);
-            ContentUtil.copy(in, nullOut);
+            decode(encoded, bulk, nullOut, dst);
         }
         Thread.sleep(100);
 
@@ -58,21 +80,36 @@ public class QuotedPrintableInputStreamBench {
 
         final int repetitions = 50;
         for (int i = 0; i < repetitions; i++) {
-            ByteArrayInputStream ed = new ByteArrayInputStream(encoded);
-            InputStream in = new QuotedPrintableInputStream(ed);
-            ContentUtil.copy(in, nullOut);
+            decode(encoded, bulk, nullOut, dst);
         }
 
         long dt = System.currentTimeMillis() - t0;
-        long totalBytes = data.length * (long) repetitions;
+        long totalBytes = length * (long) repetitions;
 
         double mbPerSec = (totalBytes / 1024.0 / 1024) / (dt / 1000.0);
 
+        System.out.println(name);
         System.out.println(dt + " ms");
         System.out.println(totalBytes + " bytes");
         System.out.println(mbPerSec + " mb/sec");
     }
 
+    private static void decode(byte[] encoded, boolean bulk, OutputStream out, ByteBuffer dst)
+            throws IOException {
+        if (!bulk) {
+            ContentUtil.copy(new QuotedPrintableInputStream(new ByteArrayInputStream(encoded)), out);
+            return;
+        }
+        QuotedPrintableDecoder decoder = new QuotedPrintableDecoder();
+        ByteBuffer src = ByteBuffer.wrap(encoded);
+        boolean complete = false;
+        while (!complete) {
+            dst.clear();
+            complete = decoder.decode(src, dst, true);
+            out.write(dst.array(), 0, dst.position());
+        }
+    }
+
     private static byte[] initData(int size) {
         Random random = new Random(size);
         byte[] data = new byte[size];
@@ -80,10 +117,33 @@ public class QuotedPrintableInputStreamBench {
         return data;
     }
 
-    private static byte[] encode(byte[] data) throws IOException {
-        InputStream in = new ByteArrayInputStream(data);
+    private static byte[] initText(int size) {
+        String[] words = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+                "message", "attached", "r\u00e9sum\u00e9", "na\u00efve", "regards", "=", "meeting" };
+        Random random = new Random(size);
+        StringBuilder sb = new StringBuilder(size);
+        int line = 0;
+        while (sb.length() < size) {
+            String word = words[random.nextInt(words.length)];
+            sb.append(word);
+            line += word.length();
+            if (line > 60) {
+                sb.append("\r\n");
+                line = 0;
+            } else {
+                sb.append(' ');
+                line++;
+            }
+        }
+        sb.append("end.");
+        return ContentUtil.toByteArray(sb.toString(), Charsets.ISO_8859_1);
+    }
+
+    private static byte[] encode(byte[] data, boolean text) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        EncoderUtil.encodeQBinary(in, out);
+        OutputStream encoder = new QuotedPrintableOutputStream(out, !text);
+        encoder.write(data);
+        encoder.close();
         return out.toByteArray();
     }
 
@@ -95,6 +155,10 @@ public class QuotedPrintableInputStreamBench {
         ContentUtil.copy(in, out);
 
         compare(data, out.toByteArray());
+
+        out.reset();
+        decode(encoded, true, out, ByteBuffer.allocate(4096));
+        compare(data, out.toByteArray());
     }
 
     private static void compare(byte[] expected, byte[] actual) {
@@ -0,0 +1,155 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.james.mime4j.codec.Base64InputStream;
+import org.apache.james.mime4j.codec.Base64OutputStream;
+import org.apache.james.mime4j.codec.QuotedPrintableInputStream;
+import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
+import org.apache.james.mime4j.codec.TransferEncodingTranscoder;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Measures re-encoding throughput of {@link TransferEncodingTranscoder}
+ * against a chain of a decoding input stream, a copy loop and an encoding
+ * output stream, for base64 to quoted-printable, quoted-printable to base64
+ * and 8bit to quoted-printable.
+ */
+public class TransferEncodingTranscoderBench {
+
+    private static final String[][] CONVERSIONS = {
+            { "base64", "quoted-printable" },
+            { "quoted-printable", "base64" },
+            { "8bit", "quoted-printable" } };
+
+    public static void main(String[] args) throws Exception {
+        // streams, transcoder or both; use separate runs for stable numbers
+        String variant = args.length > 0 ? args[0] : "both";
+
+        byte[] data = initData(2 * 1024 * 1024);
+
+        for (String[] conversion : CONVERSIONS) {
+            byte[] source = encode(data, conversion[0]);
+
+            // make sure both variants agree
+
+            if (!Arrays.equals(transcode(source, conversion, false),
+                    transcode(source, conversion, true))) {
+                throw new AssertionError("Output differs for " + conversion[0] + " to "
+                        + conversion[1]);
+            }
+
+            System.out.println("--------------------------------");
+            System.out.println(conversion[0] + " to " + conversion[1] + ", source length: "
+                    + source.length);
+            if (!variant.equals("transcoder")) {
+                run("Streams", source, conversion, data.length, false);
+            }
+            if (!variant.equals("streams")) {
+                run("TransferEncodingTranscoder", source, conversion, data.length, true);
+            }
+        }
+    }
+
+    private static void run(String name, byte[] source, String[] conversion, int length,
+            boolean fused) throws IOException, InterruptedException {
+        OutputStream nullOut = new NullOutputStream();
+        TransferEncodingTranscoder transcoder = new TransferEncodingTranscoder();
+
+        // warmup
+
+        for (int i = 0; i < 5; i++) {
+            transcode(source, conversion, fused, transcoder, nullOut);
+        }
+        Thread.sleep(100);
+
+        // test
+
+        long t0 = System.currentTimeMillis();
+
+        final int repetitions = 50;
+        for (int i = 0; i < repetitions; i++) {
+            transcode(source, conversion, fused, transcoder, nullOut);
+        }
+
+        long dt = System.currentTimeMillis() - t0;
+        long totalBytes = length * (long) repetitions;
+
+        double mbPerSec = (totalBytes / 1024.0 / 1024) / (dt / 1000.0);
+
+        System.out.println(name);
+        System.out.println(dt + " ms");
+        System.out.println(mbPerSec + " mb/sec");
+    }
+
+    private static byte[] transcode(byte[] source, String[] conversion, boolean fused)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transcode(source, conversion, fused, new TransferEncodingTranscoder(), out);
+        return out.toByteArray();
+    }
+
+    private static void transcode(byte[] source, String[] conversion, boolean fused,
+            TransferEncodingTranscoder transcoder, OutputStream out) throws IOException {
+        InputStream in = new ByteArrayInputStream(source);
+        if (fused) {
+            transcoder.transcode(in, conversion[0], out, conversion[1], true);
+            return;
+        }
+        if (conversion[0].equals("base64")) {
+            in = new Base64InputStream(in);
+        } else if (conversion[0].equals("quoted-printable")) {
+            in = new QuotedPrintableInputStream(in);
+        }
+        OutputStream encOut = conversion[1].equals("base64")
+                ? new Base64OutputStream(out) : new QuotedPrintableOutputStream(out, true);
+        ContentUtil.copy(in, encOut);
+        encOut.close();
+    }
+
+    private static byte[] initData(int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static byte[] encode(byte[] data, String encoding) throws IOException {
+        if (encoding.equals("8bit")) {
+            return data;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream encoder = encoding.equals("base64")
+                ? new Base64OutputStream(out) : new QuotedPrintableOutputStream(out, true);
+        encoder.write(data);
+        encoder.close();
+        return out.toByteArray();
+    }
+
+}
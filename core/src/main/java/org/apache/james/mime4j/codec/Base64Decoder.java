@@ -0,0 +1,223 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes Base-64 encoded content from one buffer into another. The decoder
+ * holds no buffers of its own; the only state carried between invocations
+ * is an incomplete group of sextets, so encoded content can be fed in
+ * arbitrary chunks.
+ * <p>
+ * Characters outside of the Base-64 alphabet are skipped. Apart from CR, LF
+ * and SPACE each of them is reported to the {@link DecodeMonitor}. Decoding
+ * stops at the first pad character; anything following it is ignored.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class Base64Decoder {
+
+    static final int[] BASE64_DECODE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++)
+            BASE64_DECODE[i] = -1;
+        for (int i = 0; i < Base64Encoder.BASE64_TABLE.length; i++)
+            BASE64_DECODE[Base64Encoder.BASE64_TABLE[i] & 0xff] = i;
+    }
+
+    private static final byte BASE64_PAD = '=';
+
+    private final DecodeMonitor monitor;
+
+    private int data; // holds decoded data; up to three sextets
+    private int sextets; // number of sextets in data
+    private boolean finished; // pad character or end of input reached
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param monitor monitor notified of malformed content,
+     *   <code>null</code> for {@link DecodeMonitor#SILENT}.
+     */
+    public Base64Decoder(DecodeMonitor monitor) {
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+    }
+
+    public Base64Decoder() {
+        this(null);
+    }
+
+    /**
+     * Decodes as much of <code>src</code> as possible into <code>dst</code>.
+     * Decoding stops when <code>src</code> is exhausted, when
+     * <code>dst</code> is full or has no room left for the next group of
+     * bytes, or when a pad character has been decoded. Bytes are consumed from
+     * <code>src</code> only if their decoded form fits into
+     * <code>dst</code>, which therefore needs at least three bytes of room
+     * to make progress.
+     *
+     * @param src encoded content.
+     * @param dst buffer receiving the decoded content.
+     * @return <code>true</code> if the end of the encoded content has been
+     *   reached, <code>false</code> if more input is expected.
+     * @throws IOException if the monitor rejects malformed content.
+     */
+    public boolean decode(ByteBuffer src, ByteBuffer dst) throws IOException {
+        while (!finished && src.hasRemaining() && dst.hasRemaining()) {
+            if (sextets == 0 && src.hasArray() && dst.hasArray()) {
+                decodeGroups(src, dst);
+                if (!src.hasRemaining())
+                    break;
+            }
+
+            int value = src.get(src.position()) & 0xff;
+
+            if (value == BASE64_PAD) {
+                if (dst.remaining() < sextets - 1)
+                    break;
+                src.get();
+                decodePad(dst);
+                break;
+            }
+
+            int decoded = BASE64_DECODE[value];
+            if (decoded < 0) { // -1: not a base64 char
+                src.get();
+                if (value != 0x0D && value != 0x0A && value != 0x20) {
+                    if (monitor.warn("Unexpected base64 byte: " + (byte) value, "ignoring."))
+                        throw new IOException("Unexpected base64 byte");
+                }
+                continue;
+            }
+
+            if (sextets == 3) {
+                if (dst.remaining() < 3)
+                    break;
+                src.get();
+                data = (data << 6) | decoded;
+                sextets = 0;
+                dst.put((byte) (data >>> 16));
+                dst.put((byte) (data >>> 8));
+                dst.put((byte) data);
+            } else {
+                src.get();
+                data = (data << 6) | decoded;
+                sextets++;
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * Signals the end of the encoded content. An incomplete group of
+     * sextets left over from the last invocation of
+     * {@link #decode(ByteBuffer, ByteBuffer)} is reported to the monitor
+     * and dropped.
+     *
+     * @throws IOException if the monitor rejects the truncated content.
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+        finished = true;
+        if (sextets != 0) {
+            int dropped = sextets;
+            sextets = 0;
+            if (monitor.warn("Unexpected end of BASE64 stream", "dropping " + dropped + " sextet(s)"))
+                throw new IOException("Unexpected end of BASE64 stream");
+        }
+    }
+
+    /**
+     * Returns <code>true</code> once a pad character has been decoded or
+     * {@link #finish()} has been called.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Resets this decoder so that it can be used for new content.
+     */
+    public void reset() {
+        data = 0;
+        sextets = 0;
+        finished = false;
+    }
+
+    // Decodes complete groups of four alphabet characters directly between
+    // the backing arrays; stops at the first group containing anything else.
+    private static void decodeGroups(ByteBuffer src, ByteBuffer dst) {
+        final byte[] in = src.array();
+        final byte[] out = dst.array();
+        int i = src.arrayOffset() + src.position();
+        int o = dst.arrayOffset() + dst.position();
+        final int inEnd = src.arrayOffset() + src.limit() - 3;
+        final int outEnd = dst.arrayOffset() + dst.limit() - 2;
+
+        while (i < inEnd && o < outEnd) {
+            int s1 = BASE64_DECODE[in[i] & 0xff];
+            int s2 = BASE64_DECODE[in[i + 1] & 0xff];
+            int s3 = BASE64_DECODE[in[i + 2] & 0xff];
+            int s4 = BASE64_DECODE[in[i + 3] & 0xff];
+            if ((s1 | s2 | s3 | s4) < 0)
+                break;
+
+            int bits = (s1 << 18) | (s2 << 12) | (s3 << 6) | s4;
+            out[o] = (byte) (bits >>> 16);
+            out[o + 1] = (byte) (bits >>> 8);
+            out[o + 2] = (byte) bits;
+            i += 4;
+            o += 3;
+        }
+
+        src.position(i - src.arrayOffset());
+        dst.position(o - dst.arrayOffset());
+    }
+
+    private void decodePad(ByteBuffer dst) throws IOException {
+        finished = true;
+
+        if (sextets == 2) {
+            // one byte encoded as "XY=="
+
+            dst.put((byte) (data >>> 4));
+        } else if (sextets == 3) {
+            // two bytes encoded as "XYZ="
+
+            dst.put((byte) (data >>> 10));
+            dst.put((byte) ((data >>> 2) & 0xFF));
+        } else {
+            // error in encoded data
+            int dropped = sextets;
+            sextets = 0;
+            if (monitor.warn("Unexpected padding character", "dropping " + dropped + " sextet(s)"))
+                throw new IOException("Unexpected padding character");
+        }
+        sextets = 0;
+    }
+
+}
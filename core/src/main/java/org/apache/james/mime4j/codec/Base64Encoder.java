@@ -0,0 +1,266 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes content into Base-64 as defined by RFC 2045 section 6.8 from one
+ * buffer into another. The encoder holds no buffers of its own; the only
+ * state carried between invocations is an incomplete group of input bytes
+ * and the length of the current output line, so content can be fed in
+ * arbitrary chunks.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @see Base64OutputStream
+ */
+public class Base64Encoder {
+
+    // Default line length per RFC 2045 section 6.8.
+    static final int DEFAULT_LINE_LENGTH = 76;
+
+    // CRLF line separator per RFC 2045 section 2.1.
+    static final byte[] CRLF_SEPARATOR = { '\r', '\n' };
+
+    // This array is a lookup table that translates 6-bit positive integer index
+    // values into their "Base64 Alphabet" equivalents as specified in Table 1
+    // of RFC 2045.
+    static final byte[] BASE64_TABLE = { 'A', 'B', 'C', 'D', 'E', 'F',
+            'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S',
+            'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f',
+            'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's',
+            't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5',
+            '6', '7', '8', '9', '+', '/' };
+
+    // Byte used to pad output.
+    private static final byte BASE64_PAD = '=';
+
+    // Mask used to extract 6 bits
+    private static final int MASK_6BITS = 0x3f;
+
+    private final int lineLength;
+    private final byte[] lineSeparator;
+
+    private int data = 0;
+    private int modulus = 0;
+
+    private int linePosition = 0;
+
+    /**
+     * Creates an encoder using the default line length (76) and line
+     * separator (CRLF).
+     */
+    public Base64Encoder() {
+        this(DEFAULT_LINE_LENGTH, CRLF_SEPARATOR);
+    }
+
+    /**
+     * Creates an encoder using the given line length and line separator.
+     * <p>
+     * The given line length will be rounded up to the nearest multiple of 4. If
+     * the line length is zero then the output will not be split into lines and
+     * the line separator is ignored. The line separator must not include
+     * characters from the BASE64 alphabet; this is not checked here.
+     *
+     * @param lineLength
+     *            desired line length.
+     * @param lineSeparator
+     *            line separator to use.
+     */
+    public Base64Encoder(int lineLength, byte[] lineSeparator) {
+        if (lineLength < 0)
+            throw new IllegalArgumentException();
+        this.lineLength = lineLength;
+        this.lineSeparator = new byte[lineSeparator.length];
+        System.arraycopy(lineSeparator, 0, this.lineSeparator, 0,
+                lineSeparator.length);
+    }
+
+    /**
+     * Encodes as much of <code>src</code> as possible into <code>dst</code>.
+     * An incomplete group of up to two trailing bytes is consumed and kept
+     * until more content arrives or {@link #finish(ByteBuffer)} is called.
+     * Bytes are consumed only if their encoded form fits into
+     * <code>dst</code>; it needs room for four bytes or a line separator to
+     * make progress.
+     *
+     * @param src content to encode.
+     * @param dst buffer receiving the encoded content.
+     */
+    public void encode(ByteBuffer src, ByteBuffer dst) {
+        while (src.hasRemaining()) {
+            if (modulus == 0 && src.hasArray() && dst.hasArray()) {
+                encodeGroups(src, dst);
+                if (!src.hasRemaining())
+                    break;
+            }
+
+            if (modulus < 2) {
+                data = (data << 8) | (src.get() & 0xff);
+                modulus++;
+                continue;
+            }
+
+            // write line separator if necessary
+
+            if (lineLength > 0 && linePosition >= lineLength) {
+                if (dst.remaining() < lineSeparator.length)
+                    break;
+                dst.put(lineSeparator);
+                linePosition = 0;
+            }
+
+            // encode data into 4 bytes
+
+            if (dst.remaining() < 4)
+                break;
+
+            data = (data << 8) | (src.get() & 0xff);
+            modulus = 0;
+
+            dst.put(BASE64_TABLE[(data >> 18) & MASK_6BITS]);
+            dst.put(BASE64_TABLE[(data >> 12) & MASK_6BITS]);
+            dst.put(BASE64_TABLE[(data >> 6) & MASK_6BITS]);
+            dst.put(BASE64_TABLE[data & MASK_6BITS]);
+
+            linePosition += 4;
+        }
+    }
+
+    /**
+     * Writes the padded final group and the closing line separator. If
+     * <code>dst</code> runs out of room the method returns
+     * <code>false</code> and has to be invoked again with more room.
+     *
+     * @param dst buffer receiving the encoded content.
+     * @return <code>true</code> if the encoded content is complete.
+     */
+    public boolean finish(ByteBuffer dst) {
+        if (modulus != 0) {
+            // write line separator if necessary
+
+            if (lineLength > 0 && linePosition >= lineLength) {
+                if (dst.remaining() < lineSeparator.length)
+                    return false;
+                dst.put(lineSeparator);
+                linePosition = 0;
+            }
+
+            if (dst.remaining() < 4)
+                return false;
+
+            if (modulus == 1) {
+                dst.put(BASE64_TABLE[(data >> 2) & MASK_6BITS]);
+                dst.put(BASE64_TABLE[(data << 4) & MASK_6BITS]);
+                dst.put(BASE64_PAD);
+                dst.put(BASE64_PAD);
+            } else {
+                assert modulus == 2;
+                dst.put(BASE64_TABLE[(data >> 10) & MASK_6BITS]);
+                dst.put(BASE64_TABLE[(data >> 4) & MASK_6BITS]);
+                dst.put(BASE64_TABLE[(data << 2) & MASK_6BITS]);
+                dst.put(BASE64_PAD);
+            }
+            modulus = 0;
+            linePosition += 4;
+        }
+
+        // write line separator at the end of the encoded data
+
+        if (lineLength > 0 && linePosition > 0) {
+            if (dst.remaining() < lineSeparator.length)
+                return false;
+            dst.put(lineSeparator);
+            linePosition = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Resets this encoder so that it can be used for new content.
+     */
+    public void reset() {
+        data = 0;
+        modulus = 0;
+        linePosition = 0;
+    }
+
+    /**
+     * Returns the number of bytes this encoder produces for content of the
+     * given length, including line separators and the closing separator
+     * written by {@link #finish(ByteBuffer)}. The state of the encoder is
+     * neither used nor changed.
+     *
+     * @param length length of the content to encode.
+     * @return length of the encoded content.
+     */
+    public long encodedLength(long length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Negative length: " + length);
+
+        long groups = (length + 2) / 3;
+        if (lineLength == 0)
+            return groups * 4;
+
+        long groupsPerLine = (lineLength + 3) / 4;
+        long lines = (groups + groupsPerLine - 1) / groupsPerLine;
+        return groups * 4 + lines * lineSeparator.length;
+    }
+
+    // Encodes complete groups of three bytes directly between the backing
+    // arrays, inserting line separators as needed.
+    private void encodeGroups(ByteBuffer src, ByteBuffer dst) {
+        final byte[] in = src.array();
+        final byte[] out = dst.array();
+        final byte[] separator = lineSeparator;
+        int i = src.arrayOffset() + src.position();
+        int o = dst.arrayOffset() + dst.position();
+        final int inEnd = src.arrayOffset() + src.limit() - 2;
+        final int outLimit = dst.arrayOffset() + dst.limit();
+
+        while (i < inEnd) {
+            if (lineLength > 0 && linePosition >= lineLength) {
+                if (outLimit - o < separator.length + 4)
+                    break;
+                for (int k = 0; k < separator.length; k++)
+                    out[o++] = separator[k];
+                linePosition = 0;
+            } else if (outLimit - o < 4) {
+                break;
+            }
+
+            int bits = ((in[i] & 0xff) << 16) | ((in[i + 1] & 0xff) << 8) | (in[i + 2] & 0xff);
+            out[o] = BASE64_TABLE[(bits >> 18) & MASK_6BITS];
+            out[o + 1] = BASE64_TABLE[(bits >> 12) & MASK_6BITS];
+            out[o + 2] = BASE64_TABLE[(bits >> 6) & MASK_6BITS];
+            out[o + 3] = BASE64_TABLE[bits & MASK_6BITS];
+            i += 3;
+            o += 4;
+            linePosition += 4;
+        }
+
+        src.position(i - src.arrayOffset());
+        dst.position(o - dst.arrayOffset());
+    }
+
+}
@@ -21,41 +21,28 @@ package org.apache.james.mime4j.codec;
 
 import java.io.IOException;
 import java.io.InputStream;
-
-import org.apache.james.mime4j.util.ByteArrayBuffer;
+import java.nio.ByteBuffer;
 
 /**
- * Performs Base-64 decoding on an underlying stream.
+ * Performs Base-64 decoding on an underlying stream. The decoding itself is
+ * done by a {@link Base64Decoder}.
  */
 public class Base64InputStream extends InputStream {
     private static final int ENCODED_BUFFER_SIZE = 1536;
 
-    private static final int[] BASE64_DECODE = new int[256];
-
-    static {
-        for (int i = 0; i < 256; i++)
-            BASE64_DECODE[i] = -1;
-        for (int i = 0; i < Base64OutputStream.BASE64_TABLE.length; i++)
-            BASE64_DECODE[Base64OutputStream.BASE64_TABLE[i] & 0xff] = i;
-    }
-
-    private static final byte BASE64_PAD = '=';
-
     private static final int EOF = -1;
 
     private final byte[] singleByte = new byte[1];
 
     private final InputStream in;
-    private final byte[] encoded;
-    private final ByteArrayBuffer decodedBuf;
-
-    private int position = 0; // current index into encoded buffer
-    private int size = 0; // current size of encoded buffer
+    private final ByteBuffer encoded;
+    // holds the rest of a group that did not fit into the caller's buffer
+    private final ByteBuffer decodedBuf;
 
     private boolean closed = false;
-    private boolean eof; // end of file or pad character reached
+    private boolean eof; // end of file or pad reached
 
-    private final DecodeMonitor monitor;
+    private final Base64Decoder decoder;
 
     public Base64InputStream(InputStream in, DecodeMonitor monitor) {
         this(ENCODED_BUFFER_SIZE, in, monitor);
@@ -64,10 +51,12 @@ public class Base64InputStream extends InputStream {
     protected Base64InputStream(int bufsize, InputStream in, DecodeMonitor monitor) {
         if (in == null)
             throw new IllegalArgumentException();
-        this.encoded = new byte[bufsize];
-        this.decodedBuf = new ByteArrayBuffer(512);
+        this.encoded = ByteBuffer.allocate(bufsize);
+        this.encoded.flip();
+        this.decodedBuf = ByteBuffer.allocate(3);
+        this.decodedBuf.flip();
         this.in = in;
-        this.monitor = monitor;
+        this.decoder = new Base64Decoder(monitor);
     }
 
     public Base64InputStream(InputStream in) {
@@ -133,153 +122,51 @@ public class Base64InputStream extends InputStream {
     }
 
     private int read0(final byte[] buffer, final int off, final int len) throws IOException {
-        int to = off + len;
-        int index = off;
+        ByteBuffer dst = ByteBuffer.wrap(buffer, off, len);
 
         // check if a previous invocation left decoded content
-        if (decodedBuf.length() > 0) {
-            int chunk = Math.min(decodedBuf.length(), len);
-            System.arraycopy(decodedBuf.buffer(), 0, buffer, index, chunk);
-            decodedBuf.remove(0, chunk);
-            index += chunk;
+        if (decodedBuf.hasRemaining()) {
+            transfer(decodedBuf, dst);
         }
 
-        // eof or pad reached?
-
-        if (eof)
-            return index == off ? EOF : index - off;
-
-        // decode into given buffer
-
-        int data = 0; // holds decoded data; up to four sextets
-        int sextets = 0; // number of sextets
-
-        while (index < to) {
+        while (dst.hasRemaining() && !eof) {
             // make sure buffer not empty
 
-            while (position == size) {
-                int n = in.read(encoded, 0, encoded.length);
+            if (!encoded.hasRemaining()) {
+                // content decoded already is returned rather than put at
+                // risk by a read that may fail
+                if (dst.position() > off)
+                    break;
+                int n = in.read(encoded.array(), 0, encoded.capacity());
                 if (n == EOF) {
                     eof = true;
-
-                    if (sextets != 0) {
-                        // error in encoded data
-                        handleUnexpectedEof(sextets);
-                    }
-
-                    return index == off ? EOF : index - off;
-                } else if (n > 0) {
-                    position = 0;
-                    size = n;
-                } else {
-                    assert n == 0;
-                }
-            }
-
-            // decode buffer
-
-            while (position < size && index < to) {
-                int value = encoded[position++] & 0xff;
-
-                if (value == BASE64_PAD) {
-                    index = decodePad(data, sextets, buffer, index, to);
-                    return index - off;
-                }
-
-                int decoded = BASE64_DECODE[value];
-                if (decoded < 0) { // -1: not a base64 char
-                    if (value != 0x0D && value != 0x0A && value != 0x20) {
-                        if (monitor.warn("Unexpected base64 byte: "+(byte) value, "ignoring."))
-                            throw new IOException("Unexpected base64 byte");
-                    }
-                    continue;
-                }
-
-                data = (data << 6) | decoded;
-                sextets++;
-
-                if (sextets == 4) {
-                    sextets = 0;
-
-                    byte b1 = (byte) (data >>> 16);
-                    byte b2 = (byte) (data >>> 8);
-                    byte b3 = (byte) data;
-
-                    if (index < to - 2) {
-                        buffer[index++] = b1;
-                        buffer[index++] = b2;
-                        buffer[index++] = b3;
-                    } else {
-                        if (index < to - 1) {
-                            buffer[index++] = b1;
-                            buffer[index++] = b2;
-                            decodedBuf.append(b3);
-                        } else if (index < to) {
-                            buffer[index++] = b1;
-                            decodedBuf.append(b2);
-                            decodedBuf.append(b3);
-                        } else {
-                            decodedBuf.append(b1);
-                            decodedBuf.append(b2);
-                            decodedBuf.append(b3);
-                        }
-
-                        assert index == to;
-                        return to - off;
-                    }
+                    decoder.finish();
+                    break;
                 }
+                encoded.limit(n);
+                encoded.position(0);
+                continue;
             }
-        }
 
-        assert sextets == 0;
-        assert index == to;
-        return to - off;
-    }
-
-    private int decodePad(int data, int sextets, final byte[] buffer,
-            int index, final int end) throws IOException {
-        eof = true;
+            // decode buffer; a group that does not fit goes to decodedBuf
 
-        if (sextets == 2) {
-            // one byte encoded as "XY=="
-
-            byte b = (byte) (data >>> 4);
-            if (index < end) {
-                buffer[index++] = b;
+            if (dst.remaining() >= 3) {
+                eof = decoder.decode(encoded, dst);
             } else {
-                decodedBuf.append(b);
+                decodedBuf.clear();
+                eof = decoder.decode(encoded, decodedBuf);
+                decodedBuf.flip();
+                transfer(decodedBuf, dst);
             }
-        } else if (sextets == 3) {
-            // two bytes encoded as "XYZ="
-
-            byte b1 = (byte) (data >>> 10);
-            byte b2 = (byte) ((data >>> 2) & 0xFF);
-
-            if (index < end - 1) {
-                buffer[index++] = b1;
-                buffer[index++] = b2;
-            } else if (index < end) {
-                buffer[index++] = b1;
-                decodedBuf.append(b2);
-            } else {
-                decodedBuf.append(b1);
-                decodedBuf.append(b2);
-            }
-        } else {
-            // error in encoded data
-            handleUnexpecedPad(sextets);
         }
 
-        return index;
-    }
-
-    private void handleUnexpectedEof(int sextets) throws IOException {
-        if (monitor.warn("Unexpected end of BASE64 stream", "dropping " + sextets + " sextet(s)"))
-            throw new IOException("Unexpected end of BASE64 stream");
+        int count = dst.position() - off;
+        return count == 0 && eof && !decodedBuf.hasRemaining() ? EOF : count;
     }
 
-    private void handleUnexpecedPad(int sextets) throws IOException {
-        if (monitor.warn("Unexpected padding character", "dropping " + sextets + " sextet(s)"))
-            throw new IOException("Unexpected padding character");
+    private static void transfer(ByteBuffer src, ByteBuffer dst) {
+        int chunk = Math.min(src.remaining(), dst.remaining());
+        dst.put(src.array(), src.position(), chunk);
+        src.position(src.position() + chunk);
     }
 }
@@ -22,6 +22,7 @@ package org.apache.james.mime4j.codec;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,27 +32,12 @@ import java.util.Set;
  * Format of Internet Message Bodies</cite> by Freed and Borenstein.
  * <p>
  * Code is based on Base64 and Base64OutputStream code from Commons-Codec 1.4.
+ * The encoding itself is done by a {@link Base64Encoder}.
  *
  * @see <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>
  */
 public class Base64OutputStream extends FilterOutputStream {
 
-    // Default line length per RFC 2045 section 6.8.
-    private static final int DEFAULT_LINE_LENGTH = 76;
-
-    // CRLF line separator per RFC 2045 section 2.1.
-    private static final byte[] CRLF_SEPARATOR = { '\r', '\n' };
-
-    // This array is a lookup table that translates 6-bit positive integer index
-    // values into their "Base64 Alphabet" equivalents as specified in Table 1
-    // of RFC 2045.
-    static final byte[] BASE64_TABLE = { 'A', 'B', 'C', 'D', 'E', 'F',
-            'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S',
-            'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f',
-            'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's',
-            't', 'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5',
-            '6', '7', '8', '9', '+', '/' };
-
     // Byte used to pad output.
     private static final byte BASE64_PAD = '=';
 
@@ -60,31 +46,20 @@ public class Base64OutputStream extends FilterOutputStream {
     private static final Set<Byte> BASE64_CHARS = new HashSet<Byte>();
 
     static {
-        for (byte b : BASE64_TABLE) {
+        for (byte b : Base64Encoder.BASE64_TABLE) {
             BASE64_CHARS.add(b);
         }
         BASE64_CHARS.add(BASE64_PAD);
     }
 
-    // Mask used to extract 6 bits
-    private static final int MASK_6BITS = 0x3f;
-
     private static final int ENCODED_BUFFER_SIZE = 2048;
 
     private final byte[] singleByte = new byte[1];
 
-    private final int lineLength;
-    private final byte[] lineSeparator;
-
     private boolean closed = false;
 
-    private final byte[] encoded;
-    private int position = 0;
-
-    private int data = 0;
-    private int modulus = 0;
-
-    private int linePosition = 0;
+    private final Base64Encoder encoder;
+    private final ByteBuffer encoded;
 
     /**
      * Creates a <code>Base64OutputStream</code> that writes the encoded data
@@ -95,7 +70,7 @@ public class Base64OutputStream extends FilterOutputStream {
      *            underlying output stream.
      */
     public Base64OutputStream(OutputStream out) {
-        this(out, DEFAULT_LINE_LENGTH, CRLF_SEPARATOR);
+        this(out, Base64Encoder.DEFAULT_LINE_LENGTH, Base64Encoder.CRLF_SEPARATOR);
     }
 
     /**
@@ -112,7 +87,7 @@ public class Base64OutputStream extends FilterOutputStream {
      *            desired line length.
      */
     public Base64OutputStream(OutputStream out, int lineLength) {
-        this(out, lineLength, CRLF_SEPARATOR);
+        this(out, lineLength, Base64Encoder.CRLF_SEPARATOR);
     }
 
     /**
@@ -144,12 +119,8 @@ public class Base64OutputStream extends FilterOutputStream {
             throw new IllegalArgumentException();
         checkLineSeparator(lineSeparator);
 
-        this.lineLength = lineLength;
-        this.lineSeparator = new byte[lineSeparator.length];
-        System.arraycopy(lineSeparator, 0, this.lineSeparator, 0,
-                lineSeparator.length);
-
-        this.encoded = new byte[ENCODED_BUFFER_SIZE];
+        this.encoder = new Base64Encoder(lineLength, lineSeparator);
+        this.encoded = ByteBuffer.allocate(ENCODED_BUFFER_SIZE);
     }
 
     @Override
@@ -212,97 +183,27 @@ public class Base64OutputStream extends FilterOutputStream {
 
     private void write0(final byte[] buffer, final int from, final int to)
             throws IOException {
-        for (int i = from; i < to; i++) {
-            data = (data << 8) | (buffer[i] & 0xff);
-
-            if (++modulus == 3) {
-                modulus = 0;
-
-                // write line separator if necessary
-
-                if (lineLength > 0 && linePosition >= lineLength) {
-                    // writeLineSeparator() inlined for performance reasons
-
-                    linePosition = 0;
-
-                    if (encoded.length - position < lineSeparator.length)
-                        flush0();
-
-                    for (byte ls : lineSeparator)
-                        encoded[position++] = ls;
-                }
-
-                // encode data into 4 bytes
-
-                if (encoded.length - position < 4)
-                    flush0();
-
-                encoded[position++] = BASE64_TABLE[(data >> 18) & MASK_6BITS];
-                encoded[position++] = BASE64_TABLE[(data >> 12) & MASK_6BITS];
-                encoded[position++] = BASE64_TABLE[(data >> 6) & MASK_6BITS];
-                encoded[position++] = BASE64_TABLE[data & MASK_6BITS];
-
-                linePosition += 4;
-            }
+        ByteBuffer src = ByteBuffer.wrap(buffer, from, to - from);
+        while (true) {
+            encoder.encode(src, encoded);
+            if (!src.hasRemaining())
+                break;
+            flush0();
         }
     }
 
     private void flush0() throws IOException {
-        if (position > 0) {
-            out.write(encoded, 0, position);
-            position = 0;
+        if (encoded.position() > 0) {
+            out.write(encoded.array(), 0, encoded.position());
+            encoded.clear();
         }
     }
 
     private void close0() throws IOException {
-        if (modulus != 0)
-            writePad();
-
-        // write line separator at the end of the encoded data
-
-        if (lineLength > 0 && linePosition > 0) {
-            writeLineSeparator();
-        }
-
-        flush0();
-    }
-
-    private void writePad() throws IOException {
-        // write line separator if necessary
-
-        if (lineLength > 0 && linePosition >= lineLength) {
-            writeLineSeparator();
-        }
-
-        // encode data into 4 bytes
-
-        if (encoded.length - position < 4)
+        while (!encoder.finish(encoded)) {
             flush0();
-
-        if (modulus == 1) {
-            encoded[position++] = BASE64_TABLE[(data >> 2) & MASK_6BITS];
-            encoded[position++] = BASE64_TABLE[(data << 4) & MASK_6BITS];
-            encoded[position++] = BASE64_PAD;
-            encoded[position++] = BASE64_PAD;
-        } else {
-            assert modulus == 2;
-            encoded[position++] = BASE64_TABLE[(data >> 10) & MASK_6BITS];
-            encoded[position++] = BASE64_TABLE[(data >> 4) & MASK_6BITS];
-            encoded[position++] = BASE64_TABLE[(data << 2) & MASK_6BITS];
-            encoded[position++] = BASE64_PAD;
         }
-
-        linePosition += 4;
-    }
-
-    private void writeLineSeparator() throws IOException {
-        linePosition = 0;
-
-        if (encoded.length - position < lineSeparator.length)
-            flush0();
-
-        for (byte ls : lineSeparator)
-            encoded[position++] = ls;
+        flush0();
     }
 
     private void checkLineSeparator(byte[] lineSeparator) {
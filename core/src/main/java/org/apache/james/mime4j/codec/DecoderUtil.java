@@ -20,22 +20,32 @@
 package org.apache.james.mime4j.codec;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 import org.apache.james.mime4j.io.InputStreams;
 import org.apache.james.mime4j.util.ByteArrayBuffer;
 import org.apache.james.mime4j.util.CharsetUtil;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.apache.james.mime4j.util.MimeUtil;
 
 /**
  * Static methods for decoding strings, byte arrays and encoded words.
  */
 public class DecoderUtil {
 
-    private static final Pattern PATTERN_ENCODED_WORD = Pattern.compile(
-            "=\\?(.+?)\\?(\\w)\\?(.*?)\\?=", Pattern.DOTALL);
+    private static final int[] BASE64_DECODE = new int[128];
+
+    static {
+        Arrays.fill(BASE64_DECODE, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_DECODE[alphabet.charAt(i)] = i;
+        }
+    }
 
     /**
      * Decodes a string containing quoted-printable encoded data.
@@ -45,18 +55,18 @@ public class DecoderUtil {
      */
     private static byte[] decodeQuotedPrintable(String s, DecodeMonitor monitor) {
         try {
-            QuotedPrintableInputStream is = new QuotedPrintableInputStream(
-                    InputStreams.createAscii(s), monitor);
-            try {
-                ByteArrayBuffer buf = new ByteArrayBuffer(s.length());
-                int b;
-                while ((b = is.read()) != -1) {
-                    buf.append(b);
-                }
-                return buf.toByteArray();
-            } finally {
-                is.close();
+            QuotedPrintableDecoder decoder = new QuotedPrintableDecoder(monitor);
+            ByteBuffer src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray(s));
+            ByteBuffer dst = ByteBuffer.allocate(s.length());
+            while (!decoder.decode(src, dst, true)) {
+                ByteBuffer larger = ByteBuffer.allocate(dst.capacity() * 2 + 16);
+                dst.flip();
+                larger.put(dst);
+                dst = larger;
             }
+            byte[] decoded = new byte[dst.position()];
+            System.arraycopy(dst.array(), 0, decoded, 0, decoded.length);
+            return decoded;
         } catch (IOException ex) {
             // This should never happen!
             throw new Error(ex);
@@ -103,8 +113,18 @@ public class DecoderUtil {
      */
     static String decodeB(String encodedText, String charset, DecodeMonitor monitor)
             throws UnsupportedEncodingException {
-        byte[] decodedBytes = decodeBase64(encodedText, monitor);
-        return new String(decodedBytes, charset);
+        return decodeB(encodedText, 0, encodedText.length(), charset,
+                new byte[encodedText.length()], monitor);
+    }
+
+    private static String decodeB(String s, int start, int end, String charset, byte[] buf,
+            DecodeMonitor monitor) throws UnsupportedEncodingException {
+        int n = decodeBase64(s, start, end, buf);
+        if (n < 0) {
+            byte[] decodedBytes = decodeBase64(s.substring(start, end), monitor);
+            return new String(decodedBytes, charset);
+        }
+        return new String(buf, 0, n, charset);
     }
 
     /**
@@ -119,16 +139,130 @@ public class DecoderUtil {
      */
     static String decodeQ(String encodedText, String charset, DecodeMonitor monitor)
             throws UnsupportedEncodingException {
-        encodedText = replaceUnderscores(encodedText);
+        return decodeQ(encodedText, 0, encodedText.length(), charset,
+                new byte[encodedText.length()], monitor);
+    }
+
+    private static String decodeQ(String s, int start, int end, String charset, byte[] buf,
+            DecodeMonitor monitor) throws UnsupportedEncodingException {
+        int n = decodeQuotedPrintable(s, start, end, buf);
+        if (n < 0) {
+            String encodedText = replaceUnderscores(s.substring(start, end));
+            byte[] decodedBytes = decodeQuotedPrintable(encodedText, monitor);
+            return new String(decodedBytes, charset);
+        }
+        return new String(buf, 0, n, charset);
+    }
 
-        byte[] decodedBytes = decodeQuotedPrintable(encodedText, monitor);
-        return new String(decodedBytes, charset);
+    /**
+     * Decodes 'B' encoded text directly into the given buffer. Only
+     * canonical input (base64 characters, correct padding) is handled; for
+     * anything else <code>-1</code> is returned and the text has to be
+     * decoded by {@link Base64InputStream}, which knows how to deal with
+     * malformed input.
+     */
+    private static int decodeBase64(String s, int start, int end, byte[] buf) {
+        int len = end - start;
+        if ((len & 3) != 0) {
+            return -1;
+        }
+        int pad = 0;
+        if (len > 0 && s.charAt(end - 1) == '=') {
+            pad = s.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        int n = 0;
+        int data = 0;
+        for (int i = start; i < end - pad; i++) {
+            char c = s.charAt(i);
+            int decoded = c < 128 ? BASE64_DECODE[c] : -1;
+            if (decoded < 0) {
+                return -1;
+            }
+            data = (data << 6) | decoded;
+            if (((i - start) & 3) == 3) {
+                buf[n++] = (byte) (data >>> 16);
+                buf[n++] = (byte) (data >>> 8);
+                buf[n++] = (byte) data;
+            }
+        }
+        if (pad == 1) {
+            buf[n++] = (byte) (data >>> 10);
+            buf[n++] = (byte) (data >>> 2);
+        } else if (pad == 2) {
+            buf[n++] = (byte) (data >>> 4);
+        }
+        return n;
+    }
+
+    /**
+     * Decodes 'Q' encoded text directly into the given buffer. Only printable
+     * ASCII characters and well formed <code>=XX</code> escapes are handled;
+     * for anything else <code>-1</code> is returned and the text has to be
+     * decoded by {@link QuotedPrintableInputStream}.
+     */
+    private static int decodeQuotedPrintable(String s, int start, int end, byte[] buf) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '_') {
+                buf[n++] = 0x20;
+            } else if (c == '=') {
+                if (i + 2 >= end) {
+                    return -1;
+                }
+                int upper = hexValue(s.charAt(i + 1));
+                int lower = hexValue(s.charAt(i + 2));
+                if (upper < 0 || lower < 0) {
+                    return -1;
+                }
+                buf[n++] = (byte) ((upper << 4) | lower);
+                i += 2;
+            } else if (c > 0x20 && c < 0x7f) {
+                buf[n++] = (byte) c;
+            } else {
+                return -1;
+            }
+        }
+        return n;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else {
+            return -1;
+        }
     }
 
     static String decodeEncodedWords(String body)  {
         return decodeEncodedWords(body, DecodeMonitor.SILENT);
     }
 
+    /**
+     * Wraps a stream of content in the given transfer encoding into a stream
+     * returning the decoded content. Content in base64 or quoted-printable
+     * is decoded; a stream in any other encoding is returned as is.
+     *
+     * @param in the encoded content.
+     * @param transferEncoding the transfer encoding of the content.
+     * @param monitor the DecodeMonitor to be used.
+     * @return the decoding stream, or <code>in</code>.
+     */
+    public static InputStream decodeTransferEncoding(InputStream in, String transferEncoding,
+            DecodeMonitor monitor) {
+        if (MimeUtil.isBase64Encoding(transferEncoding)) {
+            return new Base64InputStream(in, monitor);
+        } else if (MimeUtil.isQuotedPrintableEncoded(transferEncoding)) {
+            return new QuotedPrintableInputStream(in, monitor);
+        } else {
+            return in;
+        }
+    }
+
     /**
      * Decodes a string containing encoded words as defined by RFC 2047. Encoded
      * words have the form =?charset?enc?encoded-text?= where enc is either 'Q'
@@ -163,6 +297,13 @@ public class DecoderUtil {
      * words have the form =?charset?enc?encoded-text?= where enc is either 'Q'
      * or 'q' for quoted-printable and 'B' or 'b' for base64. Using fallback
      * charset if charset in encoded words is invalid.
+     * <p>
+     * Encoded words are located the same way as by the regular expression
+     * <code>=\?(.+?)\?(\w)\?(.*?)\?=</code>: the charset extends to the
+     * first <code>?X?</code> with a word character <code>X</code>, the encoded
+     * text to the next <code>?=</code>. White space between two decoded
+     * words is dropped.
+     * </p>
      *
      * @param body the string to decode
      * @param monitor the DecodeMonitor to be used.
@@ -172,51 +313,104 @@ public class DecoderUtil {
      */
     public static String decodeEncodedWords(String body, DecodeMonitor monitor, Charset fallback)
             throws IllegalArgumentException {
+        if (monitor == null) {
+            monitor = DecodeMonitor.SILENT;
+        }
+        final int len = body.length();
         int tailIndex = 0;
         boolean lastMatchValid = false;
 
-        StringBuilder sb = new StringBuilder();
-
-        for (Matcher matcher = PATTERN_ENCODED_WORD.matcher(body); matcher.find();) {
-            String separator = body.substring(tailIndex, matcher.start());
-            String mimeCharset = matcher.group(1);
-            String encoding = matcher.group(2);
-            String encodedText = matcher.group(3);
+        StringBuilder sb = null;
+        byte[] buf = null;
+        String lastMimeCharset = null;
+        Charset lastCharset = null;
 
-            if (encodedText.isEmpty())
+        for (int from = 0;;) {
+            int start = body.indexOf("=?", from);
+            if (start == -1) {
+                break;
+            }
+            int q = start + 3;
+            while (q + 2 < len && !(body.charAt(q) == '?' && body.charAt(q + 2) == '?'
+                    && isWordChar(body.charAt(q + 1)))) {
+                q++;
+            }
+            if (q + 2 >= len) {
+                break;
+            }
+            int textStart = q + 3;
+            int end = body.indexOf("?=", textStart);
+            if (end == -1) {
+                break;
+            }
+            if (end == textStart) {
                 return "";
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(len);
+                buf = new byte[len];
+            }
 
-            String decoded;
-            decoded = tryDecodeEncodedWord(mimeCharset, encoding, encodedText, monitor, fallback);
+            Charset charset;
+            String mimeCharset;
+            if (lastMimeCharset != null && lastMimeCharset.length() == q - start - 2
+                    && body.startsWith(lastMimeCharset, start + 2)) {
+                mimeCharset = lastMimeCharset;
+                charset = lastCharset;
+            } else {
+                mimeCharset = body.substring(start + 2, q);
+                charset = CharsetUtil.lookup(mimeCharset);
+                lastMimeCharset = mimeCharset;
+                lastCharset = charset;
+            }
+
+            String decoded = tryDecodeEncodedWord(body, mimeCharset, charset, body.charAt(q + 1),
+                    textStart, end, buf, monitor, fallback);
             if (decoded == null) {
-                sb.append(separator);
-                sb.append(matcher.group(0));
+                sb.append(body, tailIndex, end + 2);
             } else {
-                if (!lastMatchValid || !CharsetUtil.isWhitespace(separator)) {
-                    sb.append(separator);
+                if (!lastMatchValid || !isWhitespace(body, tailIndex, start)) {
+                    sb.append(body, tailIndex, start);
                 }
                 sb.append(decoded);
             }
 
-            tailIndex = matcher.end();
+            tailIndex = end + 2;
             lastMatchValid = decoded != null;
+            from = tailIndex;
         }
 
         if (tailIndex == 0) {
             return body;
         } else {
-            sb.append(body.substring(tailIndex));
+            sb.append(body, tailIndex, len);
             return sb.toString();
         }
     }
 
+    private static boolean isWordChar(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+            || (ch >= '0' && ch <= '9') || ch == '_';
+    }
+
+    private static boolean isWhitespace(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!CharsetUtil.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // return null on error
-    private static String tryDecodeEncodedWord(final String mimeCharset,
-            final String encoding, final String encodedText, final DecodeMonitor monitor, final Charset fallback) {
-        Charset charset = CharsetUtil.lookup(mimeCharset);
+    private static String tryDecodeEncodedWord(final String body, final String mimeCharset,
+            Charset charset, final char encoding, final int start, final int end,
+            final byte[] buf, final DecodeMonitor monitor, final Charset fallback) {
         if (charset == null) {
             if(fallback == null) {
-                monitor(monitor, mimeCharset, encoding, encodedText, "leaving word encoded",
+                monitor(monitor, mimeCharset, String.valueOf(encoding), body.substring(start, end),
+                        "leaving word encoded",
                         "Mime charser '", mimeCharset, "' doesn't have a corresponding Java charset");
                 return null;
             } else {
@@ -224,29 +418,25 @@ public class DecoderUtil {
             }
         }
 
-        if (encodedText.length() == 0) {
-            monitor(monitor, mimeCharset, encoding, encodedText, "leaving word encoded",
-                    "Missing encoded text in encoded word");
-            return null;
-        }
-
         try {
-            if (encoding.equalsIgnoreCase("Q")) {
-                return DecoderUtil.decodeQ(encodedText, charset.name(), monitor);
-            } else if (encoding.equalsIgnoreCase("B")) {
-                return DecoderUtil.decodeB(encodedText, charset.name(), monitor);
+            if (encoding == 'Q' || encoding == 'q') {
+                return DecoderUtil.decodeQ(body, start, end, charset.name(), buf, monitor);
+            } else if (encoding == 'B' || encoding == 'b') {
+                return DecoderUtil.decodeB(body, start, end, charset.name(), buf, monitor);
             } else {
-                monitor(monitor, mimeCharset, encoding, encodedText, "leaving word encoded",
-                        "Warning: Unknown encoding in encoded word");
+                monitor(monitor, mimeCharset, String.valueOf(encoding), body.substring(start, end),
+                        "leaving word encoded", "Warning: Unknown encoding in encoded word");
                 return null;
             }
         } catch (UnsupportedEncodingException e) {
             // should not happen because of isDecodingSupported check above
-            monitor(monitor, mimeCharset, encoding, encodedText, "leaving word encoded",
+            monitor(monitor, mimeCharset, String.valueOf(encoding), body.substring(start, end),
+                    "leaving word encoded",
                     "Unsupported encoding (", e.getMessage(), ") in encoded word");
             return null;
         } catch (RuntimeException e) {
-            monitor(monitor, mimeCharset, encoding, encodedText, "leaving word encoded",
+            monitor(monitor, mimeCharset, String.valueOf(encoding), body.substring(start, end),
+                    "leaving word encoded",
                     "Could not decode (", e.getMessage(), ") encoded word");
             return null;
         }
@@ -37,7 +37,7 @@ import org.apache.james.mime4j.util.ContentUtil;
  * or display-names of an e-mail address, for example.
  */
 public class EncoderUtil {
-    private static final byte[] BASE64_TABLE = Base64OutputStream.BASE64_TABLE;
+    private static final byte[] BASE64_TABLE = Base64Encoder.BASE64_TABLE;
     private static final char BASE64_PAD = '=';
 
     private static final BitSet Q_REGULAR_CHARS = initChars("=_?");
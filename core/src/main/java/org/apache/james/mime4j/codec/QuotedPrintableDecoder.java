@@ -0,0 +1,347 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+
+/**
+ * Decodes Quoted-Printable encoded content from one buffer into another.
+ * Runs of literal bytes, which make up most of typical text bodies, are
+ * copied in bulk; only <code>=</code>, CR, LF and whitespace are looked at
+ * one by one.
+ * <p>
+ * Content can be fed in arbitrary chunks. Decoded bytes that do not fit
+ * into the destination buffer, as well as trailing whitespace whose fate
+ * depends on what follows, are kept by the decoder until the next
+ * invocation.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class QuotedPrintableDecoder {
+
+    private static final byte EQ = 0x3D;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+
+    // '=' plus the bytes inspected after it, so that the outcome does not
+    // depend on where the content is split
+    static final int LOOKAHEAD = 4;
+
+    // bytes that stand for themselves: anything but '=', CR, LF and blanks
+    private static final boolean[] LITERAL = new boolean[256];
+    private static final boolean[] WHITESPACE = new boolean[256];
+    // whitespace other than CR and LF
+    private static final boolean[] BLANK = new boolean[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            WHITESPACE[i] = Character.isWhitespace(i);
+            BLANK[i] = WHITESPACE[i] && i != CR && i != LF;
+            LITERAL[i] = i != EQ && i != CR && i != LF && !WHITESPACE[i];
+        }
+    }
+
+    private final DecodeMonitor monitor;
+
+    private final ByteArrayBuffer decodedBuf;
+    private final ByteArrayBuffer blanks;
+
+    // heap chunks for buffers without an accessible array, allocated on
+    // first use
+    private byte[] inChunk;
+    private byte[] outChunk;
+
+    private boolean lastWasCR = false;
+    private int pos; // current index into the encoded array
+
+    /**
+     * Creates a new decoder.
+     *
+     * @param monitor monitor notified of malformed content,
+     *   <code>null</code> for {@link DecodeMonitor#SILENT}.
+     */
+    public QuotedPrintableDecoder(DecodeMonitor monitor) {
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+        this.decodedBuf = new ByteArrayBuffer(512);
+        this.blanks = new ByteArrayBuffer(512);
+    }
+
+    public QuotedPrintableDecoder() {
+        this(null);
+    }
+
+    /**
+     * Decodes as much of <code>src</code> as possible into <code>dst</code>.
+     * Decoding stops when <code>dst</code> is full, when <code>src</code> is
+     * exhausted, or when an escape sequence is cut off at the end of
+     * <code>src</code> and more input is expected. In the latter case the
+     * remaining bytes are left in <code>src</code> and have to be passed
+     * again together with more content.
+     *
+     * @param src encoded content.
+     * @param dst buffer receiving the decoded content.
+     * @param endOfInput whether <code>src</code> holds the last of the
+     *   encoded content.
+     * @return <code>true</code> if <code>endOfInput</code> is set and all
+     *   content has been decoded and written to <code>dst</code>.
+     * @throws IOException if the monitor rejects malformed content.
+     */
+    public boolean decode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) throws IOException {
+        if (src.hasArray() && dst.hasArray()) {
+            int from = dst.position();
+            int index = decode(src.array(), src.arrayOffset() + src.position(),
+                    src.arrayOffset() + src.limit(), dst.array(),
+                    dst.arrayOffset() + from, dst.arrayOffset() + dst.limit(), endOfInput);
+            src.position(pos - src.arrayOffset());
+            dst.position(index - dst.arrayOffset());
+        } else {
+            // go through heap arrays, one chunk at a time
+            if (inChunk == null) {
+                inChunk = new byte[4096];
+                outChunk = new byte[4096];
+            }
+            final byte[] in = inChunk;
+            final byte[] out = outChunk;
+            while (true) {
+                int start = src.position();
+                int length = Math.min(src.remaining(), in.length);
+                src.get(in, 0, length);
+                boolean last = endOfInput && !src.hasRemaining();
+                int count = decode(in, 0, length, out, 0, Math.min(dst.remaining(), out.length), last);
+                src.position(start + pos);
+                dst.put(out, 0, count);
+                if (!src.hasRemaining() || !dst.hasRemaining() || pos == 0)
+                    break;
+            }
+        }
+        return endOfInput && !src.hasRemaining() && decodedBuf.length() == 0;
+    }
+
+    /**
+     * Resets this decoder so that it can be used for new content.
+     */
+    public void reset() {
+        decodedBuf.clear();
+        blanks.clear();
+        lastWasCR = false;
+        pos = 0;
+    }
+
+    private int decode(final byte[] in, int from, final int limit, final byte[] buffer,
+            final int off, final int to, final boolean endOfInput) throws IOException {
+        int index = off;
+        pos = from;
+
+        // check if a previous invocation left decoded content
+        if (decodedBuf.length() > 0) {
+            int chunk = Math.min(decodedBuf.length(), to - index);
+            System.arraycopy(decodedBuf.buffer(), 0, buffer, index, chunk);
+            decodedBuf.remove(0, chunk);
+            index += chunk;
+        }
+
+        while (pos < limit && index < to) {
+            if (!lastWasCR && blanks.length() == 0) {
+                // copy a run of literal bytes in one go
+                int run = scanLiterals(in, pos, pos + Math.min(limit - pos, to - index));
+                if (run > pos) {
+                    System.arraycopy(in, pos, buffer, index, run - pos);
+                    index += run - pos;
+                    pos = run;
+                    continue;
+                }
+            }
+
+            int b = in[pos] & 0xFF;
+            if (b == EQ && limit - pos < LOOKAHEAD && !endOfInput) {
+                // not enough buffered data
+                break;
+            }
+            pos++;
+
+            if (lastWasCR && b != LF) {
+                if (monitor.warn("Found CR without LF", "Leaving it as is")) {
+                    throw new IOException("Found CR without LF");
+                }
+                index = transfer(CR, buffer, index, to, false);
+            } else if (!lastWasCR && b == LF) {
+                if (monitor.warn("Found LF without CR", "Translating to CRLF")) {
+                    throw new IOException("Found LF without CR");
+                }
+            }
+
+            if (b == CR) {
+                lastWasCR = true;
+                continue;
+            } else {
+                lastWasCR = false;
+            }
+
+            if (b == LF) {
+                // at end of line
+                if (blanks.length() == 0 || blanks.byteAt(0) != EQ) {
+                    // hard line break
+                    index = transfer(CR, buffer, index, to, false);
+                    index = transfer(LF, buffer, index, to, false);
+                }
+                blanks.clear();
+            } else if (b == EQ) {
+                // found special char '='
+                int b2 = getnext(in, limit);
+                if (b2 == EQ) {
+                    index = transfer(b2, buffer, index, to, true);
+                    // deal with '==\r\n' brokenness
+                    int bb1 = peek(in, limit, 0);
+                    int bb2 = peek(in, limit, 1);
+                    if (bb1 == LF || (bb1 == CR && bb2 == LF)) {
+                        monitor.warn("Unexpected ==EOL encountered", "== 0x"+bb1+" 0x"+bb2);
+                        blanks.append(b2);
+                    } else {
+                        monitor.warn("Unexpected == encountered", "==");
+                    }
+                } else if (Character.isWhitespace((char) b2)) {
+                    // soft line break
+                    int b3 = peek(in, limit, 0);
+                    if (!(b2 == CR && b3 == LF)) {
+                        if (monitor.warn("Found non-standard soft line break", "Translating to soft line break")) {
+                            throw new IOException("Non-standard soft line break");
+                        }
+                    }
+                    if (b3 == LF) {
+                        lastWasCR = b2 == CR;
+                    }
+                    index = transfer(-1, buffer, index, to, true);
+                    if (b2 != LF) {
+                        blanks.append(b);
+                        blanks.append(b2);
+                    }
+                } else {
+                    int b3 = getnext(in, limit);
+                    int upper = convert(b2);
+                    int lower = convert(b3);
+                    if (upper < 0 || lower < 0) {
+                        monitor.warn("Malformed encoded value encountered", "leaving "+((char) EQ)+((char) b2)+((char) b3)+" as is");
+                        // TODO see MIME4J-160
+                        index = transfer(EQ, buffer, index, to, true);
+                        index = transfer(b2, buffer, index, to, false);
+                        index = transfer(b3, buffer, index, to, false);
+                    } else {
+                        index = transfer((upper << 4) | lower, buffer, index, to, true);
+                    }
+                }
+            } else if (WHITESPACE[b]) {
+                blanks.append(b);
+            } else {
+                index = transfer(b, buffer, index, to, true);
+            }
+        }
+        return index;
+    }
+
+    // Returns the end of the run of literal bytes starting at pos; blanks
+    // followed by a literal byte are not trailing and belong to the run.
+    private static int scanLiterals(final byte[] in, int pos, final int stop) {
+        while (pos < stop) {
+            if (LITERAL[in[pos] & 0xFF]) {
+                pos++;
+                continue;
+            }
+            int next = pos;
+            while (next < stop && BLANK[in[next] & 0xFF]) {
+                next++;
+            }
+            if (next == pos || next == stop || !LITERAL[in[next] & 0xFF]) {
+                break;
+            }
+            pos = next + 1;
+        }
+        return pos;
+    }
+
+    private int transfer(
+            final int b, final byte[] buffer, final int from, final int to, boolean keepblanks) throws IOException {
+        int index = from;
+        if (keepblanks && blanks.length() > 0) {
+            int chunk = Math.min(blanks.length(), to - index);
+            System.arraycopy(blanks.buffer(), 0, buffer, index, chunk);
+            index += chunk;
+            int remaining = blanks.length() - chunk;
+            if (remaining > 0) {
+                decodedBuf.append(blanks.buffer(), chunk, remaining);
+            }
+            blanks.clear();
+        } else if (blanks.length() > 0 && !keepblanks) {
+            StringBuilder sb = new StringBuilder(blanks.length() * 3);
+            for (int i = 0; i < blanks.length(); i++) sb.append(" ").append(blanks.byteAt(i));
+            if (monitor.warn("ignored blanks", sb.toString()))
+                throw new IOException("ignored blanks");
+        }
+        if (b != -1) {
+            if (index < to) {
+                buffer[index++] = (byte) b;
+            } else {
+                decodedBuf.append(b);
+            }
+        }
+        return index;
+    }
+
+    private int getnext(final byte[] in, final int limit) {
+        if (pos < limit) {
+            byte b = in[pos];
+            pos++;
+            return b & 0xFF;
+        } else {
+            return -1;
+        }
+    }
+
+    private int peek(final byte[] in, final int limit, int i) {
+        if (pos + i < limit) {
+            return in[pos + i] & 0xFF;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Converts '0' => 0, 'A' => 10, etc.
+     * @param c ASCII character value.
+     * @return Numeric value of hexadecimal character.
+     */
+    private static int convert(int c) {
+        if (c >= '0' && c <= '9') {
+            return (c - '0');
+        } else if (c >= 'A' && c <= 'F') {
+            return (0xA + (c - 'A'));
+        } else if (c >= 'a' && c <= 'f') {
+            return (0xA + (c - 'a'));
+        } else {
+            return -1;
+        }
+    }
+
+}
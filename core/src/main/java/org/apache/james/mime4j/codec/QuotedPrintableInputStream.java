@@ -21,35 +21,26 @@ package org.apache.james.mime4j.codec;
 
 import java.io.IOException;
 import java.io.InputStream;
-
-import org.apache.james.mime4j.util.ByteArrayBuffer;
+import java.nio.ByteBuffer;
 
 /**
- * Performs Quoted-Printable decoding on an underlying stream.
+ * Performs Quoted-Printable decoding on an underlying stream. The decoding
+ * itself is done by a {@link QuotedPrintableDecoder}.
  */
 public class QuotedPrintableInputStream extends InputStream {
 
     private static final int DEFAULT_BUFFER_SIZE = 1024 * 2;
 
-    private static final byte EQ = 0x3D;
-    private static final byte CR = 0x0D;
-    private static final byte LF = 0x0A;
-
     private final byte[] singleByte = new byte[1];
 
     private final InputStream in;
-    private final ByteArrayBuffer decodedBuf;
-    private final ByteArrayBuffer blanks;
+    private final QuotedPrintableDecoder decoder;
 
-    private final byte[] encoded;
-    private int pos = 0; // current index into encoded buffer
-    private int limit = 0; // current size of encoded buffer
+    private final ByteBuffer encoded;
+    private boolean eof;
 
-    private boolean lastWasCR = false;
     private boolean closed;
 
-    private final DecodeMonitor monitor;
-
     public QuotedPrintableInputStream(final InputStream in, DecodeMonitor monitor) {
         this(DEFAULT_BUFFER_SIZE, in, monitor);
     }
@@ -57,11 +48,11 @@ public class QuotedPrintableInputStream extends InputStream {
     protected QuotedPrintableInputStream(final int bufsize, final InputStream in, DecodeMonitor monitor) {
         super();
         this.in = in;
-        this.encoded = new byte[bufsize];
-        this.decodedBuf = new ByteArrayBuffer(512);
-        this.blanks = new ByteArrayBuffer(512);
+        // the decoder needs to see an escape sequence as a whole
+        this.encoded = ByteBuffer.allocate(Math.max(bufsize, QuotedPrintableDecoder.LOOKAHEAD));
+        this.encoded.flip();
+        this.decoder = new QuotedPrintableDecoder(monitor);
         this.closed = false;
-        this.monitor = monitor;
     }
 
     protected QuotedPrintableInputStream(final int bufsize, final InputStream in, boolean strict) {
@@ -87,209 +78,41 @@ public class QuotedPrintableInputStream extends InputStream {
         closed = true;
     }
 
-    private int fillBuffer() throws IOException {
+    private void fillBuffer() throws IOException {
         // Compact buffer if needed
-        if (pos < limit) {
-            System.arraycopy(encoded, pos, encoded, 0, limit - pos);
-            limit -= pos;
-            pos = 0;
-        } else {
-            limit = 0;
-            pos = 0;
-        }
-
-        int capacity = encoded.length - limit;
-        if (capacity > 0) {
-            int bytesRead = in.read(encoded, limit, capacity);
-            if (bytesRead > 0) {
-                limit += bytesRead;
-            }
-            return bytesRead;
-        } else {
-            return 0;
-        }
-    }
-
-    private int getnext() {
-        if (pos < limit) {
-            byte b =  encoded[pos];
-            pos++;
-            return b & 0xFF;
-        } else {
-            return -1;
-        }
-    }
-
-    private int peek(int i) {
-        if (pos + i < limit) {
-            return encoded[pos + i] & 0xFF;
-        } else {
-            return -1;
-        }
-    }
-
-    private int transfer(
-            final int b, final byte[] buffer, final int from, final int to, boolean keepblanks) throws IOException {
-        int index = from;
-        if (keepblanks && blanks.length() > 0) {
-            int chunk = Math.min(blanks.length(), to - index);
-            System.arraycopy(blanks.buffer(), 0, buffer, index, chunk);
-            index += chunk;
-            int remaining = blanks.length() - chunk;
-            if (remaining > 0) {
-                decodedBuf.append(blanks.buffer(), chunk, remaining);
-            }
-            blanks.clear();
-        } else if (blanks.length() > 0 && !keepblanks) {
-            StringBuilder sb = new StringBuilder(blanks.length() * 3);
-            for (int i = 0; i < blanks.length(); i++) sb.append(" ").append(blanks.byteAt(i));
-            if (monitor.warn("ignored blanks", sb.toString()))
-                throw new IOException("ignored blanks");
-        }
-        if (b != -1) {
-            if (index < to) {
-                buffer[index++] = (byte) b;
-            } else {
-                decodedBuf.append(b);
+        encoded.compact();
+        try {
+            int capacity = encoded.remaining();
+            if (capacity > 0) {
+                int bytesRead = in.read(encoded.array(), encoded.position(), capacity);
+                if (bytesRead > 0) {
+                    encoded.position(encoded.position() + bytesRead);
+                }
+                eof = bytesRead == -1;
             }
+        } finally {
+            encoded.flip();
         }
-        return index;
     }
 
     private int read0(final byte[] buffer, final int off, final int len) throws IOException {
-        boolean eof = false;
-        int to = off + len;
-        int index = off;
-
-        // check if a previous invocation left decoded content
-        if (decodedBuf.length() > 0) {
-            int chunk = Math.min(decodedBuf.length(), to - index);
-            System.arraycopy(decodedBuf.buffer(), 0, buffer, index, chunk);
-            decodedBuf.remove(0, chunk);
-            index += chunk;
-        }
-
-        while (index < to) {
-
-            if (limit - pos < 3) {
-                int bytesRead = fillBuffer();
-                eof = bytesRead == -1;
-            }
-
-            // end of stream?
-            if (limit - pos == 0 && eof) {
-                return index == off ? -1 : index - off;
-            }
-
-            while (pos < limit && index < to) {
-                int b = encoded[pos++] & 0xFF;
-
-                if (lastWasCR && b != LF) {
-                    if (monitor.warn("Found CR without LF", "Leaving it as is")) {
-                        throw new IOException("Found CR without LF");
-                    }
-                    index = transfer(CR, buffer, index, to, false);
-                } else if (!lastWasCR && b == LF) {
-                    if (monitor.warn("Found LF without CR", "Translating to CRLF")) {
-                        throw new IOException("Found LF without CR");
-                    }
-                }
-
-                if (b == CR) {
-                    lastWasCR = true;
-                    continue;
-                } else {
-                    lastWasCR = false;
-                }
-
-                if (b == LF) {
-                    // at end of line
-                    if (blanks.length() == 0) {
-                        index = transfer(CR, buffer, index, to, false);
-                        index = transfer(LF, buffer, index, to, false);
-                    } else {
-                        if (blanks.byteAt(0) != EQ) {
-                            // hard line break
-                            index = transfer(CR, buffer, index, to, false);
-                            index = transfer(LF, buffer, index, to, false);
-                        }
-                    }
-                    blanks.clear();
-                } else if (b == EQ) {
-                    if (limit - pos < 2 && !eof) {
-                        // not enough buffered data
-                        pos--;
-                        break;
-                    }
-
-                    // found special char '='
-                    int b2 = getnext();
-                    if (b2 == EQ) {
-                        index = transfer(b2, buffer, index, to, true);
-                        // deal with '==\r\n' brokenness
-                        int bb1 = peek(0);
-                        int bb2 = peek(1);
-                        if (bb1 == LF || (bb1 == CR && bb2 == LF)) {
-                            monitor.warn("Unexpected ==EOL encountered", "== 0x"+bb1+" 0x"+bb2);
-                            blanks.append(b2);
-                        } else {
-                            monitor.warn("Unexpected == encountered", "==");
-                        }
-                    } else if (Character.isWhitespace((char) b2)) {
-                        // soft line break
-                        int b3 = peek(0);
-                        if (!(b2 == CR && b3 == LF)) {
-                            if (monitor.warn("Found non-standard soft line break", "Translating to soft line break")) {
-                                throw new IOException("Non-standard soft line break");
-                            }
-                        }
-                        if (b3 == LF) {
-                            lastWasCR = b2 == CR;
-                        }
-                        index = transfer(-1, buffer, index, to, true);
-                        if (b2 != LF) {
-                            blanks.append(b);
-                            blanks.append(b2);
-                        }
-                    } else {
-                        int b3 = getnext();
-                        int upper = convert(b2);
-                        int lower = convert(b3);
-                        if (upper < 0 || lower < 0) {
-                            monitor.warn("Malformed encoded value encountered", "leaving "+((char) EQ)+((char) b2)+((char) b3)+" as is");
-                            // TODO see MIME4J-160
-                            index = transfer(EQ, buffer, index, to, true);
-                            index = transfer(b2, buffer, index, to, false);
-                            index = transfer(b3, buffer, index, to, false);
-                        } else {
-                            index = transfer((upper << 4) | lower, buffer, index, to, true);
-                        }
-                    }
-                } else if (Character.isWhitespace(b)) {
-                    blanks.append(b);
-                } else {
-                    index = transfer(b & 0xFF, buffer, index, to, true);
+        ByteBuffer dst = ByteBuffer.wrap(buffer, off, len);
+        boolean done = false;
+
+        while (dst.hasRemaining() && !done) {
+            if (encoded.remaining() < QuotedPrintableDecoder.LOOKAHEAD && !eof) {
+                // content decoded already is returned rather than put at
+                // risk by a read that may fail
+                if (dst.position() > off) {
+                    break;
                 }
+                fillBuffer();
             }
+            done = decoder.decode(encoded, dst, eof);
         }
-        return to - off;
-    }
 
-    /**
-     * Converts '0' => 0, 'A' => 10, etc.
-     * @param c ASCII character value.
-     * @return Numeric value of hexadecimal character.
-     */
-    private int convert(int c) {
-        if (c >= '0' && c <= '9') {
-            return (c - '0');
-        } else if (c >= 'A' && c <= 'F') {
-            return (0xA + (c - 'A'));
-        } else if (c >= 'a' && c <= 'f') {
-            return (0xA + (c - 'a'));
-        } else {
-            return -1;
-        }
+        int count = dst.position() - off;
+        return count == 0 && done ? -1 : count;
     }
 
     @Override
@@ -0,0 +1,217 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.codec;
+
+import java.io.OutputStream;
+
+/**
+ * Computes the length of the output of a {@link QuotedPrintableOutputStream}
+ * without producing it. Content written to this stream is scanned by the
+ * same state machine as the one of the encoder, only counting the bytes it
+ * would emit; nothing is buffered or allocated.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class QuotedPrintableSizeCounter extends OutputStream {
+
+    private static final byte TB = 0x09;
+    private static final byte SP = 0x20;
+    private static final byte EQ = 0x3D;
+    private static final byte DOT = 0x2E;
+    private static final byte CR = 0x0D;
+    private static final byte LF = 0x0A;
+    private static final byte QUOTED_PRINTABLE_LAST_PLAIN = 0x7E;
+    private static final int QUOTED_PRINTABLE_MAX_LINE_LENGTH = 76;
+    private static final int QUOTED_PRINTABLE_OCTETS_PER_ESCAPE = 3;
+
+    // Bytes written as is; everything else is escaped or, in text mode,
+    // handled as whitespace or line break.
+    private static final boolean[] PLAIN = new boolean[256];
+
+    static {
+        for (int i = SP + 1; i <= QUOTED_PRINTABLE_LAST_PLAIN; i++) {
+            PLAIN[i] = i != EQ && i != DOT;
+        }
+    }
+
+    private final boolean binary;
+
+    private boolean pendingSpace;
+    private boolean pendingTab;
+    private boolean pendingCR;
+    private int nextSoftBreak;
+    private long size;
+    private long inputLength;
+
+    /**
+     * Creates a new counter.
+     *
+     * @param binary the <code>binary</code> flag of the encoder whose output
+     *   length is computed.
+     */
+    public QuotedPrintableSizeCounter(boolean binary) {
+        this.binary = binary;
+        reset();
+    }
+
+    /**
+     * Returns the length of the encoded form of the content written so far,
+     * as if the encoder had been closed after it.
+     *
+     * @return length of the encoded content.
+     */
+    public long getSize() {
+        if (pendingSpace || pendingTab || pendingCR) {
+            // a pending whitespace or CR is written as a plain byte on close
+            return nextSoftBreak - 1 <= 1 ? size + 4 : size + 1;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes written to this counter.
+     *
+     * @return length of the unencoded content.
+     */
+    public long getInputLength() {
+        return inputLength;
+    }
+
+    /**
+     * Resets this counter so that it can be used for new content.
+     */
+    public void reset() {
+        pendingSpace = false;
+        pendingTab = false;
+        pendingCR = false;
+        nextSoftBreak = QUOTED_PRINTABLE_MAX_LINE_LENGTH + 1;
+        size = 0;
+        inputLength = 0;
+    }
+
+    @Override
+    public void write(int b) {
+        inputLength++;
+        encode((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        inputLength += len;
+        final int end = off + len;
+        for (int i = off; i < end; i++) {
+            byte next = b[i];
+            if (PLAIN[next & 0xff] && !pendingSpace && !pendingTab && !pendingCR) {
+                plain();
+            } else {
+                encode(next);
+            }
+        }
+    }
+
+    // Mirrors QuotedPrintableOutputStream.encode(byte).
+    private void encode(byte next) {
+        if (next == LF) {
+            if (binary) {
+                writePending();
+                escape();
+            } else {
+                if (pendingCR) {
+                    if (pendingSpace || pendingTab) {
+                        escape();
+                    }
+                    lineBreak();
+                    clearPending();
+                } else {
+                    writePending();
+                    plain();
+                }
+            }
+        } else if (next == CR) {
+            if (binary) {
+                escape();
+            } else {
+                pendingCR = true;
+            }
+        } else {
+            writePending();
+            if (next == SP) {
+                if (binary) {
+                    escape();
+                } else {
+                    pendingSpace = true;
+                }
+            } else if (next == TB) {
+                if (binary) {
+                    escape();
+                } else {
+                    pendingTab = true;
+                }
+            } else if (PLAIN[next & 0xff]) {
+                plain();
+            } else {
+                escape();
+            }
+        }
+    }
+
+    private void writePending() {
+        if (pendingSpace || pendingTab || pendingCR) {
+            plain();
+        }
+        clearPending();
+    }
+
+    private void clearPending() {
+        pendingSpace = false;
+        pendingTab = false;
+        pendingCR = false;
+    }
+
+    private void plain() {
+        if (--nextSoftBreak <= 1) {
+            softBreak();
+        }
+        size++;
+    }
+
+    private void escape() {
+        if (--nextSoftBreak <= QUOTED_PRINTABLE_OCTETS_PER_ESCAPE) {
+            softBreak();
+        }
+        size += 3;
+        nextSoftBreak -= 2;
+    }
+
+    private void softBreak() {
+        size++;
+        lineBreak();
+    }
+
+    private void lineBreak() {
+        size += 2;
+        nextSoftBreak = QUOTED_PRINTABLE_MAX_LINE_LENGTH;
+    }
+
+}
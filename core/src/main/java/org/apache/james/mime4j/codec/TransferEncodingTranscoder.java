@@ -0,0 +1,237 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.james.mime4j.util.MimeUtil;
+
+/**
+ * Converts content from one transfer encoding to another in a single pass,
+ * for instance when a relay has to downgrade an 8bit body to
+ * quoted-printable or re-encode a quoted-printable body as base64.
+ * <p>
+ * The content is read into a buffer, decoded by a {@link Base64Decoder} or
+ * a {@link QuotedPrintableDecoder} into a second buffer and encoded from
+ * there; no intermediate streams are involved. Content whose source and
+ * target encodings are the same is copied as is. Transfer encodings other
+ * than base64 and quoted-printable, including <code>null</code>, are
+ * treated as identity encodings.
+ * </p>
+ * <p>
+ * The buffers are allocated once and reused by subsequent invocations of
+ * {@link #transcode(InputStream, String, OutputStream, String, boolean)}.
+ * Instances are therefore not thread-safe.
+ * </p>
+ */
+public class TransferEncodingTranscoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int IDENTITY = 0;
+    private static final int BASE64 = 1;
+    private static final int QUOTED_PRINTABLE = 2;
+
+    private final DecodeMonitor monitor;
+
+    private final ByteBuffer encoded;
+    private final ByteBuffer decoded;
+    private final ByteBuffer output;
+
+    private Base64Decoder base64Decoder;
+    private QuotedPrintableDecoder qpDecoder;
+    private Base64Encoder base64Encoder;
+
+    /**
+     * Creates a new transcoder.
+     *
+     * @param monitor monitor notified of malformed source content,
+     *   <code>null</code> for {@link DecodeMonitor#SILENT}.
+     */
+    public TransferEncodingTranscoder(DecodeMonitor monitor) {
+        this(DEFAULT_BUFFER_SIZE, monitor);
+    }
+
+    public TransferEncodingTranscoder() {
+        this(null);
+    }
+
+    protected TransferEncodingTranscoder(int bufsize, DecodeMonitor monitor) {
+        if (bufsize < 16)
+            throw new IllegalArgumentException("Buffer size too small: " + bufsize);
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+        this.encoded = ByteBuffer.allocate(bufsize);
+        this.decoded = ByteBuffer.allocate(bufsize);
+        this.output = ByteBuffer.allocate(bufsize);
+    }
+
+    /**
+     * Reads content in the given source encoding and writes it in the
+     * given target encoding. Neither stream is closed.
+     *
+     * @param in content in the source encoding.
+     * @param sourceEncoding transfer encoding of <code>in</code>.
+     * @param out stream receiving the content in the target encoding.
+     * @param targetEncoding transfer encoding to write.
+     * @param binary whether the content is binary; affects how line
+     *   breaks are written by the quoted-printable encoder.
+     * @throws IOException on I/O errors or if the monitor rejects
+     *   malformed source content.
+     */
+    public void transcode(InputStream in, String sourceEncoding, OutputStream out,
+            String targetEncoding, boolean binary) throws IOException {
+        int source = kind(sourceEncoding);
+        int target = kind(targetEncoding);
+
+        encoded.clear();
+        if (source == target) {
+            copy(in, out);
+            return;
+        }
+
+        if (source == BASE64) {
+            if (base64Decoder == null) {
+                base64Decoder = new Base64Decoder(monitor);
+            }
+            base64Decoder.reset();
+        } else if (source == QUOTED_PRINTABLE) {
+            if (qpDecoder == null) {
+                qpDecoder = new QuotedPrintableDecoder(monitor);
+            }
+            qpDecoder.reset();
+        }
+
+        OutputStream qpOut = null;
+        if (target == BASE64) {
+            if (base64Encoder == null) {
+                base64Encoder = new Base64Encoder();
+            }
+            base64Encoder.reset();
+        } else if (target == QUOTED_PRINTABLE) {
+            qpOut = new QuotedPrintableOutputStream(out, binary);
+        }
+
+        boolean done = false;
+        boolean eof = false;
+        while (!done) {
+            if (!eof) {
+                eof = fill(in);
+            }
+            encoded.flip();
+            if (source == IDENTITY) {
+                emit(encoded, target, out, qpOut);
+                done = eof;
+            } else {
+                decoded.clear();
+                done = decode(source, eof);
+                decoded.flip();
+                emit(decoded, target, out, qpOut);
+            }
+            encoded.compact();
+        }
+
+        if (target == BASE64) {
+            while (!base64Encoder.finish(output)) {
+                flush(out);
+            }
+            flush(out);
+        } else if (qpOut != null) {
+            // writes pending content; does not close out
+            qpOut.close();
+        }
+    }
+
+    private static int kind(String encoding) {
+        if (MimeUtil.isBase64Encoding(encoding)) {
+            return BASE64;
+        } else if (MimeUtil.isQuotedPrintableEncoded(encoding)) {
+            return QUOTED_PRINTABLE;
+        } else {
+            return IDENTITY;
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = encoded.array();
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    // Reads into the free part of the encoded buffer; returns true at the
+    // end of the stream.
+    private boolean fill(InputStream in) throws IOException {
+        int n = in.read(encoded.array(), encoded.arrayOffset() + encoded.position(),
+                encoded.remaining());
+        if (n == -1) {
+            return true;
+        }
+        encoded.position(encoded.position() + n);
+        return false;
+    }
+
+    // Decodes the encoded buffer; returns true once all content has been
+    // decoded.
+    private boolean decode(int source, boolean eof) throws IOException {
+        if (source == BASE64) {
+            boolean finished = base64Decoder.decode(encoded, decoded);
+            if (!finished && eof && !encoded.hasRemaining()) {
+                base64Decoder.finish();
+                finished = true;
+            }
+            return finished;
+        } else {
+            return qpDecoder.decode(encoded, decoded, eof);
+        }
+    }
+
+    private void emit(ByteBuffer content, int target, OutputStream out, OutputStream qpOut)
+            throws IOException {
+        if (target == BASE64) {
+            while (true) {
+                base64Encoder.encode(content, output);
+                if (!content.hasRemaining())
+                    break;
+                flush(out);
+            }
+        } else if (target == QUOTED_PRINTABLE) {
+            qpOut.write(content.array(), content.arrayOffset() + content.position(),
+                    content.remaining());
+            content.position(content.limit());
+        } else {
+            out.write(content.array(), content.arrayOffset() + content.position(),
+                    content.remaining());
+            content.position(content.limit());
+        }
+    }
+
+    private void flush(OutputStream out) throws IOException {
+        if (output.position() > 0) {
+            out.write(output.array(), output.arrayOffset(), output.position());
+            output.clear();
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable matcher for a MIME boundary delimiter (the boundary string
+ * prefixed with two hyphens). The Quick Search shift table is computed once
+ * at construction, so a single instance can be shared by all
+ * {@link MimeBoundaryInputStream}s reading the parts of one multipart.
+ */
+public final class BoundaryMatcher {
+
+    private final byte[] pattern;
+    private final int[] shiftTable;
+
+    /**
+     * Creates a new BoundaryMatcher.
+     *
+     * @param boundary Boundary string (not including leading hyphens).
+     */
+    public BoundaryMatcher(final String boundary) {
+        if (boundary == null) {
+            throw new IllegalArgumentException("Boundary may not be null");
+        }
+        this.pattern = new byte[boundary.length() + 2];
+        this.pattern[0] = (byte) '-';
+        this.pattern[1] = (byte) '-';
+        for (int i = 0; i < boundary.length(); i++) {
+            this.pattern[i + 2] = (byte) boundary.charAt(i);
+        }
+        this.shiftTable = new int[256];
+        for (int i = 0; i < this.shiftTable.length; i++) {
+            this.shiftTable[i] = this.pattern.length + 1;
+        }
+        for (int i = 0; i < this.pattern.length; i++) {
+            int x = this.pattern[i] & 0xff;
+            this.shiftTable[x] = this.pattern.length - i;
+        }
+    }
+
+    /**
+     * Returns the length of the delimiter, including the leading hyphens.
+     */
+    public int length() {
+        return this.pattern.length;
+    }
+
+    /**
+     * Implements quick search algorithm as published by
+     * <p>
+     * SUNDAY D.M., 1990,
+     * A very fast substring search algorithm,
+     * Communications of the ACM . 33(8):132-142.
+     * </p>
+     *
+     * @param buffer data to search.
+     * @param off offset of the first byte to search.
+     * @param len number of bytes to search.
+     * @return absolute index of the delimiter in <code>buffer</code> or
+     *  <code>-1</code> if not found.
+     */
+    public int indexOf(final byte[] buffer, int off, int len) {
+        if (len < this.pattern.length) {
+            return -1;
+        }
+        final byte[] pattern = this.pattern;
+        final int[] shiftTable = this.shiftTable;
+        int j = 0;
+        while (j <= len - pattern.length) {
+            int cur = off + j;
+            boolean match = true;
+            for (int i = 0; i < pattern.length; i++) {
+                if (buffer[cur + i] != pattern[i]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return cur;
+            }
+
+            int pos = cur + pattern.length;
+            if (pos >= buffer.length) {
+                break;
+            }
+            int x = buffer[pos] & 0xff;
+            j += shiftTable[x];
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a {@link ByteBuffer} that has no accessible array, such as a
+     * memory mapped buffer, using absolute gets. The position and limit of
+     * the buffer are neither used nor changed.
+     *
+     * @param buffer data to search.
+     * @param off absolute index of the first byte to search.
+     * @param len number of bytes to search.
+     * @return absolute index of the delimiter in <code>buffer</code> or
+     *  <code>-1</code> if not found.
+     * @see #indexOf(byte[], int, int)
+     */
+    public int indexOf(final ByteBuffer buffer, int off, int len) {
+        if (len < this.pattern.length) {
+            return -1;
+        }
+        final byte[] pattern = this.pattern;
+        final int[] shiftTable = this.shiftTable;
+        final int end = off + len;
+        int j = 0;
+        while (j <= len - pattern.length) {
+            int cur = off + j;
+            boolean match = true;
+            for (int i = 0; i < pattern.length; i++) {
+                if (buffer.get(cur + i) != pattern[i]) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return cur;
+            }
+
+            int pos = cur + pattern.length;
+            if (pos >= end) {
+                break;
+            }
+            int x = buffer.get(pos) & 0xff;
+            j += shiftTable[x];
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder(this.pattern.length);
+        for (byte b : this.pattern) {
+            buffer.append((char) b);
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,68 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <code>InputStream</code> that reports the end of stream once a given
+ * number of bytes has been read. Unlike {@link LimitedInputStream} reading
+ * beyond the bound is not an error.
+ */
+public class BoundedInputStream extends PositionInputStream {
+
+    private final long bound;
+
+    public BoundedInputStream(InputStream instream, long bound) {
+        super(instream);
+        if (bound < 0) {
+            throw new IllegalArgumentException("Bound may not be negative");
+        }
+        this.bound = bound;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= bound) {
+            return -1;
+        }
+        return super.read();
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        if (position >= bound) {
+            return -1;
+        }
+        return super.read(b, off, (int) Math.min(len, bound - position));
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return super.skip(Math.min(n, bound - position));
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), bound - position);
+    }
+
+}
@@ -20,9 +20,16 @@
 package org.apache.james.mime4j.io;
 
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteArraySlice;
+import org.apache.james.mime4j.util.ByteBufferSlice;
+import org.apache.james.mime4j.util.ByteSequence;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Input buffer that can be used to search for patterns using Quick Search
@@ -42,24 +49,97 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
     private int bufpos;
     private int buflen;
 
+    // in place source without an accessible array, null otherwise
+    private ByteBuffer source;
+    private ByteBuffer origSource;
+
     private final int maxLineLen;
+    private final boolean inPlace;
 
     public BufferedLineReaderInputStream(
             final InputStream instream,
             int buffersize,
             int maxLineLen) {
+        this(instream, newBuffer(buffersize), maxLineLen);
+    }
+
+    /**
+     * Creates a stream reading through the given, possibly recycled, buffer.
+     * Any content of the buffer is discarded.
+     */
+    public BufferedLineReaderInputStream(
+            final InputStream instream,
+            final byte[] buffer,
+            int maxLineLen) {
         super(instream);
         if (instream == null) {
             throw new IllegalArgumentException("Input stream may not be null");
         }
-        if (buffersize <= 0) {
-            throw new IllegalArgumentException("Buffer size may not be negative or zero");
+        if (buffer == null || buffer.length == 0) {
+            throw new IllegalArgumentException("Buffer may not be null or empty");
         }
-        this.buffer = new byte[buffersize];
+        this.buffer = buffer;
         this.bufpos = 0;
         this.buflen = 0;
         this.maxLineLen = maxLineLen;
         this.truncated = false;
+        this.inPlace = false;
+    }
+
+    /**
+     * Creates a stream that reads the given region of a byte array in place,
+     * without copying it into an internal buffer. The whole region is
+     * available as buffered data from the start and the array is never
+     * modified, so positions reported by this stream are offsets into the
+     * given array.
+     */
+    public BufferedLineReaderInputStream(
+            final byte[] b,
+            int off,
+            int len,
+            int maxLineLen) {
+        super(new ByteArrayInputStream(new byte[0]));
+        if (b == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buffer = b;
+        this.bufpos = off;
+        this.buflen = off + len;
+        this.maxLineLen = maxLineLen;
+        this.truncated = false;
+        this.inPlace = true;
+    }
+
+    /**
+     * Creates a stream that reads the remaining content of the given buffer
+     * in place, like {@link #BufferedLineReaderInputStream(byte[], int, int, int)}.
+     * Buffers without an accessible array, such as direct or memory mapped
+     * buffers, are scanned with absolute gets. Positions reported by this
+     * stream are absolute indexes into the given buffer, whose own position
+     * and limit are not changed.
+     */
+    public BufferedLineReaderInputStream(
+            final ByteBuffer b,
+            int maxLineLen) {
+        super(new ByteArrayInputStream(new byte[0]));
+        if (b == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        if (b.hasArray()) {
+            this.buffer = b.array();
+            this.bufpos = b.arrayOffset() + b.position();
+            this.buflen = b.arrayOffset() + b.limit();
+        } else {
+            this.source = b.duplicate();
+            this.bufpos = b.position();
+            this.buflen = b.limit();
+        }
+        this.maxLineLen = maxLineLen;
+        this.truncated = false;
+        this.inPlace = true;
     }
 
     public BufferedLineReaderInputStream(
@@ -68,6 +148,13 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         this(instream, buffersize, -1);
     }
 
+    private static byte[] newBuffer(int buffersize) {
+        if (buffersize <= 0) {
+            throw new IllegalArgumentException("Buffer size may not be negative or zero");
+        }
+        return new byte[buffersize];
+    }
+
     private void expand(int newlen) {
         byte newbuffer[] = new byte[newlen];
         int len = bufferLen();
@@ -77,8 +164,17 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         this.buffer = newbuffer;
     }
 
+    /**
+     * Returns <code>true</code> if this stream reads a caller supplied array
+     * in place.
+     */
+    public boolean isInPlace() {
+        return this.inPlace;
+    }
+
     public void ensureCapacity(int len) {
-        if (len > this.buffer.length) {
+        // an in place stream never reads ahead, so it needs no extra room
+        if (!this.inPlace && len > this.buffer.length) {
             expand(len);
         }
     }
@@ -90,12 +186,17 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
             if (bufpos != buflen) throw new IllegalStateException("unread only works when a buffer is fully read before the next refill is asked!");
             // restore the original buffer
             buffer = origBuffer;
+            source = origSource;
             buflen = origBuflen;
             bufpos = origBufpos;
             tempBuffer = false;
             // return that we just read bufferLen data.
             return bufferLen();
         }
+        if (this.inPlace) {
+            // all data has been available from the start
+            return -1;
+        }
         // compact the buffer if necessary
         if (this.bufpos > 0) { // could swtich to (this.buffer.length / 2) but needs a 4*boundary capacity, then (instead of 2).
             int len = bufferLen();
@@ -144,7 +245,7 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
                 return -1;
             }
         }
-        return this.buffer[this.bufpos++] & 0xff;
+        return get(this.bufpos++) & 0xff;
     }
 
     @Override
@@ -164,7 +265,12 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         if (chunk > len) {
             chunk = len;
         }
-        System.arraycopy(this.buffer, this.bufpos, b, off, chunk);
+        if (this.source != null) {
+            this.source.position(this.bufpos);
+            this.source.get(b, off, chunk);
+        } else {
+            System.arraycopy(this.buffer, this.bufpos, b, off, chunk);
+        }
         this.bufpos += chunk;
         return chunk;
     }
@@ -210,7 +316,7 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
                 chunk = length();
             }
             if (chunk > 0) {
-                dst.append(buf(), pos(), chunk);
+                appendTo(dst, pos(), chunk);
                 skip(chunk);
                 total += chunk;
             }
@@ -258,7 +364,7 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
             int cur = off + j;
             boolean match = true;
             for (int i = 0; i < pattern.length; i++) {
-                if (this.buffer[cur + i] != pattern[i]) {
+                if (get(cur + i) != pattern[i]) {
                     match = false;
                     break;
                 }
@@ -268,10 +374,10 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
             }
 
             int pos = cur + pattern.length;
-            if (pos >= this.buffer.length) {
+            if (pos >= this.buflen) {
                 break;
             }
-            int x = this.buffer[pos] & 0xff;
+            int x = get(pos) & 0xff;
             j += shiftTable[x];
         }
         return -1;
@@ -289,10 +395,35 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         return indexOf(pattern, this.bufpos, this.buflen - this.bufpos);
     }
 
+    /**
+     * Searches for the delimiter of the given {@link BoundaryMatcher} using
+     * its precomputed shift table.
+     */
+    public int indexOf(final BoundaryMatcher matcher, int off, int len) {
+        if (matcher == null) {
+            throw new IllegalArgumentException("Matcher may not be null");
+        }
+        if (off < this.bufpos || len < 0 || off + len > this.buflen) {
+            throw new IndexOutOfBoundsException("looking for "+off+"("+len+")"+" in "+bufpos+"/"+buflen);
+        }
+        if (this.source != null) {
+            return matcher.indexOf(this.source, off, len);
+        }
+        return matcher.indexOf(this.buffer, off, len);
+    }
+
     public int indexOf(byte b, int off, int len) {
         if (off < this.bufpos || len < 0 || off + len > this.buflen) {
             throw new IndexOutOfBoundsException();
         }
+        if (this.source != null) {
+            for (int i = off; i < off + len; i++) {
+                if (this.source.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
         for (int i = off; i < off + len; i++) {
             if (this.buffer[i] == b) {
                 return i;
@@ -309,18 +440,103 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         if (pos < this.bufpos || pos > this.buflen) {
             throw new IndexOutOfBoundsException("looking for "+pos+" in "+bufpos+"/"+buflen);
         }
-        return this.buffer[pos] & 0xff;
+        return get(pos) & 0xff;
+    }
+
+    private byte get(int pos) {
+        return this.source != null ? this.source.get(pos) : this.buffer[pos];
     }
 
-    protected byte[] buf() {
+    /**
+     * Returns the array currently backing the buffered data, or
+     * <code>null</code> if this stream reads a buffer without an accessible
+     * array in place.
+     */
+    public byte[] buf() {
         return this.buffer;
     }
 
-    protected int pos() {
+    /**
+     * Returns a view of <code>len</code> buffered bytes starting at the
+     * given offset, without copying them. The view is only valid until the
+     * buffer is refilled, for the lifetime of the source of an in place
+     * stream.
+     */
+    public ByteSequence slice(int off, int len) {
+        if (off < this.bufpos || len < 0 || off + len > this.buflen) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (this.source != null) {
+            return new ByteBufferSlice(this.source, off, len);
+        }
+        return new ByteArraySlice(this.buffer, off, len);
+    }
+
+    /**
+     * Appends <code>len</code> buffered bytes starting at the given offset
+     * to <code>dst</code>.
+     */
+    public void appendTo(final ByteArrayBuffer dst, int off, int len) {
+        if (off < this.bufpos || len < 0 || off + len > this.buflen) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (this.source != null) {
+            this.source.limit(off + len);
+            this.source.position(off);
+            dst.append(this.source);
+            this.source.limit(this.buflen);
+        } else {
+            dst.append(this.buffer, off, len);
+        }
+    }
+
+    /**
+     * Returns a stream reading <code>len</code> bytes of the data of this in
+     * place stream, starting at its current position, without copying them.
+     * The position of this stream is not changed.
+     */
+    public InputStream newInPlaceStream(int len) {
+        checkInPlace(len);
+        if (this.source != null) {
+            return InputStreams.create(new ByteBufferSlice(this.source, this.bufpos, len).asByteBuffer());
+        }
+        return new ByteArrayInputStream(this.buffer, this.bufpos, len);
+    }
+
+    /**
+     * Returns an in place stream over <code>len</code> bytes of the data of
+     * this in place stream, starting at its current position. The position
+     * of this stream is not changed.
+     */
+    public BufferedLineReaderInputStream newInPlaceReader(int len) {
+        checkInPlace(len);
+        if (this.source != null) {
+            return new BufferedLineReaderInputStream(
+                    new ByteBufferSlice(this.source, this.bufpos, len).asByteBuffer(), this.maxLineLen);
+        }
+        return new BufferedLineReaderInputStream(this.buffer, this.bufpos, len, this.maxLineLen);
+    }
+
+    private void checkInPlace(int len) {
+        if (!this.inPlace || this.tempBuffer) {
+            throw new IllegalStateException("Not an in place stream");
+        }
+        if (len < 0 || this.bufpos + len > this.buflen) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Returns the offset of the next unread byte in {@link #buf()}.
+     */
+    public int pos() {
         return this.bufpos;
     }
 
-    protected int limit() {
+    /**
+     * Returns the offset following the last buffered byte in {@link #buf()}.
+     */
+    public int limit() {
         return this.buflen;
     }
 
@@ -328,16 +544,120 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         return bufferLen();
     }
 
+    /**
+     * Returns the number of bytes read from the underlying stream that have
+     * not been consumed yet, including unread data.
+     */
+    public int bufferedLength() {
+        int len = bufferLen();
+        if (tempBuffer) {
+            len += this.origBuflen - this.origBufpos;
+        }
+        return len;
+    }
+
+    /**
+     * Returns the number of line feeds in the data counted by
+     * {@link #bufferedLength()}.
+     */
+    public int bufferedLineCount() {
+        int count = indexedLineFeeds(this.bufpos, this.buflen);
+        if (tempBuffer) {
+            count += countLineFeeds(this.origBuffer, this.origBufpos, this.origBuflen);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of line feeds between the given offsets of the
+     * buffered data.
+     */
+    public int countLineFeeds(int from, int to) {
+        if (from < 0 || to > this.buflen) {
+            throw new IndexOutOfBoundsException();
+        }
+        return indexedLineFeeds(from, to);
+    }
+
+    private int indexedLineFeeds(int from, int to) {
+        if (this.source != null) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (this.source.get(i) == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+        return countLineFeeds(this.buffer, from, to);
+    }
+
+    private static int countLineFeeds(byte[] b, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (b[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public int capacity() {
-        return this.buffer.length;
+        return this.source != null ? this.source.capacity() : this.buffer.length;
     }
 
-    protected int skip(int n) {
+    /**
+     * Skips up to <code>n</code> buffered bytes without reading from the
+     * underlying stream.
+     *
+     * @return the number of bytes skipped.
+     */
+    public int skip(int n) {
         int chunk = Math.min(n, bufferLen());
         this.bufpos += chunk;
         return chunk;
     }
 
+    /**
+     * Discards all remaining data. Buffered data is dropped and the
+     * underlying stream is advanced to its end without being read where
+     * possible: a {@link FileInputStream} is repositioned through its
+     * channel, other streams are advanced with {@link InputStream#skip(long)}
+     * and read only to detect their end.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void skipToEnd() throws IOException {
+        if (tempBuffer) {
+            buffer = origBuffer;
+            source = origSource;
+            tempBuffer = false;
+        }
+        clear();
+        if (this.inPlace) {
+            return;
+        }
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            try {
+                channel.position(channel.size());
+                return;
+            } catch (IOException ex) {
+                // not a regular file, such as a pipe; skip over it instead
+            }
+        }
+        for (;;) {
+            // skip may move past the end of a file, so a stream that reports
+            // no more available data is probed with a single read
+            if (in.skip(Integer.MAX_VALUE) > 0 && in.available() > 0) {
+                continue;
+            }
+            if (in.read() == -1) {
+                break;
+            }
+        }
+    }
+
     private void clear() {
         this.bufpos = 0;
         this.buflen = 0;
@@ -354,7 +674,7 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
         buffer.append("]");
         buffer.append("[");
         for (int i = this.bufpos; i < this.buflen; i++) {
-            buffer.append((char) this.buffer[i]);
+            buffer.append((char) get(i));
         }
         buffer.append("]");
         if (tempBuffer) {
@@ -377,6 +697,8 @@ public class BufferedLineReaderInputStream extends LineReaderInputStream {
     public boolean unread(ByteArrayBuffer buf) {
         if (tempBuffer) return false;
         origBuffer = buffer;
+        origSource = source;
+        source = null;
         origBuflen = buflen;
         origBufpos = bufpos;
         bufpos = 0;
@@ -0,0 +1,100 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <code>InputStream</code> reading a range of a {@link FileChannel} with
+ * positional reads. The position of the channel is not changed, so several
+ * streams may read the same channel concurrently. Closing the stream does
+ * not close the channel.
+ */
+public class ChannelInputStream extends InputStream {
+
+    private final byte[] singleByte = new byte[1];
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    /**
+     * Creates a new <code>ChannelInputStream</code>.
+     *
+     * @param channel channel to read from.
+     * @param start offset of the first byte to read.
+     * @param end offset following the last byte to read.
+     */
+    public ChannelInputStream(final FileChannel channel, long start, long end) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel may not be null");
+        }
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + "-" + end);
+        }
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int chunk = (int) Math.min(len, end - position);
+        int n = channel.read(ByteBuffer.wrap(b, off, chunk), position);
+        if (n == -1) {
+            return -1;
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        long chunk = Math.min(n, end - position);
+        position += chunk;
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+}
@@ -109,6 +109,15 @@ public class LineReaderInputStreamAdaptor extends LineReaderInputStream {
         return this.eof;
     }
 
+    /**
+     * Clears the used and end of stream flags so that the adaptor can be
+     * reused over the same underlying stream.
+     */
+    public void reset() {
+        this.used = false;
+        this.eof = false;
+    }
+
     public boolean isUsed() {
         return this.used;
     }
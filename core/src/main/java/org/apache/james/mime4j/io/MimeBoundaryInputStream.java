@@ -33,7 +33,7 @@ import java.io.IOException;
  */
 public class MimeBoundaryInputStream extends LineReaderInputStream {
 
-    private final byte[] boundary;
+    private final BoundaryMatcher boundary;
     private final boolean strict;
 
     private boolean eof;
@@ -42,6 +42,8 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
     private int boundaryLen;
     private boolean lastPart;
     private boolean completed;
+    private boolean skipping;
+    private boolean checkForLastPart;
 
     private final BufferedLineReaderInputStream buffer;
 
@@ -56,12 +58,13 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
      * Creates a new MimeBoundaryInputStream.
      *
      * @param inbuffer The underlying stream.
-     * @param boundary Boundary string (not including leading hyphens).
-     * @throws IllegalArgumentException when boundary is too long
+     * @param boundary Matcher for the boundary delimiter, may be shared
+     *  between all parts of a multipart.
+     * @param strict Whether a missing closing boundary is an error.
      */
     public MimeBoundaryInputStream(
             final BufferedLineReaderInputStream inbuffer,
-            final String boundary,
+            final BoundaryMatcher boundary,
             final boolean strict) throws IOException {
         super(inbuffer);
         int bufferSize = 2 * boundary.length();
@@ -77,17 +80,37 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
         this.lastPart = false;
         this.initialLength = -1;
         this.completed = false;
+        this.skipping = false;
+        this.checkForLastPart = true;
 
         this.strict = strict;
-        this.boundary = new byte[boundary.length() + 2];
-        this.boundary[0] = (byte) '-';
-        this.boundary[1] = (byte) '-';
-        for (int i = 0; i < boundary.length(); i++) {
-            byte ch = (byte) boundary.charAt(i);
-            this.boundary[i + 2] = ch;
+        this.boundary = boundary;
+
+        // data buffered already is searched before anything is read, and
+        // reading stops as soon as it is known whether the part is empty, so
+        // that the outcome does not depend on how the input is chunked
+        if (inbuffer.isInPlace()) {
+            fillBuffer();
+        } else {
+            scanBuffer();
         }
+        while (initialLength == -1 && !eof && !hasData()) {
+            fillBuffer();
+        }
+    }
 
-        fillBuffer();
+    /**
+     * Creates a new MimeBoundaryInputStream.
+     *
+     * @param inbuffer The underlying stream.
+     * @param boundary Boundary string (not including leading hyphens).
+     * @throws IllegalArgumentException when boundary is too long
+     */
+    public MimeBoundaryInputStream(
+            final BufferedLineReaderInputStream inbuffer,
+            final String boundary,
+            final boolean strict) throws IOException {
+        this(inbuffer, new BoundaryMatcher(boundary), strict);
     }
 
     /**
@@ -124,7 +147,7 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
         if (completed) {
             return false;
         }
-        if (endOfStream() && !hasData()) {
+        if (skipping || endOfStream() && !hasData()) {
             skipBoundary();
             verifyEndOfStream();
             return false;
@@ -158,6 +181,40 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
         }
     }
 
+    /**
+     * Skips content of the current part by advancing the position of the
+     * underlying buffer, without copying any data.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long total = 0;
+        while (total < n) {
+            if (!readAllowed()) break;
+            if (hasData()) {
+                int chunk = (int) Math.min(n - total, limit - buffer.pos());
+                total += buffer.skip(chunk);
+            } else {
+                fillBuffer();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of bytes left in the current part if the end of the
+     * part has already been located in the buffer, or <code>-1</code> if
+     * more data has to be read to find it.
+     */
+    public int remainingIfKnown() {
+        if (completed) {
+            return 0;
+        }
+        if (!endOfStream()) {
+            return -1;
+        }
+        return hasData() ? limit - buffer.pos() : 0;
+    }
+
     @Override
     public int readLine(final ByteArrayBuffer dst) throws IOException {
         if (dst == null) {
@@ -188,7 +245,7 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
                 chunk = len;
             }
             if (chunk > 0) {
-                dst.append(this.buffer.buf(), this.buffer.pos(), chunk);
+                this.buffer.appendTo(dst, this.buffer.pos(), chunk);
                 this.buffer.skip(chunk);
                 total += chunk;
             }
@@ -220,6 +277,9 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
         }
         int bytesRead;
         if (!hasData()) {
+            // the buffer is compacted before it is filled, which moves the
+            // data even if the read fails
+            limit = -1;
             bytesRead = buffer.fillBuffer();
             if (bytesRead == -1) {
                 eof = true;
@@ -227,7 +287,11 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
         } else {
             bytesRead = 0;
         }
+        scanBuffer();
+        return bytesRead;
+    }
 
+    private void scanBuffer() throws IOException {
         int i;
         int off = buffer.pos();
         for (;;) {
@@ -238,7 +302,7 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
             // Make sure the boundary is either at the very beginning of the buffer
             // or preceded with LF
             if (i == buffer.pos() || buffer.byteAt(i - 1) == '\n') {
-                int pos = i + boundary.length;
+                int pos = i + boundary.length();
                 int remaining = buffer.limit() - pos;
                 if (remaining <= 0) {
                     // Make sure the boundary is terminated with EOS
@@ -251,7 +315,7 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
                     }
                 }
             }
-            off = i + boundary.length;
+            off = i + boundary.length();
         }
         if (i != -1) {
             limit = i;
@@ -261,23 +325,35 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
             if (eof) {
                 limit = buffer.limit();
             } else {
-                limit = buffer.limit() - (boundary.length + 2);
+                limit = buffer.limit() - (boundary.length() + 2);
                                 // [LF] [boundary] [CR][LF] minus one char
             }
         }
-        return bytesRead;
     }
 
     public boolean isEmptyStream() {
         return initialLength == 0;
     }
 
-    public boolean isFullyConsumed() {
-        return completed && !buffer.hasBufferedData();
+    /**
+     * Returns <code>true</code> if the closing boundary has been passed and
+     * no data follows it. Reads from the underlying stream if nothing is
+     * buffered to tell whether the end of the stream has been reached.
+     */
+    public boolean isFullyConsumed() throws IOException {
+        if (!completed) {
+            return false;
+        }
+        if (!buffer.hasBufferedData() && !eof) {
+            if (buffer.fillBuffer() == -1) {
+                eof = true;
+            }
+        }
+        return !buffer.hasBufferedData();
     }
 
     private void calculateBoundaryLen() throws IOException {
-        boundaryLen = boundary.length;
+        boundaryLen = boundary.length();
         int len = limit - buffer.pos();
         if (len >= 0 && initialLength == -1) initialLength = len;
         if (len > 0) {
@@ -296,9 +372,12 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
 
     private void skipBoundary() throws IOException {
         if (!completed) {
-            completed = true;
-            buffer.skip(boundaryLen);
-            boolean checkForLastPart = true;
+            // the state is kept in fields so that the boundary can be skipped
+            // again if reading the rest of its line fails
+            if (!skipping) {
+                skipping = true;
+                buffer.skip(boundaryLen);
+            }
             for (;;) {
                 if (buffer.length() > 1) {
                     int ch1 = buffer.byteAt(buffer.pos());
@@ -329,6 +408,8 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
                     fillBuffer();
                 }
             }
+            completed = true;
+            skipping = false;
         }
     }
 
@@ -342,11 +423,7 @@ public class MimeBoundaryInputStream extends LineReaderInputStream {
 
     @Override
     public String toString() {
-        final StringBuilder buffer = new StringBuilder("MimeBoundaryInputStream, boundary ");
-        for (byte b : boundary) {
-            buffer.append((char) b);
-        }
-        return buffer.toString();
+        return "MimeBoundaryInputStream, boundary " + boundary;
     }
 
     @Override
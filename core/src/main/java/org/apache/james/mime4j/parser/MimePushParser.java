@@ -0,0 +1,404 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.stream.BodyDescriptorBuilder;
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.stream.RecursionMode;
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+
+/**
+ * <p>
+ * Push style counterpart of {@link MimeStreamParser}. Instead of pulling from
+ * a blocking {@link InputStream} the parser is fed with chunks of the message
+ * as they arrive and reports the same events to a {@link ContentHandler}.
+ * {@link #feed(ByteBuffer)} never blocks: it returns as soon as the data
+ * received so far has been processed.
+ * </p>
+ * <p>
+ * Typical usage:<br>
+ * <pre>
+ *      MimePushParser parser = new MimePushParser(config);
+ *      parser.setContentHandler(handler);
+ *      // for every chunk read from a non-blocking channel
+ *      parser.feed(chunk);
+ *      // once the peer signals the end of the message
+ *      parser.endOfInput();
+ * </pre>
+ * <p>
+ * The parser drives a regular {@link MimeTokenStream} over the fed chunks.
+ * When the token stream runs out of data before {@link #endOfInput()} has
+ * been called, the underflow is reported through the input stream and the
+ * token stream is resumed where it stopped once the next chunk arrives, so
+ * every event is reported as soon as the input determines it and no input
+ * is parsed twice. Apart from the small read-ahead buffers of the token
+ * stream, only the content of the body, preamble, epilogue or raw entity
+ * being received is kept: content is reported once it is complete and is
+ * handed to the handler as an in-memory stream.
+ * </p>
+ * <p>
+ * Instances are not thread safe, but a single event loop thread may drive
+ * any number of them.
+ * </p>
+ */
+public class MimePushParser {
+
+    private static final int CONTENT_BUFFER_SIZE = 4 * 1024;
+
+    private final MimeTokenStream tokenStream;
+    private final FeedInputStream input;
+    private final byte[] readbuf;
+
+    private ContentHandler handler;
+    private boolean contentDecoding;
+
+    private boolean started;
+    private EntityState state;
+    private boolean reported;
+    private InputStream contentStream;
+    private ByteArrayBuffer content;
+    private boolean endOfInput;
+    private boolean completed;
+
+    public MimePushParser(
+            final MimeConfig config,
+            final DecodeMonitor monitor,
+            final BodyDescriptorBuilder bodyDescBuilder) {
+        super();
+        this.tokenStream = new MimeTokenStream(config != null ? config : MimeConfig.DEFAULT,
+                monitor, bodyDescBuilder);
+        this.input = new FeedInputStream();
+        this.readbuf = new byte[CONTENT_BUFFER_SIZE];
+        this.content = new ByteArrayBuffer(CONTENT_BUFFER_SIZE);
+        this.started = false;
+        this.reported = false;
+        this.endOfInput = false;
+        this.completed = false;
+    }
+
+    public MimePushParser(final MimeConfig config) {
+        this(config, null, null);
+    }
+
+    public MimePushParser() {
+        this(MimeConfig.DEFAULT, null, null);
+    }
+
+    /**
+     * Sets the <code>ContentHandler</code> to use when reporting
+     * parsing events.
+     *
+     * @param h the <code>ContentHandler</code>.
+     */
+    public void setContentHandler(ContentHandler h) {
+        this.handler = h;
+    }
+
+    /**
+     * Determines whether this parser automatically decodes body content
+     * based on the on the MIME fields with the standard defaults.
+     */
+    public boolean isContentDecoding() {
+        return contentDecoding;
+    }
+
+    /**
+     * Defines whether parser should automatically decode body content
+     * based on the on the MIME fields with the standard defaults.
+     */
+    public void setContentDecoding(boolean b) {
+        this.contentDecoding = b;
+    }
+
+    /**
+     * @see MimeStreamParser#setRaw()
+     */
+    public void setRaw() {
+        tokenStream.setRecursionMode(RecursionMode.M_RAW);
+    }
+
+    /**
+     * @see MimeStreamParser#setFlat()
+     */
+    public void setFlat() {
+        tokenStream.setRecursionMode(RecursionMode.M_FLAT);
+    }
+
+    /**
+     * @see MimeStreamParser#setRecurse()
+     */
+    public void setRecurse() {
+        tokenStream.setRecursionMode(RecursionMode.M_RECURSE);
+    }
+
+    /**
+     * Feeds the remaining bytes of the given buffer to the parser and reports
+     * all events that can be determined from the input received so far. The
+     * buffer is fully consumed.
+     *
+     * @param src the next chunk of the message.
+     * @throws MimeException if the message can not be processed
+     * @throws IOException if the content handler fails.
+     * @throws IllegalStateException if {@link #endOfInput()} has already been
+     *  called.
+     */
+    public void feed(final ByteBuffer src) throws MimeException, IOException {
+        if (src == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        if (endOfInput) {
+            throw new IllegalStateException("End of input has already been signalled");
+        }
+        if (!src.hasRemaining()) {
+            return;
+        }
+        input.src = src;
+        try {
+            run();
+        } finally {
+            input.src = null;
+        }
+    }
+
+    /**
+     * Feeds a chunk of the message to the parser.
+     *
+     * @see #feed(ByteBuffer)
+     */
+    public void feed(final byte[] b, int off, int len) throws MimeException, IOException {
+        feed(ByteBuffer.wrap(b, off, len));
+    }
+
+    /**
+     * Signals that the whole message has been fed and reports all remaining
+     * events, down to {@link ContentHandler#endMessage()} of the root entity.
+     *
+     * @throws MimeException if the message can not be processed
+     * @throws IOException if the content handler fails.
+     */
+    public void endOfInput() throws MimeException, IOException {
+        if (endOfInput) {
+            return;
+        }
+        endOfInput = true;
+        run();
+    }
+
+    /**
+     * Returns <code>true</code> once all events of the message have been
+     * reported.
+     */
+    public boolean isComplete() {
+        return completed;
+    }
+
+    /**
+     * Returns the number of bytes of the content being received that have
+     * been buffered so far and are not reported yet.
+     */
+    public int getBufferedLength() {
+        return content.length();
+    }
+
+    private void run() throws MimeException, IOException {
+        try {
+            if (!started) {
+                start();
+                started = true;
+            }
+            while (!completed) {
+                if (!reported) {
+                    report();
+                    reported = true;
+                }
+                if (state == EntityState.T_END_OF_STREAM) {
+                    completed = true;
+                    break;
+                }
+                state = tokenStream.next();
+                reported = false;
+            }
+        } catch (NeedMoreInputException ex) {
+            // resumed by the next chunk
+        }
+    }
+
+    private void start() throws MimeException {
+        MimeConfig config = tokenStream.getConfig();
+        if (config.getHeadlessParsing() != null) {
+            Field contentType = tokenStream.parseHeadless(
+                    input, config.getHeadlessParsing());
+            if (handler != null) {
+                handler.startMessage();
+                handler.startHeader();
+                handler.field(contentType);
+                handler.endHeader();
+            }
+        } else {
+            tokenStream.parse(input);
+        }
+        state = tokenStream.getState();
+    }
+
+    private void report() throws MimeException, IOException {
+        switch (state) {
+            case T_BODY:
+                InputStream body = receiveContent(contentDecoding);
+                if (handler != null) handler.body(tokenStream.getBodyDescriptor(), body);
+                break;
+            case T_END_BODYPART:
+                if (handler != null) handler.endBodyPart();
+                break;
+            case T_END_HEADER:
+                if (handler != null) handler.endHeader();
+                break;
+            case T_END_MESSAGE:
+                if (handler != null) handler.endMessage();
+                break;
+            case T_END_MULTIPART:
+                if (handler != null) handler.endMultipart();
+                break;
+            case T_END_OF_STREAM:
+                break;
+            case T_EPILOGUE:
+                InputStream epilogue = receiveContent(false);
+                if (handler != null) handler.epilogue(epilogue);
+                break;
+            case T_FIELD:
+                if (handler != null) handler.field(tokenStream.getField());
+                break;
+            case T_PREAMBLE:
+                InputStream preamble = receiveContent(false);
+                if (handler != null) handler.preamble(preamble);
+                break;
+            case T_RAW_ENTITY:
+                InputStream raw = receiveContent(false);
+                if (handler != null) handler.raw(raw);
+                break;
+            case T_START_BODYPART:
+                if (handler != null) handler.startBodyPart();
+                break;
+            case T_START_HEADER:
+                if (handler != null) handler.startHeader();
+                break;
+            case T_START_MESSAGE:
+                if (handler != null) handler.startMessage();
+                break;
+            case T_START_MULTIPART:
+                if (handler != null) handler.startMultipart(tokenStream.getBodyDescriptor());
+                break;
+            default:
+                throw new IllegalStateException("Invalid state: " + state);
+        }
+        releaseContent();
+    }
+
+    /**
+     * Collects the content of the current token. Content received by a
+     * previous invocation that ran out of input is kept.
+     */
+    private InputStream receiveContent(boolean decode) throws IOException {
+        if (contentStream == null) {
+            contentStream = decode ? tokenStream.getDecodedInputStream() : tokenStream.getInputStream();
+        }
+        int l;
+        while ((l = contentStream.read(readbuf, 0, readbuf.length)) != -1) {
+            content.append(readbuf, 0, l);
+        }
+        contentStream = null;
+        return new ByteArrayInputStream(content.buffer(), 0, content.length());
+    }
+
+    private void releaseContent() {
+        if (content.capacity() > CONTENT_BUFFER_SIZE) {
+            content = new ByteArrayBuffer(CONTENT_BUFFER_SIZE);
+        } else {
+            content.clear();
+        }
+    }
+
+    /**
+     * Thrown by {@link FeedInputStream} when the current chunk has been
+     * exhausted but the end of input has not been signalled yet. The
+     * streams of the token stream leave their state intact when a read
+     * fails, so parsing resumes with the next chunk. Never escapes this
+     * class.
+     */
+    private static final class NeedMoreInputException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+    }
+
+    private static final NeedMoreInputException NEED_MORE_INPUT = new NeedMoreInputException();
+
+    /**
+     * Reads the chunk currently being fed, without copying it first.
+     */
+    private final class FeedInputStream extends InputStream {
+
+        private ByteBuffer src;
+
+        @Override
+        public int read() throws IOException {
+            if (src == null || !src.hasRemaining()) {
+                return endOrNeedMore();
+            }
+            return src.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (src == null || !src.hasRemaining()) {
+                return endOrNeedMore();
+            }
+            int chunk = Math.min(src.remaining(), len);
+            src.get(b, off, chunk);
+            return chunk;
+        }
+
+        private int endOrNeedMore() throws NeedMoreInputException {
+            if (endOfInput) {
+                return -1;
+            }
+            throw NEED_MORE_INPUT;
+        }
+
+    }
+
+}
@@ -31,6 +31,7 @@ import org.apache.james.mime4j.stream.Field;
 import org.apache.james.mime4j.stream.MimeConfig;
 import org.apache.james.mime4j.stream.MimeTokenStream;
 import org.apache.james.mime4j.stream.RecursionMode;
+import org.apache.james.mime4j.stream.StructureIndex;
 
 /**
  * <p>
@@ -231,6 +232,27 @@ public class MimeStreamParser {
         mimeTokenStream.stop();
     }
 
+    /**
+     * Returns the positions of the entities of the last parsed message, if
+     * position tracking is enabled.
+     *
+     * @see MimeTokenStream#getStructureIndex()
+     */
+    public StructureIndex getStructureIndex() {
+        return mimeTokenStream.getStructureIndex();
+    }
+
+    /**
+     * Returns the index entry of the entity currently being parsed, if
+     * position tracking is enabled. May be called from the methods of the
+     * <code>ContentHandler</code>.
+     *
+     * @see MimeTokenStream#getIndexEntry()
+     */
+    public StructureIndex.Entry getIndexEntry() {
+        return mimeTokenStream.getIndexEntry();
+    }
+
     /**
      * Sets the <code>ContentHandler</code> to use when reporting
      * parsing events.
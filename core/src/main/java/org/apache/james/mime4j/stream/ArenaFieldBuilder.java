@@ -0,0 +1,128 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.stream;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.io.MaxHeaderLengthLimitException;
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteArraySlice;
+
+/**
+ * {@link FieldBuilder} that assembles the lines of header fields in a shared
+ * header arena. Each line is copied once into the current chunk of the
+ * arena and the built {@link RawField} is a slice of that chunk, whereas
+ * {@link DefaultFieldBuilder} copies the assembled field a second time.
+ * <p>
+ * The lines of consecutive fields are stored one after the other, so the
+ * header of a typical message occupies a single chunk. A new chunk is
+ * started when the current one is full; chunks are never reused because
+ * the fields built from them may still be referenced.
+ * </p>
+ * <p>
+ * Use it by passing an instance to
+ * {@link MimeTokenStream#MimeTokenStream(MimeConfig, org.apache.james.mime4j.codec.DecodeMonitor,
+ * FieldBuilder, BodyDescriptorBuilder)}.
+ * </p>
+ */
+public class ArenaFieldBuilder extends DefaultFieldBuilder {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final int maxlen;
+    private final int chunkSize;
+
+    private byte[] chunk;
+    private int start;
+    private int pos;
+
+    /**
+     * Creates a new builder.
+     *
+     * @param maxlen maximum length of a field, non positive for no limit.
+     * @param chunkSize size of the chunks of the arena.
+     */
+    public ArenaFieldBuilder(int maxlen, int chunkSize) {
+        super(maxlen, 0);
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.maxlen = maxlen;
+        this.chunkSize = chunkSize;
+    }
+
+    public ArenaFieldBuilder(int maxlen) {
+        this(maxlen, DEFAULT_CHUNK_SIZE);
+    }
+
+    @Override
+    public void reset() {
+        start = pos;
+    }
+
+    @Override
+    public void append(final ByteArrayBuffer line) throws MaxHeaderLengthLimitException {
+        if (line == null) {
+            return;
+        }
+        int len = line.length();
+        int fieldLen = pos - start;
+        if (maxlen > 0 && fieldLen + len >= maxlen) {
+            throw new MaxHeaderLengthLimitException("Maximum header length limit (" + maxlen + ") exceeded");
+        }
+        if (chunk == null || pos + len > chunk.length) {
+            // start a new chunk and move the lines of the current field
+            byte[] newChunk = new byte[Math.max(chunkSize, 2 * (fieldLen + len))];
+            if (fieldLen > 0) {
+                System.arraycopy(chunk, start, newChunk, 0, fieldLen);
+            }
+            chunk = newChunk;
+            start = 0;
+            pos = fieldLen;
+        }
+        System.arraycopy(line.buffer(), 0, chunk, pos, len);
+        pos += len;
+    }
+
+    @Override
+    public RawField build() throws MimeException {
+        int len = pos - start;
+        if (len > 0 && chunk[start + len - 1] == '\n') {
+            len --;
+        }
+        if (len > 0 && chunk[start + len - 1] == '\r') {
+            len --;
+        }
+        return parse(new ByteArraySlice(chunk != null ? chunk : new byte[0], start, len));
+    }
+
+    /**
+     * Returns a copy of the lines of the current field.
+     */
+    @Override
+    public ByteArrayBuffer getRaw() {
+        ByteArrayBuffer raw = new ByteArrayBuffer(pos - start);
+        if (chunk != null) {
+            raw.append(chunk, start, pos - start);
+        }
+        return raw;
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.BitSet;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.io.MaxHeaderLengthLimitException;
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteSequence;
 
 /**
  * Default implementation of {@link FieldBuilder}.
@@ -46,7 +47,11 @@ public class DefaultFieldBuilder implements FieldBuilder {
     private final int maxlen;
 
     public DefaultFieldBuilder(int maxlen) {
-        this.buf = new ByteArrayBuffer(1024);
+        this(maxlen, 1024);
+    }
+
+    DefaultFieldBuilder(int maxlen, int capacity) {
+        this.buf = new ByteArrayBuffer(capacity);
         this.maxlen = maxlen;
     }
 
@@ -76,7 +81,16 @@ public class DefaultFieldBuilder implements FieldBuilder {
             }
         }
         ByteArrayBuffer copy = new ByteArrayBuffer(this.buf.buffer(), len, false);
-        RawField field = RawFieldParser.DEFAULT.parseField(copy);
+        return parse(copy);
+    }
+
+    /**
+     * Builds a field from raw header lines located in place in a source
+     * buffer, without copying them. The trailing line delimiter must
+     * already be excluded.
+     */
+    RawField parse(final ByteSequence raw) throws MimeException {
+        RawField field = RawFieldParser.DEFAULT.parseField(raw);
         String name = field.getName();
         for (int i = 0; i < name.length(); i++) {
             char ch = name.charAt(i);
@@ -88,6 +102,14 @@ public class DefaultFieldBuilder implements FieldBuilder {
         return field;
     }
 
+    /**
+     * Returns the maximum header length limit, or a non positive value if
+     * the length is not limited.
+     */
+    int getMaxLength() {
+        return this.maxlen;
+    }
+
     public ByteArrayBuffer getRaw() {
         return this.buf;
     }
@@ -0,0 +1,162 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.stream;
+
+import java.util.Locale;
+
+import org.apache.james.mime4j.util.ByteSequence;
+
+/**
+ * Registry of well known header field names. {@link RawFieldParser} resolves
+ * field names against it while it parses the name bytes, so that fields with
+ * well known names share a single <code>String</code> instance. Headers and
+ * field parsers use {@link #toKey(String)} to look up fields case
+ * insensitively; for registered names the lower case key is returned without
+ * allocating a new string.
+ * <p>
+ * This class is immutable and thread safe.
+ * </p>
+ */
+public final class FieldNameRegistry {
+
+    private static final String[] NAMES = {
+            "Content-Type", "Content-Length", "Content-Transfer-Encoding",
+            "Content-Disposition", "Content-ID", "Content-MD5", "Content-Description",
+            "Content-Language", "Content-Location", "MIME-Version", "Date", "Message-ID",
+            "Subject", "From", "Sender", "To", "Cc", "Bcc", "Reply-To", "Resent-Date",
+            "Resent-From", "Resent-Sender", "Resent-To", "Resent-Cc", "Resent-Bcc",
+            "Resent-Message-ID", "Return-Path", "Received", "Delivered-To", "In-Reply-To",
+            "References", "Comments", "Keywords", "Organization", "User-Agent", "X-Mailer",
+            "Precedence", "Importance", "X-Priority", "DKIM-Signature",
+            "Authentication-Results", "Received-SPF", "List-Id", "List-Unsubscribe",
+            "Thread-Topic", "Thread-Index", "X-Originating-IP",
+            // common alternative spellings
+            "Content-Id", "Mime-Version", "Message-Id", "Content-type", "CC", "Reply-to" };
+
+    private static final int MASK = 255;
+
+    private static final Entry[] TABLE = new Entry[MASK + 1];
+
+    static {
+        for (String name : NAMES) {
+            String key = name.toLowerCase(Locale.US);
+            int slot = hash(name) & MASK;
+            Entry first = TABLE[slot];
+            for (Entry e = first; e != null; e = e.next) {
+                if (e.key.equals(key)) {
+                    key = e.key;
+                    break;
+                }
+            }
+            TABLE[slot] = new Entry(name, key, first);
+        }
+    }
+
+    private FieldNameRegistry() {
+    }
+
+    /**
+     * Returns the registered name spelled exactly like the given bytes.
+     *
+     * @param buf buffer containing the name.
+     * @param start index of the first byte of the name.
+     * @param end index after the last byte of the name.
+     * @return the registered name or <code>null</code> if the name is not
+     *         registered with this spelling.
+     */
+    public static String lookup(final ByteSequence buf, final int start, final int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + lower((char) (buf.byteAt(i) & 0xff));
+        }
+        int len = end - start;
+        for (Entry e = TABLE[h & MASK]; e != null; e = e.next) {
+            String name = e.name;
+            if (name.length() != len) {
+                continue;
+            }
+            int i = 0;
+            while (i < len && name.charAt(i) == (char) (buf.byteAt(start + i) & 0xff)) {
+                i++;
+            }
+            if (i == len) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key used to look up fields by name case insensitively. The
+     * key equals <code>name.toLowerCase(Locale.US)</code>; for registered
+     * names a shared instance is returned.
+     *
+     * @param name field name.
+     * @return lower case key.
+     */
+    public static String toKey(final String name) {
+        int len = name.length();
+        for (Entry e = TABLE[hash(name) & MASK]; e != null; e = e.next) {
+            if (e.name == name) {
+                return e.key;
+            }
+            String key = e.key;
+            if (key.length() != len) {
+                continue;
+            }
+            int i = 0;
+            while (i < len && key.charAt(i) == lower(name.charAt(i))) {
+                i++;
+            }
+            if (i == len) {
+                return key;
+            }
+        }
+        return name.toLowerCase(Locale.US);
+    }
+
+    private static int hash(final String s) {
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + lower(s.charAt(i));
+        }
+        return h;
+    }
+
+    private static char lower(final char ch) {
+        return ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+    }
+
+    private static final class Entry {
+
+        final String name;
+        final String key;
+        final Entry next;
+
+        Entry(String name, String key, Entry next) {
+            this.name = name;
+            this.key = key;
+            this.next = next;
+        }
+
+    }
+
+}
@@ -46,6 +46,8 @@ public final class MimeConfig {
     private final boolean countLineNumbers;
     private final String headlessParsing;
     private final boolean malformedHeaderStartsBody;
+    private final boolean recycleBuffers;
+    private final boolean trackPositions;
 
     MimeConfig(
             boolean strictParsing,
@@ -55,7 +57,9 @@ public final class MimeConfig {
             long maxContentLen,
             boolean countLineNumbers,
             String headlessParsing,
-            boolean malformedHeaderStartsBody) {
+            boolean malformedHeaderStartsBody,
+            boolean recycleBuffers,
+            boolean trackPositions) {
         this.strictParsing = strictParsing;
         this.countLineNumbers = countLineNumbers;
         this.malformedHeaderStartsBody = malformedHeaderStartsBody;
@@ -64,6 +68,8 @@ public final class MimeConfig {
         this.maxHeaderLen = maxHeaderLen;
         this.maxContentLen = maxContentLen;
         this.headlessParsing = headlessParsing;
+        this.recycleBuffers = recycleBuffers;
+        this.trackPositions = trackPositions;
     }
 
     /**
@@ -151,6 +157,28 @@ public final class MimeConfig {
         return headlessParsing;
     }
 
+    /**
+     * Returns the value of the buffer recycling mode.
+     *
+     * @see Builder#setRecycleBuffers(boolean)
+     *
+     * @return value of the buffer recycling mode.
+     */
+    public boolean isRecycleBuffers() {
+        return recycleBuffers;
+    }
+
+    /**
+     * Returns the value of the position tracking mode.
+     *
+     * @see Builder#setTrackPositions(boolean)
+     *
+     * @return value of the position tracking mode.
+     */
+    public boolean isTrackPositions() {
+        return trackPositions;
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -162,6 +190,8 @@ public final class MimeConfig {
                 .append(", countLineNumbers=").append(countLineNumbers)
                 .append(", headlessParsing=").append(headlessParsing)
                 .append(", malformedHeaderStartsBody=").append(malformedHeaderStartsBody)
+                .append(", recycleBuffers=").append(recycleBuffers)
+                .append(", trackPositions=").append(trackPositions)
                 .append("]");
         return b.toString();
     }
@@ -182,7 +212,9 @@ public final class MimeConfig {
             .setMaxContentLen(config.getMaxContentLen())
             .setCountLineNumbers(config.isCountLineNumbers())
             .setHeadlessParsing(config.getHeadlessParsing())
-            .setMalformedHeaderStartsBody(config.isMalformedHeaderStartsBody());
+            .setMalformedHeaderStartsBody(config.isMalformedHeaderStartsBody())
+            .setRecycleBuffers(config.isRecycleBuffers())
+            .setTrackPositions(config.isTrackPositions());
     }
 
     public static class Builder {
@@ -195,6 +227,8 @@ public final class MimeConfig {
         private boolean countLineNumbers;
         private String headlessParsing;
         private boolean malformedHeaderStartsBody;
+        private boolean recycleBuffers;
+        private boolean trackPositions;
 
         public Builder() {
             this.strictParsing = false;
@@ -205,6 +239,8 @@ public final class MimeConfig {
             this.maxHeaderLen = 10000;
             this.maxContentLen = -1;
             this.headlessParsing = null;
+            this.recycleBuffers = false;
+            this.trackPositions = false;
         }
 
         /**
@@ -339,6 +375,42 @@ public final class MimeConfig {
             return this;
         }
 
+        /**
+         * Defines whether the parser should recycle its internal read and line
+         * buffers. If enabled, each {@link MimeTokenStream} keeps the buffers of
+         * entities that have been fully parsed and reuses them for subsequent
+         * entities and subsequent calls to
+         * {@link MimeTokenStream#parse(java.io.InputStream)}. Content streams
+         * obtained from the token stream must not be used after the stream
+         * has advanced past the entity they belong to.
+         * <p>
+         * Default value: <code>false</code>
+         *
+         * @param recycleBuffers
+         *            value of the buffer recycling mode.
+         */
+        public Builder setRecycleBuffers(boolean recycleBuffers) {
+            this.recycleBuffers = recycleBuffers;
+            return this;
+        }
+
+        /**
+         * Defines whether the parser should track the absolute stream position
+         * of every entity. If enabled, {@link MimeTokenStream#getStructureIndex()}
+         * returns the offsets and line counts of the header and body of each
+         * entity. Bodies are read to their end even if they are not consumed
+         * in order to measure them.
+         * <p>
+         * Default value: <code>false</code>
+         *
+         * @param trackPositions
+         *            value of the position tracking mode.
+         */
+        public Builder setTrackPositions(boolean trackPositions) {
+            this.trackPositions = trackPositions;
+            return this;
+        }
+
         public MimeConfig build() {
             return new MimeConfig(
                     strictParsing,
@@ -348,7 +420,9 @@ public final class MimeConfig {
                     maxContentLen,
                     countLineNumbers,
                     headlessParsing,
-                    malformedHeaderStartsBody);
+                    malformedHeaderStartsBody,
+                    recycleBuffers,
+                    trackPositions);
         }
 
     }
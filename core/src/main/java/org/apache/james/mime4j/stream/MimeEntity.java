@@ -23,18 +23,20 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.james.mime4j.MimeException;
-import org.apache.james.mime4j.codec.Base64InputStream;
 import org.apache.james.mime4j.codec.DecodeMonitor;
-import org.apache.james.mime4j.codec.QuotedPrintableInputStream;
+import org.apache.james.mime4j.codec.DecoderUtil;
+import org.apache.james.mime4j.io.BoundaryMatcher;
 import org.apache.james.mime4j.io.BufferedLineReaderInputStream;
 import org.apache.james.mime4j.io.LimitedInputStream;
 import org.apache.james.mime4j.io.LineNumberSource;
 import org.apache.james.mime4j.io.LineReaderInputStream;
 import org.apache.james.mime4j.io.LineReaderInputStreamAdaptor;
+import org.apache.james.mime4j.io.MaxHeaderLengthLimitException;
 import org.apache.james.mime4j.io.MaxHeaderLimitException;
 import org.apache.james.mime4j.io.MaxLineLimitException;
 import org.apache.james.mime4j.io.MimeBoundaryInputStream;
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteSequence;
 import org.apache.james.mime4j.util.CharsetUtil;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -46,32 +48,49 @@ class MimeEntity implements EntityStateMachine {
     private final FieldBuilder fieldBuilder;
     private final BodyDescriptorBuilder bodyDescBuilder;
 
+    private final ParseBufferPool bufferPool;
+    private final byte[] readbuf;
     private final ByteArrayBuffer linebuf;
     private final LineNumberSource lineSource;
     private final BufferedLineReaderInputStream inbuffer;
+    private final LineReaderInputStreamAdaptor inbufferStream;
+    private final boolean inPlaceFields;
+
+    private boolean headerOnly;
+    private boolean skipBody;
+
+    private PositionTracker tracker;
+    private StructureIndex.Entry indexEntry;
+    private int headerStartLines;
+    private int bodyStartLines;
 
     private EntityState state;
     private int lineCount;
     private boolean endOfHeader;
     private int headerCount;
+    private boolean fieldPending;
+    private boolean linePending;
     private Field field;
     private BodyDescriptor body;
 
     private RecursionMode recursionMode;
+    private BoundaryMatcher boundaryMatcher;
     private MimeBoundaryInputStream currentMimePartStream;
     private LineReaderInputStreamAdaptor dataStream;
 
     private byte[] tmpbuf;
 
-    MimeEntity(
+    private MimeEntity(
             LineNumberSource lineSource,
-            InputStream instream,
             MimeConfig config,
+            BufferedLineReaderInputStream inbuffer,
+            byte[] readbuf,
             EntityState startState,
             EntityState endState,
             DecodeMonitor monitor,
             FieldBuilder fieldBuilder,
-            BodyDescriptorBuilder bodyDescBuilder) {
+            BodyDescriptorBuilder bodyDescBuilder,
+            ParseBufferPool bufferPool) {
         super();
         this.config = config;
         this.state = startState;
@@ -79,18 +98,81 @@ class MimeEntity implements EntityStateMachine {
         this.monitor = monitor;
         this.fieldBuilder = fieldBuilder;
         this.bodyDescBuilder = bodyDescBuilder;
-        this.linebuf = new ByteArrayBuffer(64);
+        this.bufferPool = bufferPool;
+        this.readbuf = readbuf;
+        this.linebuf = bufferPool != null ? bufferPool.acquireLineBuffer() :
+            new ByteArrayBuffer(ParseBufferPool.LINE_BUFFER_SIZE);
         this.lineCount = 0;
         this.endOfHeader = false;
         this.headerCount = 0;
         this.lineSource = lineSource;
-        this.inbuffer = new BufferedLineReaderInputStream(
-                instream,
-                4 * 1024,
-                config.getMaxLineLen());
-        this.dataStream = new LineReaderInputStreamAdaptor(
+        this.inbuffer = inbuffer;
+        this.inbufferStream = new LineReaderInputStreamAdaptor(
                 inbuffer,
                 config.getMaxLineLen());
+        this.dataStream = inbufferStream;
+        this.inPlaceFields = inbuffer.isInPlace() && fieldBuilder instanceof DefaultFieldBuilder;
+    }
+
+    private MimeEntity(
+            LineNumberSource lineSource,
+            InputStream instream,
+            byte[] readbuf,
+            MimeConfig config,
+            EntityState startState,
+            EntityState endState,
+            DecodeMonitor monitor,
+            FieldBuilder fieldBuilder,
+            BodyDescriptorBuilder bodyDescBuilder,
+            ParseBufferPool bufferPool) {
+        this(lineSource, config,
+                new BufferedLineReaderInputStream(instream, readbuf, config.getMaxLineLen()),
+                readbuf, startState, endState, monitor, fieldBuilder, bodyDescBuilder, bufferPool);
+    }
+
+    MimeEntity(
+            LineNumberSource lineSource,
+            InputStream instream,
+            MimeConfig config,
+            EntityState startState,
+            EntityState endState,
+            DecodeMonitor monitor,
+            FieldBuilder fieldBuilder,
+            BodyDescriptorBuilder bodyDescBuilder,
+            ParseBufferPool bufferPool) {
+        this(lineSource, instream,
+                bufferPool != null ? bufferPool.acquireBuffer() : new byte[ParseBufferPool.BUFFER_SIZE],
+                config, startState, endState, monitor, fieldBuilder, bodyDescBuilder, bufferPool);
+    }
+
+    /**
+     * Creates an entity that parses the content of an in place
+     * {@link BufferedLineReaderInputStream}. Fields, nested entities and
+     * bodies of such an entity refer to the source array instead of copies.
+     */
+    MimeEntity(
+            MimeConfig config,
+            BufferedLineReaderInputStream inbuffer,
+            EntityState startState,
+            EntityState endState,
+            DecodeMonitor monitor,
+            FieldBuilder fieldBuilder,
+            BodyDescriptorBuilder bodyDescBuilder) {
+        this(null, config, inbuffer, null, startState, endState, monitor,
+                fieldBuilder, bodyDescBuilder, null);
+    }
+
+    MimeEntity(
+            LineNumberSource lineSource,
+            InputStream instream,
+            MimeConfig config,
+            EntityState startState,
+            EntityState endState,
+            DecodeMonitor monitor,
+            FieldBuilder fieldBuilder,
+            BodyDescriptorBuilder bodyDescBuilder) {
+        this(lineSource, instream, config, startState, endState, monitor,
+                fieldBuilder, bodyDescBuilder, null);
     }
 
     MimeEntity(
@@ -157,6 +239,41 @@ class MimeEntity implements EntityStateMachine {
         this.inbuffer.truncate();
     }
 
+    /**
+     * Makes this entity end right after its header. The body is neither
+     * tokenized nor read.
+     *
+     * @param skipBody whether the remaining input should be skipped over
+     *   once the header has been parsed.
+     */
+    void setHeaderOnly(boolean skipBody) {
+        this.headerOnly = true;
+        this.skipBody = skipBody;
+    }
+
+    /**
+     * Enables position tracking for this entity. The positions of the
+     * entity and of all entities nested in it are recorded in the given
+     * index entry.
+     */
+    void setPositionTracker(PositionTracker tracker, StructureIndex.Entry indexEntry) {
+        this.tracker = tracker;
+        this.indexEntry = indexEntry;
+        this.headerStartLines = tracker.lines(inbuffer);
+    }
+
+    StructureIndex.Entry getIndexEntry() {
+        return indexEntry;
+    }
+
+    private long position() {
+        return tracker.position(inbuffer);
+    }
+
+    private int lines() {
+        return tracker.lines(inbuffer);
+    }
+
     private int getLineNumber() {
         if (lineSource == null)
             return -1;
@@ -206,18 +323,23 @@ class MimeEntity implements EntityStateMachine {
         try {
             for (;;) {
                 // If there's still data stuck in the line buffer
-                // copy it to the field buffer
-                int len = linebuf.length();
-                if (len > 0) {
-                    fieldBuilder.append(linebuf);
+                // copy it to the field buffer. A line whose reading was
+                // interrupted by an exception is completed instead.
+                if (!linePending) {
+                    if (linebuf.length() > 0) {
+                        fieldBuilder.append(linebuf);
+                    }
+                    linebuf.clear();
+                    linePending = true;
                 }
-                linebuf.clear();
-                if (instream.readLine(linebuf) == -1) {
+                int bytesRead = instream.readLine(linebuf);
+                linePending = false;
+                if (bytesRead == -1 && linebuf.length() == 0) {
                     monitor(Event.HEADERS_PREMATURE_END);
                     endOfHeader = true;
                     break;
                 }
-                len = linebuf.length();
+                int len = linebuf.length();
                 if (len > 0 && linebuf.byteAt(len - 1) == '\n') {
                     len--;
                 }
@@ -243,6 +365,69 @@ class MimeEntity implements EntityStateMachine {
         }
     }
 
+    /**
+     * Locates the lines of the next field directly in the in place source
+     * buffer. Mirrors {@link #readRawField()} without copying the lines.
+     */
+    private ByteSequence readRawFieldInPlace() throws IOException, MimeException {
+        if (endOfHeader)
+            throw new IllegalStateException();
+        final int start = inbuffer.pos();
+        final int end = inbuffer.limit();
+        final int maxLineLen = config.getMaxLineLen();
+        final int maxHeaderLen = ((DefaultFieldBuilder) fieldBuilder).getMaxLength();
+        int pos = start;
+        int next = start;
+        for (;;) {
+            if (pos >= end) {
+                monitor(Event.HEADERS_PREMATURE_END);
+                endOfHeader = true;
+                break;
+            }
+            int i = inbuffer.indexOf((byte) '\n', pos, end - pos);
+            next = i != -1 ? i + 1 : end;
+            if (maxLineLen > 0 && next - pos >= maxLineLen) {
+                throw new MimeException(new MaxLineLimitException(
+                        "Maximum line length limit (" + maxLineLen + ") exceeded"));
+            }
+            int len = next - pos;
+            if (len > 0 && inbuffer.byteAt(pos + len - 1) == '\n') {
+                len--;
+            }
+            if (len > 0 && inbuffer.byteAt(pos + len - 1) == '\r') {
+                len--;
+            }
+            if (len == 0) {
+                // empty line detected
+                endOfHeader = true;
+                break;
+            }
+            if (pos > start) {
+                int ch = inbuffer.byteAt(pos);
+                if (ch != CharsetUtil.SP && ch != CharsetUtil.HT) {
+                    // new header detected
+                    next = pos;
+                    break;
+                }
+            }
+            if (maxHeaderLen > 0 && next - start >= maxHeaderLen) {
+                throw new MaxHeaderLengthLimitException("Maximum header length limit (" + maxHeaderLen + ") exceeded");
+            }
+            pos = next;
+        }
+        // the trailing line delimiter is excluded from the field
+        int len = pos - start;
+        if (len > 0 && inbuffer.byteAt(start + len - 1) == '\n') {
+            len--;
+        }
+        if (len > 0 && inbuffer.byteAt(start + len - 1) == '\r') {
+            len--;
+        }
+        ByteSequence lines = inbuffer.slice(start, len);
+        inbuffer.skip(next - start);
+        return lines;
+    }
+
     protected boolean nextField() throws MimeException, IOException {
         int maxHeaderCount = config.getMaxHeaderCount();
         // the loop is here to transparently skip invalid headers
@@ -250,14 +435,28 @@ class MimeEntity implements EntityStateMachine {
             if (endOfHeader) {
                 return false;
             }
-            if (maxHeaderCount > 0 && headerCount >= maxHeaderCount) {
-                throw new MaxHeaderLimitException("Maximum header limit (" + maxHeaderCount + ") exceeded");
+            // a field whose reading was interrupted by an exception is
+            // resumed where it stopped
+            if (!fieldPending) {
+                if (maxHeaderCount > 0 && headerCount >= maxHeaderCount) {
+                    throw new MaxHeaderLimitException("Maximum header limit (" + maxHeaderCount + ") exceeded");
+                }
+                headerCount++;
+                if (!inPlaceFields) {
+                    fieldBuilder.reset();
+                }
+                fieldPending = true;
+            }
+            ByteSequence lines = null;
+            if (inPlaceFields) {
+                lines = readRawFieldInPlace();
+            } else {
+                readRawField();
             }
-            headerCount++;
-            fieldBuilder.reset();
-            readRawField();
+            fieldPending = false;
             try {
-                RawField rawfield = fieldBuilder.build();
+                RawField rawfield = lines != null ?
+                        ((DefaultFieldBuilder) fieldBuilder).parse(lines) : fieldBuilder.build();
                 if (rawfield == null) {
                     continue;
                 }
@@ -271,7 +470,7 @@ class MimeEntity implements EntityStateMachine {
                 monitor(Event.INVALID_HEADER);
                 if (config.isMalformedHeaderStartsBody()) {
                     LineReaderInputStream instream = getDataStream();
-                    ByteArrayBuffer buf = fieldBuilder.getRaw();
+                    ByteArrayBuffer buf = lines == null ? fieldBuilder.getRaw() : null;
                     // Complain, if raw data is not available or cannot be 'unread'
                     if (buf == null || !instream.unread(buf)) {
                         throw new MimeParseEventException(Event.INVALID_HEADER);
@@ -297,6 +496,23 @@ class MimeEntity implements EntityStateMachine {
             break;
         case T_END_HEADER:
             body = bodyDescBuilder.build();
+            if (tracker != null) {
+                indexEntry.bodyStart = position();
+                bodyStartLines = lines();
+                indexEntry.headerLines = bodyStartLines - headerStartLines;
+                indexEntry.mimeType = body.getMimeType();
+                indexEntry.transferEncoding = body.getTransferEncoding();
+            }
+            if (headerOnly) {
+                if (skipBody && tracker != null) {
+                    // the body lines are counted as the body is read
+                    endBody();
+                } else if (skipBody) {
+                    inbuffer.skipToEnd();
+                }
+                state = endState;
+                break;
+            }
             String mimeType = body.getMimeType();
             if (recursionMode == RecursionMode.M_FLAT) {
                 state = EntityState.T_BODY;
@@ -333,7 +549,8 @@ class MimeEntity implements EntityStateMachine {
                 monitor(Event.MIME_BODY_PREMATURE_END);
             } else {
                 if (!currentMimePartStream.isLastPart()) {
-                    clearMimePartStream();
+                    // replaces the current part stream only once the next
+                    // one could be created
                     createMimePartStream();
                     return nextMimeEntity();
                 }
@@ -348,11 +565,15 @@ class MimeEntity implements EntityStateMachine {
             break;
         case T_BODY:
         case T_END_MULTIPART:
+            if (tracker != null) {
+                endBody();
+            }
             state = endState;
             break;
         default:
             if (state == endState) {
                 state = EntityState.T_END_OF_STREAM;
+                releaseBuffers();
                 break;
             }
             throw new IllegalStateException("Invalid state: " + stateToString(state));
@@ -361,12 +582,15 @@ class MimeEntity implements EntityStateMachine {
     }
 
     private void createMimePartStream() throws MimeException, IOException {
-        String boundary = body.getBoundary();
-        if (boundary == null) {
-            throw new MimeException("Multipart body does not have a valid boundary");
+        if (boundaryMatcher == null) {
+            String boundary = body.getBoundary();
+            if (boundary == null) {
+                throw new MimeException("Multipart body does not have a valid boundary");
+            }
+            boundaryMatcher = new BoundaryMatcher(boundary);
         }
         try {
-            currentMimePartStream = new MimeBoundaryInputStream(inbuffer, boundary,
+            currentMimePartStream = new MimeBoundaryInputStream(inbuffer, boundaryMatcher,
                     config.isStrictParsing());
         } catch (IllegalArgumentException e) {
             // thrown when boundary is too long
@@ -379,13 +603,47 @@ class MimeEntity implements EntityStateMachine {
 
     private void clearMimePartStream() {
         currentMimePartStream = null;
-        dataStream = new LineReaderInputStreamAdaptor(
-                inbuffer,
-                config.getMaxLineLen());
+        inbufferStream.reset();
+        dataStream = inbufferStream;
+    }
+
+    /**
+     * Hands the read and line buffers back to the pool, if any. The entity
+     * must not read any more data afterwards.
+     */
+    private void releaseBuffers() {
+        if (bufferPool != null) {
+            bufferPool.releaseBuffer(readbuf);
+            bufferPool.releaseLineBuffer(linebuf);
+        }
+    }
+
+    /**
+     * Reads the remainder of the body, which may not have been consumed,
+     * and records where it ends.
+     */
+    private void endBody() throws IOException {
+        if (inbuffer.isInPlace()) {
+            inbuffer.skip(inbuffer.limit() - inbuffer.pos());
+        } else {
+            if (tmpbuf == null) {
+                tmpbuf = new byte[2048];
+            }
+            while (inbuffer.read(tmpbuf, 0, tmpbuf.length) != -1) {
+            }
+        }
+        indexEntry.bodyEnd = position();
+        indexEntry.bodyLines = lines() - bodyStartLines;
     }
 
     private void advanceToBoundary() throws IOException {
         if (!dataStream.eof()) {
+            if (inbuffer.isInPlace() && currentMimePartStream != null
+                    && config.getMaxContentLen() < 0) {
+                // the rest of the part is skipped over without being copied
+                currentMimePartStream.skip(Long.MAX_VALUE);
+                return;
+            }
             if (tmpbuf == null) {
                 tmpbuf = new byte[2048];
             }
@@ -396,31 +654,80 @@ class MimeEntity implements EntityStateMachine {
     }
 
     private EntityStateMachine nextMessage() {
+        if (inbuffer.isInPlace() && recursionMode != RecursionMode.M_RAW
+                && !isTransferEncoded()) {
+            // the embedded message is parsed in place as well
+            return nextInPlaceEntity(EntityState.T_START_MESSAGE, EntityState.T_END_MESSAGE,
+                    inbuffer.limit() - inbuffer.pos());
+        }
         // optimize nesting of streams returning the "lower" stream instead of
         // always return dataStream (that would add a LineReaderInputStreamAdaptor in the chain)
         InputStream instream = currentMimePartStream != null ? currentMimePartStream : inbuffer;
+        // positions within a transfer encoded message cannot be mapped to the source
+        boolean tracked = !isTransferEncoded();
         instream = decodedStream(instream);
-        return nextMimeEntity(EntityState.T_START_MESSAGE, EntityState.T_END_MESSAGE, instream);
+        return nextMimeEntity(EntityState.T_START_MESSAGE, EntityState.T_END_MESSAGE, instream, tracked);
     }
 
     private InputStream decodedStream(InputStream instream) {
+        return DecoderUtil.decodeTransferEncoding(instream, body.getTransferEncoding(), monitor);
+    }
+
+    private boolean isTransferEncoded() {
         String transferEncoding = body.getTransferEncoding();
-        if (MimeUtil.isBase64Encoding(transferEncoding)) {
-            instream = new Base64InputStream(instream, monitor);
-        } else if (MimeUtil.isQuotedPrintableEncoded(transferEncoding)) {
-            instream = new QuotedPrintableInputStream(instream, monitor);
-        }
-        return instream;
+        return MimeUtil.isBase64Encoding(transferEncoding)
+            || MimeUtil.isQuotedPrintableEncoded(transferEncoding);
     }
 
     private EntityStateMachine nextMimeEntity() {
-        return nextMimeEntity(EntityState.T_START_BODYPART, EntityState.T_END_BODYPART, currentMimePartStream);
+        if (inbuffer.isInPlace() && recursionMode != RecursionMode.M_RAW) {
+            int len = currentMimePartStream.remainingIfKnown();
+            if (len >= 0) {
+                return nextInPlaceEntity(EntityState.T_START_BODYPART, EntityState.T_END_BODYPART, len);
+            }
+        }
+        return nextMimeEntity(EntityState.T_START_BODYPART, EntityState.T_END_BODYPART, currentMimePartStream, true);
+    }
+
+    private EntityStateMachine nextInPlaceEntity(EntityState startState, EntityState endState, int len) {
+        BufferedLineReaderInputStream content = inbuffer.newInPlaceReader(len);
+        MimeEntity mimeentity = new MimeEntity(
+                config,
+                content,
+                startState,
+                endState,
+                monitor,
+                fieldBuilder,
+                bodyDescBuilder.newChild());
+        mimeentity.setRecursionMode(recursionMode);
+        if (tracker != null) {
+            mimeentity.setPositionTracker(
+                    PositionTracker.forArray(inbuffer.pos(), position(), lines()),
+                    newIndexEntry(startState));
+        }
+        return mimeentity;
+    }
+
+    private StructureIndex.Entry newIndexEntry(EntityState startState) {
+        long start = position();
+        if (startState == EntityState.T_START_BODYPART) {
+            return indexEntry.addChild(start);
+        } else {
+            indexEntry.message = new StructureIndex.Entry(indexEntry.getPath(), start);
+            return indexEntry.message;
+        }
     }
 
-    private EntityStateMachine nextMimeEntity(EntityState startState, EntityState endState, InputStream instream) {
+    private EntityStateMachine nextMimeEntity(EntityState startState, EntityState endState,
+            InputStream instream, boolean tracked) {
         if (recursionMode == RecursionMode.M_RAW) {
             return new RawEntity(instream);
         } else {
+            PositionTracker childTracker = null;
+            if (tracker != null && tracked) {
+                childTracker = PositionTracker.forStream(instream, position(), lines());
+                instream = childTracker.getInputStream();
+            }
             MimeEntity mimeentity = new MimeEntity(
                     lineSource,
                     instream,
@@ -429,8 +736,12 @@ class MimeEntity implements EntityStateMachine {
                     endState,
                     monitor,
                     fieldBuilder,
-                    bodyDescBuilder.newChild());
+                    bodyDescBuilder.newChild(),
+                    bufferPool);
             mimeentity.setRecursionMode(recursionMode);
+            if (childTracker != null) {
+                mimeentity.setPositionTracker(childTracker, newIndexEntry(startState));
+            }
             return mimeentity;
         }
     }
@@ -492,6 +803,13 @@ class MimeEntity implements EntityStateMachine {
         case T_PREAMBLE:
         case T_EPILOGUE:
         case T_BODY:
+            if (state == EntityState.T_BODY && inbuffer.isInPlace()
+                    && dataStream == inbufferStream && !dataStream.isUsed()) {
+                // a view of the body in the source buffer
+                InputStream instream = inbuffer.newInPlaceStream(inbuffer.limit() - inbuffer.pos());
+                long maxContentLimit = config.getMaxContentLen();
+                return maxContentLimit >= 0 ? new LimitedInputStream(instream, maxContentLimit) : instream;
+            }
             return getLimitedContentStream();
         default:
             throw new IllegalStateException("Invalid state: " + stateToString(state));
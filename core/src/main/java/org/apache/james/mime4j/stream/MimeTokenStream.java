@@ -24,12 +24,15 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.LinkedList;
 
 import org.apache.james.mime4j.Charsets;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.io.BufferedLineReaderInputStream;
+import org.apache.james.mime4j.io.InputStreams;
 import org.apache.james.mime4j.io.LineNumberInputStream;
 import org.apache.james.mime4j.util.CharsetUtil;
 
@@ -82,6 +85,7 @@ public class MimeTokenStream {
     private final DecodeMonitor monitor;
     private final FieldBuilder fieldBuilder;
     private final BodyDescriptorBuilder bodyDescBuilder;
+    private final ParseBufferPool bufferPool;
     private final LinkedList<EntityStateMachine> entities = new LinkedList<EntityStateMachine>();
 
     private EntityState state = EntityState.T_END_OF_STREAM;
@@ -131,6 +135,7 @@ public class MimeTokenStream {
             (this.config.isStrictParsing() ? DecodeMonitor.STRICT : DecodeMonitor.SILENT);
         this.bodyDescBuilder = bodyDescBuilder != null ? bodyDescBuilder :
             new FallbackBodyDescriptorBuilder();
+        this.bufferPool = this.config.isRecycleBuffers() ? new ParseBufferPool() : null;
     }
 
     /** Instructs the {@code MimeTokenStream} to parse the given streams contents.
@@ -141,6 +146,96 @@ public class MimeTokenStream {
         doParse(stream, EntityState.T_START_MESSAGE);
     }
 
+    /**
+     * Instructs the {@code MimeTokenStream} to parse the header of the
+     * message contained in the given stream only. The token stream ends
+     * right after {@link EntityState#T_END_HEADER} of the message, without
+     * any body tokens; the body is not read. Header limits of the
+     * {@link MimeConfig} apply as usual.
+     * <p>If the {@code MimeTokenStream} has already been in use, resets the
+     * streams internal state.</p>
+     *
+     * @param stream the message.
+     * @param skipBody <code>true</code> to consume the remainder of the
+     *   given stream once the header has been parsed. The body is skipped
+     *   over rather than read, unless positions are tracked: the body is
+     *   then read to record its end and line count.
+     * @throws IllegalStateException if positions are tracked and the body
+     *   is not skipped, as the end of the body would be unknown.
+     */
+    public void parseHeaders(InputStream stream, boolean skipBody) {
+        if (config.isTrackPositions() && !skipBody) {
+            throw new IllegalStateException("Positions cannot be tracked if the body is not skipped");
+        }
+        doParse(stream, EntityState.T_START_MESSAGE);
+        rootentity.setHeaderOnly(skipBody);
+    }
+
+    /**
+     * Instructs the {@code MimeTokenStream} to parse a message held in
+     * memory. The message is parsed in place: fields, part boundaries and
+     * bodies are located directly in the given array instead of being
+     * copied into intermediate buffers. The array must not be modified
+     * while parsing is in progress or while any field or content stream
+     * obtained from this parser is in use.
+     * <p>
+     * Falls back to stream parsing if line numbers are counted or
+     * malformed headers are treated as the start of the body.
+     * If the {@code MimeTokenStream} has already been in use, resets the
+     * streams internal state.
+     * </p>
+     */
+    public void parse(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new IllegalArgumentException("Byte array may not be null");
+        }
+        if (config.isCountLineNumbers() || config.isMalformedHeaderStartsBody()) {
+            doParse(InputStreams.create(b, off, len), EntityState.T_START_MESSAGE);
+            return;
+        }
+        parseInPlace(new BufferedLineReaderInputStream(b, off, len, config.getMaxLineLen()), off);
+    }
+
+    /**
+     * Instructs the {@code MimeTokenStream} to parse the remaining content
+     * of the given buffer in place as described in
+     * {@link #parse(byte[], int, int)}. Buffers without an accessible
+     * array, such as direct or memory mapped buffers, are scanned in place
+     * as well, without being copied to the heap. The position of the buffer
+     * is not changed and positions reported by the parser are offsets from
+     * it.
+     */
+    public void parse(ByteBuffer buf) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Byte buffer may not be null");
+        }
+        if (buf.hasArray()) {
+            parse(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            return;
+        }
+        if (config.isCountLineNumbers() || config.isMalformedHeaderStartsBody()) {
+            doParse(InputStreams.create(buf.duplicate()), EntityState.T_START_MESSAGE);
+            return;
+        }
+        parseInPlace(new BufferedLineReaderInputStream(buf, config.getMaxLineLen()), buf.position());
+    }
+
+    private void parseInPlace(BufferedLineReaderInputStream inbuffer, int origin) {
+        MimeEntity entity = new MimeEntity(
+                config,
+                inbuffer,
+                EntityState.T_START_MESSAGE,
+                EntityState.T_END_MESSAGE,
+                monitor,
+                fieldBuilder,
+                bodyDescBuilder);
+        if (config.isTrackPositions()) {
+            entity.setPositionTracker(PositionTracker.forArray(origin, 0, 0),
+                    new StructureIndex.Entry("", 0));
+        }
+        start(entity);
+    }
+
     /**
      * <p>Instructs the {@code MimeTokenStream} to parse the given content with
      * the content type. The message stream is assumed to have no message header
@@ -179,6 +274,11 @@ public class MimeTokenStream {
     }
 
     private void doParse(InputStream stream, EntityState start) {
+        PositionTracker tracker = null;
+        if (config.isTrackPositions()) {
+            tracker = PositionTracker.forStream(stream, 0, 0);
+            stream = tracker.getInputStream();
+        }
         if (config.isCountLineNumbers()) {
             LineNumberInputStream lnstream = new LineNumberInputStream(stream);
             rootentity = new MimeEntity(
@@ -189,7 +289,8 @@ public class MimeTokenStream {
                     EntityState.T_END_MESSAGE,
                     monitor,
                     fieldBuilder,
-                    bodyDescBuilder);
+                    bodyDescBuilder,
+                    bufferPool);
         } else {
             rootentity = new MimeEntity(
                     null,
@@ -199,9 +300,18 @@ public class MimeTokenStream {
                     EntityState.T_END_MESSAGE,
                     monitor,
                     fieldBuilder,
-                    bodyDescBuilder);
+                    bodyDescBuilder,
+                    bufferPool);
         }
+        if (tracker != null) {
+            rootentity.setPositionTracker(tracker, new StructureIndex.Entry("", 0));
+        }
+
+        start(rootentity);
+    }
 
+    private void start(MimeEntity entity) {
+        rootentity = entity;
         rootentity.setRecursionMode(recursionMode);
         currentStateMachine = rootentity;
         entities.clear();
@@ -209,6 +319,37 @@ public class MimeTokenStream {
         state = currentStateMachine.getState();
     }
 
+    /**
+     * Returns the positions of the entities parsed so far, if position
+     * tracking is enabled (see {@link MimeConfig#isTrackPositions()}). The
+     * index is complete once {@link EntityState#T_END_OF_STREAM} has been
+     * reached.
+     *
+     * @return the structure index, or <code>null</code> if positions are
+     *   not tracked.
+     */
+    public StructureIndex getStructureIndex() {
+        if (rootentity == null || rootentity.getIndexEntry() == null) {
+            return null;
+        }
+        return new StructureIndex(rootentity.getIndexEntry());
+    }
+
+    /**
+     * Returns the index entry of the entity currently being parsed, if
+     * position tracking is enabled. The body end of the entry is known once
+     * the entity has been parsed completely.
+     *
+     * @return the index entry, or <code>null</code> if positions are not
+     *   tracked for the current entity.
+     */
+    public StructureIndex.Entry getIndexEntry() {
+        if (currentStateMachine instanceof MimeEntity) {
+            return ((MimeEntity) currentStateMachine).getIndexEntry();
+        }
+        return null;
+    }
+
     /**
      * Determines if this parser is currently in raw mode.
      *
@@ -376,8 +517,12 @@ public class MimeTokenStream {
                 entities.add(next);
                 currentStateMachine = next;
             }
-            state = currentStateMachine.getState();
-            if (state != EntityState.T_END_OF_STREAM) {
+            // the current state is only updated once a token is available,
+            // so that next() can be invoked again if the parent entity fails
+            // to advance
+            EntityState entityState = currentStateMachine.getState();
+            if (entityState != EntityState.T_END_OF_STREAM) {
+                state = entityState;
                 return state;
             }
             entities.removeLast();
@@ -0,0 +1,79 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+
+/**
+ * Pool of the read and line buffers used by {@link MimeEntity}. A pool is
+ * owned by a single {@link MimeTokenStream} and is therefore not thread safe.
+ * Entities borrow their buffers on construction and hand them back once they
+ * reach {@link EntityState#T_END_OF_STREAM}, so that repeated parsing with the
+ * same token stream stops allocating them.
+ */
+final class ParseBufferPool {
+
+    static final int BUFFER_SIZE = 4 * 1024;
+    static final int LINE_BUFFER_SIZE = 64;
+
+    /** Upper bound on pooled buffers of each kind, i.e. on nesting depth served from the pool. */
+    private static final int MAX_POOLED = 16;
+
+    private final List<byte[]> buffers;
+    private final List<ByteArrayBuffer> lineBuffers;
+
+    ParseBufferPool() {
+        this.buffers = new ArrayList<byte[]>(MAX_POOLED);
+        this.lineBuffers = new ArrayList<ByteArrayBuffer>(MAX_POOLED);
+    }
+
+    byte[] acquireBuffer() {
+        int size = buffers.size();
+        if (size > 0) {
+            return buffers.remove(size - 1);
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    void releaseBuffer(final byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE && buffers.size() < MAX_POOLED) {
+            buffers.add(buffer);
+        }
+    }
+
+    ByteArrayBuffer acquireLineBuffer() {
+        int size = lineBuffers.size();
+        if (size > 0) {
+            return lineBuffers.remove(size - 1);
+        }
+        return new ByteArrayBuffer(LINE_BUFFER_SIZE);
+    }
+
+    void releaseLineBuffer(final ByteArrayBuffer buffer) {
+        if (buffer != null && lineBuffers.size() < MAX_POOLED) {
+            buffer.clear();
+            lineBuffers.add(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.codec.DecoderUtil;
+import org.apache.james.mime4j.io.BoundedInputStream;
+import org.apache.james.mime4j.io.ChannelInputStream;
+import org.apache.james.mime4j.io.InputStreams;
+
+/**
+ * Reads the bodies of single parts of a stored message using a
+ * {@link StructureIndex} recorded when the message was parsed. The source
+ * is positioned at the part directly; preceding parts are not tokenized.
+ * <p>
+ * Content stored by a <code>Storage</code> can be read with
+ * {@link #getBody(InputStream, String, boolean)}; file based storages skip
+ * to the part without reading the data in between.
+ * </p>
+ */
+public class PartExtractor {
+
+    private final StructureIndex index;
+    private final DecodeMonitor monitor;
+
+    /**
+     * Creates a new <code>PartExtractor</code>.
+     *
+     * @param index positions of the entities of the message.
+     * @param monitor monitor used when decoding content, <code>null</code>
+     *   for {@link DecodeMonitor#SILENT}.
+     */
+    public PartExtractor(StructureIndex index, DecodeMonitor monitor) {
+        if (index == null) {
+            throw new IllegalArgumentException("Structure index may not be null");
+        }
+        this.index = index;
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+    }
+
+    public PartExtractor(StructureIndex index) {
+        this(index, null);
+    }
+
+    /**
+     * Returns the body of a part of a message stored in a file.
+     *
+     * @param channel channel to read from. Its position is not changed.
+     * @param offset offset of the first byte of the message in the file.
+     * @param path part path such as <code>2.1.3</code>.
+     * @param decode whether the transfer encoding should be decoded.
+     * @return the body, or <code>null</code> if there is no such part.
+     */
+    public InputStream getBody(FileChannel channel, long offset, String path, boolean decode) {
+        StructureIndex.Entry entry = index.getEntry(path);
+        if (entry == null) {
+            return null;
+        }
+        InputStream instream = new ChannelInputStream(channel,
+                offset + entry.getBodyStart(), offset + entry.getBodyEnd());
+        return decode ? decodedStream(instream, entry) : instream;
+    }
+
+    /**
+     * Returns the body of a part of a message stored at the beginning of a
+     * file.
+     *
+     * @see #getBody(FileChannel, long, String, boolean)
+     */
+    public InputStream getBody(FileChannel channel, String path, boolean decode) {
+        return getBody(channel, 0, path, decode);
+    }
+
+    /**
+     * Returns the body of a part of a message held in a buffer. The message
+     * starts at the position of the buffer, which is not changed.
+     *
+     * @param buffer buffer to read from.
+     * @param path part path such as <code>2.1.3</code>.
+     * @param decode whether the transfer encoding should be decoded.
+     * @return the body, or <code>null</code> if there is no such part.
+     */
+    public InputStream getBody(ByteBuffer buffer, String path, boolean decode) {
+        StructureIndex.Entry entry = index.getEntry(path);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer range = buffer.duplicate();
+        int start = buffer.position();
+        range.limit(start + (int) entry.getBodyEnd());
+        range.position(start + (int) entry.getBodyStart());
+        InputStream instream = InputStreams.create(range);
+        return decode ? decodedStream(instream, entry) : instream;
+    }
+
+    /**
+     * Returns the body of a part of a message read from a stream positioned
+     * at the beginning of the message. Data preceding the part is skipped.
+     *
+     * @param instream stream to read from.
+     * @param path part path such as <code>2.1.3</code>.
+     * @param decode whether the transfer encoding should be decoded.
+     * @return the body, or <code>null</code> if there is no such part.
+     * @throws IOException if the stream cannot be skipped to the part.
+     */
+    public InputStream getBody(InputStream instream, String path, boolean decode) throws IOException {
+        StructureIndex.Entry entry = index.getEntry(path);
+        if (entry == null) {
+            return null;
+        }
+        long remaining = entry.getBodyStart();
+        while (remaining > 0) {
+            long n = instream.skip(remaining);
+            if (n <= 0) {
+                if (instream.read() == -1) {
+                    throw new IOException("Unexpected end of stream before part " + path);
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+        InputStream bounded = new BoundedInputStream(instream, entry.getBodyEnd() - entry.getBodyStart());
+        return decode ? decodedStream(bounded, entry) : bounded;
+    }
+
+    private InputStream decodedStream(InputStream instream, StructureIndex.Entry entry) {
+        return DecoderUtil.decodeTransferEncoding(instream, entry.getTransferEncoding(), monitor);
+    }
+
+}
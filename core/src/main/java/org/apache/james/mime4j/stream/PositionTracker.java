@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.io.InputStream;
+
+import org.apache.james.mime4j.io.BufferedLineReaderInputStream;
+import org.apache.james.mime4j.io.LineNumberInputStream;
+import org.apache.james.mime4j.io.PositionInputStream;
+
+/**
+ * Computes the absolute position and line count of the read cursor of an
+ * entity. For streamed entities the bytes and lines pulled into the read
+ * buffer are counted as they pass and the data still buffered is deducted;
+ * for entities parsed in place the cursor is read off the source array.
+ */
+final class PositionTracker {
+
+    private final long origin;
+    private final int originLines;
+    private final PositionInputStream positionStream;
+    private final LineNumberInputStream lineStream;
+
+    private final int start;
+    private int scanned;
+    private int scannedLines;
+
+    private PositionTracker(
+            long origin,
+            int originLines,
+            PositionInputStream positionStream,
+            LineNumberInputStream lineStream,
+            int start) {
+        this.origin = origin;
+        this.originLines = originLines;
+        this.positionStream = positionStream;
+        this.lineStream = lineStream;
+        this.start = start;
+        this.scanned = start;
+    }
+
+    /**
+     * Creates a tracker for an entity reading the given stream, whose
+     * first byte is located at <code>origin</code>.
+     */
+    static PositionTracker forStream(InputStream instream, long origin, int originLines) {
+        LineNumberInputStream lineStream = new LineNumberInputStream(instream);
+        return new PositionTracker(origin, originLines,
+                new PositionInputStream(lineStream), lineStream, 0);
+    }
+
+    /**
+     * Creates a tracker for an entity parsed in place, whose content starts
+     * at index <code>start</code> of the source array.
+     */
+    static PositionTracker forArray(int start, long origin, int originLines) {
+        return new PositionTracker(origin, originLines, null, null, start);
+    }
+
+    /**
+     * Returns the stream the entity has to read, or <code>null</code> for
+     * entities parsed in place.
+     */
+    InputStream getInputStream() {
+        return positionStream;
+    }
+
+    long position(BufferedLineReaderInputStream inbuffer) {
+        if (positionStream == null) {
+            return origin + inbuffer.pos() - start;
+        }
+        return origin + positionStream.getPosition() - inbuffer.bufferedLength();
+    }
+
+    int lines(BufferedLineReaderInputStream inbuffer) {
+        if (lineStream == null) {
+            // the cursor only moves forward, so each byte is scanned once
+            int pos = inbuffer.pos();
+            if (scanned < pos) {
+                scannedLines += inbuffer.countLineFeeds(scanned, pos);
+                scanned = pos;
+            }
+            return originLines + scannedLines;
+        }
+        return originLines + lineStream.getLineNumber() - 1 - inbuffer.bufferedLineCount();
+    }
+
+}
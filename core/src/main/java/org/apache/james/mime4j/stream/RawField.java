@@ -19,6 +19,7 @@
 
 package org.apache.james.mime4j.stream;
 
+import org.apache.james.mime4j.util.ByteCharSequence;
 import org.apache.james.mime4j.util.ByteSequence;
 import org.apache.james.mime4j.util.CharsetUtil;
 import org.apache.james.mime4j.util.ContentUtil;
@@ -39,6 +40,7 @@ public final class RawField implements Field {
     private final int delimiterIdx;
     private final String name;
     private final String body;
+    private String unfoldedBody;
 
     RawField(ByteSequence raw, int delimiterIdx, String name, String body) {
         if (name == null) {
@@ -62,19 +64,53 @@ public final class RawField implements Field {
         return name;
     }
 
+    /**
+     * Returns the unfolded field body. The body is decoded from the raw bytes
+     * once and then cached.
+     */
     public String getBody() {
         if (body != null) {
             return body;
         }
-        if (raw != null) {
-            int len = raw.length();
-            int off = delimiterIdx + 1;
-            if (len > off + 1 && (CharsetUtil.isWhitespace((char) (raw.byteAt(off) & 0xff)))) {
-                off++;
+        String s = unfoldedBody;
+        if (s == null && raw != null) {
+            int off = getBodyOffset();
+            s = MimeUtil.unfold(ContentUtil.decode(raw, off, raw.length() - off));
+            unfoldedBody = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the unfolded field body as a character sequence. If the field
+     * body is not folded the returned sequence is a view of the raw bytes and
+     * no <code>String</code> is created; otherwise this method returns the
+     * same as {@link #getBody()}.
+     */
+    public CharSequence getBodyChars() {
+        if (body != null || raw == null) {
+            return body;
+        }
+        if (unfoldedBody != null) {
+            return unfoldedBody;
+        }
+        int len = raw.length();
+        int off = getBodyOffset();
+        for (int i = off; i < len; i++) {
+            byte b = raw.byteAt(i);
+            if (b == '\r' || b == '\n') {
+                return getBody();
             }
-            return MimeUtil.unfold(ContentUtil.decode(raw, off, len - off));
         }
-        return null;
+        return new ByteCharSequence(raw, off, len - off);
+    }
+
+    private int getBodyOffset() {
+        int off = delimiterIdx + 1;
+        if (raw.length() > off + 1 && (CharsetUtil.isWhitespace((char) (raw.byteAt(off) & 0xff)))) {
+            off++;
+        }
+        return off;
     }
 
     public int getDelimiterIdx() {
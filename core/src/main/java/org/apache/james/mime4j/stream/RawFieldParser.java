@@ -25,7 +25,6 @@ import java.util.List;
 
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.util.ByteSequence;
-import org.apache.james.mime4j.util.CharsetUtil;
 import org.apache.james.mime4j.util.ContentUtil;
 
 /**
@@ -47,6 +46,24 @@ public class RawFieldParser {
         return bitset;
     }
 
+    private static long initMask(int ... b) {
+        long mask = 0;
+        for (int aB : b) {
+            mask |= 1L << aB;
+        }
+        return mask;
+    }
+
+    // Characters ending a run of content, as masks over the US-ASCII range 0-63
+    // that all of them fall into
+    private static final long WHITESPACE                  = initMask(' ', '\t', '\r', '\n');
+    private static final long WHITESPACE_OR_COMMENT       = WHITESPACE | initMask('(');
+    private static final long WHITESPACE_COMMENT_OR_QUOTE = WHITESPACE_OR_COMMENT | initMask('\"');
+
+    private static boolean isSet(final long mask, final char ch) {
+        return ch < 64 && (mask & (1L << ch)) != 0;
+    }
+
     static final BitSet COLON                   = INIT_BITSET(':');
     static final BitSet EQUAL_OR_SEMICOLON      = INIT_BITSET('=', ';');
     static final BitSet SEMICOLON               = INIT_BITSET(';');
@@ -62,6 +79,14 @@ public class RawFieldParser {
         if (raw == null) {
             return null;
         }
+        int colon = indexOfPlainNameEnd(raw);
+        if (colon > 0) {
+            String name = FieldNameRegistry.lookup(raw, 0, colon);
+            if (name == null) {
+                name = ContentUtil.decode(raw, 0, colon);
+            }
+            return new RawField(raw, colon, name, null);
+        }
         ParserCursor cursor = new ParserCursor(0, raw.length());
         String name = parseToken(raw, cursor, COLON);
         if (cursor.atEnd()) {
@@ -71,6 +96,26 @@ public class RawFieldParser {
         return new RawField(raw, cursor.getPos(), name, null);
     }
 
+    /**
+     * Returns the index of the colon if the field starts with a name that is
+     * directly followed by the colon and contains neither white space nor
+     * comments, <code>-1</code> otherwise. Such names can be taken from the
+     * raw bytes as they are; names spelled as in {@link FieldNameRegistry}
+     * then need no new string at all.
+     */
+    private static int indexOfPlainNameEnd(final ByteSequence raw) {
+        int len = raw.length();
+        for (int i = 0; i < len; i++) {
+            char current = (char) (raw.byteAt(i) & 0xff);
+            if (current == ':') {
+                return i;
+            } else if (isSet(WHITESPACE_OR_COMMENT, current)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Parses the field body containing a value with parameters into {@link RawBody}.
      *
@@ -158,13 +203,29 @@ public class RawFieldParser {
      *  is not delimited by any character.
      */
     public String parseToken(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        StringBuilder dst = new StringBuilder();
+        return parseToken(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    /**
+     * Extracts from the sequence of bytes a token terminated with any of the given delimiters
+     * discarding semantically insignificant whitespace characters and comments, using the
+     * given buffer to assemble the token.
+     *
+     * @param buf buffer with the sequence of bytes to be parsed
+     * @param cursor defines the bounds and current position of the buffer
+     * @param delimiters set of delimiting characters. Can be <code>null</code> if the token
+     *  is not delimited by any character.
+     * @param dst reusable buffer; its content is replaced
+     */
+    public String parseToken(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters,
+            final StringBuilder dst) {
+        dst.setLength(0);
         boolean whitespace = false;
         while (!cursor.atEnd()) {
             char current = (char) (buf.byteAt(cursor.getPos()) & 0xff);
             if (delimiters != null && delimiters.get(current)) {
                 break;
-            } else if (CharsetUtil.isWhitespace(current)) {
+            } else if (isSet(WHITESPACE, current)) {
                 skipWhiteSpace(buf, cursor);
                 whitespace = true;
             } else if (current == '(') {
@@ -191,13 +252,29 @@ public class RawFieldParser {
      *  is not delimited by any character.
      */
     public String parseValue(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        StringBuilder dst = new StringBuilder();
+        return parseValue(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    /**
+     * Extracts from the sequence of bytes a value which can be enclosed in quote marks and
+     * terminated with any of the given delimiters discarding semantically insignificant
+     * whitespace characters and comments, using the given buffer to assemble the value.
+     *
+     * @param buf buffer with the sequence of bytes to be parsed
+     * @param cursor defines the bounds and current position of the buffer
+     * @param delimiters set of delimiting characters. Can be <code>null</code> if the value
+     *  is not delimited by any character.
+     * @param dst reusable buffer; its content is replaced
+     */
+    public String parseValue(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters,
+            final StringBuilder dst) {
+        dst.setLength(0);
         boolean whitespace = false;
         while (!cursor.atEnd()) {
             char current = (char) (buf.byteAt(cursor.getPos()) & 0xff);
             if (delimiters != null && delimiters.get(current)) {
                 break;
-            } else if (CharsetUtil.isWhitespace(current)) {
+            } else if (isSet(WHITESPACE, current)) {
                 skipWhiteSpace(buf, cursor);
                 whitespace = true;
             } else if (current == '(') {
@@ -232,7 +309,7 @@ public class RawFieldParser {
         int indexTo = cursor.getUpperBound();
         for (int i = indexFrom; i < indexTo; i++) {
             char current = (char) (buf.byteAt(i) & 0xff);
-            if (!CharsetUtil.isWhitespace(current)) {
+            if (!isSet(WHITESPACE, current)) {
                 break;
             } else {
                 pos++;
@@ -297,7 +374,7 @@ public class RawFieldParser {
     public void skipAllWhiteSpace(final ByteSequence buf, final ParserCursor cursor) {
         while (!cursor.atEnd()) {
             char current = (char) (buf.byteAt(cursor.getPos()) & 0xff);
-            if (CharsetUtil.isWhitespace(current)) {
+            if (isSet(WHITESPACE, current)) {
                 skipWhiteSpace(buf, cursor);
             } else if (current == '(') {
                 skipComment(buf, cursor);
@@ -324,8 +401,8 @@ public class RawFieldParser {
         int indexTo = cursor.getUpperBound();
         for (int i = indexFrom; i < indexTo; i++) {
             char current = (char) (buf.byteAt(i) & 0xff);
-            if ((delimiters != null && delimiters.get(current))
-                    || CharsetUtil.isWhitespace(current) || current == '(') {
+            if (isSet(WHITESPACE_OR_COMMENT, current)
+                    || (delimiters != null && delimiters.get(current))) {
                 break;
             } else {
                 pos++;
@@ -352,8 +429,8 @@ public class RawFieldParser {
         int indexTo = cursor.getUpperBound();
         for (int i = indexFrom; i < indexTo; i++) {
             char current = (char) (buf.byteAt(i) & 0xff);
-            if ((delimiters != null && delimiters.get(current))
-                    || CharsetUtil.isWhitespace(current) || current == '(' || current == '\"') {
+            if (isSet(WHITESPACE_COMMENT_OR_QUOTE, current)
+                    || (delimiters != null && delimiters.get(current))) {
                 break;
             } else {
                 pos++;
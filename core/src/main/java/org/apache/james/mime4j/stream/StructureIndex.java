@@ -0,0 +1,242 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Byte offsets and line counts of the entities of a message, recorded by
+ * {@link MimeTokenStream} in a single pass if position tracking is enabled
+ * (see {@link MimeConfig#isTrackPositions()}). Offsets are relative to the
+ * first byte of the parsed stream.
+ * <p>
+ * Entities are addressed by part paths as used by IMAP: the parts of a
+ * multipart entity are numbered from <code>1</code>, the parts of nested
+ * multiparts are separated by dots (<code>2.1.3</code>), and the parts of a
+ * message encapsulated in a <code>message/rfc822</code> part are numbered
+ * as if they were parts of that part. Encapsulated messages that are
+ * themselves transfer encoded are not indexed.
+ * </p>
+ */
+public final class StructureIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Entry root;
+
+    StructureIndex(Entry root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the entry of the top level message.
+     */
+    public Entry getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the entry of the part with the given path, or
+     * <code>null</code> if there is no such part. The empty path denotes
+     * the top level message. As in IMAP, part <code>1</code> of an entity
+     * that is not multipart is the entity itself.
+     *
+     * @param path part path such as <code>2.1.3</code>.
+     */
+    public Entry getEntry(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Part path may not be null");
+        }
+        Entry current = root;
+        int pos = 0;
+        while (current != null && pos < path.length()) {
+            int next = path.indexOf('.', pos);
+            if (next == -1) {
+                next = path.length();
+            }
+            int n;
+            try {
+                n = Integer.parseInt(path.substring(pos, next));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid part path: " + path);
+            }
+            if (current.getMessage() != null) {
+                current = current.getMessage();
+            }
+            List<Entry> children = current.getChildren();
+            if (!children.isEmpty()) {
+                current = n >= 1 && n <= children.size() ? children.get(n - 1) : null;
+            } else if (n != 1) {
+                current = null;
+            }
+            pos = next + 1;
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        append(buffer, root);
+        return buffer.toString();
+    }
+
+    private static void append(StringBuilder buffer, Entry entry) {
+        buffer.append(entry).append('\n');
+        if (entry.getMessage() != null) {
+            append(buffer, entry.getMessage());
+        }
+        for (Entry child : entry.getChildren()) {
+            append(buffer, child);
+        }
+    }
+
+    /**
+     * Position of a single message or body part.
+     */
+    public static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final long headerStart;
+        long bodyStart = -1;
+        long bodyEnd = -1;
+        int headerLines;
+        int bodyLines;
+        String mimeType;
+        String transferEncoding;
+        Entry message;
+        List<Entry> children;
+
+        Entry(String path, long headerStart) {
+            this.path = path;
+            this.headerStart = headerStart;
+        }
+
+        /**
+         * Returns the part path of this entity. An encapsulated message has
+         * the path of the enclosing <code>message/rfc822</code> part.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the offset of the first byte of the header.
+         */
+        public long getHeaderStart() {
+            return headerStart;
+        }
+
+        /**
+         * Returns the offset of the first byte of the body, which follows the
+         * empty line terminating the header.
+         */
+        public long getBodyStart() {
+            return bodyStart;
+        }
+
+        /**
+         * Returns the offset following the last byte of the body. The line
+         * break preceding a multipart boundary is not part of the body.
+         */
+        public long getBodyEnd() {
+            return bodyEnd;
+        }
+
+        /**
+         * Returns the number of line breaks in the header, including the
+         * empty line terminating it.
+         */
+        public int getHeaderLines() {
+            return headerLines;
+        }
+
+        /**
+         * Returns the number of line breaks in the body.
+         */
+        public int getBodyLines() {
+            return bodyLines;
+        }
+
+        /**
+         * Returns the MIME type of this entity.
+         */
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Returns the transfer encoding of the body.
+         */
+        public String getTransferEncoding() {
+            return transferEncoding;
+        }
+
+        /**
+         * Returns the message encapsulated in this <code>message/rfc822</code>
+         * entity, or <code>null</code>.
+         */
+        public Entry getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns the parts of this multipart entity.
+         */
+        public List<Entry> getChildren() {
+            if (children == null) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(children);
+        }
+
+        Entry addChild(long start) {
+            if (children == null) {
+                children = new ArrayList<Entry>();
+            }
+            int n = children.size() + 1;
+            Entry child = new Entry(path.length() == 0 ? Integer.toString(n) : path + "." + n, start);
+            children.add(child);
+            return child;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buffer = new StringBuilder();
+            buffer.append("[path=").append(path)
+                .append(", headerStart=").append(headerStart)
+                .append(", bodyStart=").append(bodyStart)
+                .append(", bodyEnd=").append(bodyEnd)
+                .append(", headerLines=").append(headerLines)
+                .append(", bodyLines=").append(bodyLines)
+                .append(", mimeType=").append(mimeType)
+                .append(", transferEncoding=").append(transferEncoding)
+                .append("]");
+            return buffer.toString();
+        }
+
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package org.apache.james.mime4j.util;
 
+import java.nio.ByteBuffer;
 
 /**
  * A resizable byte array.
@@ -81,6 +82,26 @@ public final class ByteArrayBuffer implements ByteSequence {
         this.len = newlen;
     }
 
+    /**
+     * Appends the remaining content of the given buffer and advances its
+     * position to its limit.
+     */
+    public void append(final ByteBuffer b) {
+        if (b == null) {
+            return;
+        }
+        int len = b.remaining();
+        if (len == 0) {
+            return;
+        }
+        int newlen = this.len + len;
+        if (newlen > this.buffer.length) {
+            expand(newlen);
+        }
+        b.get(this.buffer, this.len, len);
+        this.len = newlen;
+    }
+
     public void append(int b) {
         int newlen = this.len + 1;
         if (newlen > this.buffer.length) {
@@ -0,0 +1,86 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable view of a region of a {@link ByteBuffer}, such as a direct or
+ * memory mapped buffer that has no accessible array. The content is read
+ * with absolute gets and is not copied, so the region must not be modified
+ * for as long as the slice is in use.
+ */
+public final class ByteBufferSlice implements ByteSequence {
+
+    private final ByteBuffer buffer;
+    private final int off;
+    private final int len;
+
+    /**
+     * Creates a slice of <code>len</code> bytes starting at the absolute
+     * index <code>off</code> of the given buffer. The position and limit
+     * of the buffer are neither used nor changed.
+     */
+    public ByteBufferSlice(final ByteBuffer buffer, int off, int len) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        if (off < 0 || len < 0 || off + len > buffer.capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buffer = buffer;
+        this.off = off;
+        this.len = len;
+    }
+
+    public int length() {
+        return this.len;
+    }
+
+    public byte byteAt(int index) {
+        if (index < 0 || index >= this.len) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.buffer.get(this.off + index);
+    }
+
+    public byte[] toByteArray() {
+        byte[] b = new byte[this.len];
+        asByteBuffer().get(b);
+        return b;
+    }
+
+    /**
+     * Returns a new buffer sharing the content of this slice. Its position
+     * and limit delimit the slice.
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer dup = this.buffer.duplicate();
+        dup.limit(this.off + this.len);
+        dup.position(this.off);
+        return dup;
+    }
+
+    @Override
+    public String toString() {
+        return new String(toByteArray());
+    }
+
+}
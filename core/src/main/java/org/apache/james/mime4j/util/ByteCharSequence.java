@@ -0,0 +1,76 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.util;
+
+/**
+ * Read-only <code>CharSequence</code> view of a range of a
+ * {@link ByteSequence}. Each byte is mapped to the character with the same
+ * value, as if the bytes were decoded as ISO-8859-1. No characters are
+ * copied until {@link #toString()} is called.
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    private final ByteSequence bytes;
+    private final int offset;
+    private final int length;
+
+    public ByteCharSequence(final ByteSequence bytes, final int offset, final int length) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Byte sequence may not be null");
+        }
+        if (offset < 0 || length < 0 || offset + length > bytes.length()) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length
+                    + ", byte sequence length: " + bytes.length());
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public ByteCharSequence(final ByteSequence bytes) {
+        this(bytes, 0, bytes.length());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return (char) (bytes.byteAt(offset + index) & 0xff);
+    }
+
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end
+                    + ", length: " + length);
+        }
+        return new ByteCharSequence(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return ContentUtil.decode(bytes, offset, length);
+    }
+
+}
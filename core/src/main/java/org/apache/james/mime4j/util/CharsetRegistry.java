@@ -0,0 +1,196 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe cache of the Java charsets corresponding to MIME charset
+ * names. Names that cannot be resolved are cached as well, so that
+ * malformed or unknown names such as <code>unknown-8bit</code> are passed
+ * to {@link Charset#forName(String)} only once.
+ * <p>
+ * Names are resolved as given first. Failing that, they are normalized
+ * (trimmed, lower cased, <code>_</code> replaced by <code>-</code>) and
+ * common aliases unknown to some Java runtimes such as <code>utf8</code>
+ * or <code>cp1252</code> are mapped to their canonical names.
+ * </p>
+ * <p>
+ * The number of cached names is bounded; once the limit is reached
+ * arbitrary entries are evicted to make room for new names. Concurrent
+ * lookups of new names may exceed the limit by the number of threads
+ * involved until the next name is added.
+ * </p>
+ */
+public class CharsetRegistry {
+
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    /**
+     * Registry used by {@link CharsetUtil#lookup(String)}.
+     */
+    public static final CharsetRegistry DEFAULT = new CharsetRegistry(DEFAULT_MAX_ENTRIES);
+
+    private static final Object UNSUPPORTED = new Object();
+
+    private static final Map<String, String> ALIASES = new HashMap<String, String>();
+
+    static {
+        ALIASES.put("utf8", "UTF-8");
+        ALIASES.put("utf-8", "UTF-8");
+        ALIASES.put("utf16", "UTF-16");
+        ALIASES.put("ascii", "US-ASCII");
+        ALIASES.put("us-ascii", "US-ASCII");
+        ALIASES.put("latin1", "ISO-8859-1");
+        ALIASES.put("latin-1", "ISO-8859-1");
+        ALIASES.put("iso8859-1", "ISO-8859-1");
+        ALIASES.put("iso-8859-1", "ISO-8859-1");
+        ALIASES.put("iso8859-15", "ISO-8859-15");
+        ALIASES.put("latin9", "ISO-8859-15");
+        for (int i = 1250; i <= 1258; i++) {
+            ALIASES.put("cp" + i, "windows-" + i);
+            ALIASES.put("cp-" + i, "windows-" + i);
+            ALIASES.put("win" + i, "windows-" + i);
+            ALIASES.put("win-" + i, "windows-" + i);
+            ALIASES.put("windows" + i, "windows-" + i);
+        }
+        ALIASES.put("sjis", "Shift_JIS");
+        ALIASES.put("shift-jis", "Shift_JIS");
+        ALIASES.put("gb-2312", "GB2312");
+        ALIASES.put("ks-c-5601-1987", "EUC-KR");
+    }
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Object> cache;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Creates a new registry.
+     *
+     * @param maxEntries maximum number of names to cache.
+     */
+    public CharsetRegistry(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.cache = new ConcurrentHashMap<String, Object>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Returns the Java charset for the given MIME charset name, or
+     * <code>null</code> if the name is not recognized or the charset is not
+     * supported by the Java runtime.
+     */
+    public Charset lookup(final String name) {
+        if (name == null) {
+            return null;
+        }
+        Object cached = cache.get(name);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached != UNSUPPORTED ? (Charset) cached : null;
+        }
+        misses.incrementAndGet();
+        Charset charset = resolve(name);
+        Iterator<String> it = cache.keySet().iterator();
+        while (cache.size() >= maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        cache.put(name, charset != null ? charset : UNSUPPORTED);
+        return charset;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to resolve the name.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of cached names.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all cached names and resets the counters.
+     */
+    public void clear() {
+        cache.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Returns the normalized form of a charset name used to find aliases.
+     */
+    static String normalize(final String name) {
+        return name.trim().toLowerCase(Locale.US).replace('_', '-');
+    }
+
+    private static Charset resolve(final String name) {
+        Charset charset = forName(name);
+        if (charset != null) {
+            return charset;
+        }
+        String normalized = normalize(name);
+        String alias = ALIASES.get(normalized);
+        if (alias != null) {
+            return forName(alias);
+        }
+        return normalized.equals(name) ? null : forName(normalized);
+    }
+
+    private static Charset forName(final String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException ex) {
+            return null;
+        } catch (UnsupportedCharsetException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            // empty name
+            return null;
+        }
+    }
+
+}
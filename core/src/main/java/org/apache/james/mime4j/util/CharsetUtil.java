@@ -20,8 +20,6 @@
 package org.apache.james.mime4j.util;
 
 import java.nio.charset.Charset;
-import java.nio.charset.IllegalCharsetNameException;
-import java.nio.charset.UnsupportedCharsetException;
 
 /**
  * Utility class for working with character sets.
@@ -120,22 +118,13 @@ public class CharsetUtil {
      * otherwise.
      * </p>
      * <p>
-     * This method is a wrapper around {@link Charset#forName(String)} method
-     * that catches {@link IllegalCharsetNameException} and
-     *  {@link UnsupportedCharsetException} and returns <code>null</code>.
+     * Names are resolved through {@link CharsetRegistry#DEFAULT}, which
+     * caches the result of {@link Charset#forName(String)} for recognized
+     * as well as for unknown names and maps common aliases.
      * </p>
      */
     public static Charset lookup(final String name) {
-        if (name == null) {
-            return null;
-        }
-        try {
-            return Charset.forName(name);
-        } catch (IllegalCharsetNameException ex) {
-            return null;
-        } catch (UnsupportedCharsetException ex) {
-            return null;
-        }
+        return CharsetRegistry.DEFAULT.lookup(name);
     }
 
  }
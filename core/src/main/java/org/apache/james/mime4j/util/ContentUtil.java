@@ -29,6 +29,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 import org.apache.james.mime4j.Charsets;
@@ -57,6 +58,35 @@ public class ContentUtil {
         }
     }
 
+    // larger than the stream buffer as every channel write is a system call
+    static final int CHANNEL_COPY_BUFFER_SIZE = 8192;
+
+    /**
+     * Copies the contents of a stream to a channel.
+     * @param in not null
+     * @param out not null, in blocking mode
+     * @throws IOException
+     */
+    public static void copy(final InputStream in, final WritableByteChannel out) throws IOException {
+        final byte[] buffer = new byte[CHANNEL_COPY_BUFFER_SIZE];
+        int inputLength;
+        while (-1 != (inputLength = in.read(buffer))) {
+            writeFully(ByteBuffer.wrap(buffer, 0, inputLength), out);
+        }
+    }
+
+    /**
+     * Writes the remaining content of a buffer to a channel.
+     * @param src not null
+     * @param out not null, in blocking mode
+     * @throws IOException
+     */
+    public static void writeFully(final ByteBuffer src, final WritableByteChannel out) throws IOException {
+        while (src.hasRemaining()) {
+            out.write(src);
+        }
+    }
+
     /**
      * Copies the contents of one stream to the other.
      * @param in not null
@@ -176,6 +206,16 @@ public class ContentUtil {
         if (byteSequence == null) {
             return null;
         }
+        if (offset >= 0 && length >= 0 && offset + length <= byteSequence.length()) {
+            // decode array backed sequences without an intermediate copy
+            if (byteSequence instanceof ByteArraySlice) {
+                ByteArraySlice slice = (ByteArraySlice) byteSequence;
+                return new String(slice.buffer(), slice.offset() + offset, length, Charsets.ISO_8859_1);
+            } else if (byteSequence instanceof ByteArrayBuffer) {
+                return new String(((ByteArrayBuffer) byteSequence).buffer(), offset, length,
+                        Charsets.ISO_8859_1);
+            }
+        }
         StringBuilder buf = new StringBuilder(length);
         for (int i = offset; i < offset + length; i++) {
             buf.append((char) (byteSequence.byteAt(i) & 0xff));
@@ -208,6 +248,14 @@ public class ContentUtil {
         if (byteSequence instanceof ByteArrayBuffer) {
             ByteArrayBuffer bab = (ByteArrayBuffer) byteSequence;
             return decode(charset, bab.buffer(), offset, length);
+        } else if (byteSequence instanceof ByteArraySlice) {
+            ByteArraySlice slice = (ByteArraySlice) byteSequence;
+            return decode(charset, slice.buffer(), slice.offset() + offset, length);
+        } else if (byteSequence instanceof ByteBufferSlice) {
+            ByteBuffer buf = ((ByteBufferSlice) byteSequence).asByteBuffer();
+            buf.position(buf.position() + offset);
+            buf.limit(buf.position() + length);
+            return charset.decode(buf).toString();
         } else {
             byte[] bytes = byteSequence.toByteArray();
             return decode(charset, bytes, offset, length);
@@ -652,6 +652,20 @@ public class ExampleMail {
     public static final byte[] MAIL_WITH_RFC822_PART_BYTES = ascii(MAIL_WITH_RFC822_PART);
     public static final byte[] MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES = ascii(MIME_MULTIPART_EMBEDDED_MESSAGES);
 
+    /**
+     * Messages covering single part, multipart, embedded and transfer
+     * encoded structures, for tests comparing two ways of processing them.
+     */
+    public static final byte[][] STRUCTURE_SAMPLES_BYTES = new byte[][] {
+            MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+            MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ONE_PART_MIME_BASE64_LATIN1_BYTES,
+            ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES,
+            ONE_PART_MIME_8859_BYTES,
+            MAIL_WITH_RFC822_PART_BYTES,
+            RFC822_SIMPLE_BYTES };
+
     public static byte[] ascii(final String text) {
         return  ContentUtil.toAsciiByteArray(text);
     }
@@ -0,0 +1,161 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.james.mime4j.io.InputStreams;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Base64DecoderTest {
+
+    private static String decode(String s) throws IOException {
+        Base64Decoder decoder = new Base64Decoder();
+        ByteBuffer dst = ByteBuffer.allocate(s.length());
+        decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray(s)), dst);
+        decoder.finish();
+        dst.flip();
+        return ContentUtil.toAsciiString(dst.array(), 0, dst.limit());
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] b = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, b, 0, b.length);
+        return b;
+    }
+
+    @Test
+    public void testDecode() throws IOException {
+        Assert.assertEquals("This is the plain text message!",
+                decode("VGhpcyBpcyB0aGUgcGxhaW4gdGV4dCBtZXNzYWdlIQ=="));
+        Assert.assertEquals("This is a text which has to be padded once..",
+                decode("VGhpcyBpcyBhIHRleHQgd2hpY2ggaGFzIHRvIGJlIHBhZGRlZCBvbmNlLi4="));
+        Assert.assertEquals("This is a text which will not be padded",
+                decode("VGhpcyBpcyBhIHRleHQgd2hpY2ggd2lsbCBub3QgYmUgcGFkZGVk"));
+        Assert.assertEquals("This is the plain text message!",
+                decode(" &% VGhp\r\ncyBp\r\ncyB0aGUgcGxhaW4g  \tdGV4dCBtZ?!XNzY*WdlIQ=="));
+    }
+
+    @Test
+    public void testContentAfterPadIsIgnored() throws IOException {
+        Base64Decoder decoder = new Base64Decoder();
+        ByteBuffer src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray("SGk=SGk="));
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        Assert.assertTrue(decoder.decode(src, dst));
+        Assert.assertTrue(decoder.isFinished());
+        Assert.assertEquals(2, dst.position());
+        Assert.assertEquals(4, src.position());
+        Assert.assertTrue(decoder.decode(src, dst));
+        Assert.assertEquals(2, dst.position());
+    }
+
+    @Test
+    public void testNoProgressWithoutRoomForGroup() throws IOException {
+        Base64Decoder decoder = new Base64Decoder();
+        ByteBuffer src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray("VGhpcyBp"));
+        ByteBuffer dst = ByteBuffer.allocate(5);
+        Assert.assertFalse(decoder.decode(src, dst));
+        Assert.assertEquals(3, dst.position());
+        Assert.assertEquals(7, src.position());
+        dst.clear();
+        Assert.assertFalse(decoder.decode(src, dst));
+        Assert.assertEquals(3, dst.position());
+        Assert.assertFalse(src.hasRemaining());
+    }
+
+    @Test
+    public void testStrictMonitor() throws IOException {
+        Base64Decoder decoder = new Base64Decoder(DecodeMonitor.STRICT);
+        try {
+            decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("VGhp*")),
+                    ByteBuffer.allocate(8));
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+
+        decoder = new Base64Decoder(DecodeMonitor.STRICT);
+        decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("VGhpc")),
+                ByteBuffer.allocate(8));
+        try {
+            decoder.finish();
+            Assert.fail();
+        } catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage().toLowerCase().contains("end of base64"));
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        Base64Decoder decoder = new Base64Decoder();
+        ByteBuffer dst = ByteBuffer.allocate(8);
+        decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("SGk=")), dst);
+        decoder.reset();
+        Assert.assertFalse(decoder.isFinished());
+        dst.clear();
+        decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("SG8=")), dst);
+        Assert.assertEquals("Ho", ContentUtil.toAsciiString(dst.array(), 0, dst.position()));
+    }
+
+    @Test
+    public void testChunkedSameAsStream() throws IOException {
+        Random random = new Random(0);
+        for (int n = 0; n < 200; n++) {
+            byte[] data = new byte[random.nextInt(2000)];
+            random.nextBytes(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            EncoderUtil.encodeB(InputStreams.create(data), out);
+            byte[] encoded = out.toByteArray();
+            if (random.nextBoolean()) {
+                // sprinkle in characters outside of the alphabet
+                for (int i = 0; i < encoded.length; i += 1 + random.nextInt(50)) {
+                    if (encoded[i] != '=') {
+                        encoded[i] = (byte) "\t *-.:\u00e4".charAt(random.nextInt(7));
+                    }
+                }
+            }
+            byte[] expected = ContentUtil.buffer(new Base64InputStream(InputStreams.create(encoded)));
+
+            Base64Decoder decoder = new Base64Decoder();
+            ByteBuffer result = ByteBuffer.allocate(expected.length + 3);
+            int pos = 0;
+            while (pos < encoded.length && !decoder.isFinished()) {
+                int len = Math.min(encoded.length - pos, 1 + random.nextInt(100));
+                ByteBuffer src = random.nextBoolean()
+                        ? ByteBuffer.wrap(encoded, pos, len)
+                        : (ByteBuffer) ByteBuffer.allocateDirect(len).put(encoded, pos, len).flip();
+                int start = src.position();
+                ByteBuffer dst = ByteBuffer.allocate(3 + random.nextInt(60));
+                decoder.decode(src, dst);
+                dst.flip();
+                result.put(dst);
+                pos += src.position() - start;
+            }
+            decoder.finish();
+            Assert.assertArrayEquals(expected, toByteArray(result));
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Base64EncoderTest {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    @Test
+    public void testEncode() {
+        Base64Encoder encoder = new Base64Encoder(0, CRLF);
+        ByteBuffer dst = ByteBuffer.allocate(64);
+        encoder.encode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("This is the plain text message!")), dst);
+        Assert.assertTrue(encoder.finish(dst));
+        Assert.assertEquals("VGhpcyBpcyB0aGUgcGxhaW4gdGV4dCBtZXNzYWdlIQ==",
+                ContentUtil.toAsciiString(dst.array(), 0, dst.position()));
+    }
+
+    @Test
+    public void testFinishNeedsRoom() {
+        Base64Encoder encoder = new Base64Encoder(4, CRLF);
+        ByteBuffer dst = ByteBuffer.allocate(5);
+        encoder.encode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("abcd")), dst);
+        Assert.assertEquals(4, dst.position());
+        Assert.assertFalse(encoder.finish(dst));
+        Assert.assertEquals(4, dst.position());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(dst.array(), 0, dst.position());
+        while (true) {
+            dst.clear();
+            boolean complete = encoder.finish(dst);
+            out.write(dst.array(), 0, dst.position());
+            if (complete)
+                break;
+        }
+        Assert.assertEquals("YWJj\r\nZA==\r\n", ContentUtil.toAsciiString(out.toByteArray()));
+    }
+
+    @Test
+    public void testChunkedSameAsStream() throws IOException {
+        Random random = new Random(0);
+        for (int n = 0; n < 200; n++) {
+            byte[] data = new byte[random.nextInt(2000)];
+            random.nextBytes(data);
+            int lineLength = random.nextInt(3) * 38;
+            byte[] separator = random.nextBoolean() ? CRLF : new byte[] { '\n' };
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Base64OutputStream stream = new Base64OutputStream(expected, lineLength, separator);
+            for (byte b : data) {
+                stream.write(b);
+            }
+            stream.close();
+
+            Base64Encoder encoder = new Base64Encoder(lineLength, separator);
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            int pos = 0;
+            while (pos < data.length) {
+                int len = Math.min(data.length - pos, 1 + random.nextInt(100));
+                ByteBuffer src = random.nextBoolean()
+                        ? ByteBuffer.wrap(data, pos, len)
+                        : (ByteBuffer) ByteBuffer.allocateDirect(len).put(data, pos, len).flip();
+                int start = src.position();
+                ByteBuffer dst = ByteBuffer.allocate(4 + random.nextInt(60));
+                encoder.encode(src, dst);
+                actual.write(dst.array(), 0, dst.position());
+                pos += src.position() - start;
+            }
+            while (true) {
+                ByteBuffer dst = ByteBuffer.allocate(4);
+                boolean complete = encoder.finish(dst);
+                actual.write(dst.array(), 0, dst.position());
+                if (complete)
+                    break;
+            }
+            Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        }
+    }
+
+    @Test
+    public void testEncodedLength() throws IOException {
+        Random random = new Random(0);
+        int[] lineLengths = { 0, 4, 38, 76 };
+        for (int length = 0; length < 400; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            for (int lineLength : lineLengths) {
+                byte[] separator = length % 2 == 0 ? CRLF : new byte[] { '\n' };
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Base64OutputStream stream = new Base64OutputStream(out, lineLength, separator);
+                stream.write(data);
+                stream.close();
+                Assert.assertEquals(out.size(),
+                        new Base64Encoder(lineLength, separator).encodedLength(length));
+            }
+        }
+    }
+
+}
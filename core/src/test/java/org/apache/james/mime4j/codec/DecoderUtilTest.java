@@ -22,8 +22,18 @@ package org.apache.james.mime4j.codec;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.james.mime4j.io.InputStreams;
+import org.apache.james.mime4j.util.CharsetUtil;
+import org.apache.james.mime4j.util.ContentUtil;
 
 public class DecoderUtilTest {
 
@@ -40,6 +50,22 @@ public class DecoderUtilTest {
         Assert.assertEquals("\u00e1 \u00e2\t\u00e3 \u00e4 ", s);
     }
 
+    @Test
+    public void testDecodeTransferEncoding() throws IOException {
+        String[][] cases = new String[][] {
+                { "base64", "VGhpcyBpcyBh\r\nIHRlc3Q=" },
+                { "Quoted-Printable", "This is=\r\n a =74est" },
+                { "8bit", "This is a test" },
+                { null, "This is a test" } };
+        for (String[] c : cases) {
+            InputStream in = InputStreams.createAscii(c[1]);
+            Assert.assertEquals("This is a test", ContentUtil.toAsciiString(ContentUtil.buffer(
+                    DecoderUtil.decodeTransferEncoding(in, c[0], DecodeMonitor.STRICT))));
+        }
+        InputStream in = InputStreams.createAscii("abc");
+        Assert.assertSame(in, DecoderUtil.decodeTransferEncoding(in, "binary", DecodeMonitor.STRICT));
+    }
+
     @Test
     public void testNonEncodedWordsAreIgnored() {
         Assert.assertEquals("", DecoderUtil.decodeEncodedWords(""));
@@ -157,4 +183,89 @@ public class DecoderUtilTest {
         // Bug detected on June 7, 2005. Decoding the following string caused OutOfMemoryError.
         Assert.assertEquals("=3?!!\\=?\"!g6P\"!Xp:\"!", DecoderUtil.decodeEncodedWords("=3?!!\\=?\"!g6P\"!Xp:\"!"));
     }
+
+    @Test
+    public void testDecodeMalformedWords() {
+        Assert.assertEquals("a=2", DecoderUtil.decodeEncodedWords("=?ISO-8859-1?Q?a=2?="));
+        Assert.assertEquals("a b", DecoderUtil.decodeEncodedWords("=?ISO-8859-1?Q?a b?="));
+        Assert.assertEquals("this i", DecoderUtil.decodeEncodedWords("=?US-ASCII?B?dGhpcyBpcw?="));
+        Assert.assertEquals("this is", DecoderUtil.decodeEncodedWords("=?US-ASCII?B?dGhp cyBp cw==?="));
+    }
+
+    @Test
+    public void testSameResultAsRegularExpression() throws Exception {
+        String[] samples = new String[] {
+                "=?utf-8?B?w6TDtsO8?= =?utf-8?Q?=C3=A4_x?=",
+                "=?ISO-8859-1?Q?a?=\r\n =?ISO-8859-1?q?b?=",
+                "=??Q?a?=", "=?x?Q??=", "=?a?b?c?d?=", "=?utf-8?X?abc?=",
+                "=?utf-8?Q?a?=?=", "=?=?utf-8?Q?a?=", "=?utf-8?Q?a=?=", "?=?=?Q?=?=",
+                "=?unknown?B?YWJj?= x", "=?utf-8?B?YW=Jj?=", "=?utf-8?B?Y?=" };
+        for (String sample : samples) {
+            Assert.assertEquals(sample, decodeWithRegex(sample), DecoderUtil.decodeEncodedWords(sample));
+        }
+
+        String alphabet = "=?=?QqBbX_ \t\r\nAaZz09+/-~3DE4\u00e9";
+        String[] words = new String[] {
+                "=?utf-8?Q?", "=?ISO-8859-1?B?", "=?utf-8?B?w6TDtsO8?=", "?=", "=?", "=3D", "==" };
+        Random random = new Random(4711);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(40);
+            for (int i = 0; i < len; i++) {
+                if (random.nextInt(4) == 0) {
+                    sb.append(words[random.nextInt(words.length)]);
+                } else {
+                    sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+            String s = sb.toString();
+            Assert.assertEquals(s, decodeWithRegex(s), DecoderUtil.decodeEncodedWords(s));
+        }
+    }
+
+    // The regular expression based implementation the scanner replaced
+    private static String decodeWithRegex(String body) throws IOException {
+        Pattern pattern = Pattern.compile("=\\?(.+?)\\?(\\w)\\?(.*?)\\?=", Pattern.DOTALL);
+        int tailIndex = 0;
+        boolean lastMatchValid = false;
+        StringBuilder sb = new StringBuilder();
+        for (Matcher matcher = pattern.matcher(body); matcher.find();) {
+            String separator = body.substring(tailIndex, matcher.start());
+            String mimeCharset = matcher.group(1);
+            String encoding = matcher.group(2);
+            String encodedText = matcher.group(3);
+            if (encodedText.length() == 0) {
+                return "";
+            }
+            String decoded = null;
+            Charset charset = CharsetUtil.lookup(mimeCharset);
+            if (charset != null) {
+                if (encoding.equalsIgnoreCase("Q")) {
+                    decoded = ContentUtil.toString(ContentUtil.buffer(new QuotedPrintableInputStream(
+                            new ByteArrayInputStream(ContentUtil.toAsciiByteArray(
+                                    encodedText.replace("_", "=20"))), DecodeMonitor.SILENT)), charset);
+                } else if (encoding.equalsIgnoreCase("B")) {
+                    decoded = ContentUtil.toString(ContentUtil.buffer(new Base64InputStream(
+                            new ByteArrayInputStream(ContentUtil.toAsciiByteArray(encodedText)),
+                            DecodeMonitor.SILENT)), charset);
+                }
+            }
+            if (decoded == null) {
+                sb.append(separator);
+                sb.append(matcher.group(0));
+            } else {
+                if (!lastMatchValid || !CharsetUtil.isWhitespace(separator)) {
+                    sb.append(separator);
+                }
+                sb.append(decoded);
+            }
+            tailIndex = matcher.end();
+            lastMatchValid = decoded != null;
+        }
+        if (tailIndex == 0) {
+            return body;
+        }
+        sb.append(body.substring(tailIndex));
+        return sb.toString();
+    }
 }
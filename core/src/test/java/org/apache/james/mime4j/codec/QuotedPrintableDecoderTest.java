@@ -0,0 +1,133 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.james.mime4j.Charsets;
+import org.apache.james.mime4j.io.InputStreams;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QuotedPrintableDecoderTest {
+
+    private static String decode(String s) throws IOException {
+        QuotedPrintableDecoder decoder = new QuotedPrintableDecoder();
+        ByteBuffer dst = ByteBuffer.allocate(s.length() * 2);
+        Assert.assertTrue(decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray(s)), dst, true));
+        return ContentUtil.toAsciiString(dst.array(), 0, dst.position());
+    }
+
+    @Test
+    public void testDecode() throws IOException {
+        Assert.assertEquals("Hello, world!", decode("Hello, world!"));
+        Assert.assertEquals("=\r\nA", decode("=3D\r\n=41"));
+        Assert.assertEquals("soft break", decode("soft =\r\nbreak"));
+        Assert.assertEquals("trailing\r\nblanks", decode("trailing \t \r\nblanks"));
+        Assert.assertEquals("inner  blanks", decode("inner  blanks"));
+        Assert.assertEquals("=ZZ", decode("=ZZ"));
+    }
+
+    @Test
+    public void testEscapeCutOff() throws IOException {
+        QuotedPrintableDecoder decoder = new QuotedPrintableDecoder();
+        ByteBuffer src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray("abc=4"));
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        Assert.assertFalse(decoder.decode(src, dst, false));
+        Assert.assertEquals(3, dst.position());
+        Assert.assertEquals(2, src.remaining());
+
+        src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray("=41"));
+        Assert.assertTrue(decoder.decode(src, dst, true));
+        Assert.assertEquals("abcA", ContentUtil.toAsciiString(dst.array(), 0, dst.position()));
+    }
+
+    @Test
+    public void testOutputKeptUntilRoom() throws IOException {
+        QuotedPrintableDecoder decoder = new QuotedPrintableDecoder();
+        ByteBuffer src = ByteBuffer.wrap(ContentUtil.toAsciiByteArray("ab      \r\ncd"));
+        ByteBuffer dst = ByteBuffer.allocate(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            dst.clear();
+            boolean complete = decoder.decode(src, dst, true);
+            out.write(dst.array(), 0, dst.position());
+            if (complete)
+                break;
+        }
+        Assert.assertEquals("ab\r\ncd", ContentUtil.toAsciiString(out.toByteArray()));
+    }
+
+    @Test
+    public void testStrictMonitor() throws IOException {
+        QuotedPrintableDecoder decoder = new QuotedPrintableDecoder(DecodeMonitor.STRICT);
+        try {
+            decoder.decode(ByteBuffer.wrap(ContentUtil.toAsciiByteArray("a\nb")),
+                    ByteBuffer.allocate(8), true);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testChunkedSameAsStream() throws IOException {
+        String[] pieces = { "=", "\r", "\n", "\r\n", " ", "\t", "=\r\n", "= \r\n", "==",
+                "=3D", "=a", "=Z", "A", "b", "\u00e9", "Hello", "=\n" };
+        Random random = new Random(0);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            byte[] encoded = ContentUtil.toByteArray(sb.toString(), Charsets.ISO_8859_1);
+            byte[] expected = ContentUtil.buffer(
+                    new QuotedPrintableInputStream(InputStreams.create(encoded)));
+
+            QuotedPrintableDecoder decoder = new QuotedPrintableDecoder();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            ByteBuffer src = random.nextBoolean() ? ByteBuffer.allocate(16) : ByteBuffer.allocateDirect(16);
+            int pos = 0;
+            boolean complete = false;
+            while (!complete) {
+                int len = Math.min(encoded.length - pos, random.nextInt(src.remaining() + 1));
+                src.put(encoded, pos, len);
+                pos += len;
+                src.flip();
+                int capacity = 1 + random.nextInt(20);
+                ByteBuffer dst = random.nextBoolean()
+                        ? ByteBuffer.allocate(capacity) : ByteBuffer.allocateDirect(capacity);
+                complete = decoder.decode(src, dst, pos == encoded.length);
+                dst.flip();
+                byte[] chunk = new byte[dst.remaining()];
+                dst.get(chunk);
+                actual.write(chunk);
+                src.compact();
+            }
+            Assert.assertArrayEquals(expected, actual.toByteArray());
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QuotedPrintableSizeCounterTest {
+
+    private static final byte[] ALPHABET = { 'a', 'Z', '0', '=', '.', ' ', ' ', '\t', '\r', '\n',
+            '\r', '\n', 0, 0x7f, (byte) 0x80, (byte) 0xe9, (byte) 0xff };
+
+    @Test
+    public void testSameAsEncoder() throws IOException {
+        Random random = new Random(0);
+        for (int n = 0; n < 500; n++) {
+            byte[] data = new byte[random.nextInt(600)];
+            for (int i = 0; i < data.length; i++) {
+                // long literal runs as well as whitespace and line breaks
+                data[i] = random.nextInt(3) == 0
+                        ? ALPHABET[random.nextInt(ALPHABET.length)] : (byte) ('a' + random.nextInt(26));
+            }
+            boolean binary = random.nextBoolean();
+
+            QuotedPrintableSizeCounter counter = new QuotedPrintableSizeCounter(binary);
+            int pos = 0;
+            while (pos < data.length) {
+                if (random.nextInt(4) == 0) {
+                    counter.write(data[pos++]);
+                } else {
+                    int len = Math.min(data.length - pos, random.nextInt(50));
+                    counter.write(data, pos, len);
+                    pos += len;
+                }
+                Assert.assertEquals(encode(data, pos, binary).length, counter.getSize());
+            }
+            Assert.assertEquals(encode(data, data.length, binary).length, counter.getSize());
+            Assert.assertEquals(data.length, counter.getInputLength());
+        }
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        QuotedPrintableSizeCounter counter = new QuotedPrintableSizeCounter(false);
+        byte[] data = "H\u00e9llo w\u00f6rld. \r\n".getBytes("ISO-8859-1");
+        counter.write(data);
+        counter.reset();
+        Assert.assertEquals(0, counter.getSize());
+        counter.write(data);
+        Assert.assertEquals(encode(data, data.length, false).length, counter.getSize());
+    }
+
+    private static byte[] encode(byte[] data, int length, boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QuotedPrintableOutputStream encoder = new QuotedPrintableOutputStream(out, binary);
+        encoder.write(data, 0, length);
+        encoder.close();
+        return out.toByteArray();
+    }
+
+}
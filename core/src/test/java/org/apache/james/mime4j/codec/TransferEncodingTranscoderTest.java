@@ -0,0 +1,142 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.james.mime4j.Charsets;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.apache.james.mime4j.util.MimeUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransferEncodingTranscoderTest {
+
+    private static final String[] ENCODINGS = {
+            MimeUtil.ENC_8BIT, MimeUtil.ENC_BASE64, MimeUtil.ENC_QUOTED_PRINTABLE, null };
+
+    private static byte[] encode(byte[] data, String encoding, boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream encoder;
+        if (MimeUtil.isBase64Encoding(encoding)) {
+            encoder = new Base64OutputStream(out);
+        } else if (MimeUtil.isQuotedPrintableEncoded(encoding)) {
+            encoder = new QuotedPrintableOutputStream(out, binary);
+        } else {
+            return data;
+        }
+        encoder.write(data);
+        encoder.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(byte[] data, String encoding) throws IOException {
+        InputStream in = new ByteArrayInputStream(data);
+        if (MimeUtil.isBase64Encoding(encoding)) {
+            in = new Base64InputStream(in);
+        } else if (MimeUtil.isQuotedPrintableEncoded(encoding)) {
+            in = new QuotedPrintableInputStream(in);
+        }
+        return ContentUtil.buffer(in);
+    }
+
+    private static byte[] transcode(TransferEncodingTranscoder transcoder, byte[] content,
+            String source, String target, boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transcoder.transcode(new ByteArrayInputStream(content), source, out, target, binary);
+        return out.toByteArray();
+    }
+
+    private static byte[] createText(Random random, int size) {
+        String[] words = { "plain", "text", "with", "r\u00e9sum\u00e9", "=", "tab\t", ".", "\r\n" };
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        sb.append("end");
+        return ContentUtil.toByteArray(sb.toString(), Charsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testSameAsChainedStreams() throws IOException {
+        Random random = new Random(0);
+        TransferEncodingTranscoder transcoder = new TransferEncodingTranscoder();
+        TransferEncodingTranscoder small = new TransferEncodingTranscoder(16, null);
+        for (int n = 0; n < 20; n++) {
+            boolean binary = random.nextBoolean();
+            byte[] data;
+            if (binary) {
+                data = new byte[random.nextInt(10000)];
+                random.nextBytes(data);
+            } else {
+                data = createText(random, random.nextInt(10000));
+            }
+            for (String source : ENCODINGS) {
+                byte[] content = encode(data, source, binary);
+                for (String target : ENCODINGS) {
+                    boolean same = source == target || (isIdentity(source) && isIdentity(target));
+                    byte[] expected = same ? content : encode(decode(content, source), target, binary);
+                    Assert.assertArrayEquals(source + " -> " + target, expected,
+                            transcode(transcoder, content, source, target, binary));
+                    Assert.assertArrayEquals(source + " -> " + target, expected,
+                            transcode(small, content, source, target, binary));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDowngradeRoundTrip() throws IOException {
+        byte[] data = createText(new Random(1), 5000);
+        TransferEncodingTranscoder transcoder = new TransferEncodingTranscoder();
+        byte[] qp = transcode(transcoder, data, MimeUtil.ENC_8BIT,
+                MimeUtil.ENC_QUOTED_PRINTABLE, false);
+        byte[] base64 = transcode(transcoder, qp, MimeUtil.ENC_QUOTED_PRINTABLE,
+                MimeUtil.ENC_BASE64, false);
+        byte[] plain = transcode(transcoder, base64, MimeUtil.ENC_BASE64,
+                MimeUtil.ENC_8BIT, false);
+        Assert.assertArrayEquals(data, plain);
+    }
+
+    @Test
+    public void testStrictMonitor() throws IOException {
+        TransferEncodingTranscoder transcoder = new TransferEncodingTranscoder(DecodeMonitor.STRICT);
+        try {
+            transcode(transcoder, ContentUtil.toAsciiByteArray("VGhp*cyBp"),
+                    MimeUtil.ENC_BASE64, MimeUtil.ENC_8BIT, true);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        // the transcoder is usable after a failure
+        Assert.assertEquals("This", ContentUtil.toAsciiString(transcode(transcoder,
+                ContentUtil.toAsciiByteArray("VGhpcw=="), MimeUtil.ENC_BASE64, MimeUtil.ENC_8BIT, true)));
+    }
+
+    private static boolean isIdentity(String encoding) {
+        return !MimeUtil.isBase64Encoding(encoding) && !MimeUtil.isQuotedPrintableEncoded(encoding);
+    }
+
+}
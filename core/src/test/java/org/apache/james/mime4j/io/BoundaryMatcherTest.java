@@ -0,0 +1,101 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.io;
+
+import java.io.IOException;
+
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundaryMatcherTest {
+
+    private static final BoundaryMatcher MATCHER = new BoundaryMatcher("boundary");
+
+    private static int indexOf(final String s) {
+        byte[] b = ContentUtil.toAsciiByteArray(s);
+        return MATCHER.indexOf(b, 0, b.length);
+    }
+
+    @Test
+    public void testDelimiterIncludesHyphens() {
+        Assert.assertEquals(10, MATCHER.length());
+        Assert.assertEquals("--boundary", MATCHER.toString());
+    }
+
+    @Test
+    public void testIndexOf() {
+        Assert.assertEquals(0, indexOf("--boundary"));
+        Assert.assertEquals(8, indexOf("line 1\r\n--boundary\r\n"));
+        Assert.assertEquals(-1, indexOf("line 1\r\n-boundary\r\n"));
+        Assert.assertEquals(-1, indexOf("--bound"));
+        Assert.assertEquals(-1, indexOf(""));
+    }
+
+    @Test
+    public void testIndexOfRange() {
+        byte[] b = ContentUtil.toAsciiByteArray("--boundary and --boundary");
+        Assert.assertEquals(15, MATCHER.indexOf(b, 1, b.length - 1));
+        Assert.assertEquals(-1, MATCHER.indexOf(b, 1, 20));
+    }
+
+    @Test
+    public void testSameResultAsPatternSearch() throws IOException {
+        String text = "yada yada\r\n--boundar\r\n-boundary\r\n--boundary\r\nblah";
+        BufferedLineReaderInputStream instream = new BufferedLineReaderInputStream(
+                InputStreams.createAscii(text), 4096);
+        instream.fillBuffer();
+        byte[] pattern = ContentUtil.toAsciiByteArray("--boundary");
+        int expected = instream.indexOf(pattern);
+        Assert.assertEquals(33, expected);
+        Assert.assertEquals(expected, instream.indexOf(MATCHER, instream.pos(), instream.length()));
+        instream.close();
+    }
+
+    @Test
+    public void testSharedBetweenParts() throws IOException {
+        String text = "Line 1\r\n--boundary\r\nLine 2\r\n--boundary\r\nLine 3\r\n--boundary--";
+        BufferedLineReaderInputStream buffer = new BufferedLineReaderInputStream(
+                InputStreams.createAscii(text), 4096);
+
+        MimeBoundaryInputStream preamble = new MimeBoundaryInputStream(buffer, MATCHER, false);
+        Assert.assertEquals("Line 1", read(preamble));
+        Assert.assertFalse(preamble.isLastPart());
+
+        MimeBoundaryInputStream part1 = new MimeBoundaryInputStream(buffer, MATCHER, false);
+        Assert.assertEquals("Line 2", read(part1));
+        Assert.assertFalse(part1.isLastPart());
+
+        MimeBoundaryInputStream part2 = new MimeBoundaryInputStream(buffer, MATCHER, false);
+        Assert.assertEquals("Line 3", read(part2));
+        Assert.assertTrue(part2.isLastPart());
+    }
+
+    private static String read(final MimeBoundaryInputStream instream) throws IOException {
+        ByteArrayBuffer buf = new ByteArrayBuffer(64);
+        int b;
+        while ((b = instream.read()) != -1) {
+            buf.append(b);
+        }
+        return ContentUtil.toAsciiString(buf);
+    }
+
+}
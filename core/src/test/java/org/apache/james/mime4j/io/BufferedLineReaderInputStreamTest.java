@@ -19,6 +19,13 @@
 
 package org.apache.james.mime4j.io;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.apache.james.mime4j.util.ByteArrayBuffer;
 import org.apache.james.mime4j.util.ContentUtil;
 import org.junit.Assert;
@@ -181,4 +188,51 @@ public class BufferedLineReaderInputStreamTest {
         instream2.close();
     }
 
+    @Test
+    public void testSkipToEndWithoutAvailableData() throws Exception {
+        final int[] singleReads = new int[1];
+        InputStream in = new FilterInputStream(InputStreams.create(new byte[100000])) {
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public int read() throws IOException {
+                singleReads[0]++;
+                return super.read();
+            }
+        };
+        BufferedLineReaderInputStream instream = new BufferedLineReaderInputStream(in, 16);
+        Assert.assertEquals(0, instream.read());
+        instream.skipToEnd();
+        Assert.assertEquals(-1, in.read());
+        Assert.assertTrue(singleReads[0] <= 2);
+    }
+
+    @Test
+    public void testSkipToEndRepositionsFile() throws Exception {
+        File file = File.createTempFile("mime4j", ".msg");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[100000]);
+            } finally {
+                out.close();
+            }
+            FileInputStream in = new FileInputStream(file);
+            try {
+                BufferedLineReaderInputStream instream = new BufferedLineReaderInputStream(in, 16);
+                Assert.assertEquals(0, instream.read());
+                instream.skipToEnd();
+                Assert.assertEquals(file.length(), in.getChannel().position());
+                Assert.assertEquals(-1, instream.read());
+            } finally {
+                in.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
 }
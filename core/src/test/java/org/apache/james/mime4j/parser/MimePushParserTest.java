@@ -0,0 +1,153 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.stream.BodyDescriptor;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MimePushParserTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.RFC822_SIMPLE_BYTES,
+            ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES };
+
+    private static String pull(byte[] message, boolean decode) throws Exception {
+        TestHandler handler = new TestHandler();
+        MimeStreamParser parser = new MimeStreamParser();
+        parser.setContentDecoding(decode);
+        parser.setContentHandler(handler);
+        parser.parse(new ByteArrayInputStream(message));
+        return handler.sb.toString();
+    }
+
+    private static String push(byte[] message, int chunkSize, boolean direct, boolean decode) throws Exception {
+        TestHandler handler = new TestHandler();
+        MimePushParser parser = new MimePushParser();
+        parser.setContentDecoding(decode);
+        parser.setContentHandler(handler);
+        for (int off = 0; off < message.length; off += chunkSize) {
+            int len = Math.min(chunkSize, message.length - off);
+            ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+            chunk.put(message, off, len);
+            chunk.flip();
+            parser.feed(chunk);
+            Assert.assertFalse(chunk.hasRemaining());
+            Assert.assertFalse(parser.isComplete());
+        }
+        parser.endOfInput();
+        Assert.assertTrue(parser.isComplete());
+        return handler.sb.toString();
+    }
+
+    @Test
+    public void testSameEventsAsPullParser() throws Exception {
+        for (byte[] message : MESSAGES) {
+            String expected = pull(message, false);
+            Assert.assertEquals(expected, push(message, 1, false, false));
+            Assert.assertEquals(expected, push(message, 7, true, false));
+            Assert.assertEquals(expected, push(message, 512, false, false));
+            Assert.assertEquals(expected, push(message, message.length, false, false));
+        }
+    }
+
+    @Test
+    public void testSameEventsAsPullParserWithContentDecoding() throws Exception {
+        for (byte[] message : MESSAGES) {
+            Assert.assertEquals(pull(message, true), push(message, 13, false, true));
+        }
+    }
+
+    @Test
+    public void testResumesWithinEncodedEmbeddedMessage() throws Exception {
+        byte[] message = ("Content-Type: multipart/mixed; boundary=xx\r\n\r\n"
+                + "--xx\r\nContent-Type: text/plain\r\n"
+                + "Content-Transfer-Encoding: quoted-printable\r\n\r\nsoft=\r\nbreak=3D\r\n"
+                + "--xx\r\nContent-Type: message/rfc822\r\nContent-Transfer-Encoding: base64\r\n\r\n"
+                + "U3ViamVjdDogaGkNCkNvbnRlbnQtVHlwZTogbXVsdGlwYXJ0L21peGVkOyBib3VuZGFyeT15eQ0K\r\n"
+                + "DQotLXl5DQoNCmlubmVyIGJvZHkNCi0teXktLQ0K\r\n"
+                + "--xx--\r\nepilogue\r\n").getBytes("US-ASCII");
+        String expected = pull(message, true);
+        for (int chunkSize = 1; chunkSize <= 20; chunkSize++) {
+            Assert.assertEquals(expected, push(message, chunkSize, false, true));
+        }
+    }
+
+    @Test
+    public void testEventsReportedBeforeEndOfInput() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        MimePushParser parser = new MimePushParser();
+        parser.setContentHandler(new AbstractContentHandler() {
+            @Override
+            public void startHeader() {
+                sb.append("[start header]");
+            }
+            @Override
+            public void field(Field field) {
+                sb.append("[field ").append(field.getName()).append("]");
+            }
+            @Override
+            public void endHeader() {
+                sb.append("[end header]");
+            }
+            @Override
+            public void body(BodyDescriptor bd, InputStream is) throws IOException {
+                sb.append("[body ").append(new String(ContentUtil.buffer(is), "US-ASCII")).append("]");
+            }
+        });
+        parser.feed(ByteBuffer.wrap("Subject: test\r\nFrom: a@b".getBytes("US-ASCII")));
+        Assert.assertEquals("[start header]", sb.toString());
+        parser.feed(ByteBuffer.wrap("\r\n".getBytes("US-ASCII")));
+        Assert.assertEquals("[start header][field Subject]", sb.toString());
+        parser.feed(ByteBuffer.wrap("\r\n".getBytes("US-ASCII")));
+        Assert.assertEquals("[start header][field Subject][field From][end header]", sb.toString());
+        parser.feed(ByteBuffer.wrap("body".getBytes("US-ASCII")));
+        Assert.assertEquals("[start header][field Subject][field From][end header]", sb.toString());
+        Assert.assertEquals(4, parser.getBufferedLength());
+        parser.endOfInput();
+        Assert.assertEquals("[start header][field Subject][field From][end header][body body]",
+                sb.toString());
+        Assert.assertEquals(0, parser.getBufferedLength());
+    }
+
+    @Test
+    public void testFeedAfterEndOfInput() throws Exception {
+        MimePushParser parser = new MimePushParser(MimeConfig.DEFAULT);
+        parser.endOfInput();
+        try {
+            parser.feed(ByteBuffer.wrap(new byte[] { 'a' }));
+            Assert.fail("IllegalStateException should have been thrown");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.stream;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.io.MaxHeaderLengthLimitException;
+import org.apache.james.mime4j.util.ByteArraySlice;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArenaFieldBuilderTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.ONE_PART_MIME_ASCII_MIME_VERSION_SPANS_TWO_LINES_BYTES,
+            ExampleMail.RFC822_SIMPLE_BYTES };
+
+    @Test
+    public void testBasics() throws Exception {
+        ArenaFieldBuilder builder = new ArenaFieldBuilder(0);
+        builder.reset();
+        builder.append(DefaultFieldBuilderTest.line("raw:   stuff;\r\n"));
+        builder.append(DefaultFieldBuilderTest.line("   more stuff\r\n"));
+        Assert.assertEquals("raw:   stuff;\r\n   more stuff\r\n",
+                ContentUtil.decode(builder.getRaw()));
+        RawField field1 = builder.build();
+        Assert.assertEquals("raw", field1.getName());
+        Assert.assertEquals("  stuff;   more stuff", field1.getBody());
+
+        builder.reset();
+        builder.append(DefaultFieldBuilderTest.line("Subject: test\r\n"));
+        RawField field2 = builder.build();
+        Assert.assertEquals("Subject: test", ContentUtil.decode(field2.getRaw()));
+        Assert.assertEquals("raw:   stuff;\r\n   more stuff", ContentUtil.decode(field1.getRaw()));
+        Assert.assertSame(((ByteArraySlice) field1.getRaw()).buffer(),
+                ((ByteArraySlice) field2.getRaw()).buffer());
+    }
+
+    @Test
+    public void testFieldSpanningChunks() throws Exception {
+        ArenaFieldBuilder builder = new ArenaFieldBuilder(0, 16);
+        builder.reset();
+        builder.append(DefaultFieldBuilderTest.line("To: a@b\r\n"));
+        RawField field1 = builder.build();
+        builder.reset();
+        builder.append(DefaultFieldBuilderTest.line("Subject: test\r\n"));
+        builder.append(DefaultFieldBuilderTest.line(" more and more and more\r\n"));
+        RawField field2 = builder.build();
+        Assert.assertEquals("To: a@b", ContentUtil.decode(field1.getRaw()));
+        Assert.assertEquals("Subject: test\r\n more and more and more",
+                ContentUtil.decode(field2.getRaw()));
+        Assert.assertEquals("test more and more and more", field2.getBody());
+    }
+
+    @Test(expected = MaxHeaderLengthLimitException.class)
+    public void testMaxLength() throws Exception {
+        ArenaFieldBuilder builder = new ArenaFieldBuilder(20);
+        builder.reset();
+        builder.append(DefaultFieldBuilderTest.line("Subject: test\r\n"));
+        builder.append(DefaultFieldBuilderTest.line(" more stuff\r\n"));
+    }
+
+    @Test
+    public void testSameFieldsAsDefaultBuilder() throws Exception {
+        for (byte[] message : MESSAGES) {
+            for (int chunkSize : new int[] { 16, 64, ArenaFieldBuilder.DEFAULT_CHUNK_SIZE }) {
+                Assert.assertEquals(fields(message, null),
+                        fields(message, new ArenaFieldBuilder(0, chunkSize)));
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedHeaderStartsBody() throws Exception {
+        byte[] message = ContentUtil.toAsciiByteArray(
+                "Subject: test\r\nthis is not a header\r\n\r\nbody\r\n");
+        Assert.assertEquals(malformedHeaderBody(message, null),
+                malformedHeaderBody(message, new ArenaFieldBuilder(0)));
+    }
+
+    private static String malformedHeaderBody(byte[] message, FieldBuilder fieldBuilder)
+            throws Exception {
+        MimeConfig config = MimeConfig.custom().setMalformedHeaderStartsBody(true).build();
+        MimeTokenStream stream = new MimeTokenStream(config, null, fieldBuilder, null);
+        stream.parse(new ByteArrayInputStream(message));
+        Assert.assertEquals(EntityState.T_START_HEADER, stream.next());
+        Assert.assertEquals(EntityState.T_FIELD, stream.next());
+        Assert.assertEquals(EntityState.T_END_HEADER, stream.next());
+        Assert.assertEquals(EntityState.T_BODY, stream.next());
+        String body = ContentUtil.toString(ContentUtil.buffer(stream.getInputStream()), null);
+        Assert.assertTrue(body.startsWith("this is not a header\r\n"));
+        return body;
+    }
+
+    private static List<String> fields(byte[] message, FieldBuilder fieldBuilder) throws Exception {
+        MimeTokenStream stream = new MimeTokenStream(MimeConfig.DEFAULT, null, fieldBuilder, null);
+        stream.parse(new ByteArrayInputStream(message));
+        List<String> fields = new ArrayList<String>();
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                state = stream.next()) {
+            if (state == EntityState.T_FIELD) {
+                Field field = stream.getField();
+                fields.add(field.getName() + "|" + field.getBody() + "|"
+                        + ContentUtil.decode(field.getRaw()));
+            }
+        }
+        Assert.assertFalse(fields.isEmpty());
+        return fields;
+    }
+
+}
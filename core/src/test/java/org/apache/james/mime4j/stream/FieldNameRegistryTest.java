@@ -0,0 +1,70 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.stream;
+
+import java.util.Locale;
+
+import org.apache.james.mime4j.util.ByteSequence;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FieldNameRegistryTest {
+
+    @Test
+    public void testLookup() throws Exception {
+        ByteSequence buf = ContentUtil.encode("xContent-Type:");
+        Assert.assertSame("Content-Type", FieldNameRegistry.lookup(buf, 1, 13));
+        Assert.assertNull(FieldNameRegistry.lookup(ContentUtil.encode("content-TYPE"), 0, 12));
+        Assert.assertNull(FieldNameRegistry.lookup(ContentUtil.encode("X-Custom"), 0, 8));
+        Assert.assertSame("Message-Id", FieldNameRegistry.lookup(ContentUtil.encode("Message-Id"), 0, 10));
+    }
+
+    @Test
+    public void testToKey() throws Exception {
+        String key = FieldNameRegistry.toKey("Content-Type");
+        Assert.assertEquals("content-type", key);
+        Assert.assertSame(key, FieldNameRegistry.toKey("CONTENT-TYPE"));
+        Assert.assertSame(key, FieldNameRegistry.toKey(new String("content-type")));
+        Assert.assertSame(FieldNameRegistry.toKey("Message-ID"), FieldNameRegistry.toKey("Message-Id"));
+        Assert.assertEquals("x-custom", FieldNameRegistry.toKey("X-Custom"));
+        Assert.assertEquals("", FieldNameRegistry.toKey(""));
+        String unicode = "Content-\u0130D";
+        Assert.assertEquals(unicode.toLowerCase(Locale.US), FieldNameRegistry.toKey(unicode));
+    }
+
+    @Test
+    public void testParsedFieldNames() throws Exception {
+        RawField field = RawFieldParser.DEFAULT.parseField(ContentUtil.encode("Subject: stuff"));
+        Assert.assertSame("Subject", field.getName());
+        Assert.assertEquals("stuff", field.getBody());
+        Assert.assertEquals(7, field.getDelimiterIdx());
+
+        field = RawFieldParser.DEFAULT.parseField(ContentUtil.encode("SUBJECT: stuff"));
+        Assert.assertEquals("SUBJECT", field.getName());
+        Assert.assertEquals("stuff", field.getBody());
+
+        field = RawFieldParser.DEFAULT.parseField(ContentUtil.encode("Subject : stuff"));
+        Assert.assertEquals("Subject", field.getName());
+        Assert.assertEquals("stuff", field.getBody());
+    }
+
+}
@@ -25,6 +25,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.util.ByteArraySlice;
+import org.apache.james.mime4j.util.ByteBufferSlice;
+import org.apache.james.mime4j.util.ContentUtil;
 
 public class MimeTokenStreamTest {
 
@@ -78,6 +86,201 @@ public class MimeTokenStreamTest {
         checkNextIs(EntityState.T_END_OF_STREAM);
     }
 
+    @Test
+    public void testRecycleBuffersProducesSameTokens() throws Exception {
+        byte[][] messages = new byte[][] {
+                ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+                ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+                ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+                ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES };
+        MimeConfig config = MimeConfig.custom().setRecycleBuffers(true).build();
+        MimeTokenStream recycling = new MimeTokenStream(config);
+        for (int i = 0; i < 3; i++) {
+            for (byte[] message : messages) {
+                Assert.assertEquals(tokens(stream, message), tokens(recycling, message));
+            }
+        }
+    }
+
+    @Test
+    public void testParseInPlaceProducesSameTokens() throws Exception {
+        byte[][] messages = new byte[][] {
+                ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+                ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+                ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+                ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+                ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES,
+                ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES,
+                ExampleMail.RFC822_SIMPLE_BYTES };
+        for (RecursionMode mode : RecursionMode.values()) {
+            MimeTokenStream inPlace = new MimeTokenStream();
+            inPlace.setRecursionMode(mode);
+            stream.setRecursionMode(mode);
+            for (byte[] message : messages) {
+                String expected = tokens(stream, message);
+                byte[] padded = new byte[message.length + 10];
+                System.arraycopy(message, 0, padded, 5, message.length);
+                inPlace.parse(padded, 5, message.length);
+                Assert.assertEquals(expected, dump(inPlace));
+                inPlace.parse(ByteBuffer.wrap(message));
+                Assert.assertEquals(expected, dump(inPlace));
+                ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+                direct.put(message).flip();
+                inPlace.parse(direct);
+                Assert.assertEquals(expected, dump(inPlace));
+                Assert.assertEquals(0, direct.position());
+            }
+        }
+    }
+
+    @Test
+    public void testParseInPlaceDoesNotCopyFields() throws Exception {
+        stream.parse(ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES, 0,
+                ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES.length);
+        int fields = 0;
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+            if (state == EntityState.T_FIELD) {
+                Assert.assertTrue(stream.getField().getRaw() instanceof ByteArraySlice);
+                fields++;
+            }
+        }
+        Assert.assertTrue(fields > 0);
+    }
+
+    @Test
+    public void testParseDirectBufferDoesNotCopyFields() throws Exception {
+        byte[] message = ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES;
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+        direct.put(message).flip();
+        stream.parse(direct);
+        int fields = 0;
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+            if (state == EntityState.T_FIELD) {
+                Assert.assertTrue(stream.getField().getRaw() instanceof ByteBufferSlice);
+                fields++;
+            }
+        }
+        Assert.assertTrue(fields > 0);
+    }
+
+    @Test
+    public void testParseInPlaceSkippedBodies() throws Exception {
+        byte[] message = ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES;
+        MimeTokenStream inPlace = new MimeTokenStream();
+        stream.parse(new ByteArrayInputStream(message));
+        inPlace.parse(message, 0, message.length);
+        EntityState state;
+        do {
+            state = stream.next();
+            Assert.assertEquals(MimeTokenStream.stateToString(state),
+                    MimeTokenStream.stateToString(inPlace.next()));
+            if (state == EntityState.T_FIELD) {
+                Assert.assertEquals(stream.getField().toString(), inPlace.getField().toString());
+            }
+        } while (state != EntityState.T_END_OF_STREAM);
+    }
+
+    @Test
+    public void testParseHeadersDoesNotReadBody() throws Exception {
+        byte[] message = largeMessage();
+        CountingInputStream instream = new CountingInputStream(message);
+        stream.parseHeaders(instream, false);
+        checkNextIs(EntityState.T_START_HEADER);
+        checkNextIs(EntityState.T_FIELD);
+        Assert.assertEquals("Subject", stream.getField().getName());
+        checkNextIs(EntityState.T_FIELD);
+        checkNextIs(EntityState.T_END_HEADER);
+        checkNextIs(EntityState.T_END_MESSAGE);
+        checkNextIs(EntityState.T_END_OF_STREAM);
+        Assert.assertTrue(instream.read < 10 * 1024);
+        Assert.assertTrue(instream.available() > 0);
+    }
+
+    @Test
+    public void testParseHeadersSkipsBody() throws Exception {
+        byte[] message = largeMessage();
+        CountingInputStream instream = new CountingInputStream(message);
+        stream.parseHeaders(instream, true);
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+            Assert.assertFalse(state == EntityState.T_BODY || state == EntityState.T_START_MULTIPART);
+        }
+        Assert.assertTrue(instream.read < 10 * 1024);
+        Assert.assertEquals(0, instream.available());
+    }
+
+    @Test(expected = MimeException.class)
+    public void testParseHeadersHonoursHeaderLimit() throws Exception {
+        MimeTokenStream limited = new MimeTokenStream(MimeConfig.custom().setMaxHeaderCount(1).build());
+        limited.parseHeaders(new ByteArrayInputStream(largeMessage()), true);
+        while (limited.next() != EntityState.T_END_OF_STREAM) {
+        }
+    }
+
+    private static byte[] largeMessage() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Subject: large\r\n");
+        sb.append("Content-Type: multipart/mixed; boundary=xyz\r\n\r\n");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("--xyz\r\n\r\n");
+            for (int j = 0; j < 10; j++) {
+                sb.append("0123456789012345678901234567890123456789012345678901234567890123456789\r\n");
+            }
+        }
+        sb.append("--xyz--\r\n");
+        return ContentUtil.toAsciiByteArray(sb.toString());
+    }
+
+    /**
+     * Counts the bytes that are read, as opposed to skipped.
+     */
+    private static class CountingInputStream extends ByteArrayInputStream {
+
+        int read;
+
+        CountingInputStream(byte[] b) {
+            super(b);
+        }
+
+        @Override
+        public synchronized int read() {
+            int b = super.read();
+            if (b != -1) {
+                read++;
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+
+    }
+
+    private static String tokens(MimeTokenStream stream, byte[] message) throws IOException, MimeException {
+        stream.parse(new ByteArrayInputStream(message));
+        return dump(stream);
+    }
+
+    private static String dump(MimeTokenStream stream) throws IOException, MimeException {
+        StringBuilder sb = new StringBuilder();
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+            sb.append(MimeTokenStream.stateToString(state)).append('\n');
+            if (state == EntityState.T_FIELD) {
+                sb.append(stream.getField()).append('\n');
+            } else if (state == EntityState.T_BODY || state == EntityState.T_PREAMBLE
+                    || state == EntityState.T_EPILOGUE) {
+                InputStream instream = stream.getInputStream();
+                sb.append(ContentUtil.toAsciiString(ContentUtil.buffer(instream))).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
     private void checkNextIs(EntityState expected) throws Exception {
         Assert.assertEquals(MimeTokenStream.stateToString(expected), MimeTokenStream.stateToString(stream.next()));
     }
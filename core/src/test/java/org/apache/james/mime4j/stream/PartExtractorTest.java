@@ -0,0 +1,132 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartExtractorTest {
+
+    private static final byte[] MESSAGE = ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES;
+
+    private PartExtractor extractor;
+    private List<String> paths;
+    private List<byte[]> rawBodies;
+    private List<byte[]> decodedBodies;
+
+    @Before
+    public void setUp() throws Exception {
+        MimeTokenStream stream = new MimeTokenStream(
+                MimeConfig.custom().setTrackPositions(true).build());
+        paths = new ArrayList<String>();
+        rawBodies = new ArrayList<byte[]>();
+        decodedBodies = new ArrayList<byte[]>();
+        stream.parse(new ByteArrayInputStream(MESSAGE));
+        int part = 0;
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                state = stream.next()) {
+            if (state == EntityState.T_START_BODYPART) {
+                part++;
+            } else if (state == EntityState.T_BODY) {
+                paths.add(Integer.toString(part));
+                rawBodies.add(ContentUtil.buffer(stream.getInputStream()));
+            }
+        }
+        stream.parse(new ByteArrayInputStream(MESSAGE));
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                state = stream.next()) {
+            if (state == EntityState.T_BODY) {
+                decodedBodies.add(ContentUtil.buffer(stream.getDecodedInputStream()));
+            }
+        }
+        extractor = new PartExtractor(stream.getStructureIndex());
+        Assert.assertTrue(paths.size() > 1);
+    }
+
+    @Test
+    public void testByteBuffer() throws Exception {
+        byte[] padded = new byte[MESSAGE.length + 7];
+        System.arraycopy(MESSAGE, 0, padded, 7, MESSAGE.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded);
+        buffer.position(7);
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            Assert.assertArrayEquals(rawBodies.get(i),
+                    ContentUtil.buffer(extractor.getBody(buffer, paths.get(i), false)));
+            Assert.assertArrayEquals(decodedBodies.get(i),
+                    ContentUtil.buffer(extractor.getBody(buffer, paths.get(i), true)));
+        }
+        Assert.assertEquals(7, buffer.position());
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        for (int i = 0; i < paths.size(); i++) {
+            Assert.assertArrayEquals(rawBodies.get(i), ContentUtil.buffer(
+                    extractor.getBody(new ByteArrayInputStream(MESSAGE), paths.get(i), false)));
+            Assert.assertArrayEquals(decodedBodies.get(i), ContentUtil.buffer(
+                    extractor.getBody(new ByteArrayInputStream(MESSAGE), paths.get(i), true)));
+        }
+    }
+
+    @Test
+    public void testFileChannel() throws Exception {
+        File file = File.createTempFile("mime4j", ".msg");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[] { 'X', 'X', 'X' });
+            out.write(MESSAGE);
+            out.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                for (int i = paths.size() - 1; i >= 0; i--) {
+                    Assert.assertArrayEquals(rawBodies.get(i),
+                            ContentUtil.buffer(extractor.getBody(channel, 3, paths.get(i), false)));
+                    Assert.assertArrayEquals(decodedBodies.get(i),
+                            ContentUtil.buffer(extractor.getBody(channel, 3, paths.get(i), true)));
+                }
+                Assert.assertEquals(0, channel.position());
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testUnknownPart() throws Exception {
+        Assert.assertNull(extractor.getBody(ByteBuffer.wrap(MESSAGE), "42", false));
+        Assert.assertNull(extractor.getBody(new ByteArrayInputStream(MESSAGE), "1.7", true));
+    }
+
+}
@@ -20,6 +20,7 @@
 package org.apache.james.mime4j.stream;
 
 import junit.framework.Assert;
+import org.apache.james.mime4j.util.ByteCharSequence;
 import org.apache.james.mime4j.util.ByteSequence;
 import org.apache.james.mime4j.util.ContentUtil;
 import org.junit.Test;
@@ -63,4 +64,30 @@ public class RawFieldTest {
         Assert.assertEquals(s, field.toString());
     }
 
+    @Test
+    public void testBodyIsCached() throws Exception {
+        RawField field = new RawField(ContentUtil.encode("raw: stuff;\r\n more"), 3, "raw", null);
+        String body = field.getBody();
+        Assert.assertEquals("stuff; more", body);
+        Assert.assertSame(body, field.getBody());
+        Assert.assertSame(body, field.getBodyChars());
+    }
+
+    @Test
+    public void testBodyChars() throws Exception {
+        RawField field = new RawField(ContentUtil.encode("raw: caf\u00e9 stuff"), 3, "raw", null);
+        CharSequence chars = field.getBodyChars();
+        Assert.assertTrue(chars instanceof ByteCharSequence);
+        Assert.assertEquals(field.getBody(), chars.toString());
+        Assert.assertEquals(10, chars.length());
+        Assert.assertEquals('\u00e9', chars.charAt(3));
+        Assert.assertEquals("stuff", chars.subSequence(5, 10).toString());
+
+        field = new RawField(ContentUtil.encode("raw: stuff\r\n more"), 3, "raw", null);
+        Assert.assertEquals("stuff more", field.getBodyChars());
+
+        Assert.assertEquals("stuff", new RawField("raw", "stuff").getBodyChars());
+        Assert.assertNull(new RawField("raw", null).getBodyChars());
+    }
+
 }
@@ -0,0 +1,213 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StructureIndexTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ExampleMail.MIME_MULTIPART_ALTERNATIVE_BYTES,
+            ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES,
+            ExampleMail.RFC822_SIMPLE_BYTES };
+
+    private static final MimeConfig CONFIG = MimeConfig.custom().setTrackPositions(true).build();
+
+    @Test
+    public void testNoIndexByDefault() throws Exception {
+        MimeTokenStream stream = new MimeTokenStream();
+        stream.parse(new ByteArrayInputStream(ExampleMail.RFC822_SIMPLE_BYTES));
+        Assert.assertNull(stream.getStructureIndex());
+    }
+
+    @Test
+    public void testBodyRangesMatchParsedBodies() throws Exception {
+        for (byte[] message : MESSAGES) {
+            MimeTokenStream stream = new MimeTokenStream(CONFIG);
+            stream.parse(new ByteArrayInputStream(message));
+            List<String> bodies = new ArrayList<String>();
+            for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                    state = stream.next()) {
+                if (state == EntityState.T_BODY) {
+                    bodies.add(ContentUtil.toAsciiString(ContentUtil.buffer(stream.getInputStream())));
+                }
+            }
+            List<StructureIndex.Entry> leaves = new ArrayList<StructureIndex.Entry>();
+            collectLeaves(stream.getStructureIndex().getRoot(), leaves);
+            Assert.assertEquals(bodies.size(), leaves.size());
+            for (int i = 0; i < leaves.size(); i++) {
+                StructureIndex.Entry entry = leaves.get(i);
+                Assert.assertEquals(bodies.get(i), range(message, entry.getBodyStart(), entry.getBodyEnd()));
+            }
+            assertConsistent(message, stream.getStructureIndex().getRoot());
+        }
+    }
+
+    @Test
+    public void testSkippedBodiesAndInPlaceParsingGiveSameIndex() throws Exception {
+        for (byte[] message : MESSAGES) {
+            MimeTokenStream stream = new MimeTokenStream(CONFIG);
+            stream.parse(new ByteArrayInputStream(message));
+            String expected = readAll(stream);
+
+            stream.parse(new ByteArrayInputStream(message));
+            while (stream.next() != EntityState.T_END_OF_STREAM) {
+            }
+            Assert.assertEquals(expected, stream.getStructureIndex().toString());
+
+            stream.parse(message, 0, message.length);
+            Assert.assertEquals(expected, readAll(stream));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(message.length + 5);
+            direct.put(new byte[5]).put(message).flip();
+            direct.position(5);
+            stream.parse(direct);
+            Assert.assertEquals(expected, readAll(stream));
+        }
+    }
+
+    @Test
+    public void testPartPaths() throws Exception {
+        byte[] message = ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES;
+        MimeTokenStream stream = new MimeTokenStream(CONFIG);
+        stream.parse(new ByteArrayInputStream(message));
+        readAll(stream);
+        StructureIndex index = stream.getStructureIndex();
+
+        Assert.assertSame(index.getRoot(), index.getEntry(""));
+        Assert.assertEquals("multipart/mixed", index.getRoot().getMimeType());
+        StructureIndex.Entry first = index.getEntry("1");
+        Assert.assertEquals("text/plain", first.getMimeType());
+        Assert.assertSame(first, index.getEntry("1.1"));
+        Assert.assertNull(index.getEntry("1.2"));
+
+        StructureIndex.Entry rfc822 = index.getEntry("3");
+        Assert.assertEquals("message/rfc822", rfc822.getMimeType());
+        Assert.assertEquals("3", rfc822.getMessage().getPath());
+        Assert.assertEquals(rfc822.getBodyStart(), rfc822.getMessage().getHeaderStart());
+        StructureIndex.Entry nested = index.getEntry("3.2");
+        Assert.assertEquals("3.2", nested.getPath());
+        Assert.assertEquals("CUSTARDCUSTARDCUSTARD\r\n",
+                range(message, nested.getBodyStart(), nested.getBodyEnd()));
+        Assert.assertNull(index.getEntry("9"));
+    }
+
+    @Test
+    public void testHeaderOnlyParsingRecordsBodyEnd() throws Exception {
+        byte[] message = ExampleMail.RFC822_SIMPLE_BYTES;
+        MimeTokenStream stream = new MimeTokenStream(CONFIG);
+        stream.parse(new ByteArrayInputStream(message));
+        String expected = readAll(stream);
+
+        stream.parseHeaders(new ByteArrayInputStream(message), true);
+        Assert.assertEquals(expected, readAll(stream));
+        Assert.assertEquals(message.length, stream.getStructureIndex().getRoot().getBodyEnd());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testHeaderOnlyParsingWithUnreadBodyIsRejected() throws Exception {
+        MimeTokenStream stream = new MimeTokenStream(CONFIG);
+        stream.parseHeaders(new ByteArrayInputStream(ExampleMail.RFC822_SIMPLE_BYTES), false);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        MimeTokenStream stream = new MimeTokenStream(CONFIG);
+        stream.parse(new ByteArrayInputStream(ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES));
+        String expected = readAll(stream);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(out);
+        oout.writeObject(stream.getStructureIndex());
+        oout.close();
+        ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+        StructureIndex copy = (StructureIndex) oin.readObject();
+        Assert.assertEquals(expected, copy.toString());
+    }
+
+    private static String readAll(MimeTokenStream stream) throws Exception {
+        for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM;
+                state = stream.next()) {
+            if (state == EntityState.T_BODY) {
+                ContentUtil.buffer(stream.getInputStream());
+            }
+        }
+        return stream.getStructureIndex().toString();
+    }
+
+    private static void collectLeaves(StructureIndex.Entry entry, List<StructureIndex.Entry> leaves) {
+        if (entry.getMessage() != null) {
+            collectLeaves(entry.getMessage(), leaves);
+        } else if (!entry.getChildren().isEmpty()) {
+            for (StructureIndex.Entry child : entry.getChildren()) {
+                collectLeaves(child, leaves);
+            }
+        } else {
+            leaves.add(entry);
+        }
+    }
+
+    private static void assertConsistent(byte[] message, StructureIndex.Entry entry) {
+        Assert.assertTrue(entry.getHeaderStart() <= entry.getBodyStart());
+        Assert.assertTrue(entry.getBodyStart() <= entry.getBodyEnd());
+        String header = range(message, entry.getHeaderStart(), entry.getBodyStart());
+        Assert.assertTrue(header.endsWith("\n"));
+        Assert.assertEquals(count(header), entry.getHeaderLines());
+        Assert.assertEquals(count(range(message, entry.getBodyStart(), entry.getBodyEnd())),
+                entry.getBodyLines());
+        if (entry.getMessage() != null) {
+            assertConsistent(message, entry.getMessage());
+        }
+        for (StructureIndex.Entry child : entry.getChildren()) {
+            Assert.assertTrue(child.getHeaderStart() >= entry.getBodyStart());
+            Assert.assertTrue(child.getBodyEnd() <= entry.getBodyEnd());
+            assertConsistent(message, child);
+        }
+    }
+
+    private static String range(byte[] message, long start, long end) {
+        return ContentUtil.toAsciiString(message, (int) start, (int) (end - start));
+    }
+
+    private static int count(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
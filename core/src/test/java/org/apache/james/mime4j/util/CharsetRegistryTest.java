@@ -0,0 +1,121 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.james.mime4j.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CharsetRegistryTest {
+
+    @Test
+    public void testLookup() {
+        CharsetRegistry registry = new CharsetRegistry(16);
+        Assert.assertEquals(Charsets.UTF_8, registry.lookup("UTF-8"));
+        Assert.assertEquals(Charsets.ISO_8859_1, registry.lookup("iso-8859-1"));
+        Assert.assertNull(registry.lookup(null));
+        Assert.assertNull(registry.lookup(""));
+        Assert.assertNull(registry.lookup("unknown-8bit"));
+        Assert.assertNull(registry.lookup("\"utf-8\""));
+    }
+
+    @Test
+    public void testAliases() {
+        CharsetRegistry registry = new CharsetRegistry(16);
+        Assert.assertEquals(Charsets.UTF_8, registry.lookup("utf8"));
+        Assert.assertEquals(Charsets.UTF_8, registry.lookup("UTF_8"));
+        Assert.assertEquals(Charsets.UTF_8, registry.lookup(" utf-8 "));
+        Assert.assertEquals(Charset.forName("windows-1252"), registry.lookup("cp1252"));
+        Assert.assertEquals(Charset.forName("windows-1252"), registry.lookup("CP-1252"));
+        Assert.assertEquals(Charsets.ISO_8859_1, registry.lookup("latin1"));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        CharsetRegistry registry = new CharsetRegistry(16);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Charsets.UTF_8, registry.lookup("utf-8"));
+            Assert.assertNull(registry.lookup("x-user-defined-bogus"));
+        }
+        Assert.assertEquals(2, registry.getMissCount());
+        Assert.assertEquals(8, registry.getHitCount());
+        Assert.assertEquals(2, registry.size());
+
+        registry.clear();
+        Assert.assertEquals(0, registry.size());
+        Assert.assertEquals(0, registry.getMissCount());
+        Assert.assertEquals(0, registry.getHitCount());
+    }
+
+    @Test
+    public void testBounded() {
+        CharsetRegistry registry = new CharsetRegistry(4);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNull(registry.lookup("bogus-" + i));
+            Assert.assertTrue(registry.size() <= 4);
+        }
+        Assert.assertEquals(Charsets.US_ASCII, registry.lookup("US-ASCII"));
+        Assert.assertEquals(Charsets.US_ASCII, registry.lookup("US-ASCII"));
+        Assert.assertEquals(1, registry.getHitCount());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final CharsetRegistry registry = new CharsetRegistry(8);
+        final String[] names = { "utf-8", "UTF8", "cp1252", "iso-8859-1", "unknown-8bit",
+                "koi8-r", "us-ascii", "bogus", "windows-1251", "latin1", "x-bogus" };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        for (int i = 0; i < 10000; i++) {
+                            String name = names[i % names.length];
+                            Charset expected = new CharsetRegistry(1).lookup(name);
+                            Charset actual = registry.lookup(name);
+                            if (expected == null ? actual != null : !expected.equals(actual)) {
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(registry.size() <= 8 + 4);
+        Assert.assertEquals(40000, registry.getHitCount() + registry.getMissCount());
+    }
+
+}
@@ -889,6 +889,9 @@ public interface Message extends Entity, Body {
             } catch (MimeException e) {
                 throw new MimeIOException(e);
             }
+            if (rawContent) {
+                ParserStreamContentHandler.recordStoredTransferEncodings(message);
+            }
             clearFields();
             final List<Field> fields = message.getHeader().getFields();
             for (Field field: fields) {
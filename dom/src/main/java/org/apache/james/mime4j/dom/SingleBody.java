@@ -22,6 +22,10 @@ package org.apache.james.mime4j.dom;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.james.mime4j.util.ContentUtil;
 
 /**
  * Abstract implementation of a single message body; that is, a body that does
@@ -31,6 +35,7 @@ import java.io.OutputStream;
 public abstract class SingleBody implements Body {
 
     private Entity parent = null;
+    private String storedTransferEncoding = null;
 
     /**
      * Sole constructor.
@@ -52,6 +57,32 @@ public abstract class SingleBody implements Body {
         this.parent = parent;
     }
 
+    /**
+     * Returns the transfer encoding of the bytes returned by
+     * {@link #getInputStream()}. Bodies of messages parsed with content
+     * decoding disabled hold their content in the transfer encoding of
+     * their entity at parse time; a message writer converts it to the
+     * transfer encoding of the entity being written.
+     *
+     * @return the transfer encoding, or <code>null</code> (the default) if
+     *   the content is not transfer encoded.
+     */
+    public String getStoredTransferEncoding() {
+        return storedTransferEncoding;
+    }
+
+    /**
+     * Sets the transfer encoding of the bytes returned by
+     * {@link #getInputStream()}.
+     *
+     * @param storedTransferEncoding the transfer encoding, or
+     *   <code>null</code> if the content is not transfer encoded.
+     * @see #getStoredTransferEncoding()
+     */
+    public void setStoredTransferEncoding(String storedTransferEncoding) {
+        this.storedTransferEncoding = storedTransferEncoding;
+    }
+
     /**
      * Gets a <code>InputStream</code> which reads the bytes of the body.
      *
@@ -80,6 +111,52 @@ public abstract class SingleBody implements Body {
         in.close();
     }
 
+    /**
+     * Returns the content of this body as a read-only buffer if it is held in
+     * memory, so that it can be written to a channel without copying it. The
+     * buffer holds the same bytes as the stream returned by
+     * {@link #getInputStream()}.
+     * <p>
+     * This implementation returns <code>null</code>.
+     *
+     * @return the content, or <code>null</code> if it is not available as
+     *         a buffer.
+     */
+    public ByteBuffer getContentBuffer() {
+        return null;
+    }
+
+    /**
+     * Writes this single body to the given channel. The default
+     * implementation writes the buffer returned by
+     * {@link #getContentBuffer()} if there is one and copies the input
+     * stream obtained by {@link #getInputStream()} otherwise. May be
+     * overwritten by a subclass to improve performance, for instance to
+     * transfer content stored in a file with
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}.
+     *
+     * @param channel
+     *            the channel to write to, in blocking mode.
+     * @throws IOException
+     *             in case of an I/O error
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (channel == null)
+            throw new IllegalArgumentException();
+
+        ByteBuffer content = getContentBuffer();
+        if (content != null) {
+            ContentUtil.writeFully(content, channel);
+            return;
+        }
+        InputStream in = getInputStream();
+        try {
+            ContentUtil.copy(in, channel);
+        } finally {
+            in.close();
+        }
+    }
+
     /**
      * Returns a copy of this <code>SingleBody</code> (optional operation).
      * <p>
@@ -96,6 +173,9 @@ public abstract class SingleBody implements Body {
      * last copy gets disposed of (and not before that).</li>
      * </ul>
      * <p>
+     * Implementations should pass the copy through {@link #copied(SingleBody)}
+     * so that it keeps the stored transfer encoding of this body.
+     * <p>
      * This implementation always throws an
      * <code>UnsupportedOperationException</code>.
      *
@@ -108,6 +188,18 @@ public abstract class SingleBody implements Body {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Carries the attributes of this body that are not part of its content,
+     * such as the stored transfer encoding, over to a newly created copy.
+     *
+     * @param copy the copy created by {@link #copy()}.
+     * @return the given copy.
+     */
+    protected <T extends SingleBody> T copied(T copy) {
+        copy.setStoredTransferEncoding(storedTransferEncoding);
+        return copy;
+    }
+
     /**
      * Subclasses should override this method if they have allocated resources
      * that need to be freed explicitly (e.g. cannot be simply reclaimed by the
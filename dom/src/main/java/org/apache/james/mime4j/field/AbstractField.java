@@ -34,6 +34,8 @@ public abstract class AbstractField implements ParsedField {
     protected final Field rawField;
     protected final DecodeMonitor monitor;
 
+    private String body;
+
     protected AbstractField(final Field rawField, final DecodeMonitor monitor) {
         this.rawField = rawField;
         this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
@@ -56,7 +58,12 @@ public abstract class AbstractField implements ParsedField {
      * @return the unfolded unparsed field body string.
      */
     public String getBody() {
-        return rawField.getBody();
+        String s = body;
+        if (s == null) {
+            s = rawField.getBody();
+            body = s;
+        }
+        return s;
     }
 
     /**
@@ -85,7 +92,7 @@ public abstract class AbstractField implements ParsedField {
         if (rawField instanceof RawField) {
             return ((RawField) rawField);
         } else {
-            return new RawField(rawField.getName(), rawField.getBody());
+            return new RawField(rawField.getName(), getBody());
         }
     }
 
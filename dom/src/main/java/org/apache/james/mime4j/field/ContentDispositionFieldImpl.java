@@ -30,7 +30,6 @@ import java.util.Map;
 import org.apache.james.mime4j.codec.DecodeMonitor;
 import org.apache.james.mime4j.dom.FieldParser;
 import org.apache.james.mime4j.dom.field.ContentDispositionField;
-import org.apache.james.mime4j.field.contentdisposition.parser.ContentDispositionParser;
 import org.apache.james.mime4j.field.contentdisposition.parser.ParseException;
 import org.apache.james.mime4j.field.contentdisposition.parser.TokenMgrError;
 import org.apache.james.mime4j.field.datetime.parser.DateTimeParser;
@@ -215,19 +214,13 @@ public class ContentDispositionFieldImpl extends AbstractField implements Conten
     }
 
     private void parse() {
-        String body = getBody();
-
-        ContentDispositionParser parser = new ContentDispositionParser(
-                new StringReader(body));
-        try {
-            parser.parseAll();
-        } catch (ParseException e) {
-            parseException = e;
-        } catch (TokenMgrError e) {
-            parseException = new ParseException(e);
+        ContentFieldBodyParser parser = ContentFieldBodyParser.forContentDisposition(getRawField());
+        String error = parser.parse();
+        if (error != null) {
+            parseException = new ParseException(error);
         }
 
-        final String dispositionType = parser.getDispositionType();
+        final String dispositionType = parser.getType();
 
         if (dispositionType != null) {
             this.dispositionType = dispositionType.toLowerCase(Locale.US);
@@ -0,0 +1,327 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.field;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.james.mime4j.stream.ParserCursor;
+import org.apache.james.mime4j.stream.RawField;
+import org.apache.james.mime4j.stream.RawFieldParser;
+import org.apache.james.mime4j.util.ByteSequence;
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Strict parser for the bodies of <code>Content-Type</code> and
+ * <code>Content-Disposition</code> fields. It works directly on the raw bytes
+ * of a field and accepts exactly the input accepted by the JavaCC generated
+ * <code>ContentTypeParser</code> and <code>ContentDispositionParser</code>:
+ * <pre>
+ * body      := atoken [ "/" atoken ] *( ";" atoken "=" value )
+ * value     := atoken | digits | quoted-string
+ * </pre>
+ * Comments and white space between tokens are ignored, line breaks of folded
+ * fields are removed before the body is tokenized. As with the generated
+ * parsers the values recognized before a syntax error remain available.
+ * <p>
+ * Instances are not thread safe and parse a single field body.
+ * </p>
+ */
+final class ContentFieldBodyParser {
+
+    private static final int EOF = 0;
+    private static final int ATOKEN = 1;
+    private static final int DIGITS = 2;
+    private static final int QUOTEDSTRING = 3;
+    private static final int SLASH = 4;
+    private static final int SEMICOLON = 5;
+    private static final int EQUALS = 6;
+
+    private static final String[] TOKEN_IMAGES = { "<EOF>", "<ATOKEN>", "<DIGITS>",
+            "<QUOTEDSTRING>", "\"/\"", "\";\"", "\"=\"" };
+
+    private static final BitSet SPECIALS = RawFieldParser.INIT_BITSET(
+            ' ', '\t', '(', ')', '<', '>', '@', ',', ';', ':', '\\', '"', '/', '[', ']', '?', '=');
+
+    private final ByteSequence buf;
+    private final ParserCursor cursor;
+    private final boolean withSubType;
+
+    private String type;
+    private String subType;
+    private final List<String> paramNames = new ArrayList<String>();
+    private final List<String> paramValues = new ArrayList<String>();
+
+    private int kind = -1;
+    private String image;
+
+    private ContentFieldBodyParser(ByteSequence buf, int pos, boolean withSubType) {
+        this.buf = buf;
+        this.cursor = new ParserCursor(pos, buf.length());
+        this.withSubType = withSubType;
+    }
+
+    /**
+     * Creates a parser for a <code>Content-Type</code> body, which consists of
+     * a media type, a sub type and parameters.
+     */
+    static ContentFieldBodyParser forContentType(RawField field) {
+        return create(field, true);
+    }
+
+    /**
+     * Creates a parser for a <code>Content-Disposition</code> body, which
+     * consists of a disposition type and parameters.
+     */
+    static ContentFieldBodyParser forContentDisposition(RawField field) {
+        return create(field, false);
+    }
+
+    private static ContentFieldBodyParser create(RawField field, boolean withSubType) {
+        ByteSequence buf = field.getRaw();
+        int pos = field.getDelimiterIdx() + 1;
+        if (buf == null) {
+            String body = field.getBody();
+            buf = ContentUtil.encode(body != null ? body : "");
+            pos = 0;
+        }
+        return new ContentFieldBodyParser(buf, pos, withSubType);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSubType() {
+        return subType;
+    }
+
+    public List<String> getParamNames() {
+        return paramNames;
+    }
+
+    public List<String> getParamValues() {
+        return paramValues;
+    }
+
+    /**
+     * Parses the whole field body.
+     *
+     * @return <code>null</code> if the body is well formed, a description of
+     *         the first syntax error otherwise.
+     */
+    public String parse() {
+        try {
+            String t = consume(ATOKEN);
+            if (withSubType) {
+                consume(SLASH);
+                String s = consume(ATOKEN);
+                type = t;
+                subType = s;
+            } else {
+                type = t;
+            }
+            while (peek() == SEMICOLON) {
+                consume(SEMICOLON);
+                String name = consume(ATOKEN);
+                consume(EQUALS);
+                int k = peek();
+                if (k != ATOKEN && k != DIGITS && k != QUOTEDSTRING) {
+                    throw unexpected("<ATOKEN>, <DIGITS> or <QUOTEDSTRING>");
+                }
+                String value = consume(k);
+                paramNames.add(name);
+                paramValues.add(value);
+            }
+            consume(EOF);
+            return null;
+        } catch (SyntaxError ex) {
+            return ex.getMessage();
+        }
+    }
+
+    private int peek() throws SyntaxError {
+        if (kind == -1) {
+            nextToken();
+        }
+        return kind;
+    }
+
+    private String consume(int expected) throws SyntaxError {
+        if (peek() != expected) {
+            throw unexpected(TOKEN_IMAGES[expected]);
+        }
+        kind = -1;
+        return image;
+    }
+
+    private SyntaxError unexpected(String expected) {
+        String found = kind == EOF ? TOKEN_IMAGES[EOF] : "\"" + image + "\"";
+        return new SyntaxError("Encountered " + found + " at position " + cursor.getPos()
+                + ". Was expecting " + expected);
+    }
+
+    /**
+     * Returns the next byte of the unfolded body without consuming it, or
+     * <code>-1</code> at the end of the body.
+     */
+    private int current() {
+        int pos = cursor.getPos();
+        int upper = cursor.getUpperBound();
+        while (pos < upper) {
+            int b = buf.byteAt(pos) & 0xff;
+            if (b != '\r' && b != '\n') {
+                break;
+            }
+            pos++;
+        }
+        cursor.updatePos(pos);
+        return pos < upper ? buf.byteAt(pos) & 0xff : -1;
+    }
+
+    private void advance() {
+        cursor.updatePos(cursor.getPos() + 1);
+    }
+
+    private void nextToken() throws SyntaxError {
+        for (;;) {
+            int c = current();
+            if (c == ' ' || c == '\t') {
+                advance();
+            } else if (c == '(') {
+                advance();
+                skipComment();
+            } else {
+                break;
+            }
+        }
+        int c = current();
+        switch (c) {
+        case -1:
+            kind = EOF;
+            image = "";
+            return;
+        case '"':
+            advance();
+            kind = QUOTEDSTRING;
+            image = quotedString();
+            return;
+        case '/':
+            if (!withSubType) {
+                break;
+            }
+            advance();
+            kind = SLASH;
+            image = "/";
+            return;
+        case ';':
+            advance();
+            kind = SEMICOLON;
+            image = ";";
+            return;
+        case '=':
+            advance();
+            kind = EQUALS;
+            image = "=";
+            return;
+        default:
+            if (!SPECIALS.get(c)) {
+                atoken();
+                return;
+            }
+        }
+        throw new SyntaxError("Lexical error at position " + cursor.getPos()
+                + ". Encountered: \"" + (char) c + "\"");
+    }
+
+    private void atoken() {
+        StringBuilder sb = new StringBuilder();
+        boolean digits = true;
+        for (int c = current(); c != -1 && !SPECIALS.get(c); c = current()) {
+            if (c < '0' || c > '9') {
+                digits = false;
+            }
+            sb.append((char) c);
+            advance();
+        }
+        kind = digits ? DIGITS : ATOKEN;
+        image = sb.toString();
+    }
+
+    private String quotedString() throws SyntaxError {
+        StringBuilder sb = new StringBuilder();
+        for (;;) {
+            int c = current();
+            if (c == -1) {
+                throw new SyntaxError("Lexical error at position " + cursor.getPos()
+                        + ". Encountered: <EOF> in quoted string");
+            }
+            advance();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                c = current();
+                if (c == -1) {
+                    throw new SyntaxError("Lexical error at position " + cursor.getPos()
+                            + ". Encountered: <EOF> in quoted string");
+                }
+                advance();
+            }
+            sb.append((char) c);
+        }
+    }
+
+    private void skipComment() throws SyntaxError {
+        int level = 1;
+        while (level > 0) {
+            int c = current();
+            if (c == -1) {
+                throw new SyntaxError("Lexical error at position " + cursor.getPos()
+                        + ". Encountered: <EOF> in comment");
+            }
+            advance();
+            if (c == '(') {
+                level++;
+            } else if (c == ')') {
+                level--;
+            } else if (c == '\\') {
+                if (current() == -1) {
+                    throw new SyntaxError("Lexical error at position " + cursor.getPos()
+                            + ". Encountered: <EOF> in comment");
+                }
+                advance();
+            }
+        }
+    }
+
+    private static class SyntaxError extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        SyntaxError(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -19,7 +19,6 @@
 
 package org.apache.james.mime4j.field;
 
-import java.io.StringReader;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -28,9 +27,7 @@ import java.util.Map;
 import org.apache.james.mime4j.codec.DecodeMonitor;
 import org.apache.james.mime4j.dom.FieldParser;
 import org.apache.james.mime4j.dom.field.ContentTypeField;
-import org.apache.james.mime4j.field.contenttype.parser.ContentTypeParser;
 import org.apache.james.mime4j.field.contenttype.parser.ParseException;
-import org.apache.james.mime4j.field.contenttype.parser.TokenMgrError;
 import org.apache.james.mime4j.stream.Field;
 
 /**
@@ -189,15 +186,10 @@ public class ContentTypeFieldImpl extends AbstractField implements ContentTypeFi
     }
 
     private void parse() {
-        String body = getBody();
-
-        ContentTypeParser parser = new ContentTypeParser(new StringReader(body));
-        try {
-            parser.parseAll();
-        } catch (ParseException e) {
-            parseException = e;
-        } catch (TokenMgrError e) {
-            parseException = new ParseException(e);
+        ContentFieldBodyParser parser = ContentFieldBodyParser.forContentType(getRawField());
+        String error = parser.parse();
+        if (error != null) {
+            parseException = new ParseException(error);
         }
 
         mediaType = parser.getType();
@@ -19,14 +19,7 @@
 
 package org.apache.james.mime4j.field;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
 
 import org.apache.james.mime4j.codec.DecodeMonitor;
 import org.apache.james.mime4j.dom.FieldParser;
@@ -38,33 +31,11 @@ import org.apache.james.mime4j.stream.Field;
  */
 public class DateTimeFieldLenientImpl extends AbstractField implements DateTimeField {
 
-    private static final String[] DEFAULT_DATE_FORMATS = {
-        "EEE, dd MMM yy HH:mm:ss ZZZZ",
-        "dd MMM yy HH:mm:ss ZZZZ",
-        "EEE, dd MMM yy HH:mm:ss.SSS 0000",
-        "EEE, dd MMM yy HH:mm:ss 0000",
-        "EEE, dd MMM yyyy HH:mm:ss ZZZZ",
-        "dd MMM yyyy HH:mm:ss ZZZZ",
-        "EEE, dd MMM yyyy HH:mm:ss.SSS 0000",
-        "EEE, dd MMM yyyy HH:mm:ss 0000",
-        "EEE, dd MMM yy HH:mm:ss X",
-        "dd MMM yy HH:mm:ss X",
-        "EEE, dd MMM yy HH:mm:ss.SSS X",
-        "EEE, dd MMM yy HH:mm:ss X",
-        "EEE, dd MMM yyyy HH:mm:ss X",
-        "dd MMM yyyy HH:mm:ss X",
-        "EEE, dd MMM yyyy HH:mm:ss.SSS X",
-        "EEE, dd MMM yyyy HH:mm:ss X",
-    };
-
-    private final List<String> datePatterns;
-
     private boolean parsed = false;
     private Date date;
 
     private DateTimeFieldLenientImpl(Field rawField, DecodeMonitor monitor) {
         super(rawField, monitor);
-        this.datePatterns = Collections.unmodifiableList(Arrays.asList(DEFAULT_DATE_FORMATS));
     }
 
     public Date getDate() {
@@ -76,21 +47,7 @@ public class DateTimeFieldLenientImpl extends AbstractField implements DateTimeF
 
     private void parse() {
         parsed = true;
-        date = null;
-        String body = getBody();
-        if (body != null) {
-            body = body.trim();
-        }
-        for (String datePattern : datePatterns) {
-            try {
-                SimpleDateFormat parser = new SimpleDateFormat(datePattern, Locale.US);
-                parser.setTimeZone(TimeZone.getTimeZone("GMT"));
-                parser.setLenient(true);
-                date = parser.parse(body);
-                break;
-            } catch (ParseException ignore) {
-            }
-        }
+        date = LenientDateTimeParser.parse(getBody());
     }
 
     public static final FieldParser<DateTimeField> PARSER = new FieldParser<DateTimeField>() {
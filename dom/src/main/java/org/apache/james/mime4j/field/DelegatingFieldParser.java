@@ -26,6 +26,7 @@ import org.apache.james.mime4j.codec.DecodeMonitor;
 import org.apache.james.mime4j.dom.FieldParser;
 import org.apache.james.mime4j.dom.field.ParsedField;
 import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.FieldNameRegistry;
 
 public class DelegatingFieldParser implements FieldParser<ParsedField> {
 
@@ -44,11 +45,11 @@ public class DelegatingFieldParser implements FieldParser<ParsedField> {
      * @param parser the parser for fields named <code>name</code>
      */
     public void setFieldParser(final String name, final FieldParser<? extends ParsedField> parser) {
-        parsers.put(name.toLowerCase(), parser);
+        parsers.put(FieldNameRegistry.toKey(name), parser);
     }
 
     public FieldParser<? extends ParsedField> getParser(final String name) {
-        final FieldParser<? extends ParsedField> field = parsers.get(name.toLowerCase());
+        final FieldParser<? extends ParsedField> field = parsers.get(FieldNameRegistry.toKey(name));
         if (field == null) {
             return defaultParser;
         }
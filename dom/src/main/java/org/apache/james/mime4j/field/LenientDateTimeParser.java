@@ -0,0 +1,478 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.field;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Lenient parser of date-time values such as the body of a
+ * <code>Date</code> field. The value is read in a single pass without
+ * creating <code>SimpleDateFormat</code> instances. This class is
+ * thread-safe.
+ * <p>
+ * The accepted syntax is
+ * <code>[day-of-week[,]] day month year hour:minute[:second[.millis]] zone</code>
+ * where names are matched case-insensitively in their short or long
+ * English form, years of two digits are interpreted relative to the
+ * current century as <code>SimpleDateFormat</code> does and out of range
+ * values roll over to the next field. The zone may be a numeric RFC 822
+ * offset, an ISO 8601 hour offset, <code>GMT</code>,
+ * <code>GMT+h:mm</code>, <code>0000</code>, <code>Z</code> or one of the
+ * zone names of RFC 822. Text following the zone is ignored.
+ * </p>
+ * <p>
+ * The result is the same as that of the <code>SimpleDateFormat</code>
+ * patterns previously tried by {@link DateTimeFieldLenientImpl} for all
+ * values those patterns accept. In addition, values with a missing comma
+ * after the day of week, a missing space before a numeric zone, repeated
+ * whitespace or missing seconds are accepted. Values with other zone
+ * names are handed to the <code>SimpleDateFormat</code> patterns.
+ * </p>
+ */
+public final class LenientDateTimeParser {
+
+    private static final String[] LEGACY_DATE_FORMATS = {
+        "EEE, dd MMM yy HH:mm:ss ZZZZ",
+        "dd MMM yy HH:mm:ss ZZZZ",
+        "EEE, dd MMM yy HH:mm:ss.SSS 0000",
+        "EEE, dd MMM yy HH:mm:ss 0000",
+        "EEE, dd MMM yyyy HH:mm:ss ZZZZ",
+        "dd MMM yyyy HH:mm:ss ZZZZ",
+        "EEE, dd MMM yyyy HH:mm:ss.SSS 0000",
+        "EEE, dd MMM yyyy HH:mm:ss 0000",
+        "EEE, dd MMM yy HH:mm:ss X",
+        "dd MMM yy HH:mm:ss X",
+        "EEE, dd MMM yy HH:mm:ss.SSS X",
+        "EEE, dd MMM yy HH:mm:ss X",
+        "EEE, dd MMM yyyy HH:mm:ss X",
+        "dd MMM yyyy HH:mm:ss X",
+        "EEE, dd MMM yyyy HH:mm:ss.SSS X",
+        "EEE, dd MMM yyyy HH:mm:ss X",
+    };
+
+    private static final String[] DAYS = {
+        "sunday", "monday", "tuesday", "wednesday", "thursday", "friday", "saturday"
+    };
+
+    private static final String[] MONTHS = {
+        "january", "february", "march", "april", "may", "june", "july",
+        "august", "september", "october", "november", "december"
+    };
+
+    private static final String[] ZONE_NAMES = {
+        "ut", "utc", "gmt", "est", "edt", "cst", "cdt", "mst", "mdt", "pst", "pdt"
+    };
+
+    private static final int[] ZONE_OFFSETS = {
+        0, 0, 0, -5 * 60, -4 * 60, -6 * 60, -5 * 60, -7 * 60, -6 * 60, -8 * 60, -7 * 60
+    };
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+    private static final int ERROR = -1;
+    private static final int UNSUPPORTED = -2;
+
+    private final CharSequence text;
+    private final int end;
+    private int pos;
+    private int digits;
+
+    private LenientDateTimeParser(final CharSequence text, int start, int end) {
+        this.text = text;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * Parses a date-time value. Leading and trailing whitespace is ignored.
+     *
+     * @param text value to parse.
+     * @return the date, or <code>null</code> if the value is not a
+     *   recognized date-time.
+     */
+    public static Date parse(final CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        LenientDateTimeParser parser = new LenientDateTimeParser(text, start, end);
+        long time = parser.parseTime();
+        if (time == Long.MIN_VALUE) {
+            return null;
+        } else if (time == Long.MAX_VALUE) {
+            return parseWithFormats(text.subSequence(start, end).toString());
+        }
+        return new Date(time);
+    }
+
+    /**
+     * Returns the time in milliseconds, <code>Long.MIN_VALUE</code> if the
+     * value is not a date-time or <code>Long.MAX_VALUE</code> if it has to
+     * be parsed using <code>SimpleDateFormat</code>.
+     */
+    private long parseTime() {
+        if (pos < end && isLetter(text.charAt(pos))) {
+            if (matchName(DAYS) == ERROR) {
+                return Long.MIN_VALUE;
+            }
+            if (pos < end && text.charAt(pos) == ',') {
+                pos++;
+            }
+        }
+        int day = parseNumber();
+        if (day < 0) {
+            return day == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        if (!skipWhitespace()) {
+            return Long.MIN_VALUE;
+        }
+        int month = matchName(MONTHS);
+        if (month == ERROR || !skipWhitespace()) {
+            return Long.MIN_VALUE;
+        }
+        int year = parseNumber();
+        boolean twoDigitYear = digits == 2;
+        if (year < 0 || !skipWhitespace()) {
+            return year == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        int hour = parseNumber();
+        if (hour < 0 || !expect(':')) {
+            return hour == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        int minute = parseNumber();
+        if (minute < 0) {
+            return minute == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        int second = 0;
+        boolean fraction = false;
+        if (expect(':')) {
+            second = parseNumber();
+            if (second < 0) {
+                return second == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+            fraction = expect('.');
+        }
+        int millis = 0;
+        if (fraction) {
+            millis = parseNumber();
+            if (millis < 0) {
+                return millis == UNSUPPORTED ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+        }
+
+        int zoneStart = pos;
+        skipWhitespace();
+        int offset = fraction ? parseHourZone() : parseZone(pos - zoneStart > 1);
+        if (offset == Integer.MIN_VALUE) {
+            return Long.MIN_VALUE;
+        } else if (offset == Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        long fields = ((hour * 60L + minute - offset) * 60 + second) * 1000 + millis;
+        if (!twoDigitYear) {
+            return toMillis(year, month, day, fields);
+        }
+        // two digit years are placed in the 100 years starting 80 years
+        // ago, as SimpleDateFormat does
+        long now = System.currentTimeMillis();
+        long today = floorDiv(now, MILLIS_PER_DAY);
+        int[] civil = fromEpochDay(today);
+        int startYear = civil[0] - 80;
+        int startDay = civil[1] == 1 && civil[2] == 29 && !isLeapYear(startYear) ? 28 : civil[2];
+        long centuryStart = epochDay(startYear, civil[1], startDay) * MILLIS_PER_DAY
+            + (now - today * MILLIS_PER_DAY);
+        int ambiguous = startYear % 100;
+        int fullYear = year + (startYear / 100) * 100 + (year < ambiguous ? 100 : 0);
+        long time = toMillis(fullYear, month, day, fields);
+        if (year == ambiguous && time < centuryStart) {
+            time = toMillis(fullYear + 100, month, day, fields);
+        }
+        return time;
+    }
+
+    /**
+     * Parses a zone following the seconds and whitespace, which is padded
+     * if it is longer than one character. Returns the offset in minutes,
+     * <code>Integer.MIN_VALUE</code> if the zone is invalid or
+     * <code>Integer.MAX_VALUE</code> for an unknown zone name.
+     */
+    private int parseZone(boolean padded) {
+        if (pos >= end) {
+            return Integer.MIN_VALUE;
+        }
+        char c = text.charAt(pos);
+        if (c == '+' || c == '-') {
+            int sign = c == '+' ? 1 : -1;
+            int hours = digitPair(pos + 1);
+            if (hours < 0 || hours > 23) {
+                return Integer.MIN_VALUE;
+            }
+            int minutes = digitPair(pos + 3);
+            if (minutes < 0 || minutes > 59) {
+                // ISO 8601 hour offset
+                return sign * hours * 60;
+            }
+            return sign * (hours * 60 + minutes);
+        } else if (c == '0') {
+            return regionMatches(pos, "0000") ? 0 : Integer.MIN_VALUE;
+        } else if (isLetter(c)) {
+            int nameEnd = pos;
+            while (nameEnd < end && isLetter(text.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd - pos == 3 && regionMatches(pos, "gmt")) {
+                // like SimpleDateFormat, an offset is only read if GMT
+                // follows a single space; otherwise it is a zone name
+                if (!padded && nameEnd < end
+                        && (text.charAt(nameEnd) == '+' || text.charAt(nameEnd) == '-')) {
+                    return parseGmtOffset(nameEnd);
+                }
+                return 0;
+            }
+            if (nameEnd - pos == 1 && c == 'Z') {
+                return 0;
+            }
+            for (int i = 0; i < ZONE_NAMES.length; i++) {
+                if (ZONE_NAMES[i].length() == nameEnd - pos && regionMatches(pos, ZONE_NAMES[i])) {
+                    return ZONE_OFFSETS[i];
+                }
+            }
+            if (regionMatches(pos, "gmt")) {
+                // GMT followed by letters
+                return 0;
+            }
+            return Integer.MAX_VALUE;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private int parseGmtOffset(int index) {
+        int sign = text.charAt(index) == '+' ? 1 : -1;
+        index++;
+        if (index >= end || !isDigit(text.charAt(index))) {
+            return Integer.MIN_VALUE;
+        }
+        int hours = text.charAt(index++) - '0';
+        if (index < end && isDigit(text.charAt(index))) {
+            hours = hours * 10 + text.charAt(index++) - '0';
+        }
+        if (hours > 23 || index >= end || text.charAt(index) != ':') {
+            return Integer.MIN_VALUE;
+        }
+        int minutes = digitPair(index + 1);
+        if (minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        return sign * (hours * 60 + minutes);
+    }
+
+    /**
+     * Parses a zone following fractional seconds, which is read as an
+     * ISO 8601 hour offset.
+     */
+    private int parseHourZone() {
+        if (pos >= end) {
+            return Integer.MIN_VALUE;
+        }
+        char c = text.charAt(pos);
+        if (c == '+' || c == '-') {
+            int hours = digitPair(pos + 1);
+            if (hours < 0 || hours > 23) {
+                return Integer.MIN_VALUE;
+            }
+            return (c == '+' ? 1 : -1) * hours * 60;
+        } else if (c == 'Z' || regionMatches(pos, "0000")) {
+            return 0;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private int digitPair(int index) {
+        if (index + 1 >= end) {
+            return -1;
+        }
+        char c1 = text.charAt(index);
+        char c2 = text.charAt(index + 1);
+        if (!isDigit(c1) || !isDigit(c2)) {
+            return -1;
+        }
+        return (c1 - '0') * 10 + (c2 - '0');
+    }
+
+    /**
+     * Parses an unsigned number after optional whitespace. Returns
+     * {@link #ERROR} if there are no digits and {@link #UNSUPPORTED} for
+     * signed or very large numbers.
+     */
+    private int parseNumber() {
+        skipWhitespace();
+        int value = 0;
+        digits = 0;
+        while (pos < end && isDigit(text.charAt(pos))) {
+            if (++digits > 9) {
+                return UNSUPPORTED;
+            }
+            value = value * 10 + text.charAt(pos++) - '0';
+        }
+        if (digits == 0) {
+            return pos < end && text.charAt(pos) == '-' ? UNSUPPORTED : ERROR;
+        }
+        return value;
+    }
+
+    private int matchName(String[] names) {
+        int best = ERROR;
+        int bestLength = 0;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() > bestLength && regionMatches(pos, name, name.length())) {
+                best = i;
+                bestLength = name.length();
+            } else if (bestLength < 3 && regionMatches(pos, name, 3)) {
+                best = i;
+                bestLength = 3;
+            }
+        }
+        pos += bestLength;
+        return best;
+    }
+
+    private boolean regionMatches(int index, String lowerCase) {
+        return regionMatches(index, lowerCase, lowerCase.length());
+    }
+
+    private boolean regionMatches(int index, String lowerCase, int len) {
+        if (index + len > end) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (Character.toLowerCase(text.charAt(index + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean expect(char c) {
+        if (pos < end && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skipWhitespace() {
+        int start = pos;
+        while (pos < end && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static long toMillis(int year, int month, int day, long fields) {
+        if (year < 1583) {
+            // Julian calendar before the Gregorian cutover
+            GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"), Locale.US);
+            calendar.clear();
+            calendar.set(year, month, day);
+            return calendar.getTimeInMillis() + fields;
+        }
+        return (epochDay(year, month, 1) + day - 1) * MILLIS_PER_DAY + fields;
+    }
+
+    /**
+     * Days since 1970-01-01 of a date of the proleptic Gregorian calendar,
+     * with a zero based month.
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month < 2 ? year - 1 : year;
+        int m = month < 2 ? month + 10 : month - 2;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * m + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Year, zero based month and day of a number of days since 1970-01-01.
+     */
+    private static int[] fromEpochDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 2 : mp - 10);
+        int year = (int) (yearOfEra + era * 400 + (month < 2 ? 1 : 0));
+        return new int[] { year, month, day };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * Parses a value with the <code>SimpleDateFormat</code> patterns
+     * formerly used by {@link DateTimeFieldLenientImpl}.
+     */
+    static Date parseWithFormats(String text) {
+        for (String datePattern : LEGACY_DATE_FORMATS) {
+            try {
+                SimpleDateFormat parser = new SimpleDateFormat(datePattern, Locale.US);
+                parser.setTimeZone(TimeZone.getTimeZone("GMT"));
+                parser.setLenient(true);
+                return parser.parse(text);
+            } catch (ParseException ignore) {
+            }
+        }
+        return null;
+    }
+
+}
@@ -19,16 +19,18 @@
 
 package org.apache.james.mime4j.field.address;
 
-import org.apache.james.mime4j.Charsets;
 import org.apache.james.mime4j.codec.DecodeMonitor;
 import org.apache.james.mime4j.dom.address.Address;
 import org.apache.james.mime4j.dom.address.AddressList;
 import org.apache.james.mime4j.dom.address.Group;
 import org.apache.james.mime4j.dom.address.Mailbox;
-import org.apache.james.mime4j.io.InputStreams;
 
 /**
  * Default (strict) builder for {@link Address} and its subclasses.
+ * <p>
+ * Addresses are parsed in a single pass by a hand written parser
+ * implementing the grammar of <code>AddressListParser.jjt</code>.
+ * </p>
  */
 public class DefaultAddressParser implements AddressParser {
 
@@ -48,8 +50,7 @@ public class DefaultAddressParser implements AddressParser {
      * @throws ParseException if the raw string does not represent a single address.
      */
     public Address parseAddress(CharSequence text, DecodeMonitor monitor) throws ParseException {
-        AddressListParser parser = new AddressListParser(InputStreams.create(text, Charsets.UTF_8));
-        return Builder.getInstance().buildAddress(parser.parseAddress(), monitor);
+        return new StrictAddressParser(text, monitor).parseAddress();
     }
 
     public Address parseAddress(CharSequence text) throws ParseException {
@@ -65,8 +66,7 @@ public class DefaultAddressParser implements AddressParser {
      */
     public AddressList parseAddressList(CharSequence text, DecodeMonitor monitor)
             throws ParseException {
-        AddressListParser parser = new AddressListParser(InputStreams.create(text, Charsets.UTF_8));
-        return Builder.getInstance().buildAddressList(parser.parseAddressList(), monitor);
+        return new StrictAddressParser(text, monitor).parseAddressList();
     }
 
     public AddressList parseAddressList(CharSequence text) throws ParseException {
@@ -85,8 +85,7 @@ public class DefaultAddressParser implements AddressParser {
      *             address.
      */
     public Mailbox parseMailbox(CharSequence text, DecodeMonitor monitor) throws ParseException {
-        AddressListParser parser = new AddressListParser(InputStreams.create(text, Charsets.UTF_8));
-        return Builder.getInstance().buildMailbox(parser.parseMailbox(), monitor);
+        return new StrictAddressParser(text, monitor).parseMailbox();
     }
 
     public Mailbox parseMailbox(CharSequence text) throws ParseException {
@@ -56,6 +56,20 @@ public class LenientAddressParser implements AddressParser {
     private static final BitSet COLON_ONLY             = RawFieldParser.INIT_BITSET(COLON);
     private static final BitSet SEMICOLON_ONLY         = RawFieldParser.INIT_BITSET(SEMICOLON);
 
+    // delimiters of the nested elements, combined with those passed by the
+    // enclosing elements of an address list
+    private static final BitSet COMMA_AND_COLON        = RawFieldParser.INIT_BITSET(COMMA, COLON);
+    private static final BitSet COMMA_COLON_AND_CLOSING_BRACKET =
+            RawFieldParser.INIT_BITSET(COMMA, COLON, CLOSING_BRACKET);
+    private static final BitSet AT_AND_OPENING_BRACKET = RawFieldParser.INIT_BITSET(AT, OPENING_BRACKET);
+    private static final BitSet AT_OPENING_BRACKET_COMMA_AND_SEMICOLON =
+            RawFieldParser.INIT_BITSET(AT, OPENING_BRACKET, COMMA, SEMICOLON);
+    private static final BitSet COMMA_AND_SEMICOLON    = RawFieldParser.INIT_BITSET(COMMA, SEMICOLON);
+    private static final BitSet COLON_AT_AND_OPENING_BRACKET =
+            RawFieldParser.INIT_BITSET(COLON, AT, OPENING_BRACKET);
+    private static final BitSet COLON_AT_OPENING_BRACKET_AND_COMMA =
+            RawFieldParser.INIT_BITSET(COLON, AT, OPENING_BRACKET, COMMA);
+
     public static final LenientAddressParser DEFAULT = new LenientAddressParser(DecodeMonitor.SILENT);
 
     private final DecodeMonitor monitor;
@@ -67,8 +81,30 @@ public class LenientAddressParser implements AddressParser {
         this.parser = new RawFieldParser();
     }
 
+    /**
+     * Returns <code>base</code> combined with <code>delimiters</code>, using
+     * the precomputed <code>union</code> for the delimiters passed by this
+     * parser itself.
+     */
+    private static BitSet union(final BitSet base, final BitSet delimiters,
+            final BitSet known, final BitSet union) {
+        if (delimiters == null) {
+            return base;
+        } else if (delimiters == known) {
+            return union;
+        }
+        BitSet bitset = (BitSet) base.clone();
+        bitset.or(delimiters);
+        return bitset;
+    }
+
     String parseDomain(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        StringBuilder dst = new StringBuilder();
+        return parseDomain(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    private String parseDomain(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters,
+            final StringBuilder dst) {
+        dst.setLength(0);
         while (!cursor.atEnd()) {
             char current = (char) (buf.byteAt(cursor.getPos()) & 0xff);
             if (delimiters != null && delimiters.get(current)) {
@@ -85,10 +121,13 @@ public class LenientAddressParser implements AddressParser {
     }
 
     DomainList parseRoute(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        BitSet bitset = RawFieldParser.INIT_BITSET(COMMA, COLON);
-        if (delimiters != null) {
-            bitset.or(delimiters);
-        }
+        return parseRoute(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    private DomainList parseRoute(final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters,
+            final StringBuilder dst) {
+        BitSet bitset = union(COMMA_AND_COLON, delimiters,
+                CLOSING_BRACKET_ONLY, COMMA_COLON_AND_CLOSING_BRACKET);
         List<String> domains = null;
         for (;;) {
             this.parser.skipAllWhiteSpace(buf, cursor);
@@ -102,7 +141,7 @@ public class LenientAddressParser implements AddressParser {
             } else {
                 break;
             }
-            String s = parseDomain(buf, cursor, bitset);
+            String s = parseDomain(buf, cursor, bitset, dst);
             if (s != null && s.length() > 0) {
                 if (domains == null) {
                     domains = new ArrayList<String>();
@@ -135,6 +174,11 @@ public class LenientAddressParser implements AddressParser {
     
     Mailbox parseMailboxAddress(
             final String openingText, final ByteSequence buf, final ParserCursor cursor) {
+        return parseMailboxAddress(openingText, buf, cursor, new StringBuilder());
+    }
+
+    private Mailbox parseMailboxAddress(final String openingText, final ByteSequence buf,
+            final ParserCursor cursor, final StringBuilder dst) {
         if (cursor.atEnd()) {
             return createMailbox(null, null, openingText, null);
         }
@@ -145,8 +189,8 @@ public class LenientAddressParser implements AddressParser {
         } else {
             return createMailbox(null, null, openingText, null);
         }
-        DomainList domainList = parseRoute(buf, cursor, CLOSING_BRACKET_ONLY);
-        String localPart = this.parser.parseValue(buf, cursor, AT_AND_CLOSING_BRACKET);
+        DomainList domainList = parseRoute(buf, cursor, CLOSING_BRACKET_ONLY, dst);
+        String localPart = this.parser.parseValue(buf, cursor, AT_AND_CLOSING_BRACKET, dst);
         if (cursor.atEnd()) {
             return createMailbox(openingText, domainList, localPart, null);
         }
@@ -157,7 +201,7 @@ public class LenientAddressParser implements AddressParser {
         } else {
             return createMailbox(openingText, domainList, localPart, null);
         }
-        String domain = parseDomain(buf, cursor, CLOSING_BRACKET_ONLY);
+        String domain = parseDomain(buf, cursor, CLOSING_BRACKET_ONLY, dst);
         if (cursor.atEnd()) {
             return createMailbox(openingText, domainList, localPart, domain);
         }
@@ -192,11 +236,14 @@ public class LenientAddressParser implements AddressParser {
 
     public Mailbox parseMailbox(
             final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        BitSet bitset = RawFieldParser.INIT_BITSET(AT, OPENING_BRACKET);
-        if (delimiters != null) {
-            bitset.or(delimiters);
-        }
-        String openingText = this.parser.parseValue(buf, cursor, bitset);
+        return parseMailbox(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    private Mailbox parseMailbox(final ByteSequence buf, final ParserCursor cursor,
+            final BitSet delimiters, final StringBuilder dst) {
+        BitSet bitset = union(AT_AND_OPENING_BRACKET, delimiters,
+                COMMA_AND_SEMICOLON, AT_OPENING_BRACKET_COMMA_AND_SEMICOLON);
+        String openingText = this.parser.parseValue(buf, cursor, bitset, dst);
         if (cursor.atEnd()) {
             return createMailbox(openingText);
         }
@@ -204,11 +251,11 @@ public class LenientAddressParser implements AddressParser {
         char current = (char) (buf.byteAt(pos) & 0xff);
         if (current == OPENING_BRACKET) {
             // name <localPart @ domain> form
-            return parseMailboxAddress(openingText, buf, cursor);
+            return parseMailboxAddress(openingText, buf, cursor, dst);
         } else if (current == AT) {
             // localPart @ domain form
             cursor.updatePos(pos + 1);
-            String domain = parseDomain(buf, cursor, delimiters);
+            String domain = parseDomain(buf, cursor, delimiters, dst);
             return new Mailbox(null, null, openingText, domain);
         } else {
             return createMailbox(openingText);
@@ -223,10 +270,12 @@ public class LenientAddressParser implements AddressParser {
 
     List<Mailbox> parseMailboxes(
             final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        BitSet bitset = RawFieldParser.INIT_BITSET(COMMA);
-        if (delimiters != null) {
-            bitset.or(delimiters);
-        }
+        return parseMailboxes(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    private List<Mailbox> parseMailboxes(final ByteSequence buf, final ParserCursor cursor,
+            final BitSet delimiters, final StringBuilder dst) {
+        BitSet bitset = union(COMMA_ONLY, delimiters, SEMICOLON_ONLY, COMMA_AND_SEMICOLON);
         List<Mailbox> mboxes = new ArrayList<Mailbox>();
         while (!cursor.atEnd()) {
             int pos = cursor.getPos();
@@ -236,7 +285,7 @@ public class LenientAddressParser implements AddressParser {
             } else if (current == COMMA) {
                 cursor.updatePos(pos + 1);
             } else {
-                Mailbox mbox = parseMailbox(buf, cursor, bitset);
+                Mailbox mbox = parseMailbox(buf, cursor, bitset, dst);
                 if (mbox != null) {
                     mboxes.add(mbox);
                 }
@@ -246,7 +295,8 @@ public class LenientAddressParser implements AddressParser {
     }
 
     public Group parseGroup(final ByteSequence buf, final ParserCursor cursor) {
-        String name = this.parser.parseToken(buf, cursor, COLON_ONLY);
+        StringBuilder dst = new StringBuilder(64);
+        String name = this.parser.parseToken(buf, cursor, COLON_ONLY, dst);
         if (cursor.atEnd()) {
             return new Group(name, Collections.<Mailbox>emptyList());
         }
@@ -255,7 +305,7 @@ public class LenientAddressParser implements AddressParser {
         if (current == COLON) {
             cursor.updatePos(pos + 1);
         }
-        List<Mailbox> mboxes = parseMailboxes(buf, cursor, SEMICOLON_ONLY);
+        List<Mailbox> mboxes = parseMailboxes(buf, cursor, SEMICOLON_ONLY, dst);
         return new Group(name, mboxes);
     }
 
@@ -267,11 +317,14 @@ public class LenientAddressParser implements AddressParser {
 
     public Address parseAddress(
             final ByteSequence buf, final ParserCursor cursor, final BitSet delimiters) {
-        BitSet bitset = RawFieldParser.INIT_BITSET(COLON, AT, OPENING_BRACKET);
-        if (delimiters != null) {
-            bitset.or(delimiters);
-        }
-        String openingText = this.parser.parseValue(buf, cursor, bitset);
+        return parseAddress(buf, cursor, delimiters, new StringBuilder());
+    }
+
+    private Address parseAddress(final ByteSequence buf, final ParserCursor cursor,
+            final BitSet delimiters, final StringBuilder dst) {
+        BitSet bitset = union(COLON_AT_AND_OPENING_BRACKET, delimiters,
+                COMMA_ONLY, COLON_AT_OPENING_BRACKET_AND_COMMA);
+        String openingText = this.parser.parseValue(buf, cursor, bitset, dst);
         if (cursor.atEnd()) {
             return createMailbox(openingText);
         }
@@ -279,16 +332,16 @@ public class LenientAddressParser implements AddressParser {
         char current = (char) (buf.byteAt(pos) & 0xff);
         if (current == OPENING_BRACKET) {
             // name <localPart @ domain> form
-            return parseMailboxAddress(openingText, buf, cursor);
+            return parseMailboxAddress(openingText, buf, cursor, dst);
         } else if (current == AT) {
             // localPart @ domain form
             cursor.updatePos(pos + 1);
-            String domain = parseDomain(buf, cursor, delimiters);
+            String domain = parseDomain(buf, cursor, delimiters, dst);
             return new Mailbox(null, null, openingText, domain);
         } else if (current == COLON) {
             // group-name: localPart @ domain, name <localPart @ domain>; form
             cursor.updatePos(pos + 1);
-            List<Mailbox> mboxes = parseMailboxes(buf, cursor, SEMICOLON_ONLY);
+            List<Mailbox> mboxes = parseMailboxes(buf, cursor, SEMICOLON_ONLY, dst);
             if (!cursor.atEnd()) {
                 pos = cursor.getPos();
                 current = (char) (buf.byteAt(pos) & 0xff);
@@ -309,6 +362,7 @@ public class LenientAddressParser implements AddressParser {
     }
 
     public AddressList parseAddressList(final ByteSequence buf, final ParserCursor cursor) {
+        StringBuilder dst = new StringBuilder(64);
         List<Address> addresses = new ArrayList<Address>();
         while (!cursor.atEnd()) {
             int pos = cursor.getPos();
@@ -316,7 +370,7 @@ public class LenientAddressParser implements AddressParser {
             if (current == COMMA) {
                 cursor.updatePos(pos + 1);
             } else {
-                Address address = parseAddress(buf, cursor, COMMA_ONLY);
+                Address address = parseAddress(buf, cursor, COMMA_ONLY, dst);
                 if (address != null) {
                     addresses.add(address);
                 }
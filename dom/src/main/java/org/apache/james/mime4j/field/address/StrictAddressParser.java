@@ -0,0 +1,458 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.field.address;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.codec.DecoderUtil;
+import org.apache.james.mime4j.dom.address.Address;
+import org.apache.james.mime4j.dom.address.AddressList;
+import org.apache.james.mime4j.dom.address.DomainList;
+import org.apache.james.mime4j.dom.address.Group;
+import org.apache.james.mime4j.dom.address.Mailbox;
+import org.apache.james.mime4j.dom.address.MailboxList;
+
+/**
+ * Hand written parser for the strict address grammar of
+ * <code>AddressListParser.jjt</code>. It reads the text in a single pass and
+ * builds {@link Mailbox} and {@link Group} objects directly, without an
+ * intermediate syntax tree.
+ * <p>
+ * The parser accepts exactly the input accepted by the JJTree parser and
+ * produces the same addresses as {@link Builder}: white space is limited
+ * to SP and HT, comments are dropped, the white space around them is kept
+ * in phrases, and words of local parts and domains have to be separated by
+ * dots. Names of mailboxes are decoded, group names are not.
+ * </p>
+ * <p>
+ * Instances are not thread safe and parse a single string.
+ * </p>
+ */
+final class StrictAddressParser {
+
+    private static final int EOF = -1;
+    private static final int ATOM = -2;
+    private static final int QUOTED_STRING = -3;
+    private static final int DOMAIN_LITERAL = -4;
+
+    private static final boolean[] ATEXT = new boolean[128];
+
+    static {
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            ATEXT[ch] = true;
+        }
+        for (char ch = 'A'; ch <= 'Z'; ch++) {
+            ATEXT[ch] = true;
+        }
+        for (char ch = '0'; ch <= '9'; ch++) {
+            ATEXT[ch] = true;
+        }
+        String specials = "!#$%&'*+-/=?^_`{|}~";
+        for (int i = 0; i < specials.length(); i++) {
+            ATEXT[specials.charAt(i)] = true;
+        }
+    }
+
+    private final CharSequence text;
+    private final int len;
+    private final DecodeMonitor monitor;
+
+    // the current token: kind, [start, end) and the start of the white space
+    // and comments preceding it
+    private int kind;
+    private int start;
+    private int end;
+    private int gap;
+    private int pos;
+
+    StrictAddressParser(final CharSequence text, final DecodeMonitor monitor) {
+        this.text = text;
+        this.len = text.length();
+        this.monitor = monitor;
+    }
+
+    /**
+     * Parses an <code>address-list</code> that extends to the end of the text.
+     */
+    AddressList parseAddressList() throws ParseException {
+        next();
+        List<Address> addresses = new ArrayList<Address>();
+        if (startsAddress()) {
+            addresses.add(address(true));
+        }
+        while (kind == ',') {
+            next();
+            if (startsAddress()) {
+                addresses.add(address(true));
+            }
+        }
+        expectEnd();
+        return new AddressList(addresses, true);
+    }
+
+    /**
+     * Parses a single <code>address</code> that extends to the end of the text.
+     */
+    Address parseAddress() throws ParseException {
+        next();
+        Address address = address(true);
+        expectEnd();
+        return address;
+    }
+
+    /**
+     * Parses a single <code>mailbox</code> that extends to the end of the text.
+     */
+    Mailbox parseMailbox() throws ParseException {
+        next();
+        Mailbox mailbox = (Mailbox) address(false);
+        expectEnd();
+        return mailbox;
+    }
+
+    private boolean startsAddress() {
+        return kind == ATOM || kind == QUOTED_STRING || kind == '<';
+    }
+
+    private Address address(final boolean groupAllowed) throws ParseException {
+        if (lookingAtAddrSpec()) {
+            return addrSpec(null, null);
+        } else if (kind == '<') {
+            return angleAddr(null);
+        } else if (kind == ATOM || kind == QUOTED_STRING) {
+            String name = phrase();
+            if (groupAllowed && kind == ':') {
+                return groupBody(name);
+            } else if (kind == '<') {
+                try {
+                    name = DecoderUtil.decodeEncodedWords(name, monitor);
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException(e);
+                }
+                return angleAddr(name);
+            }
+        }
+        throw unexpected();
+    }
+
+    private Group groupBody(final String name) throws ParseException {
+        next();
+        List<Mailbox> mailboxes = new ArrayList<Mailbox>();
+        if (startsAddress()) {
+            mailboxes.add((Mailbox) address(false));
+        }
+        while (kind == ',') {
+            next();
+            if (startsAddress()) {
+                mailboxes.add((Mailbox) address(false));
+            }
+        }
+        expect(';');
+        return new Group(name, new MailboxList(mailboxes, true));
+    }
+
+    private Mailbox angleAddr(final String name) throws ParseException {
+        next();
+        DomainList route = null;
+        if (kind == '@') {
+            route = route();
+        }
+        Mailbox mailbox = addrSpec(name, route);
+        expect('>');
+        return mailbox;
+    }
+
+    private DomainList route() throws ParseException {
+        List<String> domains = new ArrayList<String>();
+        next();
+        domains.add(domain());
+        while (kind == ',' || kind == '@') {
+            while (kind == ',') {
+                next();
+            }
+            expect('@');
+            domains.add(domain());
+        }
+        expect(':');
+        return new DomainList(domains, true);
+    }
+
+    private Mailbox addrSpec(final String name, final DomainList route) throws ParseException {
+        String localPart = localPart();
+        expect('@');
+        String domain = domain();
+        return new Mailbox(name, route, localPart, domain);
+    }
+
+    /**
+     * Tells whether the tokens ahead form a <code>local-part "@" domain</code>
+     * sequence, the choice made by the syntactic lookahead of the grammar.
+     * The position is not changed.
+     */
+    private boolean lookingAtAddrSpec() throws ParseException {
+        if (kind != ATOM && kind != QUOTED_STRING) {
+            return false;
+        }
+        int savedKind = kind;
+        int savedStart = start;
+        int savedEnd = end;
+        int savedGap = gap;
+        int savedPos = pos;
+        try {
+            next();
+            while (kind == ATOM || kind == QUOTED_STRING || kind == '.') {
+                if (kind == '.') {
+                    next();
+                    if (kind != ATOM && kind != QUOTED_STRING) {
+                        return false;
+                    }
+                }
+                next();
+            }
+            if (kind != '@') {
+                return false;
+            }
+            next();
+            return kind == ATOM || kind == DOMAIN_LITERAL;
+        } finally {
+            kind = savedKind;
+            start = savedStart;
+            end = savedEnd;
+            gap = savedGap;
+            pos = savedPos;
+        }
+    }
+
+    private String localPart() throws ParseException {
+        if (kind != ATOM && kind != QUOTED_STRING) {
+            throw unexpected();
+        }
+        StringBuilder sb = new StringBuilder();
+        boolean separated = kind == ATOM && text.charAt(end - 1) == '.';
+        appendImage(sb);
+        next();
+        while (kind == ATOM || kind == QUOTED_STRING || kind == '.') {
+            if (kind == '.') {
+                sb.append('.');
+                separated = true;
+                next();
+            }
+            if (!separated) {
+                throw new ParseException("Words in local part must be separated by '.'");
+            }
+            if (kind != ATOM && kind != QUOTED_STRING) {
+                throw unexpected();
+            }
+            separated = kind == ATOM && text.charAt(end - 1) == '.';
+            appendImage(sb);
+            next();
+        }
+        return sb.toString();
+    }
+
+    private String domain() throws ParseException {
+        if (kind == DOMAIN_LITERAL) {
+            StringBuilder sb = new StringBuilder();
+            appendImage(sb);
+            next();
+            return sb.toString();
+        }
+        if (kind != ATOM) {
+            throw unexpected();
+        }
+        String atom = text.subSequence(start, end).toString();
+        boolean separated = atom.charAt(atom.length() - 1) == '.';
+        next();
+        if (kind != ATOM && kind != '.') {
+            return atom;
+        }
+        StringBuilder sb = new StringBuilder(atom);
+        while (kind == ATOM || kind == '.') {
+            if (kind == '.') {
+                sb.append('.');
+                separated = true;
+                next();
+            }
+            if (!separated) {
+                throw new ParseException("Atoms in domain names must be separated by '.'");
+            }
+            if (kind != ATOM) {
+                throw unexpected();
+            }
+            separated = text.charAt(end - 1) == '.';
+            appendImage(sb);
+            next();
+        }
+        return sb.toString();
+    }
+
+    private String phrase() throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        appendImage(sb);
+        next();
+        while (kind == ATOM || kind == QUOTED_STRING) {
+            appendWhiteSpace(sb, gap, start);
+            appendImage(sb);
+            next();
+        }
+        return sb.toString();
+    }
+
+    private void expect(final int expected) throws ParseException {
+        if (kind != expected) {
+            throw unexpected();
+        }
+        next();
+    }
+
+    private void expectEnd() throws ParseException {
+        if (kind != EOF) {
+            throw unexpected();
+        }
+    }
+
+    private ParseException unexpected() {
+        if (kind == EOF) {
+            return new ParseException("Unexpected end of input");
+        }
+        return new ParseException("Unexpected \"" + text.subSequence(start, end)
+                + "\" at position " + start);
+    }
+
+    // tokenizer
+
+    private void next() throws ParseException {
+        gap = pos;
+        while (pos < len) {
+            char ch = text.charAt(pos);
+            if (ch == ' ' || ch == '\t') {
+                pos++;
+            } else if (ch == '(') {
+                pos = skipComment(pos);
+            } else {
+                break;
+            }
+        }
+        start = pos;
+        if (pos == len) {
+            kind = EOF;
+            end = pos;
+            return;
+        }
+        char ch = text.charAt(pos);
+        if (ch < 128 && ATEXT[ch]) {
+            pos++;
+            while (pos < len) {
+                ch = text.charAt(pos);
+                if (ch == '.' || (ch < 128 && ATEXT[ch])) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            kind = ATOM;
+        } else if (ch == '"') {
+            pos = skipQuoted(pos + 1, '"');
+            kind = QUOTED_STRING;
+        } else if (ch == '[') {
+            pos = skipQuoted(pos + 1, ']');
+            kind = DOMAIN_LITERAL;
+        } else if (ch == '.' || ch == ',' || ch == ':' || ch == ';' || ch == '<' || ch == '>'
+                || ch == '@') {
+            pos++;
+            kind = ch;
+        } else {
+            throw new ParseException("Unexpected character '" + ch + "' at position " + pos);
+        }
+        end = pos;
+    }
+
+    private int skipComment(int i) throws ParseException {
+        int depth = 0;
+        while (i < len) {
+            char ch = text.charAt(i++);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == '(') {
+                depth++;
+            } else if (ch == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        throw new ParseException("Unterminated comment");
+    }
+
+    private int skipQuoted(int i, final char closing) throws ParseException {
+        while (i < len) {
+            char ch = text.charAt(i++);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == closing) {
+                return i;
+            } else if (ch == '[' && closing == ']') {
+                throw new ParseException("Unexpected character '[' in domain literal");
+            }
+        }
+        throw new ParseException("Unterminated " + (closing == '"' ? "quoted string" : "domain literal"));
+    }
+
+    private void appendImage(final StringBuilder sb) {
+        if (kind == QUOTED_STRING) {
+            appendUnescaped(sb, start + 1, end - 1);
+        } else if (kind == DOMAIN_LITERAL) {
+            sb.append('[');
+            appendUnescaped(sb, start + 1, end - 1);
+            sb.append(']');
+        } else {
+            sb.append(text, start, end);
+        }
+    }
+
+    private void appendUnescaped(final StringBuilder sb, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            char ch = text.charAt(i);
+            if (ch == '\\') {
+                ch = text.charAt(++i);
+            }
+            sb.append(ch);
+        }
+    }
+
+    private void appendWhiteSpace(final StringBuilder sb, final int from, final int to)
+            throws ParseException {
+        int i = from;
+        while (i < to) {
+            char ch = text.charAt(i);
+            if (ch == '(') {
+                i = skipComment(i);
+            } else {
+                sb.append(ch);
+                i++;
+            }
+        }
+    }
+
+}
@@ -27,7 +27,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import org.apache.james.mime4j.dom.BinaryBody;
@@ -45,6 +44,7 @@ import org.apache.james.mime4j.message.BodyPartBuilder;
 import org.apache.james.mime4j.message.MultipartBuilder;
 import org.apache.james.mime4j.message.SingleBodyBuilder;
 import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.FieldNameRegistry;
 import org.apache.james.mime4j.stream.NameValuePair;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -66,10 +66,10 @@ public abstract class AbstractEntityBuilder {
      * @param field the field to add.
      */
     public AbstractEntityBuilder addField(Field field) {
-        List<Field> values = fieldMap.get(field.getName().toLowerCase(Locale.US));
+        List<Field> values = fieldMap.get(FieldNameRegistry.toKey(field.getName()));
         if (values == null) {
             values = new LinkedList<Field>();
-            fieldMap.put(field.getName().toLowerCase(Locale.US), values);
+            fieldMap.put(FieldNameRegistry.toKey(field.getName()), values);
         }
         values.add(field);
         fields.add(field);
@@ -94,7 +94,7 @@ public abstract class AbstractEntityBuilder {
      * @return the field or <code>null</code> if none found.
      */
     public Field getField(String name) {
-        List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
+        List<Field> l = fieldMap.get(FieldNameRegistry.toKey(name));
         if (l != null && !l.isEmpty()) {
             return l.get(0);
         }
@@ -111,7 +111,7 @@ public abstract class AbstractEntityBuilder {
      * @return the field or <code>null</code> if none found.
      */
     public <F extends Field> F getField(final String name, final Class<F> clazz) {
-        List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
+        List<Field> l = fieldMap.get(FieldNameRegistry.toKey(name));
         for (int i = 0; i < l.size(); i++) {
             Field field = l.get(i);
             if (clazz.isInstance(field)) {
@@ -130,7 +130,7 @@ public abstract class AbstractEntityBuilder {
      * set field with the given name, <code>false</code> otherwise.
      */
     public boolean containsField(String name) {
-        List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
+        List<Field> l = fieldMap.get(FieldNameRegistry.toKey(name));
         return l != null && !l.isEmpty();
     }
 
@@ -141,7 +141,7 @@ public abstract class AbstractEntityBuilder {
      * @return the list of fields.
      */
     public List<Field> getFields(final String name) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
+        final String lowerCaseName = FieldNameRegistry.toKey(name);
         final List<Field> l = fieldMap.get(lowerCaseName);
         final List<Field> results;
         if (l == null || l.isEmpty()) {
@@ -161,7 +161,7 @@ public abstract class AbstractEntityBuilder {
      * @return the list of fields.
      */
     public <F extends Field> List<F> getFields(final String name, final Class<F> clazz) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
+        final String lowerCaseName = FieldNameRegistry.toKey(name);
         final List<Field> l = fieldMap.get(lowerCaseName);
         if (l == null) {
             return Collections.emptyList();
@@ -183,7 +183,7 @@ public abstract class AbstractEntityBuilder {
      *            the field name (e.g. From, Subject).
      */
     public AbstractEntityBuilder removeFields(String name) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
+        final String lowerCaseName = FieldNameRegistry.toKey(name);
         List<Field> removed = fieldMap.remove(lowerCaseName);
         if (removed == null || removed.isEmpty()) {
             return this;
@@ -210,7 +210,7 @@ public abstract class AbstractEntityBuilder {
      * @param field the field to set.
      */
     public AbstractEntityBuilder setField(Field field) {
-        final String lowerCaseName = field.getName().toLowerCase(Locale.US);
+        final String lowerCaseName = FieldNameRegistry.toKey(field.getName());
         List<Field> l = fieldMap.get(lowerCaseName);
         if (l == null || l.isEmpty()) {
             addField(field);
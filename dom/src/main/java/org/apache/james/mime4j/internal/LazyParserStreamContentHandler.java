@@ -0,0 +1,207 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.codec.DecoderUtil;
+import org.apache.james.mime4j.dom.BinaryBody;
+import org.apache.james.mime4j.dom.Body;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.dom.TextBody;
+import org.apache.james.mime4j.message.BodyFactory;
+import org.apache.james.mime4j.message.ContentSource;
+import org.apache.james.mime4j.message.MessageImplFactory;
+import org.apache.james.mime4j.parser.MimeStreamParser;
+import org.apache.james.mime4j.stream.BodyDescriptor;
+import org.apache.james.mime4j.stream.StructureIndex;
+import org.apache.james.mime4j.util.CharsetUtil;
+
+/**
+ * A <code>ContentHandler</code> building an <code>Entity</code> whose
+ * single bodies only keep the position of their content in a
+ * {@link ContentSource}. The content is read and decoded each time a body
+ * is accessed. The parser must track positions; bodies whose position is
+ * not known, such as the parts of transfer encoded embedded messages, are
+ * created by the body factory.
+ */
+public class LazyParserStreamContentHandler extends ParserStreamContentHandler {
+
+    private final MimeStreamParser parser;
+    private final ContentSource source;
+    private final boolean contentDecoding;
+    private final DecodeMonitor monitor;
+    private final Charset defaultCharset;
+
+    /**
+     * Creates a new <code>LazyParserStreamContentHandler</code>.
+     *
+     * @param parser parser reporting to this handler.
+     * @param source source the parser reads from.
+     * @param contentDecoding whether the transfer encoding of bodies should
+     *   be decoded.
+     * @param monitor monitor used when decoding content.
+     * @param defaultCharset charset of text bodies with an unsupported
+     *   charset, <code>null</code> to reject such bodies.
+     */
+    public LazyParserStreamContentHandler(
+            final Entity entity,
+            final MessageImplFactory messageImplFactory,
+            final BodyFactory bodyFactory,
+            final MimeStreamParser parser,
+            final ContentSource source,
+            final boolean contentDecoding,
+            final DecodeMonitor monitor,
+            final Charset defaultCharset) {
+        super(entity, messageImplFactory, bodyFactory);
+        this.parser = parser;
+        this.source = source;
+        this.contentDecoding = contentDecoding;
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+        this.defaultCharset = defaultCharset;
+    }
+
+    @Override
+    protected Body createBody(BodyDescriptor bd, InputStream is) throws IOException {
+        StructureIndex.Entry entry = parser.getIndexEntry();
+        if (entry == null) {
+            return super.createBody(bd, is);
+        }
+        Range range = new Range(source, entry, contentDecoding, monitor);
+        if (bd.getMimeType().startsWith("text/")) {
+            return new LazyTextBody(range, resolveCharset(bd.getCharset()));
+        } else {
+            return new LazyBinaryBody(range);
+        }
+    }
+
+    private Charset resolveCharset(String mimeCharset) throws UnsupportedEncodingException {
+        Charset charset = mimeCharset != null ? CharsetUtil.lookup(mimeCharset) : null;
+        if (charset != null) {
+            return charset;
+        }
+        if (mimeCharset != null && defaultCharset == null) {
+            throw new UnsupportedEncodingException(mimeCharset);
+        }
+        return defaultCharset;
+    }
+
+    /**
+     * Position of the content of a body. The end of the body is looked up
+     * when the content is read, once the parser has passed it.
+     */
+    static final class Range {
+
+        private final ContentSource source;
+        private final StructureIndex.Entry entry;
+        private final boolean decode;
+        private final DecodeMonitor monitor;
+
+        Range(ContentSource source, StructureIndex.Entry entry, boolean decode, DecodeMonitor monitor) {
+            this.source = source;
+            this.entry = entry;
+            this.decode = decode;
+            this.monitor = monitor;
+        }
+
+        InputStream open() throws IOException {
+            InputStream instream = source.getInputStream(entry.getBodyStart(), entry.getBodyEnd());
+            if (decode) {
+                return DecoderUtil.decodeTransferEncoding(instream, entry.getTransferEncoding(), monitor);
+            }
+            return instream;
+        }
+
+    }
+
+    static final class LazyTextBody extends TextBody {
+
+        private final Range range;
+        private final Charset charset;
+
+        LazyTextBody(Range range, Charset charset) {
+            this.range = range;
+            this.charset = charset;
+        }
+
+        @Override
+        public String getMimeCharset() {
+            return charset != null ? charset.name() : null;
+        }
+
+        @Override
+        public Reader getReader() throws IOException {
+            return new InputStreamReader(range.open(), charset);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return range.open();
+        }
+
+        @Override
+        public SingleBody copy() {
+            return copied(new LazyTextBody(range, charset));
+        }
+
+        /**
+         * Does nothing; the content source is owned by the caller.
+         */
+        @Override
+        public void dispose() {
+        }
+
+    }
+
+    static final class LazyBinaryBody extends BinaryBody {
+
+        private final Range range;
+
+        LazyBinaryBody(Range range) {
+            this.range = range;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return range.open();
+        }
+
+        @Override
+        public SingleBody copy() {
+            return copied(new LazyBinaryBody(range));
+        }
+
+        /**
+         * Does nothing; the content source is owned by the caller.
+         */
+        @Override
+        public void dispose() {
+        }
+
+    }
+
+}
@@ -20,17 +20,24 @@
 package org.apache.james.mime4j.internal;
 
 import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.codec.DecoderUtil;
 import org.apache.james.mime4j.dom.Body;
 import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.FieldParser;
 import org.apache.james.mime4j.dom.Header;
 import org.apache.james.mime4j.dom.Message;
 import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.dom.field.ParsedField;
 import org.apache.james.mime4j.message.BodyFactory;
 import org.apache.james.mime4j.message.BodyPart;
 import org.apache.james.mime4j.message.DefaultMessageImplFactory;
 import org.apache.james.mime4j.message.HeaderImpl;
+import org.apache.james.mime4j.message.LazyHeader;
 import org.apache.james.mime4j.message.MessageImplFactory;
 import org.apache.james.mime4j.message.MultipartImpl;
+import org.apache.james.mime4j.io.InputStreams;
 import org.apache.james.mime4j.parser.ContentHandler;
 import org.apache.james.mime4j.stream.BodyDescriptor;
 import org.apache.james.mime4j.stream.Field;
@@ -39,7 +46,15 @@ import org.apache.james.mime4j.util.ByteSequence;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A <code>ContentHandler</code> for building an <code>Entity</code> to be
@@ -47,28 +62,82 @@ import java.util.Stack;
  */
 public class ParserStreamContentHandler implements ContentHandler {
 
+    /** Largest raw body buffered for a body task. */
+    static final int MAX_BUFFERED_BODY = 64 * 1024;
+
+    /** Largest amount of raw content buffered for pending body tasks. */
+    static final long MAX_BUFFERED_TOTAL = 1024 * 1024;
+
     private final Entity entity;
     private final MessageImplFactory messageImplFactory;
     private final BodyFactory bodyFactory;
     private final Stack<Object> stack;
+    private final Executor executor;
+    private final boolean contentDecoding;
+    private final DecodeMonitor monitor;
+    private final List<PendingBody> pending;
+    private final AtomicLong buffered;
+    private FieldParser<? extends ParsedField> lazyFieldParser;
 
     public ParserStreamContentHandler(
             final Entity entity,
             final BodyFactory bodyFactory) {
-        this.entity = entity;
-        this.messageImplFactory = new DefaultMessageImplFactory();
-        this.bodyFactory = bodyFactory;
-        this.stack = new Stack<Object>();
+        this(entity, new DefaultMessageImplFactory(), bodyFactory);
     }
 
     public ParserStreamContentHandler(
             final Entity entity,
             final MessageImplFactory messageImplFactory,
             final BodyFactory bodyFactory) {
+        this(entity, messageImplFactory, bodyFactory, null, false, null);
+    }
+
+    /**
+     * Creates a handler that creates bodies on the given executor. The
+     * parser must pass the content of bodies without decoding it; the raw
+     * content of each body is buffered on the parsing thread while transfer
+     * decoding and body creation run as separate tasks. The bodies are
+     * attached to their entities by {@link #awaitBodies()}. Bodies larger
+     * than 64 KB, or arriving while 1 MB of raw content is already waiting
+     * for its task, are not buffered but decoded and created on the parsing
+     * thread, so that large content only goes through the body factory and
+     * its storage. The body factory and the decode monitor must be
+     * thread-safe.
+     *
+     * @param executor executor running the body tasks, <code>null</code>
+     *   to create bodies on the parsing thread.
+     * @param contentDecoding whether the transfer encoding of bodies should
+     *   be decoded.
+     * @param monitor monitor used when decoding content.
+     */
+    public ParserStreamContentHandler(
+            final Entity entity,
+            final MessageImplFactory messageImplFactory,
+            final BodyFactory bodyFactory,
+            final Executor executor,
+            final boolean contentDecoding,
+            final DecodeMonitor monitor) {
         this.entity = entity;
         this.messageImplFactory = messageImplFactory;
         this.bodyFactory = bodyFactory;
         this.stack = new Stack<Object>();
+        this.executor = executor;
+        this.contentDecoding = contentDecoding;
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+        this.pending = new ArrayList<PendingBody>();
+        this.buffered = new AtomicLong();
+    }
+
+    /**
+     * Sets the parser used by headers to parse their fields on access. If
+     * set, headers are created as {@link LazyHeader}s; otherwise they keep
+     * the fields as reported by the parser.
+     *
+     * @param fieldParser field parser, <code>null</code> (the default) for
+     *   eagerly populated headers.
+     */
+    public void setLazyFieldParser(final FieldParser<? extends ParsedField> fieldParser) {
+        this.lazyFieldParser = fieldParser;
     }
 
     private void expect(Class<?> c) {
@@ -96,7 +165,11 @@ public class ParserStreamContentHandler implements ContentHandler {
     }
 
     public void startHeader() throws MimeException {
-        stack.push(new HeaderImpl());
+        if (lazyFieldParser != null) {
+            stack.push(new LazyHeader(lazyFieldParser, monitor));
+        } else {
+            stack.push(new HeaderImpl());
+        }
     }
 
     public void field(Field field) throws MimeException {
@@ -124,15 +197,161 @@ public class ParserStreamContentHandler implements ContentHandler {
     public void body(BodyDescriptor bd, final InputStream is) throws MimeException, IOException {
         expect(Entity.class);
 
-        final Body body;
+        Entity entity = ((Entity) stack.peek());
+        if (executor != null) {
+            ByteArrayBuffer raw = new ByteArrayBuffer(1024);
+            long limit = Math.min(MAX_BUFFERED_BODY, MAX_BUFFERED_TOTAL - buffered.get());
+            if (bufferStream(is, raw, limit)) {
+                buffered.addAndGet(raw.length());
+                FutureTask<Body> task = new FutureTask<Body>(new BodyTask(bd, raw));
+                pending.add(new PendingBody(entity, task));
+                executor.execute(task);
+                return;
+            }
+            // too large to buffer: create the body on the parsing thread
+            InputStream rest = new SequenceInputStream(InputStreams.create(raw), is);
+            entity.setBody(createBody(bd, decodedStream(bd, rest)));
+            return;
+        }
+        entity.setBody(createBody(bd, is));
+    }
+
+    private InputStream decodedStream(BodyDescriptor bd, InputStream is) {
+        if (contentDecoding) {
+            return DecoderUtil.decodeTransferEncoding(is, bd.getTransferEncoding(), monitor);
+        }
+        return is;
+    }
+
+    /**
+     * Creates the body of an entity from its content.
+     *
+     * @param bd descriptor of the body.
+     * @param is content of the body.
+     * @return the new body.
+     * @throws IOException on I/O errors.
+     */
+    protected Body createBody(BodyDescriptor bd, InputStream is) throws IOException {
         if (bd.getMimeType().startsWith("text/")) {
-            body = bodyFactory.textBody(is, bd.getCharset());
+            return bodyFactory.textBody(is, bd.getCharset());
         } else {
-            body = bodyFactory.binaryBody(is);
+            return bodyFactory.binaryBody(is);
         }
+    }
 
-        Entity entity = ((Entity) stack.peek());
-        entity.setBody(body);
+    /**
+     * Waits for the bodies created on the executor and attaches them to
+     * their entities. Does nothing if bodies are created on the parsing
+     * thread.
+     *
+     * @throws IOException if a body could not be created. Every task is
+     *   still waited for or cancelled, and all bodies created, attached or
+     *   not, are disposed of.
+     */
+    public void awaitBodies() throws IOException {
+        Throwable failure = finishBodies(true);
+        if (failure != null) {
+            throw toIOException(failure);
+        }
+    }
+
+    /**
+     * Cancels the pending body tasks and disposes of the bodies that have
+     * already been created, for instance after a parse error.
+     */
+    public void discardBodies() {
+        finishBodies(false);
+    }
+
+    /**
+     * Waits for or cancels every pending task. While no task has failed and
+     * <code>attach</code> is set the bodies are attached to their entities;
+     * otherwise they are disposed of, and so are the attached ones once a
+     * task fails. Tasks are still waited for if the thread is interrupted,
+     * so that no body is leaked; the interrupt is restored afterwards.
+     *
+     * @return the first failure, or <code>null</code>.
+     */
+    private Throwable finishBodies(boolean attach) {
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            for (PendingBody p : pending) {
+                if ((!attach || failure != null) && p.task.cancel(false)) {
+                    continue;
+                }
+                for (;;) {
+                    try {
+                        Body body = p.task.get();
+                        if (attach && failure == null) {
+                            p.entity.setBody(body);
+                        } else {
+                            body.dispose();
+                        }
+                        break;
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                        if (failure == null) {
+                            failure = new IOException("Interrupted while waiting for message bodies");
+                        }
+                        if (p.task.cancel(false)) {
+                            break;
+                        }
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            failure = ex.getCause();
+                        }
+                        break;
+                    }
+                }
+            }
+            if (attach && failure != null) {
+                for (PendingBody p : pending) {
+                    Body body = p.entity.getBody();
+                    if (body != null) {
+                        body.dispose();
+                    }
+                }
+            }
+        } finally {
+            pending.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failure;
+    }
+
+    private static IOException toIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            IOException ex = new IOException(cause.getMessage());
+            ex.initCause(cause);
+            return ex;
+        }
+    }
+
+    /**
+     * Bodies parsed without content decoding hold their content in the
+     * transfer encoding of their entity. Records it so that a message
+     * writer can convert the content if the encoding is changed later on.
+     */
+    public static void recordStoredTransferEncodings(Entity entity) {
+        Body body = entity.getBody();
+        if (body instanceof SingleBody) {
+            ((SingleBody) body).setStoredTransferEncoding(entity.getContentTransferEncoding());
+        } else if (body instanceof Multipart) {
+            for (Entity part : ((Multipart) body).getBodyParts()) {
+                recordStoredTransferEncodings(part);
+            }
+        } else if (body instanceof Message) {
+            recordStoredTransferEncodings((Message) body);
+        }
     }
 
     public void endMultipart() throws MimeException {
@@ -174,6 +393,54 @@ public class ParserStreamContentHandler implements ContentHandler {
         throw new UnsupportedOperationException("Not supported");
     }
 
+    /**
+     * Reads the stream into the buffer until it ends or more than
+     * <code>limit</code> bytes have been read.
+     *
+     * @return <code>true</code> if the stream ended within the limit.
+     */
+    private static boolean bufferStream(InputStream in, ByteArrayBuffer bab, long limit)
+            throws IOException {
+        byte[] tmp = new byte[4096];
+        int l;
+        while (bab.length() <= limit && (l = in.read(tmp)) != -1) {
+            bab.append(tmp, 0, l);
+        }
+        return bab.length() <= limit;
+    }
+
+    private static final class PendingBody {
+
+        private final Entity entity;
+        private final FutureTask<Body> task;
+
+        PendingBody(Entity entity, FutureTask<Body> task) {
+            this.entity = entity;
+            this.task = task;
+        }
+
+    }
+
+    private final class BodyTask implements Callable<Body> {
+
+        private final BodyDescriptor bd;
+        private final ByteArrayBuffer raw;
+
+        BodyTask(BodyDescriptor bd, ByteArrayBuffer raw) {
+            this.bd = bd;
+            this.raw = raw;
+        }
+
+        public Body call() throws IOException {
+            try {
+                return createBody(bd, decodedStream(bd, InputStreams.create(raw)));
+            } finally {
+                buffered.addAndGet(-raw.length());
+            }
+        }
+
+    }
+
     private static ByteSequence loadStream(InputStream in) throws IOException {
         ByteArrayBuffer bab = new ByteArrayBuffer(64);
 
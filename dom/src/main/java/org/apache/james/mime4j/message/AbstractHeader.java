@@ -19,25 +19,49 @@
 
 package org.apache.james.mime4j.message;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.james.mime4j.dom.Header;
 import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.FieldNameRegistry;
 
 /**
  * Abstract MIME header.
+ * <p>
+ * Fields are kept in insertion order in an array. Fields with the same name
+ * are chained through a parallel array of positions, and an open addressing
+ * table maps the lower case field name to the first and last position of its
+ * chain. No objects are allocated per field besides the field itself.
+ * </p>
+ * <p>
+ * Every field returned by the header passes through {@link #resolve(Field)}
+ * first, which allows subclasses to store fields in a preliminary form.
+ * </p>
  */
 public abstract class AbstractHeader implements Header {
 
-    private final List<Field> fields = new LinkedList<Field>();
-    private final Map<String, List<Field>> fieldMap = new HashMap<String, List<Field>>();
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Field[] fields = new Field[INITIAL_CAPACITY];
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // slot -> position of first field with that name + 1, 0 if the slot is free
+    private int[] firsts = new int[INITIAL_CAPACITY * 2];
+    // slot -> position of the last field with that name
+    private int[] lasts = new int[INITIAL_CAPACITY * 2];
+
+    private final FieldList fieldList = new FieldList(true);
+    private final FieldList storedList = new FieldList(false);
 
     /**
      * Creates a new empty <code>Header</code>.
@@ -67,13 +91,16 @@ public abstract class AbstractHeader implements Header {
      * @param field the field to add.
      */
     public void addField(Field field) {
-        List<Field> values = fieldMap.get(field.getName().toLowerCase(Locale.US));
-        if (values == null) {
-            values = new LinkedList<Field>();
-            fieldMap.put(field.getName().toLowerCase(Locale.US), values);
+        if (size == fields.length) {
+            grow();
         }
-        values.add(field);
-        fields.add(field);
+        fields[size] = field;
+        String key = FieldNameRegistry.toKey(field.getName());
+        keys[size] = key;
+        hashes[size] = key.hashCode();
+        index(size);
+        size++;
+        modified();
     }
 
     /**
@@ -83,7 +110,7 @@ public abstract class AbstractHeader implements Header {
      * @return the list of <code>Field</code> objects.
      */
     public List<Field> getFields() {
-        return Collections.unmodifiableList(fields);
+        return fieldList;
     }
 
     /**
@@ -94,11 +121,8 @@ public abstract class AbstractHeader implements Header {
      * @return the field or <code>null</code> if none found.
      */
     public Field getField(String name) {
-        List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
-        if (l != null && !l.isEmpty()) {
-            return l.get(0);
-        }
-        return null;
+        int pos = first(FieldNameRegistry.toKey(name));
+        return pos != -1 ? resolved(pos) : null;
     }
 
     /**
@@ -111,9 +135,8 @@ public abstract class AbstractHeader implements Header {
      * @return the field or <code>null</code> if none found.
      */
     public <F extends Field> F getField(final String name, final Class<F> clazz) {
-        List<Field> l = fieldMap.get(name.toLowerCase(Locale.US));
-        for (int i = 0; i < l.size(); i++) {
-            Field field = l.get(i);
+        for (int pos = first(FieldNameRegistry.toKey(name)); pos != -1; pos = next[pos]) {
+            Field field = resolved(pos);
             if (clazz.isInstance(field)) {
                 return clazz.cast(field);
             }
@@ -128,15 +151,18 @@ public abstract class AbstractHeader implements Header {
      * @return the list of fields.
      */
     public List<Field> getFields(final String name) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
-        final List<Field> l = fieldMap.get(lowerCaseName);
-        final List<Field> results;
-        if (l == null || l.isEmpty()) {
-            results = Collections.emptyList();
-        } else {
-            results = Collections.unmodifiableList(l);
+        int pos = first(FieldNameRegistry.toKey(name));
+        if (pos == -1) {
+            return Collections.emptyList();
         }
-        return results;
+        if (next[pos] == -1) {
+            return Collections.singletonList(resolved(pos));
+        }
+        final List<Field> results = new ArrayList<Field>();
+        for (; pos != -1; pos = next[pos]) {
+            results.add(resolved(pos));
+        }
+        return Collections.unmodifiableList(results);
     }
 
     /**
@@ -148,14 +174,13 @@ public abstract class AbstractHeader implements Header {
      * @return the list of fields.
      */
     public <F extends Field> List<F> getFields(final String name, final Class<F> clazz) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
-        final List<Field> l = fieldMap.get(lowerCaseName);
-        if (l == null) {
+        int pos = first(FieldNameRegistry.toKey(name));
+        if (pos == -1) {
             return Collections.emptyList();
         }
         final List<F> results = new ArrayList<F>();
-        for (int i = 0; i < l.size(); i++) {
-            Field field = l.get(i);
+        for (; pos != -1; pos = next[pos]) {
+            Field field = resolved(pos);
             if (clazz.isInstance(field)) {
                 results.add(clazz.cast(field));
             }
@@ -169,7 +194,7 @@ public abstract class AbstractHeader implements Header {
      * @return an iterator.
      */
     public Iterator<Field> iterator() {
-        return Collections.unmodifiableList(fields).iterator();
+        return fieldList.iterator();
     }
 
     /**
@@ -180,18 +205,11 @@ public abstract class AbstractHeader implements Header {
      * @return number of fields removed.
      */
     public int removeFields(String name) {
-        final String lowerCaseName = name.toLowerCase(Locale.US);
-        List<Field> removed = fieldMap.remove(lowerCaseName);
-        if (removed == null || removed.isEmpty())
+        final String key = FieldNameRegistry.toKey(name);
+        if (first(key) == -1) {
             return 0;
-
-        for (Iterator<Field> iterator = fields.iterator(); iterator.hasNext();) {
-            Field field = iterator.next();
-            if (field.getName().equalsIgnoreCase(name))
-                iterator.remove();
         }
-
-        return removed.size();
+        return removeAll(key, -1);
     }
 
     /**
@@ -207,29 +225,148 @@ public abstract class AbstractHeader implements Header {
      * @param field the field to set.
      */
     public void setField(Field field) {
-        final String lowerCaseName = field.getName().toLowerCase(Locale.US);
-        List<Field> l = fieldMap.get(lowerCaseName);
-        if (l == null || l.isEmpty()) {
+        final String key = FieldNameRegistry.toKey(field.getName());
+        int pos = first(key);
+        if (pos == -1) {
             addField(field);
             return;
         }
+        fields[pos] = field;
+        if (next[pos] != -1) {
+            removeAll(key, pos);
+        }
+        modified();
+    }
+
+    /**
+     * Gets the fields of this header as stored, without passing them through
+     * {@link #resolve(Field)}. The returned list will not be modifiable.
+     *
+     * @return the list of stored <code>Field</code> objects.
+     */
+    protected List<Field> getStoredFields() {
+        return storedList;
+    }
+
+    /**
+     * Called for each field before it is returned by this header; the
+     * returned field replaces the stored one. This implementation returns
+     * the given field.
+     *
+     * @param field the stored field.
+     * @return the field to return and store.
+     */
+    protected Field resolve(Field field) {
+        return field;
+    }
 
-        l.clear();
-        l.add(field);
+    private Field resolved(int pos) {
+        Field field = fields[pos];
+        Field resolved = resolve(field);
+        if (resolved != field) {
+            fields[pos] = resolved;
+        }
+        return resolved;
+    }
 
-        int firstOccurrence = -1;
-        int index = 0;
-        for (Iterator<Field> iterator = fields.iterator(); iterator.hasNext(); index++) {
-            Field f = iterator.next();
-            if (f.getName().equalsIgnoreCase(field.getName())) {
-                iterator.remove();
+    private void modified() {
+        fieldList.modified();
+        storedList.modified();
+    }
 
-                if (firstOccurrence == -1)
-                    firstOccurrence = index;
+    /**
+     * Returns the position of the first field with the given key or
+     * <code>-1</code>.
+     */
+    private int first(String key) {
+        int hash = key.hashCode();
+        int mask = firsts.length - 1;
+        for (int slot = hash & mask; firsts[slot] != 0; slot = (slot + 1) & mask) {
+            int pos = firsts[slot] - 1;
+            String k = keys[pos];
+            if (k == key || (hashes[pos] == hash && k.equals(key))) {
+                return pos;
             }
         }
+        return -1;
+    }
 
-        fields.add(firstOccurrence, field);
+    /**
+     * Links the field at the given position into the index.
+     */
+    private void index(int pos) {
+        String key = keys[pos];
+        int hash = hashes[pos];
+        next[pos] = -1;
+        int mask = firsts.length - 1;
+        int slot = hash & mask;
+        while (firsts[slot] != 0) {
+            int other = firsts[slot] - 1;
+            String k = keys[other];
+            if (k == key || (hashes[other] == hash && k.equals(key))) {
+                next[lasts[slot]] = pos;
+                lasts[slot] = pos;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        firsts[slot] = pos + 1;
+        lasts[slot] = pos;
+    }
+
+    /**
+     * Removes all fields with the given key except the one at the given
+     * position, keeping the order of the remaining fields, and rebuilds the
+     * index.
+     */
+    private int removeAll(String key, int keep) {
+        int removed = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (i != keep && keys[i].equals(key)) {
+                removed++;
+            } else {
+                fields[j] = fields[i];
+                keys[j] = keys[i];
+                hashes[j] = hashes[i];
+                j++;
+            }
+        }
+        for (int i = j; i < size; i++) {
+            fields[i] = null;
+            keys[i] = null;
+        }
+        size = j;
+        reindex(firsts.length);
+        modified();
+        return removed;
+    }
+
+    private void grow() {
+        int capacity = fields.length * 2;
+        Field[] newFields = new Field[capacity];
+        String[] newKeys = new String[capacity];
+        int[] newHashes = new int[capacity];
+        System.arraycopy(fields, 0, newFields, 0, size);
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(hashes, 0, newHashes, 0, size);
+        fields = newFields;
+        keys = newKeys;
+        hashes = newHashes;
+        next = new int[capacity];
+        reindex(capacity * 2);
+    }
+
+    private void reindex(int tableSize) {
+        if (firsts.length == tableSize) {
+            Arrays.fill(firsts, 0);
+        } else {
+            firsts = new int[tableSize];
+            lasts = new int[tableSize];
+        }
+        for (int pos = 0; pos < size; pos++) {
+            index(pos);
+        }
     }
 
     /**
@@ -241,11 +378,79 @@ public abstract class AbstractHeader implements Header {
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder(128);
-        for (Field field : fields) {
-            str.append(field.toString());
+        for (int i = 0; i < size; i++) {
+            str.append(fields[i].toString());
             str.append("\r\n");
         }
         return str.toString();
     }
 
+    /**
+     * Unmodifiable live view of the fields of this header.
+     */
+    private final class FieldList extends AbstractList<Field> {
+
+        private final boolean resolving;
+
+        FieldList(boolean resolving) {
+            this.resolving = resolving;
+        }
+
+        @Override
+        public Field get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return field(index);
+        }
+
+        private Field field(int index) {
+            return resolving ? resolved(index) : fields[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Field> iterator() {
+            return new FieldIterator(modCount);
+        }
+
+        void modified() {
+            modCount++;
+        }
+
+        private final class FieldIterator implements Iterator<Field> {
+
+            private final int expectedModCount;
+            private int cursor;
+
+            FieldIterator(int expectedModCount) {
+                this.expectedModCount = expectedModCount;
+            }
+
+            public boolean hasNext() {
+                return cursor < size;
+            }
+
+            public Field next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (cursor >= size) {
+                    throw new NoSuchElementException();
+                }
+                return field(cursor++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        }
+
+    }
+
 }
@@ -25,15 +25,15 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.IllegalCharsetNameException;
-import java.nio.charset.UnsupportedCharsetException;
 
 import org.apache.james.mime4j.Charsets;
 import org.apache.james.mime4j.dom.BinaryBody;
 import org.apache.james.mime4j.dom.SingleBody;
 import org.apache.james.mime4j.dom.TextBody;
 import org.apache.james.mime4j.io.InputStreams;
+import org.apache.james.mime4j.util.CharsetUtil;
 import org.apache.james.mime4j.util.ContentUtil;
 
 /**
@@ -83,16 +83,12 @@ public class BasicBodyFactory implements BodyFactory {
      */
     protected Charset resolveCharset(final String mimeCharset) throws UnsupportedEncodingException {
         if (mimeCharset != null) {
-            try {
-                return Charset.forName(mimeCharset);
-            } catch (UnsupportedCharsetException ex) {
-                if (defaultCharset == null) {
-                    throw new UnsupportedEncodingException(mimeCharset);
-                }
-            } catch (IllegalCharsetNameException ex) {
-                if (defaultCharset == null) {
-                    throw new UnsupportedEncodingException(mimeCharset);
-                }
+            Charset charset = CharsetUtil.lookup(mimeCharset);
+            if (charset != null) {
+                return charset;
+            }
+            if (defaultCharset == null) {
+                throw new UnsupportedEncodingException(mimeCharset);
             }
         }
         return defaultCharset;
@@ -178,7 +174,7 @@ public class BasicBodyFactory implements BodyFactory {
 
         @Override
         public SingleBody copy() {
-            return new StringBody1(this.content, this.charset);
+            return copied(new StringBody1(this.content, this.charset));
         }
 
     }
@@ -209,13 +205,18 @@ public class BasicBodyFactory implements BodyFactory {
             return InputStreams.create(this.content);
         }
 
+        @Override
+        public ByteBuffer getContentBuffer() {
+            return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
+        }
+
         @Override
         public void dispose() {
         }
 
         @Override
         public SingleBody copy() {
-            return new StringBody2(this.content, this.charset);
+            return copied(new StringBody2(this.content, this.charset));
         }
 
     }
@@ -234,13 +235,18 @@ public class BasicBodyFactory implements BodyFactory {
             return InputStreams.create(this.content);
         }
 
+        @Override
+        public ByteBuffer getContentBuffer() {
+            return ByteBuffer.wrap(this.content).asReadOnlyBuffer();
+        }
+
         @Override
         public void dispose() {
         }
 
         @Override
         public SingleBody copy() {
-            return new BinaryBody1(this.content);
+            return copied(new BinaryBody1(this.content));
         }
 
     }
@@ -268,7 +274,7 @@ public class BasicBodyFactory implements BodyFactory {
 
         @Override
         public SingleBody copy() {
-            return new BinaryBody2(this.content, this.charset);
+            return copied(new BinaryBody2(this.content, this.charset));
         }
 
     }
@@ -0,0 +1,272 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+
+import org.apache.james.mime4j.dom.BinaryBody;
+import org.apache.james.mime4j.dom.Body;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Header;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteArraySlice;
+import org.apache.james.mime4j.util.ByteSequence;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.apache.james.mime4j.util.MimeUtil;
+
+/**
+ * Writes messages to a {@link GatheringByteChannel}, producing the same
+ * bytes as {@link DefaultMessageWriter}.
+ * <p>
+ * The raw bytes of header fields, boundaries, preambles and epilogues and
+ * the content of single bodies held in memory are not copied; they are
+ * collected as buffers and handed to the channel in gathering writes. Other
+ * single bodies are written by {@link SingleBody#writeTo(java.nio.channels.WritableByteChannel)},
+ * which allows bodies stored in a file to be transferred by the operating
+ * system. Only content that has to be transfer encoded on the way, or
+ * transcoded from its stored transfer encoding, is written through the
+ * stream based encoders.
+ * </p>
+ * <p>
+ * The channel must be in blocking mode; selectable channels in non-blocking
+ * mode are rejected.
+ * </p>
+ */
+public class ChannelMessageWriter extends DefaultMessageWriter {
+
+    // buffers handed to the channel in a single gathering write
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] DASHES = { '-', '-' };
+
+    public ChannelMessageWriter() {
+    }
+
+    /**
+     * Write the specified <code>Message</code> to the specified channel.
+     *
+     * @param message
+     *            the <code>Message</code> to write.
+     * @param channel
+     *            the channel to write to.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeMessage(Message message, GatheringByteChannel channel) throws IOException {
+        writeEntity(message, channel);
+    }
+
+    /**
+     * Write the specified <code>Entity</code> to the specified channel.
+     *
+     * @param entity
+     *            the <code>Entity</code> to write.
+     * @param channel
+     *            the channel to write to.
+     * @throws IOException
+     *             if an I/O error occurs.
+     * @throws IllegalArgumentException
+     *             if the channel is in non-blocking mode.
+     */
+    public void writeEntity(Entity entity, GatheringByteChannel channel) throws IOException {
+        if (channel == null)
+            throw new IllegalArgumentException();
+        if (channel instanceof SelectableChannel
+                && !((SelectableChannel) channel).isBlocking())
+            throw new IllegalArgumentException("Channel must be in blocking mode");
+
+        Batch batch = new Batch(channel);
+        writeEntity(entity, batch);
+        batch.flush();
+    }
+
+    private void writeEntity(Entity entity, Batch batch) throws IOException {
+        final Header header = entity.getHeader();
+        if (header == null)
+            throw new IllegalArgumentException("Missing header");
+
+        writeHeader(header, batch);
+
+        final Body body = entity.getBody();
+        if (body == null)
+            throw new IllegalArgumentException("Missing body");
+
+        String encoding = entity.getContentTransferEncoding();
+        boolean identity = !MimeUtil.isBase64Encoding(encoding)
+            && !MimeUtil.isQuotedPrintableEncoded(encoding);
+        if (body instanceof SingleBody) {
+            SingleBody singleBody = (SingleBody) body;
+            String stored = singleBody.getStoredTransferEncoding();
+            if (stored == null ? identity : isSameEncoding(stored, encoding)) {
+                writeContent(singleBody, batch);
+                return;
+            }
+        } else if (identity) {
+            if (body instanceof Multipart) {
+                writeMultipart((Multipart) body, batch);
+            } else if (body instanceof Message) {
+                writeEntity((Message) body, batch);
+            } else
+                throw new IllegalArgumentException("Unsupported body class");
+            return;
+        }
+
+        // content that has to be encoded goes through the stream based
+        // encoders; they buffer their output so the writes are not tiny
+        batch.flush();
+        OutputStream out = Channels.newOutputStream(batch.channel);
+        boolean binaryBody = body instanceof BinaryBody;
+        if (body instanceof SingleBody
+                && ((SingleBody) body).getStoredTransferEncoding() != null) {
+            transcodeBody((SingleBody) body, out, encoding, binaryBody);
+        } else {
+            OutputStream encOut = encodeStream(out, encoding, binaryBody);
+            writeBody(body, encOut);
+            encOut.close();
+        }
+    }
+
+    private void writeContent(SingleBody body, Batch batch) throws IOException {
+        ByteBuffer content = body.getContentBuffer();
+        if (content != null) {
+            batch.add(content);
+        } else {
+            batch.flush();
+            body.writeTo(batch.channel);
+        }
+    }
+
+    private void writeMultipart(Multipart multipart, Batch batch) throws IOException {
+        ByteBuffer boundary = toBuffer(getBoundary(getContentType(multipart)));
+
+        ByteSequence preamble;
+        ByteSequence epilogue;
+        if (multipart instanceof MultipartImpl) {
+            preamble = ((MultipartImpl) multipart).getPreambleRaw();
+            epilogue = ((MultipartImpl) multipart).getEpilogueRaw();
+        } else {
+            preamble = multipart.getPreamble() != null ? ContentUtil.encode(multipart.getPreamble()) : null;
+            epilogue = multipart.getEpilogue() != null ? ContentUtil.encode(multipart.getEpilogue()) : null;
+        }
+        if (preamble != null) {
+            batch.add(toBuffer(preamble));
+            batch.add(ByteBuffer.wrap(CRLF));
+        }
+
+        for (Entity bodyPart : multipart.getBodyParts()) {
+            batch.add(ByteBuffer.wrap(DASHES));
+            batch.add(boundary.duplicate());
+            batch.add(ByteBuffer.wrap(CRLF));
+
+            writeEntity(bodyPart, batch);
+            batch.add(ByteBuffer.wrap(CRLF));
+        }
+
+        batch.add(ByteBuffer.wrap(DASHES));
+        batch.add(boundary.duplicate());
+        batch.add(ByteBuffer.wrap(DASHES));
+        batch.add(ByteBuffer.wrap(CRLF));
+        if (epilogue != null) {
+            batch.add(toBuffer(epilogue));
+        }
+    }
+
+    private void writeHeader(Header header, Batch batch) throws IOException {
+        Iterable<Field> fields = header instanceof LazyHeader
+            ? ((LazyHeader) header).getUnparsedFields() : header;
+        for (Field field : fields) {
+            ByteSequence raw = field.getRaw();
+            if (raw == null) {
+                StringBuilder buf = new StringBuilder();
+                buf.append(field.getName());
+                buf.append(": ");
+                String body = field.getBody();
+                if (body != null) {
+                    buf.append(body);
+                }
+                raw = ContentUtil.encode(MimeUtil.fold(buf.toString(), 0));
+            }
+            batch.add(toBuffer(raw));
+            batch.add(ByteBuffer.wrap(CRLF));
+        }
+
+        batch.add(ByteBuffer.wrap(CRLF));
+    }
+
+    private static ByteBuffer toBuffer(ByteSequence byteSequence) {
+        if (byteSequence instanceof ByteArrayBuffer) {
+            ByteArrayBuffer bab = (ByteArrayBuffer) byteSequence;
+            return ByteBuffer.wrap(bab.buffer(), 0, bab.length());
+        } else if (byteSequence instanceof ByteArraySlice) {
+            ByteArraySlice slice = (ByteArraySlice) byteSequence;
+            return ByteBuffer.wrap(slice.buffer(), slice.offset(), slice.length());
+        } else {
+            return ByteBuffer.wrap(byteSequence.toByteArray());
+        }
+    }
+
+    /**
+     * Buffers waiting to be written to the channel.
+     */
+    private static final class Batch {
+
+        final GatheringByteChannel channel;
+
+        private final ByteBuffer[] buffers = new ByteBuffer[MAX_BATCH_SIZE];
+        private int count = 0;
+
+        Batch(GatheringByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void add(ByteBuffer buffer) throws IOException {
+            if (!buffer.hasRemaining())
+                return;
+            if (count == buffers.length)
+                flush();
+            buffers[count++] = buffer;
+        }
+
+        void flush() throws IOException {
+            int offset = 0;
+            while (offset < count) {
+                if (channel.write(buffers, offset, count - offset) <= 0
+                        && buffers[offset].hasRemaining())
+                    throw new IOException("Channel did not accept any data");
+                while (offset < count && !buffers[offset].hasRemaining()) {
+                    buffers[offset++] = null;
+                }
+            }
+            count = 0;
+        }
+
+    }
+
+}
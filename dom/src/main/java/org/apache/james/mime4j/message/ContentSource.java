@@ -0,0 +1,55 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Re-readable source of the raw content of a message. Messages parsed from
+ * a <code>ContentSource</code> by
+ * {@link DefaultMessageBuilder#parseMessage(ContentSource)} keep only the
+ * position of their bodies and read them from the source when they are
+ * accessed. The source must not change while such messages are in use.
+ *
+ * @see ContentSources
+ */
+public interface ContentSource {
+
+    /**
+     * Returns a stream reading the whole message.
+     *
+     * @return a new <code>InputStream</code>.
+     * @throws IOException on I/O errors.
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns a stream reading a range of the message.
+     *
+     * @param start offset of the first byte to read, relative to the
+     *   beginning of the message.
+     * @param end offset following the last byte to read.
+     * @return a new <code>InputStream</code>.
+     * @throws IOException on I/O errors.
+     */
+    InputStream getInputStream(long start, long end) throws IOException;
+
+}
@@ -0,0 +1,143 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import org.apache.james.mime4j.io.ChannelInputStream;
+import org.apache.james.mime4j.io.InputStreams;
+
+/**
+ * Factory methods for {@link ContentSource}s over byte arrays and files.
+ */
+public final class ContentSources {
+
+    private ContentSources() {
+    }
+
+    /**
+     * Returns a source reading a message held in a byte array. The array is
+     * not copied.
+     */
+    public static ContentSource forBytes(final byte[] b) {
+        if (b == null) {
+            throw new IllegalArgumentException("Byte array may not be null");
+        }
+        return new ByteArraySource(b, 0, b.length);
+    }
+
+    /**
+     * Returns a source reading a message held in a range of a byte array.
+     * The array is not copied.
+     */
+    public static ContentSource forBytes(final byte[] b, int off, int len) {
+        if (b == null) {
+            throw new IllegalArgumentException("Byte array may not be null");
+        }
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ByteArraySource(b, off, len);
+    }
+
+    /**
+     * Returns a source reading a message stored in a file, for instance in
+     * a mailbox file. The channel is read with positional reads, its
+     * position is not changed and it is not closed by the source.
+     *
+     * @param channel channel to read from.
+     * @param offset offset of the first byte of the message in the file.
+     * @param length length of the message.
+     */
+    public static ContentSource forChannel(final FileChannel channel, long offset, long length) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel may not be null");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range: " + offset + "+" + length);
+        }
+        return new ChannelSource(channel, offset, length);
+    }
+
+    /**
+     * Returns a source reading a message that fills a whole file.
+     *
+     * @throws IOException if the size of the file cannot be determined.
+     */
+    public static ContentSource forChannel(final FileChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel may not be null");
+        }
+        return new ChannelSource(channel, 0, channel.size());
+    }
+
+    private static final class ByteArraySource implements ContentSource {
+
+        private final byte[] b;
+        private final int off;
+        private final int len;
+
+        ByteArraySource(byte[] b, int off, int len) {
+            this.b = b;
+            this.off = off;
+            this.len = len;
+        }
+
+        public InputStream getInputStream() {
+            return InputStreams.create(b, off, len);
+        }
+
+        public InputStream getInputStream(long start, long end) {
+            if (start < 0 || end < start || end > len) {
+                throw new IndexOutOfBoundsException("Invalid range: " + start + "-" + end);
+            }
+            return InputStreams.create(b, off + (int) start, (int) (end - start));
+        }
+
+    }
+
+    private static final class ChannelSource implements ContentSource {
+
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+
+        ChannelSource(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public InputStream getInputStream() {
+            return new ChannelInputStream(channel, offset, offset + length);
+        }
+
+        public InputStream getInputStream(long start, long end) {
+            if (start < 0 || end < start || end > length) {
+                throw new IndexOutOfBoundsException("Invalid range: " + start + "-" + end);
+            }
+            return new ChannelInputStream(channel, offset + start, offset + end);
+        }
+
+    }
+
+}
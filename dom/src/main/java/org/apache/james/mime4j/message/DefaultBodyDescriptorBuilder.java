@@ -33,6 +33,7 @@ import org.apache.james.mime4j.field.DefaultFieldParser;
 import org.apache.james.mime4j.stream.BodyDescriptor;
 import org.apache.james.mime4j.stream.BodyDescriptorBuilder;
 import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.FieldNameRegistry;
 import org.apache.james.mime4j.stream.RawField;
 import org.apache.james.mime4j.util.MimeUtil;
 
@@ -43,6 +44,8 @@ public class DefaultBodyDescriptorBuilder implements BodyDescriptorBuilder {
 
     private static final String CONTENT_TYPE = FieldName.CONTENT_TYPE.toLowerCase(Locale.US);
 
+    private static final String CONTENT_PREFIX = "content-";
+
     private static final String US_ASCII = "us-ascii";
     private static final String SUB_TYPE_EMAIL = "rfc822";
     private static final String MEDIA_TYPE_TEXT = "text";
@@ -56,6 +59,7 @@ public class DefaultBodyDescriptorBuilder implements BodyDescriptorBuilder {
     private final DecodeMonitor monitor;
     private final FieldParser<? extends ParsedField> fieldParser;
     private final Map<String, ParsedField> fields;
+    private final boolean descriptorFieldsOnly;
 
     /**
      * Creates a new root <code>BodyDescriptor</code> instance.
@@ -75,11 +79,28 @@ public class DefaultBodyDescriptorBuilder implements BodyDescriptorBuilder {
             final String parentMimeType,
             final FieldParser<? extends ParsedField> fieldParser,
             final DecodeMonitor monitor) {
+        this(parentMimeType, fieldParser, monitor, false);
+    }
+
+    /**
+     * Creates a new <code>BodyDescriptor</code> instance.
+     *
+     * @param descriptorFieldsOnly if <code>true</code> only the
+     *   <code>Content-*</code> and <code>MIME-Version</code> fields, which
+     *   describe the body, are parsed; other fields are returned as read.
+     *   Useful with a {@link LazyHeader}.
+     */
+    public DefaultBodyDescriptorBuilder(
+            final String parentMimeType,
+            final FieldParser<? extends ParsedField> fieldParser,
+            final DecodeMonitor monitor,
+            final boolean descriptorFieldsOnly) {
         super();
         this.parentMimeType = parentMimeType;
         this.fieldParser = fieldParser != null ? fieldParser : DefaultFieldParser.getParser();
         this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
         this.fields = new HashMap<String, ParsedField>();
+        this.descriptorFieldsOnly = descriptorFieldsOnly;
     }
 
     public void reset() {
@@ -87,14 +108,22 @@ public class DefaultBodyDescriptorBuilder implements BodyDescriptorBuilder {
     }
 
     public Field addField(final RawField rawfield) throws MimeException {
+        if (descriptorFieldsOnly && !isDescriptorField(rawfield.getName())) {
+            return rawfield;
+        }
         ParsedField field = fieldParser.parse(rawfield, monitor);
-        String name = field.getName().toLowerCase(Locale.US);
+        String name = FieldNameRegistry.toKey(field.getName());
         if (!fields.containsKey(name)) {
             fields.put(name, field);
         }
         return field;
     }
 
+    private static boolean isDescriptorField(final String name) {
+        return name.regionMatches(true, 0, CONTENT_PREFIX, 0, CONTENT_PREFIX.length())
+            || name.equalsIgnoreCase(FieldName.MIME_VERSION);
+    }
+
     public BodyDescriptor build() {
         String actualMimeType = null;
         String actualMediaType = null;
@@ -150,7 +179,8 @@ public class DefaultBodyDescriptorBuilder implements BodyDescriptorBuilder {
                 actualMimeType = DEFAULT_MIME_TYPE;
             }
         }
-        return new DefaultBodyDescriptorBuilder(actualMimeType, fieldParser, monitor);
+        return new DefaultBodyDescriptorBuilder(actualMimeType, fieldParser, monitor,
+                descriptorFieldsOnly);
     }
 
 }
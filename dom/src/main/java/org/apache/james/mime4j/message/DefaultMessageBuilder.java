@@ -21,7 +21,9 @@ package org.apache.james.mime4j.message;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.MimeIOException;
@@ -38,6 +40,7 @@ import org.apache.james.mime4j.dom.SingleBody;
 import org.apache.james.mime4j.dom.field.ParsedField;
 import org.apache.james.mime4j.field.DefaultFieldParser;
 import org.apache.james.mime4j.field.LenientFieldParser;
+import org.apache.james.mime4j.internal.LazyParserStreamContentHandler;
 import org.apache.james.mime4j.internal.ParserStreamContentHandler;
 import org.apache.james.mime4j.parser.AbstractContentHandler;
 import org.apache.james.mime4j.parser.MimeStreamParser;
@@ -59,6 +62,8 @@ public class DefaultMessageBuilder implements MessageBuilder {
     private boolean contentDecoding = true;
     private boolean flatMode = false;
     private DecodeMonitor monitor = null;
+    private Executor executor = null;
+    private boolean lazyHeaders = false;
 
     public DefaultMessageBuilder() {
         super();
@@ -96,6 +101,42 @@ public class DefaultMessageBuilder implements MessageBuilder {
         this.flatMode = flatMode;
     }
 
+    /**
+     * Sets the executor used to decode and store the bodies of a message
+     * in parallel. If set, {@link #parseMessage(InputStream)} buffers the
+     * raw content of each body while parsing and hands body creation to the
+     * executor, for instance a <code>ForkJoinPool</code>. Content decoding
+     * is then no longer done by the parser but taken over by these tasks.
+     * Bodies larger than 64 KB, or arriving while 1 MB of raw content is
+     * already waiting for the executor, are decoded and created on the
+     * calling thread instead, so that large content is kept in the storage
+     * of the body factory rather than on the heap. The resulting message is
+     * identical to one parsed sequentially. The body factory and the decode
+     * monitor must be thread-safe.
+     *
+     * @param executor executor running the body tasks, <code>null</code>
+     *   (the default) to parse sequentially on the calling thread.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets whether header fields are parsed on access. If enabled, parsed
+     * headers are {@link LazyHeader}s that keep the fields as read and only
+     * parse the fields that are looked up, except for the
+     * <code>Content-*</code> and <code>MIME-Version</code> fields needed to
+     * describe the bodies. A custom body descriptor builder may still parse
+     * all fields.
+     *
+     * @param lazyHeaders <code>true</code> to parse fields on access,
+     *   <code>false</code> (the default) to parse all fields while parsing
+     *   the message.
+     */
+    public void setLazyHeaders(boolean lazyHeaders) {
+        this.lazyHeaders = lazyHeaders;
+    }
+
     /**
      * Creates a new <code>Header</code> from the specified
      * <code>Header</code>. The <code>Header</code> instance is initialized
@@ -265,7 +306,7 @@ public class DefaultMessageBuilder implements MessageBuilder {
             strict ? DecodeMonitor.STRICT : DecodeMonitor.SILENT;
         final FieldParser<? extends ParsedField> fp = fieldParser != null ? fieldParser :
             strict ? DefaultFieldParser.getParser() : LenientFieldParser.getParser();
-        final HeaderImpl header = new HeaderImpl();
+        final Header header = lazyHeaders ? new LazyHeader(fp, mon) : new HeaderImpl();
         final MimeStreamParser parser = new MimeStreamParser(cfg, mon, null);
         parser.setContentHandler(new AbstractContentHandler() {
             @Override
@@ -274,6 +315,10 @@ public class DefaultMessageBuilder implements MessageBuilder {
             }
             @Override
             public void field(Field field) throws MimeException {
+                if (lazyHeaders) {
+                    header.addField(field);
+                    return;
+                }
                 ParsedField parsedField;
                 if (field instanceof ParsedField) {
                     parsedField = (ParsedField) field;
@@ -306,19 +351,97 @@ public class DefaultMessageBuilder implements MessageBuilder {
             boolean strict = cfg.isStrictParsing();
             DecodeMonitor mon = monitor != null ? monitor :
                 strict ? DecodeMonitor.STRICT : DecodeMonitor.SILENT;
+            FieldParser<? extends ParsedField> fp = fieldParser != null ? fieldParser :
+                strict ? DefaultFieldParser.getParser() : LenientFieldParser.getParser();
+            BodyDescriptorBuilder bdb = bodyDescBuilder != null ? bodyDescBuilder :
+                new DefaultBodyDescriptorBuilder(null, fp, mon, lazyHeaders);
+            BodyFactory bf = bodyFactory != null ? bodyFactory : new BasicBodyFactory(!strict);
+            MimeStreamParser parser = new MimeStreamParser(cfg, mon, bdb);
+            ParserStreamContentHandler handler = new ParserStreamContentHandler(message,
+                    new DefaultMessageImplFactory(), bf, executor, contentDecoding, mon);
+            if (lazyHeaders) {
+                handler.setLazyFieldParser(fp);
+            }
+            parser.setContentHandler(handler);
+            // bodies created on the executor are decoded by their tasks
+            parser.setContentDecoding(executor == null && contentDecoding);
+            if (flatMode) {
+                parser.setFlat();
+            } else {
+                parser.setRecurse();
+            }
+            boolean parsed = false;
+            try {
+                parser.parse(is);
+                parsed = true;
+            } finally {
+                if (!parsed) {
+                    handler.discardBodies();
+                }
+            }
+            handler.awaitBodies();
+            if (!contentDecoding) {
+                ParserStreamContentHandler.recordStoredTransferEncodings(message);
+            }
+            return message;
+        } catch (MimeException e) {
+            throw new MimeIOException(e);
+        }
+    }
+
+    /**
+     * Parses a message without copying the content of its bodies. The single
+     * bodies of the returned message keep only the position of their content
+     * in the source, and read and decode it each time they are accessed.
+     * Disposing of them does not affect the source. Bodies whose position is
+     * not known, such as the parts of base64 or quoted-printable encoded
+     * embedded messages, are created by the body factory. The executor is
+     * not used.
+     *
+     * @param source source of the message, which must remain readable and
+     *   unchanged while the message is in use.
+     * @return the parsed message.
+     */
+    public Message parseMessage(final ContentSource source) throws IOException, MimeIOException {
+        if (source == null) {
+            throw new IllegalArgumentException("Content source may not be null");
+        }
+        try {
+            MessageImpl message = newMessageImpl();
+            MimeConfig cfg = MimeConfig.copy(config != null ? config : MimeConfig.DEFAULT)
+                .setTrackPositions(true)
+                .build();
+            boolean strict = cfg.isStrictParsing();
+            DecodeMonitor mon = monitor != null ? monitor :
+                strict ? DecodeMonitor.STRICT : DecodeMonitor.SILENT;
+            FieldParser<? extends ParsedField> fp = fieldParser != null ? fieldParser :
+                strict ? DefaultFieldParser.getParser() : LenientFieldParser.getParser();
             BodyDescriptorBuilder bdb = bodyDescBuilder != null ? bodyDescBuilder :
-                new DefaultBodyDescriptorBuilder(null, fieldParser != null ? fieldParser :
-                    strict ? DefaultFieldParser.getParser() : LenientFieldParser.getParser(), mon);
+                new DefaultBodyDescriptorBuilder(null, fp, mon, lazyHeaders);
             BodyFactory bf = bodyFactory != null ? bodyFactory : new BasicBodyFactory(!strict);
             MimeStreamParser parser = new MimeStreamParser(cfg, mon, bdb);
-            parser.setContentHandler(new ParserStreamContentHandler(message, bf));
+            LazyParserStreamContentHandler handler = new LazyParserStreamContentHandler(message,
+                    new DefaultMessageImplFactory(), bf, parser, source, contentDecoding, mon,
+                    strict ? null : Charset.defaultCharset());
+            if (lazyHeaders) {
+                handler.setLazyFieldParser(fp);
+            }
+            parser.setContentHandler(handler);
             parser.setContentDecoding(contentDecoding);
             if (flatMode) {
                 parser.setFlat();
             } else {
                 parser.setRecurse();
             }
-            parser.parse(is);
+            InputStream is = source.getInputStream();
+            try {
+                parser.parse(is);
+            } finally {
+                is.close();
+            }
+            if (!contentDecoding) {
+                ParserStreamContentHandler.recordStoredTransferEncodings(message);
+            }
             return message;
         } catch (MimeException e) {
             throw new MimeIOException(e);
@@ -21,10 +21,12 @@ package org.apache.james.mime4j.message;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.james.mime4j.codec.Base64OutputStream;
 import org.apache.james.mime4j.codec.QuotedPrintableOutputStream;
+import org.apache.james.mime4j.codec.TransferEncodingTranscoder;
 import org.apache.james.mime4j.dom.BinaryBody;
 import org.apache.james.mime4j.dom.Body;
 import org.apache.james.mime4j.dom.Entity;
@@ -37,6 +39,7 @@ import org.apache.james.mime4j.dom.field.ContentTypeField;
 import org.apache.james.mime4j.dom.field.FieldName;
 import org.apache.james.mime4j.stream.Field;
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ByteArraySlice;
 import org.apache.james.mime4j.util.ByteSequence;
 import org.apache.james.mime4j.util.ContentUtil;
 import org.apache.james.mime4j.util.MimeUtil;
@@ -49,6 +52,9 @@ public class DefaultMessageWriter implements MessageWriter {
     private static final byte[] CRLF = { '\r', '\n' };
     private static final byte[] DASHES = { '-', '-' };
 
+    // created on first use and reused for all bodies written
+    private TransferEncodingTranscoder transcoder;
+
     public static byte[] asBytes(Message message) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         DefaultMessageWriter writer = new DefaultMessageWriter();
@@ -107,6 +113,13 @@ public class DefaultMessageWriter implements MessageWriter {
             throw new IllegalArgumentException("Missing body");
 
         boolean binaryBody = body instanceof BinaryBody;
+        if (body instanceof SingleBody
+                && ((SingleBody) body).getStoredTransferEncoding() != null) {
+            transcodeBody((SingleBody) body, out, entity
+                    .getContentTransferEncoding(), binaryBody);
+            return;
+        }
+
         OutputStream encOut = encodeStream(out, entity
                 .getContentTransferEncoding(), binaryBody);
 
@@ -220,7 +233,10 @@ public class DefaultMessageWriter implements MessageWriter {
      *             if an I/O error occurs.
      */
     public void writeHeader(Header header, OutputStream out) throws IOException {
-        for (Field field : header) {
+        // the raw form of lazily parsed fields is written without parsing them
+        Iterable<Field> fields = header instanceof LazyHeader
+            ? ((LazyHeader) header).getUnparsedFields() : header;
+        for (Field field : fields) {
             writeField(field, out);
         }
 
@@ -238,7 +254,45 @@ public class DefaultMessageWriter implements MessageWriter {
         }
     }
 
-    private ContentTypeField getContentType(Multipart multipart) {
+    /**
+     * Writes a body whose content is held in a transfer encoding, converting
+     * it to the transfer encoding of the entity being written in a single
+     * pass. Content already held in that encoding is written as is.
+     *
+     * @see SingleBody#getStoredTransferEncoding()
+     */
+    protected void transcodeBody(SingleBody body, OutputStream out, String encoding,
+            boolean binaryBody) throws IOException {
+        String stored = body.getStoredTransferEncoding();
+        if (isSameEncoding(stored, encoding)) {
+            body.writeTo(out);
+            return;
+        }
+        if (transcoder == null) {
+            transcoder = new TransferEncodingTranscoder();
+        }
+        InputStream in = body.getInputStream();
+        try {
+            transcoder.transcode(in, stored, out, encoding, binaryBody);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Whether content held in the stored transfer encoding is written as is
+    // when the target encoding is the given one.
+    static boolean isSameEncoding(String stored, String encoding) {
+        if (MimeUtil.isBase64Encoding(stored)) {
+            return MimeUtil.isBase64Encoding(encoding);
+        } else if (MimeUtil.isQuotedPrintableEncoded(stored)) {
+            return MimeUtil.isQuotedPrintableEncoded(encoding);
+        } else {
+            return !MimeUtil.isBase64Encoding(encoding)
+                && !MimeUtil.isQuotedPrintableEncoded(encoding);
+        }
+    }
+
+    ContentTypeField getContentType(Multipart multipart) {
         Entity parent = multipart.getParent();
         if (parent == null)
             throw new IllegalArgumentException(
@@ -258,7 +312,7 @@ public class DefaultMessageWriter implements MessageWriter {
         return contentType;
     }
 
-    private ByteSequence getBoundary(ContentTypeField contentType) {
+    ByteSequence getBoundary(ContentTypeField contentType) {
         String boundary = contentType.getBoundary();
         if (boundary == null)
             throw new IllegalArgumentException(
@@ -272,6 +326,9 @@ public class DefaultMessageWriter implements MessageWriter {
         if (byteSequence instanceof ByteArrayBuffer) {
             ByteArrayBuffer bab = (ByteArrayBuffer) byteSequence;
             out.write(bab.buffer(), 0, bab.length());
+        } else if (byteSequence instanceof ByteArraySlice) {
+            ByteArraySlice slice = (ByteArraySlice) byteSequence;
+            out.write(slice.buffer(), slice.offset(), slice.length());
         } else {
             out.write(byteSequence.toByteArray());
         }
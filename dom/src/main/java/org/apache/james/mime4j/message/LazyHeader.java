@@ -0,0 +1,79 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.util.List;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.dom.FieldParser;
+import org.apache.james.mime4j.dom.field.ParsedField;
+import org.apache.james.mime4j.stream.Field;
+
+/**
+ * MIME header that keeps the fields as read by the parser and parses them
+ * only when they are accessed. Looking up fields by name parses only the
+ * fields with that name; {@link #getFields()} and {@link #iterator()} parse
+ * all fields. Parsed fields replace their raw counterparts, so each field
+ * is parsed at most once.
+ */
+public class LazyHeader extends AbstractHeader {
+
+    private final FieldParser<? extends ParsedField> fieldParser;
+    private final DecodeMonitor monitor;
+
+    /**
+     * Creates a new empty <code>LazyHeader</code>.
+     *
+     * @param fieldParser parser of the fields that are accessed.
+     * @param monitor monitor used when parsing fields, <code>null</code> for
+     *   {@link DecodeMonitor#SILENT}.
+     */
+    public LazyHeader(final FieldParser<? extends ParsedField> fieldParser, final DecodeMonitor monitor) {
+        if (fieldParser == null) {
+            throw new IllegalArgumentException("Field parser may not be null");
+        }
+        this.fieldParser = fieldParser;
+        this.monitor = monitor != null ? monitor : DecodeMonitor.SILENT;
+    }
+
+    /**
+     * Gets the fields of this header without parsing them. Fields that have
+     * not been accessed yet are returned as read by the parser. This is
+     * sufficient to write the header out. The returned list will not be
+     * modifiable.
+     *
+     * @return the list of <code>Field</code> objects.
+     */
+    public List<Field> getUnparsedFields() {
+        return getStoredFields();
+    }
+
+    /**
+     * Parses fields that are not {@link ParsedField}s yet.
+     */
+    @Override
+    protected Field resolve(Field field) {
+        if (field instanceof ParsedField) {
+            return field;
+        }
+        return fieldParser.parse(field, monitor);
+    }
+
+}
@@ -0,0 +1,303 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.james.mime4j.codec.Base64Encoder;
+import org.apache.james.mime4j.codec.QuotedPrintableSizeCounter;
+import org.apache.james.mime4j.dom.BinaryBody;
+import org.apache.james.mime4j.dom.Body;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Header;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.util.ByteSequence;
+import org.apache.james.mime4j.util.MimeUtil;
+
+/**
+ * Computes the number of bytes {@link DefaultMessageWriter} writes for a
+ * message or a part of it, without encoding or writing anything. Useful for
+ * SMTP <code>SIZE</code>, IMAP <code>RFC822.SIZE</code> or quota
+ * accounting.
+ * <p>
+ * Header fields, boundaries, preambles and epilogues are measured from
+ * their raw form. The base64 encoded length of a single body is derived
+ * from its length; the quoted-printable encoded length is computed by a
+ * {@link QuotedPrintableSizeCounter} scan. The lengths of single bodies are
+ * cached, so that repeated queries for the same message read each body at
+ * most once per transfer encoding kind. The cache holds the bodies weakly.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public class MessageSizeCalculator {
+
+    private final DefaultMessageWriter writer = new DefaultMessageWriter();
+    private final Base64Encoder base64Encoder = new Base64Encoder();
+
+    private final Map<SingleBody, BodySize> cache =
+        Collections.synchronizedMap(new WeakHashMap<SingleBody, BodySize>());
+
+    public MessageSizeCalculator() {
+    }
+
+    /**
+     * Returns the size of the specified <code>Message</code>.
+     *
+     * @param message
+     *            the <code>Message</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeMessage(Message, OutputStream)}.
+     * @throws IOException
+     *             if an I/O error occurs reading a body.
+     */
+    public long getMessageSize(Message message) throws IOException {
+        return getEntitySize(message);
+    }
+
+    /**
+     * Returns the size of the specified <code>Entity</code>, including its
+     * header and its transfer encoded body.
+     *
+     * @param entity
+     *            the <code>Entity</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeEntity(Entity, OutputStream)}.
+     * @throws IOException
+     *             if an I/O error occurs reading a body.
+     */
+    public long getEntitySize(Entity entity) throws IOException {
+        final Header header = entity.getHeader();
+        if (header == null)
+            throw new IllegalArgumentException("Missing header");
+
+        final Body body = entity.getBody();
+        if (body == null)
+            throw new IllegalArgumentException("Missing body");
+
+        String encoding = entity.getContentTransferEncoding();
+        long size = getHeaderSize(header);
+        if (body instanceof SingleBody) {
+            return size + getEncodedSize((SingleBody) body, encoding);
+        } else if (MimeUtil.isBase64Encoding(encoding)) {
+            return size + base64Encoder.encodedLength(getBodySize(body));
+        } else if (MimeUtil.isQuotedPrintableEncoded(encoding)) {
+            // composite content is rarely quoted-printable encoded; scan
+            // its serialized form
+            QuotedPrintableSizeCounter counter = new QuotedPrintableSizeCounter(false);
+            writer.writeBody(body, counter);
+            return size + counter.getSize();
+        } else {
+            return size + getBodySize(body);
+        }
+    }
+
+    /**
+     * Returns the size of the specified <code>Body</code> without transfer
+     * encoding.
+     *
+     * @param body
+     *            the <code>Body</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeBody(Body, OutputStream)}.
+     * @throws IOException
+     *             if an I/O error occurs reading a body.
+     */
+    public long getBodySize(Body body) throws IOException {
+        if (body instanceof Message) {
+            return getEntitySize((Message) body);
+        } else if (body instanceof Multipart) {
+            return getMultipartSize((Multipart) body);
+        } else if (body instanceof SingleBody) {
+            return getBodySize((SingleBody) body).length;
+        } else
+            throw new IllegalArgumentException("Unsupported body class");
+    }
+
+    /**
+     * Returns the size of the specified <code>Multipart</code>.
+     *
+     * @param multipart
+     *            the <code>Multipart</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeMultipart(Multipart, OutputStream)}.
+     * @throws IOException
+     *             if an I/O error occurs reading a body.
+     */
+    public long getMultipartSize(Multipart multipart) throws IOException {
+        ByteSequence boundary = writer.getBoundary(writer.getContentType(multipart));
+
+        long size = 0;
+        if (multipart instanceof MultipartImpl) {
+            MultipartImpl impl = (MultipartImpl) multipart;
+            if (impl.getPreambleRaw() != null)
+                size += impl.getPreambleRaw().length() + 2;
+            if (impl.getEpilogueRaw() != null)
+                size += impl.getEpilogueRaw().length();
+        } else {
+            if (multipart.getPreamble() != null)
+                size += multipart.getPreamble().length() + 2;
+            if (multipart.getEpilogue() != null)
+                size += multipart.getEpilogue().length();
+        }
+
+        for (Entity bodyPart : multipart.getBodyParts()) {
+            // dashes, boundary and CRLF, then the part and CRLF
+            size += 2 + boundary.length() + 2;
+            size += getEntitySize(bodyPart) + 2;
+        }
+
+        // closing delimiter
+        return size + 2 + boundary.length() + 2 + 2;
+    }
+
+    /**
+     * Returns the size of the specified <code>Header</code>.
+     *
+     * @param header
+     *            the <code>Header</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeHeader(Header, OutputStream)}.
+     */
+    public long getHeaderSize(Header header) {
+        Iterable<Field> fields = header instanceof LazyHeader
+            ? ((LazyHeader) header).getUnparsedFields() : header;
+        long size = 0;
+        for (Field field : fields) {
+            size += getFieldSize(field);
+        }
+        return size + 2;
+    }
+
+    /**
+     * Returns the size of the specified <code>Field</code>.
+     *
+     * @param field
+     *            the <code>Field</code> to measure.
+     * @return the number of bytes written by
+     *         {@link DefaultMessageWriter#writeField(Field, OutputStream)}.
+     */
+    public long getFieldSize(Field field) {
+        ByteSequence raw = field.getRaw();
+        if (raw != null) {
+            return raw.length() + 2;
+        }
+        StringBuilder buf = new StringBuilder();
+        buf.append(field.getName());
+        buf.append(": ");
+        String body = field.getBody();
+        if (body != null) {
+            buf.append(body);
+        }
+        // each char is written as a single byte
+        return MimeUtil.fold(buf.toString(), 0).length() + 2;
+    }
+
+    private long getEncodedSize(SingleBody body, String encoding) throws IOException {
+        String stored = body.getStoredTransferEncoding();
+        if (stored != null && !DefaultMessageWriter.isSameEncoding(stored, encoding)) {
+            // stored content that has to be transcoded is not cached
+            CountingOutputStream counter = new CountingOutputStream();
+            writer.transcodeBody(body, counter, encoding, body instanceof BinaryBody);
+            return counter.count;
+        }
+
+        if (stored == null && MimeUtil.isBase64Encoding(encoding)) {
+            return base64Encoder.encodedLength(getBodySize(body).length);
+        } else if (stored == null && MimeUtil.isQuotedPrintableEncoded(encoding)) {
+            BodySize size = getBodySize(body);
+            if (size.quotedPrintableSize < 0) {
+                size = scan(body, true);
+            }
+            return size.quotedPrintableSize;
+        } else {
+            return getBodySize(body).length;
+        }
+    }
+
+    private BodySize getBodySize(SingleBody body) throws IOException {
+        BodySize size = cache.get(body);
+        if (size == null || !isSameStoredEncoding(size.storedEncoding,
+                body.getStoredTransferEncoding())) {
+            size = scan(body, false);
+        }
+        return size;
+    }
+
+    private BodySize scan(SingleBody body, boolean quotedPrintable) throws IOException {
+        BodySize size;
+        if (quotedPrintable) {
+            QuotedPrintableSizeCounter counter =
+                new QuotedPrintableSizeCounter(body instanceof BinaryBody);
+            body.writeTo(counter);
+            size = new BodySize(body.getStoredTransferEncoding(), counter.getInputLength(),
+                    counter.getSize());
+        } else {
+            CountingOutputStream counter = new CountingOutputStream();
+            body.writeTo(counter);
+            size = new BodySize(body.getStoredTransferEncoding(), counter.count, -1);
+        }
+        cache.put(body, size);
+        return size;
+    }
+
+    private static boolean isSameStoredEncoding(String cached, String current) {
+        return cached == null ? current == null : cached.equals(current);
+    }
+
+    private static final class BodySize {
+
+        final String storedEncoding;
+        final long length;
+        final long quotedPrintableSize;
+
+        BodySize(String storedEncoding, long length, long quotedPrintableSize) {
+            this.storedEncoding = storedEncoding;
+            this.length = length;
+            this.quotedPrintableSize = quotedPrintableSize;
+        }
+
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+    }
+
+}
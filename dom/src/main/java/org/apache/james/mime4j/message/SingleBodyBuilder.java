@@ -24,8 +24,6 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.IllegalCharsetNameException;
-import java.nio.charset.UnsupportedCharsetException;
 
 import org.apache.james.mime4j.Charsets;
 import org.apache.james.mime4j.dom.BinaryBody;
@@ -99,11 +97,8 @@ public class SingleBodyBuilder {
         if (other instanceof TextBody) {
             String charsetName = ((TextBody) other).getMimeCharset();
             if (charsetName != null) {
-                try {
-                    this.charset = Charset.forName(charsetName);
-                } catch (IllegalCharsetNameException ex) {
-                    throw new UnsupportedEncodingException(charsetName);
-                } catch (UnsupportedCharsetException ex) {
+                this.charset = CharsetUtil.lookup(charsetName);
+                if (this.charset == null) {
                     throw new UnsupportedEncodingException(charsetName);
                 }
             }
@@ -0,0 +1,168 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.field;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.james.mime4j.field.contentdisposition.parser.ContentDispositionParser;
+import org.apache.james.mime4j.field.contenttype.parser.ContentTypeParser;
+import org.apache.james.mime4j.stream.RawField;
+import org.apache.james.mime4j.stream.RawFieldParser;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs the hand written parser and the JavaCC generated parsers side by side.
+ */
+public class ContentFieldBodyParserTest {
+
+    private static final String[] SAMPLES = {
+            "text/plain",
+            "text/plain; charset=ISO-8859-1",
+            "  TEXT/Plain ; charset = \"us-ascii\" ; format=flowed",
+            "multipart/mixed; boundary=\"----=_Part_0_1234.5678\"",
+            "multipart/mixed; boundary=---- =_Part",
+            "application/octet-stream; name=\"a \\\"quoted\\\" name.bin\"",
+            "text/plain (comment (nested \\) comment)); charset=utf-8 (trailing)",
+            "text(c)/(c)plain",
+            "text/plain;",
+            "text/plain; charset",
+            "text/plain; charset=",
+            "text/plain charset=utf-8",
+            "text",
+            "/plain",
+            "",
+            "   ",
+            "text/plain; size=1234",
+            "text/1234",
+            "1234/plain",
+            "text/plain; 1234=abc",
+            "text/plain; name=abc123",
+            "text/plain; name=\"unterminated",
+            "text/plain; (unterminated comment",
+            "text/plain; name=a@b",
+            "text/plain; name=<a>",
+            "text/plain; a=b, c=d",
+            "text/plain; a=b; c=\"d\"; e=f",
+            "text/plain; name=\"\\",
+            "text/plain; name=\u00e9t\u00e9",
+            "attachment",
+            "attachment; filename=genome.jpeg; modification-date=\"Wed, 12 Feb 1997 16:29:51 -0500\"",
+            "inline; size=42",
+            "form-data; name=\"field\"; filename=\"C:\\\\dir\\\\file.txt\"",
+            "attachment/inline",
+            "attachment; filename=a/b",
+            "attachment filename=x",
+            "attachment;",
+            "attachment; filename==x",
+            "attachment; filename=x y",
+            "attachment; filename=\"x\"y",
+            "attachment; filename=[x]",
+            "attachment; filename=?",
+            "attachment; filename=x:y",
+    };
+
+    private static final String ALPHABET = "aZ09 \t\t;;;===//\"\"\\()<>@,:[]?-._\u00e9";
+
+    @Test
+    public void testContentTypeSamples() throws Exception {
+        for (String sample : SAMPLES) {
+            assertSameContentType(sample);
+        }
+    }
+
+    @Test
+    public void testContentDispositionSamples() throws Exception {
+        for (String sample : SAMPLES) {
+            assertSameContentDisposition(sample);
+        }
+    }
+
+    @Test
+    public void testRandomInput() throws Exception {
+        Random random = new Random(4711);
+        String[] prefixes = { "text/plain; ", "attachment; ", "", "text/plain; name=" };
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder(prefixes[i % prefixes.length]);
+            int len = random.nextInt(24);
+            for (int j = 0; j < len; j++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameContentType(sb.toString());
+            assertSameContentDisposition(sb.toString());
+        }
+    }
+
+    @Test
+    public void testFoldedRawField() throws Exception {
+        RawField field = RawFieldParser.DEFAULT.parseField(ContentUtil.encode(
+                "Content-Type: multipart/mixed;\r\n\tboundary=\"abc\r\n def\"; charset=\r\n utf-8"));
+        ContentFieldBodyParser parser = ContentFieldBodyParser.forContentType(field);
+        Assert.assertNull(parser.parse());
+        Assert.assertEquals("multipart", parser.getType());
+        Assert.assertEquals("mixed", parser.getSubType());
+        Assert.assertEquals("[boundary, charset]", parser.getParamNames().toString());
+        Assert.assertEquals("[abc def, utf-8]", parser.getParamValues().toString());
+        assertSameContentType(field.getBody());
+    }
+
+    private static void assertSameContentType(String body) throws Exception {
+        ContentTypeParser expected = new ContentTypeParser(new StringReader(body));
+        boolean failed = false;
+        try {
+            expected.parseAll();
+        } catch (org.apache.james.mime4j.field.contenttype.parser.ParseException ex) {
+            failed = true;
+        } catch (org.apache.james.mime4j.field.contenttype.parser.TokenMgrError ex) {
+            failed = true;
+        }
+        ContentFieldBodyParser actual = ContentFieldBodyParser.forContentType(
+                new RawField("Content-Type", body));
+        String error = actual.parse();
+        Assert.assertEquals(body, failed, error != null);
+        Assert.assertEquals(body, expected.getType(), actual.getType());
+        Assert.assertEquals(body, expected.getSubType(), actual.getSubType());
+        Assert.assertEquals(body, expected.getParamNames(), actual.getParamNames());
+        Assert.assertEquals(body, expected.getParamValues(), actual.getParamValues());
+    }
+
+    private static void assertSameContentDisposition(String body) throws Exception {
+        ContentDispositionParser expected = new ContentDispositionParser(new StringReader(body));
+        boolean failed = false;
+        try {
+            expected.parseAll();
+        } catch (org.apache.james.mime4j.field.contentdisposition.parser.ParseException ex) {
+            failed = true;
+        } catch (org.apache.james.mime4j.field.contentdisposition.parser.TokenMgrError ex) {
+            failed = true;
+        }
+        ContentFieldBodyParser actual = ContentFieldBodyParser.forContentDisposition(
+                new RawField("Content-Disposition", body));
+        String error = actual.parse();
+        Assert.assertEquals(body, failed, error != null);
+        Assert.assertEquals(body, expected.getDispositionType(), actual.getType());
+        Assert.assertEquals(body, expected.getParamNames(), actual.getParamNames());
+        Assert.assertEquals(body, expected.getParamValues(), actual.getParamValues());
+    }
+
+}
@@ -0,0 +1,113 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.field;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LenientDateTimeParserTest {
+
+    private static final String[] DAYS = {
+        "", "Wed, ", "Wednesday, ", "wed, ", "THU, ", "Wed,", "Wed ", "Wed,  ", "Wed,\t", "Wd, " };
+    private static final String[] DATES = {
+        "16", "6", "06", "31", "32", "0", "016", "-3", "x" };
+    private static final String[] MONTHS = {
+        "Jul", "July", "JUL", "feb", "Sep", "Sept", "Mai", "jUNE", "Dec" };
+    private static final String[] YEARS = {
+        "2008", "08", "99", "46", "47", "00", "1999", "8", "108", "1500", "0", "12345" };
+    private static final String[] TIMES = {
+        "17:12:33", "7:02:03", "24:00:00", "23:59:60", "17:12", "17:12:33.882", "17:12:33.5",
+        "17: 12:33", "99:99:99", "17:12:33.", "17.12.33" };
+    private static final String[] ZONES = {
+        "+0200", "-0830", "+02:30", "+02", "+2", "+2400", "+0099", "+02000", "GMT", "gmt", "GMT+1:00",
+        "GMT+01:30", "GMT+0100", "GMTX", "Z", "z", "Zulu", "0000", "00000", "0100", "UT", "UTC",
+        "EST", "EDT", "CST", "CDT", "MST", "MDT", "PST", "PDT", "CEST", "ESTX", "", "+0000 (GMT)",
+        "(GMT)", "-0000" };
+    private static final String[] SEPARATORS = { " ", "  ", "\t", "" };
+
+    private static void assertSameAsFormats(String value) {
+        Date expected = LenientDateTimeParser.parseWithFormats(value.trim());
+        Date actual = LenientDateTimeParser.parse(value);
+        if (expected != null) {
+            Assert.assertEquals(value, expected, actual);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    @Test
+    public void testSameResultsAsDateFormats() throws Exception {
+        for (String day : DAYS) {
+            for (String time : TIMES) {
+                for (String zone : ZONES) {
+                    assertSameAsFormats(day + "16 Jul 2008 " + time + " " + zone);
+                    assertSameAsFormats(day + "16 Jul 08 " + time + " " + zone);
+                }
+            }
+        }
+        Random random = new Random(4711);
+        for (int i = 0; i < 5000; i++) {
+            String value = pick(random, DAYS) + pick(random, DATES) + pick(random, SEPARATORS)
+                + pick(random, MONTHS) + pick(random, SEPARATORS) + pick(random, YEARS)
+                + pick(random, SEPARATORS) + pick(random, TIMES) + pick(random, SEPARATORS)
+                + pick(random, ZONES);
+            assertSameAsFormats(value);
+        }
+    }
+
+    @Test
+    public void testTwoDigitYears() throws Exception {
+        for (int year = 0; year < 100; year++) {
+            String yy = year < 10 ? "0" + year : Integer.toString(year);
+            assertSameAsFormats("Thu, 1 Jan " + yy + " 00:00:00 +0000");
+            assertSameAsFormats("31 Dec " + yy + " 23:59:59 -1200");
+        }
+    }
+
+    @Test
+    public void testBrokenVariants() throws Exception {
+        Date expected = new Date(1216221153000L);
+        Assert.assertEquals(expected, LenientDateTimeParser.parse("Wed 16 Jul 2008 17:12:33 +0200"));
+        Assert.assertEquals(expected, LenientDateTimeParser.parse("Wed,16 Jul 2008 17:12:33 +0200"));
+        Assert.assertEquals(expected, LenientDateTimeParser.parse("16\tJul  2008 17:12:33+0200"));
+        Assert.assertEquals(expected, LenientDateTimeParser.parse("16 Jul 2008 15:12:33 0000"));
+        Assert.assertEquals(new Date(1216221120000L),
+                LenientDateTimeParser.parse("16 Jul 2008 17:12 +0200"));
+        Assert.assertEquals(new Date(1216221153882L),
+                LenientDateTimeParser.parse(" 16 Jul 2008 15:12:33.882 Z "));
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        Assert.assertNull(LenientDateTimeParser.parse(null));
+        Assert.assertNull(LenientDateTimeParser.parse(""));
+        Assert.assertNull(LenientDateTimeParser.parse("yesterday"));
+        Assert.assertNull(LenientDateTimeParser.parse("16 Jul 2008"));
+        Assert.assertNull(LenientDateTimeParser.parse("16 Jul 2008 17:12:33"));
+        Assert.assertNull(LenientDateTimeParser.parse("16 Jul 2008 17:12:33 +2"));
+        Assert.assertNull(LenientDateTimeParser.parse("16 Jul 2008 17:12:33 GMT+0100"));
+    }
+
+}
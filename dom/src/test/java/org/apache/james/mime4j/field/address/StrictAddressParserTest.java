@@ -0,0 +1,286 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+
+package org.apache.james.mime4j.field.address;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.dom.address.Address;
+import org.apache.james.mime4j.dom.address.AddressList;
+import org.apache.james.mime4j.dom.address.Group;
+import org.apache.james.mime4j.dom.address.Mailbox;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StrictAddressParserTest {
+
+    private static final String[] SAMPLES = new String[] {
+            "",
+            " , ,",
+            "john@example.org",
+            "John Doe <john@example.org>",
+            "\"Doe, John\" <john@example.org>, jane@example.org",
+            "John (the man) Doe <john(x)@ example . org>",
+            "John  ((nested) comment)\t Doe <john@example.org>",
+            "=?ISO-8859-1?Q?Andr=E9?= Pirard <PIRARD@vm1.ulg.ac.be>",
+            "<@route1.example,,@route2.example:john@example.org>",
+            "john.\"q. doe\"@[192.168.0.1]",
+            "\"a\\\"b\"@[1.2.\\]3]",
+            "john. doe@example.org",
+            "john doe@example.org",
+            "\"john\"\"doe\"@example.org",
+            "john@example org",
+            "john@example. org",
+            "john@example .org",
+            "john@example..org",
+            "group: john@example.org, Jane <jane@example.org>;",
+            "=?ISO-8859-1?Q?Gr=FCppe?=: ;, x@y",
+            "group: john@example.org",
+            "group: g2: x@y;;",
+            "<john@example.org",
+            "john@",
+            "@example.org",
+            "john@example.org (comment",
+            "\"unterminated",
+            "[literal]",
+            "a@[lit[eral]",
+            "a@b\r\n",
+            ")",
+            "a.@b",
+            ".a@b",
+            "a@.b" };
+
+    @Test
+    public void testSamples() throws Exception {
+        for (String sample : SAMPLES) {
+            assertSameResult(sample);
+        }
+    }
+
+    @Test
+    public void testRandomInput() throws Exception {
+        Random random = new Random(4711);
+        int valid = 0;
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sb.append(pick(random, ",", ", ", " ,", ",,"));
+                }
+                if (random.nextInt(5) == 0) {
+                    appendPhrase(random, sb);
+                    sb.append(':');
+                    int mailboxes = random.nextInt(3);
+                    for (int j = 0; j < mailboxes; j++) {
+                        if (j > 0) {
+                            sb.append(',');
+                        }
+                        appendMailbox(random, sb);
+                    }
+                    sb.append(pick(random, ";", " ;", ""));
+                } else {
+                    appendMailbox(random, sb);
+                }
+            }
+            if (random.nextInt(3) == 0) {
+                // mutate the address list
+                String piece = pick(random, "<", ">", "@", ".", ",", ":", ";", " ", "(", ")",
+                        "\\", "\"", "[", "]", "x");
+                int pos = random.nextInt(sb.length() + 1);
+                if (random.nextBoolean() || pos == sb.length()) {
+                    sb.insert(pos, piece);
+                } else {
+                    sb.deleteCharAt(pos);
+                }
+            }
+            if (assertSameResult(sb.toString())) {
+                valid++;
+            }
+        }
+        Assert.assertTrue("valid " + valid, valid > 5000);
+    }
+
+    private static void appendMailbox(Random random, StringBuilder sb) {
+        switch (random.nextInt(3)) {
+        case 0:
+            appendAddrSpec(random, sb);
+            break;
+        case 1:
+            appendPhrase(random, sb);
+            // fall through
+        default:
+            sb.append(pick(random, "<", " <"));
+            if (random.nextInt(4) == 0) {
+                sb.append("@");
+                appendDomain(random, sb);
+                sb.append(pick(random, ":", ",@a:", ",,@[1.2]:"));
+            }
+            appendAddrSpec(random, sb);
+            sb.append(pick(random, ">", "> ", " >"));
+        }
+    }
+
+    private static void appendPhrase(Random random, StringBuilder sb) {
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            sb.append(pick(random, "", " ", "\t", " (c) ", "((n) x)"));
+            sb.append(pick(random, "John", "Q.", "\"J. Doe\"", "\"a\\\"b\"", "x",
+                    "=?ISO-8859-1?Q?Andr=E9?="));
+        }
+        sb.append(pick(random, "", " "));
+    }
+
+    private static void appendAddrSpec(Random random, StringBuilder sb) {
+        sb.append(pick(random, "john", "jane.", "\"j d\"", "j.d"));
+        if (random.nextInt(3) == 0) {
+            sb.append(pick(random, ".", " ", "", " . "));
+            sb.append(pick(random, "doe", "\"doe\"", "d.e."));
+        }
+        sb.append(pick(random, "@", " @ ", "(c)@"));
+        appendDomain(random, sb);
+    }
+
+    private static void appendDomain(Random random, StringBuilder sb) {
+        sb.append(pick(random, "example.org", "[1.2.3.4]", "[a\\]b]", "a", "a."));
+        if (random.nextInt(3) == 0) {
+            sb.append(pick(random, ".", " ", "", " . ", ".."));
+            sb.append(pick(random, "org", "b.c"));
+        }
+    }
+
+    private static String pick(Random random, String... choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    @Test
+    public void testPhraseWhiteSpace() throws Exception {
+        Mailbox mailbox = new StrictAddressParser("John (x) \"Q.\"\t(y)Doe <a@b>",
+                DecodeMonitor.SILENT).parseMailbox();
+        Assert.assertEquals("John  Q.\tDoe", mailbox.getName());
+    }
+
+    @Test
+    public void testNonAsciiQuotedString() throws Exception {
+        Mailbox mailbox = new StrictAddressParser("\"André\" <andre@example.org>",
+                DecodeMonitor.SILENT).parseMailbox();
+        Assert.assertEquals("André", mailbox.getName());
+        try {
+            new StrictAddressParser("André <andre@example.org>", DecodeMonitor.SILENT)
+                    .parseMailbox();
+            Assert.fail("ParseException expected");
+        } catch (ParseException expected) {
+        }
+    }
+
+    @Test
+    public void testManyRecipients() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("\"Recipient ").append(i).append("\" <user").append(i).append("@example.org>");
+        }
+        AddressList list = new StrictAddressParser(sb, DecodeMonitor.SILENT).parseAddressList();
+        Assert.assertEquals(500, list.size());
+        Assert.assertEquals("user499@example.org", ((Mailbox) list.get(499)).getAddress());
+        Assert.assertEquals(dump(list), dump(jjtreeAddressList(sb.toString())));
+    }
+
+    /**
+     * Asserts that the JJTree parser and the hand written parser agree on the
+     * given input and returns whether it was a valid address list.
+     */
+    private static boolean assertSameResult(String s) {
+        String expected;
+        String actual;
+        try {
+            expected = dump(jjtreeAddressList(s));
+        } catch (ParseException ex) {
+            expected = "error";
+        }
+        try {
+            actual = dump(new StrictAddressParser(s, DecodeMonitor.SILENT).parseAddressList());
+        } catch (ParseException ex) {
+            actual = "error";
+        }
+        Assert.assertEquals(s, expected, actual);
+        boolean valid = !expected.equals("error");
+
+        try {
+            expected = dump(Builder.getInstance().buildAddress(
+                    new AddressListParser(new StringReader(s)).parseAddress(), DecodeMonitor.SILENT));
+        } catch (ParseException ex) {
+            expected = "error";
+        }
+        try {
+            actual = dump(new StrictAddressParser(s, DecodeMonitor.SILENT).parseAddress());
+        } catch (ParseException ex) {
+            actual = "error";
+        }
+        Assert.assertEquals(s, expected, actual);
+
+        try {
+            expected = dump(Builder.getInstance().buildMailbox(
+                    new AddressListParser(new StringReader(s)).parseMailbox(), DecodeMonitor.SILENT));
+        } catch (ParseException ex) {
+            expected = "error";
+        }
+        try {
+            actual = dump(new StrictAddressParser(s, DecodeMonitor.SILENT).parseMailbox());
+        } catch (ParseException ex) {
+            actual = "error";
+        }
+        Assert.assertEquals(s, expected, actual);
+        return valid;
+    }
+
+    private static AddressList jjtreeAddressList(String s) throws ParseException {
+        return Builder.getInstance().buildAddressList(
+                new AddressListParser(new StringReader(s)).parseAddressList(), DecodeMonitor.SILENT);
+    }
+
+    private static String dump(AddressList list) {
+        StringBuilder sb = new StringBuilder();
+        for (Address address : list) {
+            sb.append(dump(address)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String dump(Address address) {
+        if (address instanceof Group) {
+            Group group = (Group) address;
+            StringBuilder sb = new StringBuilder();
+            sb.append("group [").append(group.getName()).append("]");
+            for (Mailbox mailbox : group.getMailboxes()) {
+                sb.append(' ').append(dump(mailbox));
+            }
+            return sb.toString();
+        }
+        Mailbox mailbox = (Mailbox) address;
+        return "[" + mailbox.getName() + "] " + mailbox.getRoute() + " [" + mailbox.getLocalPart()
+                + "] [" + mailbox.getDomain() + "]";
+    }
+
+}
@@ -0,0 +1,196 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+import java.util.Random;
+
+import org.apache.james.mime4j.Charsets;
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.field.Fields;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChannelMessageWriterTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES,
+            ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES,
+            ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+            ExampleMail.RFC822_SIMPLE_BYTES };
+
+    @Test
+    public void testSameAsStreamWriter() throws Exception {
+        for (boolean contentDecoding : new boolean[] { true, false }) {
+            for (byte[] bytes : MESSAGES) {
+                DefaultMessageBuilder builder = new DefaultMessageBuilder();
+                builder.setContentDecoding(contentDecoding);
+                Message message = builder.parseMessage(new ByteArrayInputStream(bytes));
+                assertSameAsStreamWriter(message);
+
+                // encoded composite bodies and transcoded single bodies
+                message.getHeader().setField(Fields.contentTransferEncoding("base64"));
+                setSingleBodyEncoding(message, "quoted-printable");
+                assertSameAsStreamWriter(message);
+            }
+        }
+    }
+
+    @Test
+    public void testBuiltMessage() throws Exception {
+        byte[] bin = new byte[5000];
+        new Random(0).nextBytes(bin);
+        Message message = Message.Builder.of()
+            .setFrom("sender@localhost")
+            .setTo("receiver@localhost")
+            .setSubject("A rather long subject line that has to be folded when the header "
+                    + "is written, as it exceeds the line length")
+            .setBody(MultipartBuilder.create("mixed")
+                .setPreamble("preamble")
+                .setEpilogue("epilogue")
+                .addTextPart("caf\u00e9 \r\nna\u00efve. \t\r\n", Charsets.ISO_8859_1)
+                .addTextPart("plain ascii", Charsets.US_ASCII)
+                .addBinaryPart(bin, "application/octet-stream")
+                .build())
+            .build();
+        assertSameAsStreamWriter(message);
+        setSingleBodyEncoding(message, "binary");
+        assertSameAsStreamWriter(message);
+    }
+
+    @Test
+    public void testLargeBatches() throws Exception {
+        MultipartBuilder multipart = MultipartBuilder.create("mixed");
+        for (int i = 0; i < 100; i++) {
+            multipart.addTextPart("part " + i, Charsets.US_ASCII);
+        }
+        Message message = Message.Builder.of()
+            .setSubject("Many parts")
+            .setBody(multipart.build())
+            .build();
+        assertSameAsStreamWriter(message);
+    }
+
+    @Test
+    public void testNonBlockingChannelIsRejected() throws Exception {
+        Message message = new DefaultMessageBuilder().parseMessage(
+                new ByteArrayInputStream(ExampleMail.RFC822_SIMPLE_BYTES));
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            new ChannelMessageWriter().writeMessage(message, pipe.sink());
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void testChannelRefusingDataFails() throws Exception {
+        Message message = new DefaultMessageBuilder().parseMessage(
+                new ByteArrayInputStream(ExampleMail.RFC822_SIMPLE_BYTES));
+        try {
+            new ChannelMessageWriter().writeMessage(message, new BufferChannel(0));
+            Assert.fail("IOException expected");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertSameAsStreamWriter(Message message) throws IOException {
+        byte[] expected = DefaultMessageWriter.asBytes(message);
+        for (int limit : new int[] { Integer.MAX_VALUE, 7 }) {
+            BufferChannel channel = new BufferChannel(limit);
+            new ChannelMessageWriter().writeMessage(message, channel);
+            Assert.assertArrayEquals(expected, channel.out.toByteArray());
+        }
+    }
+
+    private static void setSingleBodyEncoding(Entity entity, String encoding) {
+        if (entity.getBody() instanceof Multipart) {
+            for (Entity part : ((Multipart) entity.getBody()).getBodyParts()) {
+                setSingleBodyEncoding(part, encoding);
+            }
+        } else if (entity.getBody() instanceof Message) {
+            setSingleBodyEncoding((Message) entity.getBody(), encoding);
+        } else {
+            entity.getHeader().setField(Fields.contentTransferEncoding(encoding));
+        }
+    }
+
+    /**
+     * Collects the written bytes, accepting at most <code>limit</code> bytes
+     * per write like a socket with a small send buffer.
+     */
+    private static final class BufferChannel implements GatheringByteChannel {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int limit;
+
+        BufferChannel(int limit) {
+            this.limit = limit;
+        }
+
+        public int write(ByteBuffer src) {
+            int n = Math.min(src.remaining(), limit);
+            for (int i = 0; i < n; i++) {
+                out.write(src.get());
+            }
+            return n;
+        }
+
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long total = 0;
+            for (int i = offset; i < offset + length && total < limit; i++) {
+                int n = Math.min(srcs[i].remaining(), (int) (limit - total));
+                for (int j = 0; j < n; j++) {
+                    out.write(srcs[i].get());
+                }
+                total += n;
+            }
+            return total;
+        }
+
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+
+    }
+
+}
@@ -21,8 +21,17 @@ package org.apache.james.mime4j.message;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
 import org.apache.james.mime4j.Charsets;
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.dom.Entity;
 import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.field.Fields;
+import org.apache.james.mime4j.util.ContentUtil;
 import org.junit.Test;
 
 public class DefaultMessageWriterTest {
@@ -47,4 +56,80 @@ public class DefaultMessageWriterTest {
                 "this is the body");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void undecodedBodiesShouldBeWrittenInTheirStoredEncoding() throws Exception {
+        byte[] source = ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES;
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setContentDecoding(false);
+        Message message = builder.parseMessage(new ByteArrayInputStream(source));
+
+        assertThat(decodedBodies(parse(DefaultMessageWriter.asBytes(message))))
+            .isEqualTo(decodedBodies(parse(source)));
+    }
+
+    @Test
+    public void undecodedBodiesOfBuiltMessagesShouldBeWrittenInTheirStoredEncoding() throws Exception {
+        byte[] source = ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES;
+        Message message = Message.Builder.of()
+            .disableContentDecoding()
+            .parse(new ByteArrayInputStream(source))
+            .build();
+
+        assertThat(decodedBodies(parse(DefaultMessageWriter.asBytes(message))))
+            .isEqualTo(decodedBodies(parse(source)));
+    }
+
+    @Test
+    public void copiesShouldKeepTheStoredEncoding() throws Exception {
+        byte[] source = ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES;
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setContentDecoding(false);
+        Message message = builder.parseMessage(new ByteArrayInputStream(source));
+
+        for (Message copy : new Message[] { builder.copy(message), Message.Builder.of(message).build() }) {
+            assertThat(((SingleBody) copy.getBody()).getStoredTransferEncoding())
+                .isEqualTo("quoted-printable");
+            assertThat(decodedBodies(parse(DefaultMessageWriter.asBytes(copy))))
+                .isEqualTo(decodedBodies(parse(source)));
+        }
+    }
+
+    @Test
+    public void undecodedBodiesShouldBeTranscodedToTheTargetEncoding() throws Exception {
+        byte[] source = ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES;
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setContentDecoding(false);
+        Message message = builder.parseMessage(new ByteArrayInputStream(source));
+        assertThat(((SingleBody) message.getBody()).getStoredTransferEncoding())
+            .isEqualTo("quoted-printable");
+
+        message.getHeader().setField(Fields.contentTransferEncoding("base64"));
+        byte[] bytes = DefaultMessageWriter.asBytes(message);
+
+        assertThat(new String(bytes, Charsets.US_ASCII.name()))
+            .doesNotContain("=0D=0A");
+        Message reparsed = parse(bytes);
+        assertThat(reparsed.getContentTransferEncoding()).isEqualTo("base64");
+        assertThat(decodedBodies(reparsed)).isEqualTo(decodedBodies(parse(source)));
+    }
+
+    private static Message parse(byte[] bytes) throws IOException {
+        return new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(bytes));
+    }
+
+    private static String decodedBodies(Entity entity) throws IOException {
+        if (entity.getBody() instanceof Multipart) {
+            StringBuilder sb = new StringBuilder();
+            for (Entity part : ((Multipart) entity.getBody()).getBodyParts()) {
+                sb.append(decodedBodies(part)).append('\n');
+            }
+            return sb.toString();
+        } else if (entity.getBody() instanceof Message) {
+            return decodedBodies((Message) entity.getBody());
+        } else {
+            return ContentUtil.toString(ContentUtil.buffer(
+                    ((SingleBody) entity.getBody()).getInputStream()), Charsets.ISO_8859_1);
+        }
+    }
+
+}
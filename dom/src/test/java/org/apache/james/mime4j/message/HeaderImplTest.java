@@ -25,6 +25,7 @@ import org.apache.james.mime4j.field.DefaultFieldParser;
 import org.apache.james.mime4j.message.DefaultMessageWriter;
 import org.apache.james.mime4j.message.HeaderImpl;
 import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.RawField;
 import org.apache.james.mime4j.util.ByteArrayBuffer;
 import org.apache.james.mime4j.util.ContentUtil;
 import org.junit.Assert;
@@ -142,4 +143,44 @@ public class HeaderImplTest {
         Assert.assertEquals("Message-ID", header.getFields().get(3).getName());
     }
 
+    @Test
+    public void testManyFields() throws Exception {
+        Header header = new HeaderImpl();
+        for (int i = 0; i < 100; i++) {
+            header.addField(new RawField("X-Field-" + (i % 7), Integer.toString(i)));
+        }
+        Assert.assertEquals(100, header.getFields().size());
+        Assert.assertEquals("0", header.getField("x-field-0").getBody());
+        Assert.assertEquals(14, header.getFields("X-FIELD-3").size());
+        Assert.assertEquals("94", header.getFields("X-Field-3").get(13).getBody());
+        Assert.assertEquals(0, header.getFields("X-Field-7").size());
+        Assert.assertNull(header.getField("X-Field-7", Field.class));
+        Assert.assertEquals("1", header.getField("X-Field-1", RawField.class).getBody());
+
+        header.setField(new RawField("X-Field-2", "set"));
+        Assert.assertEquals(87, header.getFields().size());
+        Assert.assertEquals("set", header.getFields().get(2).getBody());
+        Assert.assertEquals("8", header.getFields().get(8).getBody());
+        Assert.assertEquals(1, header.getFields("x-field-2").size());
+
+        Assert.assertEquals(15, header.removeFields("X-FIELD-1"));
+        Assert.assertEquals(72, header.getFields().size());
+        for (Field field : header) {
+            Assert.assertFalse(field.getName().equals("X-Field-1"));
+        }
+        Assert.assertEquals("0", header.getFields().get(0).getBody());
+        Assert.assertEquals("set", header.getFields().get(1).getBody());
+        Assert.assertEquals("3", header.getFields().get(2).getBody());
+        header.addField(new RawField("X-Field-1", "again"));
+        Assert.assertEquals("again", header.getField("X-Field-1").getBody());
+        Assert.assertEquals("again", header.getFields().get(72).getBody());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFieldsNotModifiable() throws Exception {
+        Header header = new HeaderImpl();
+        header.addField(DefaultFieldParser.parse(SUBJECT));
+        header.getFields().remove(0);
+    }
+
 }
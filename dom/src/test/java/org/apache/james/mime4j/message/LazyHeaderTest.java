@@ -0,0 +1,140 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.dom.FieldParser;
+import org.apache.james.mime4j.dom.Header;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.field.FieldName;
+import org.apache.james.mime4j.dom.field.ParsedField;
+import org.apache.james.mime4j.dom.field.UnstructuredField;
+import org.apache.james.mime4j.field.DefaultFieldParser;
+import org.apache.james.mime4j.stream.Field;
+import org.apache.james.mime4j.stream.RawField;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyHeaderTest {
+
+    private static final byte[] MESSAGE = ContentUtil.toAsciiByteArray(
+            "Received: from a.example.org by b.example.org; Thu, 14 Feb 2008 12:00:00 +0000\r\n" +
+            "Received: from c.example.org by a.example.org; Thu, 14 Feb 2008 11:59:00 +0000\r\n" +
+            "From: Samual Smith <sam@example.org>\r\n" +
+            "Subject: A Simple Email\r\n" +
+            "MIME-Version: 1.0\r\n" +
+            "Content-Type: text/plain; charset=US-ASCII\r\n" +
+            "\r\n" +
+            "This is a very simple email.\r\n");
+
+    @Test
+    public void testFieldsParsedOnAccess() throws Exception {
+        CountingFieldParser fieldParser = new CountingFieldParser();
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setFieldParser(fieldParser);
+        builder.setLazyHeaders(true);
+        Message message = builder.parseMessage(new ByteArrayInputStream(MESSAGE));
+
+        Assert.assertEquals(2, fieldParser.parsed.size());
+        Assert.assertTrue(message.getHeader() instanceof LazyHeader);
+        Assert.assertEquals("text/plain", message.getMimeType());
+        Assert.assertEquals("A Simple Email", message.getSubject());
+        Assert.assertEquals(3, fieldParser.parsed.size());
+        Assert.assertEquals("Subject", fieldParser.parsed.get(2));
+        Assert.assertEquals("A Simple Email", message.getSubject());
+        Assert.assertEquals(3, fieldParser.parsed.size());
+
+        Assert.assertArrayEquals(MESSAGE, DefaultMessageWriter.asBytes(message));
+        Assert.assertEquals(3, fieldParser.parsed.size());
+
+        Assert.assertEquals(2, message.getHeader().getFields("received").size());
+        Assert.assertEquals(5, fieldParser.parsed.size());
+        for (Field field : message.getHeader()) {
+            Assert.assertTrue(field instanceof ParsedField);
+        }
+        Assert.assertEquals(6, fieldParser.parsed.size());
+    }
+
+    @Test
+    public void testSameMessageAsEagerParsing() throws Exception {
+        DefaultMessageBuilder eager = new DefaultMessageBuilder();
+        DefaultMessageBuilder lazy = new DefaultMessageBuilder();
+        lazy.setLazyHeaders(true);
+        byte[][] messages = new byte[][] {
+                MESSAGE,
+                ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+                ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES };
+        for (byte[] bytes : messages) {
+            Message expected = eager.parseMessage(new ByteArrayInputStream(bytes));
+            Message actual = lazy.parseMessage(new ByteArrayInputStream(bytes));
+            Assert.assertArrayEquals(DefaultMessageWriter.asBytes(expected),
+                    DefaultMessageWriter.asBytes(actual));
+            Assert.assertEquals(expected.getHeader().toString(), actual.getHeader().toString());
+            Assert.assertEquals(expected.getHeader().getFields().toString(),
+                    actual.getHeader().getFields().toString());
+        }
+    }
+
+    @Test
+    public void testParseHeader() throws Exception {
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setLazyHeaders(true);
+        Header header = builder.parseHeader(new ByteArrayInputStream(MESSAGE));
+        Assert.assertTrue(header instanceof LazyHeader);
+        Assert.assertEquals(6, header.getFields().size());
+        Assert.assertNotNull(header.getField(FieldName.SUBJECT, UnstructuredField.class));
+    }
+
+    @Test
+    public void testModification() throws Exception {
+        LazyHeader header = new LazyHeader(DefaultFieldParser.getParser(), null);
+        header.addField(new RawField("Received", "from a"));
+        header.addField(new RawField("Subject", "one"));
+        header.addField(new RawField("Received", "from b"));
+        header.addField(new RawField("Subject", "two"));
+
+        header.setField(new RawField("subject", "three"));
+        Assert.assertEquals("[Received: from a, subject: three, Received: from b]",
+                header.getUnparsedFields().toString());
+        Assert.assertEquals(2, header.removeFields("RECEIVED"));
+        Assert.assertEquals(0, header.removeFields("Received"));
+        Assert.assertEquals("subject: three\r\n", header.toString());
+        Assert.assertNull(header.getField("Received", ParsedField.class));
+        Assert.assertEquals("three", header.getField("Subject", UnstructuredField.class).getValue());
+    }
+
+    private static class CountingFieldParser implements FieldParser<ParsedField> {
+
+        private final List<String> parsed = new ArrayList<String>();
+
+        public ParsedField parse(Field rawField, DecodeMonitor monitor) {
+            parsed.add(rawField.getName());
+            return DefaultFieldParser.getParser().parse(rawField, monitor);
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.dom.TextBody;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyMessageBuilderTest {
+
+    @Test
+    public void testSameMessageAsEagerParsing() throws Exception {
+        for (boolean flat : new boolean[] { false, true }) {
+            for (boolean contentDecoding : new boolean[] { true, false }) {
+                for (byte[] message : ExampleMail.STRUCTURE_SAMPLES_BYTES) {
+                    DefaultMessageBuilder builder = new DefaultMessageBuilder();
+                    builder.setFlatMode(flat);
+                    builder.setContentDecoding(contentDecoding);
+
+                    Message expected = builder.parseMessage(new ByteArrayInputStream(message));
+                    Message actual = builder.parseMessage(ContentSources.forBytes(message));
+                    Assert.assertEquals(dump(expected), dump(actual));
+                    Assert.assertArrayEquals(DefaultMessageWriter.asBytes(expected),
+                            DefaultMessageWriter.asBytes(actual));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBodiesAreNotCopied() throws Exception {
+        byte[] message = ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES.clone();
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        Message parsed = builder.parseMessage(ContentSources.forBytes(message));
+
+        Entity part = ((Multipart) parsed.getBody()).getBodyParts().get(0);
+        TextBody body = (TextBody) part.getBody();
+        String before = ContentUtil.buffer(body.getReader());
+        Assert.assertTrue(before.length() > 0);
+        Arrays.fill(message, (byte) 'Z');
+        String after = ContentUtil.buffer(body.getReader());
+        Assert.assertEquals(before.length(), after.length());
+        Assert.assertTrue(after.matches("Z*"));
+    }
+
+    @Test
+    public void testFileChannel() throws Exception {
+        byte[] message = ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES;
+        File file = File.createTempFile("mime4j", ".msg");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[] { 'X', 'X', 'X' });
+            out.write(message);
+            out.write(new byte[] { 'X', 'X', 'X' });
+            out.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                DefaultMessageBuilder builder = new DefaultMessageBuilder();
+                Message expected = builder.parseMessage(new ByteArrayInputStream(message));
+                Message actual = builder.parseMessage(
+                        ContentSources.forChannel(raf.getChannel(), 3, message.length));
+                Assert.assertEquals(dump(expected), dump(actual));
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String dump(Entity entity) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        dump(entity, sb);
+        return sb.toString();
+    }
+
+    private static void dump(Entity entity, StringBuilder sb) throws IOException {
+        sb.append(entity.getHeader().getFields()).append('\n');
+        if (entity.getBody() instanceof Multipart) {
+            Multipart multipart = (Multipart) entity.getBody();
+            sb.append("multipart ").append(multipart.getPreamble()).append('\n');
+            for (Entity part : multipart.getBodyParts()) {
+                dump(part, sb);
+            }
+            sb.append("epilogue ").append(multipart.getEpilogue()).append('\n');
+        } else if (entity.getBody() instanceof Message) {
+            dump((Message) entity.getBody(), sb);
+        } else {
+            SingleBody body = (SingleBody) entity.getBody();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            body.writeTo(out);
+            sb.append(ContentUtil.toString(out.toByteArray(), null)).append('\n');
+            if (body instanceof TextBody) {
+                TextBody text = (TextBody) body;
+                sb.append(text.getMimeCharset()).append(' ')
+                    .append(ContentUtil.buffer(text.getReader())).append('\n');
+            }
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.james.mime4j.Charsets;
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.dom.BinaryBody;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.field.Fields;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageSizeCalculatorTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES,
+            ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES,
+            ExampleMail.ONE_PART_MIME_8859_BYTES,
+            ExampleMail.MAIL_WITH_RFC822_PART_BYTES,
+            ExampleMail.RFC822_SIMPLE_BYTES };
+
+    private static final String[] ENCODINGS = new String[] {
+            null, "8bit", "base64", "quoted-printable" };
+
+    @Test
+    public void testSameAsWrittenSize() throws Exception {
+        MessageSizeCalculator calculator = new MessageSizeCalculator();
+        for (boolean contentDecoding : new boolean[] { true, false }) {
+            for (byte[] bytes : MESSAGES) {
+                Message message = parse(bytes, contentDecoding);
+                assertSize(calculator, message);
+                for (String encoding : ENCODINGS) {
+                    setSingleBodyEncoding(message, encoding);
+                    assertSize(calculator, message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedCompositeBody() throws Exception {
+        MessageSizeCalculator calculator = new MessageSizeCalculator();
+        Message message = parse(ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES, true);
+        for (String encoding : ENCODINGS) {
+            if (encoding != null) {
+                message.getHeader().setField(Fields.contentTransferEncoding(encoding));
+            }
+            assertSize(calculator, message);
+        }
+    }
+
+    @Test
+    public void testBuiltMessage() throws Exception {
+        byte[] bin = new byte[5000];
+        new Random(0).nextBytes(bin);
+        Message message = Message.Builder.of()
+            .setFrom("sender@localhost")
+            .setTo("receiver@localhost")
+            .setSubject("A rather long subject line that has to be folded when the header "
+                    + "is written, as it exceeds the line length")
+            .setBody(MultipartBuilder.create("mixed")
+                .setPreamble("preamble")
+                .setEpilogue("epilogue")
+                .addTextPart("caf\u00e9 \r\nna\u00efve. \t\r\n", Charsets.ISO_8859_1)
+                .addBinaryPart(bin, "application/octet-stream")
+                .build())
+            .build();
+        MessageSizeCalculator calculator = new MessageSizeCalculator();
+        assertSize(calculator, message);
+        for (String encoding : ENCODINGS) {
+            setSingleBodyEncoding(message, encoding);
+            assertSize(calculator, message);
+        }
+    }
+
+    @Test
+    public void testBodySizeIsCached() throws Exception {
+        CountingBody body = new CountingBody(new byte[] { 'a', ' ', '=', '\r', '\n' });
+        Message message = Message.Builder.of()
+            .setBody(body)
+            .setContentTransferEncoding("quoted-printable")
+            .build();
+        MessageSizeCalculator calculator = new MessageSizeCalculator();
+        long size = calculator.getMessageSize(message);
+        Assert.assertEquals(DefaultMessageWriter.asBytes(message).length, size);
+        int opened = body.opened;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(size, calculator.getMessageSize(message));
+        }
+        Assert.assertEquals(opened, body.opened);
+
+        message.getHeader().setField(Fields.contentTransferEncoding("base64"));
+        Assert.assertEquals(DefaultMessageWriter.asBytes(message).length,
+                calculator.getMessageSize(message));
+        Assert.assertEquals(opened + 1, body.opened);
+    }
+
+    private static Message parse(byte[] bytes, boolean contentDecoding) throws IOException {
+        DefaultMessageBuilder builder = new DefaultMessageBuilder();
+        builder.setContentDecoding(contentDecoding);
+        return builder.parseMessage(new ByteArrayInputStream(bytes));
+    }
+
+    private static void assertSize(MessageSizeCalculator calculator, Message message)
+            throws IOException {
+        Assert.assertEquals(DefaultMessageWriter.asBytes(message).length,
+                calculator.getMessageSize(message));
+    }
+
+    private static void setSingleBodyEncoding(Entity entity, String encoding) {
+        if (entity.getBody() instanceof Multipart) {
+            for (Entity part : ((Multipart) entity.getBody()).getBodyParts()) {
+                setSingleBodyEncoding(part, encoding);
+            }
+        } else if (entity.getBody() instanceof Message) {
+            setSingleBodyEncoding((Message) entity.getBody(), encoding);
+        } else if (encoding == null) {
+            entity.getHeader().removeFields("Content-Transfer-Encoding");
+        } else {
+            entity.getHeader().setField(Fields.contentTransferEncoding(encoding));
+        }
+    }
+
+    private static final class CountingBody extends BinaryBody {
+
+        private final byte[] content;
+        int opened;
+
+        CountingBody(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            opened++;
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public SingleBody copy() {
+            return new CountingBody(content);
+        }
+
+    }
+
+}
@@ -0,0 +1,227 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.mime4j.ExampleMail;
+import org.apache.james.mime4j.codec.Base64OutputStream;
+import org.apache.james.mime4j.dom.BinaryBody;
+import org.apache.james.mime4j.dom.Entity;
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.dom.Multipart;
+import org.apache.james.mime4j.dom.SingleBody;
+import org.apache.james.mime4j.dom.TextBody;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelMessageBuilderTest {
+
+    private static final byte[][] MESSAGES = new byte[][] {
+            ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES,
+            ExampleMail.MIME_MULTIPART_EMBEDDED_MESSAGES_BYTES,
+            ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES,
+            ExampleMail.ONE_PART_MIME_BASE64_LATIN1_BYTES,
+            ExampleMail.ONE_PART_MIME_QUOTED_PRINTABLE_ASCII_BYTES,
+            ExampleMail.RFC822_SIMPLE_BYTES };
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameMessageAsSequentialParsing() throws Exception {
+        for (boolean contentDecoding : new boolean[] { true, false }) {
+            for (byte[] message : MESSAGES) {
+                DefaultMessageBuilder sequential = new DefaultMessageBuilder();
+                sequential.setContentDecoding(contentDecoding);
+                DefaultMessageBuilder parallel = new DefaultMessageBuilder();
+                parallel.setContentDecoding(contentDecoding);
+                parallel.setExecutor(executor);
+
+                Message expected = sequential.parseMessage(new ByteArrayInputStream(message));
+                Message actual = parallel.parseMessage(new ByteArrayInputStream(message));
+                Assert.assertEquals(dump(expected), dump(actual));
+                Assert.assertArrayEquals(DefaultMessageWriter.asBytes(expected),
+                        DefaultMessageWriter.asBytes(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBodyIsCreatedOnParsingThread() throws Exception {
+        byte[] content = new byte[3 * 64 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ContentUtil.toByteArray("Content-Type: multipart/mixed; boundary=\"b\"\r\n"
+                + "\r\n--b\r\nContent-Type: text/plain\r\n\r\nsmall part\r\n"
+                + "--b\r\nContent-Type: application/octet-stream\r\n"
+                + "Content-Transfer-Encoding: base64\r\n\r\n", null));
+        Base64OutputStream encoder = new Base64OutputStream(out);
+        encoder.write(content);
+        encoder.close();
+        out.write(ContentUtil.toByteArray("\r\n--b--\r\n", null));
+        byte[] message = out.toByteArray();
+
+        final Thread parsingThread = Thread.currentThread();
+        final AtomicBoolean inline = new AtomicBoolean();
+        DefaultMessageBuilder parallel = new DefaultMessageBuilder();
+        parallel.setExecutor(executor);
+        parallel.setBodyFactory(new BasicBodyFactory() {
+            @Override
+            public BinaryBody binaryBody(InputStream is) throws IOException {
+                inline.set(Thread.currentThread() == parsingThread);
+                return super.binaryBody(is);
+            }
+        });
+        Message actual = parallel.parseMessage(new ByteArrayInputStream(message));
+        Assert.assertTrue(inline.get());
+
+        Message expected = new DefaultMessageBuilder().parseMessage(new ByteArrayInputStream(message));
+        Assert.assertEquals(dump(expected), dump(actual));
+        BinaryBody body = (BinaryBody) ((Multipart) actual.getBody()).getBodyParts().get(1).getBody();
+        Assert.assertArrayEquals(content, ContentUtil.buffer(body.getInputStream()));
+    }
+
+    @Test
+    public void testBodyFailureIsReported() throws Exception {
+        DefaultMessageBuilder parallel = new DefaultMessageBuilder();
+        parallel.setExecutor(executor);
+        parallel.setBodyFactory(new BasicBodyFactory() {
+            @Override
+            public BinaryBody binaryBody(InputStream is) throws IOException {
+                throw new IOException("Storage failure");
+            }
+
+            @Override
+            public TextBody textBody(InputStream is, String mimeCharset) throws IOException {
+                if (mimeCharset == null) {
+                    return super.textBody(is, mimeCharset);
+                }
+                throw new IOException("Storage failure");
+            }
+        });
+        try {
+            parallel.parseMessage(new ByteArrayInputStream(
+                    ExampleMail.MIME_MIXED_MULTIPART_VARIOUS_ENCODINGS_BYTES));
+            Assert.fail("IOException expected");
+        } catch (IOException ex) {
+            Assert.assertEquals("Storage failure", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testBodiesDisposedAfterRuntimeFailure() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger disposed = new AtomicInteger();
+        DefaultMessageBuilder parallel = new DefaultMessageBuilder();
+        parallel.setExecutor(executor);
+        parallel.setBodyFactory(new BasicBodyFactory() {
+            @Override
+            public BinaryBody binaryBody(InputStream is) throws IOException {
+                throw new IllegalStateException("Storage failure");
+            }
+
+            @Override
+            public TextBody textBody(InputStream is, String mimeCharset) throws IOException {
+                final TextBody body = super.textBody(is, mimeCharset);
+                created.incrementAndGet();
+                return new TextBody() {
+                    @Override
+                    public String getMimeCharset() {
+                        return body.getMimeCharset();
+                    }
+
+                    @Override
+                    public Reader getReader() throws IOException {
+                        return body.getReader();
+                    }
+
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return body.getInputStream();
+                    }
+
+                    @Override
+                    public void dispose() {
+                        disposed.incrementAndGet();
+                    }
+                };
+            }
+        });
+        try {
+            parallel.parseMessage(new ByteArrayInputStream(
+                    ExampleMail.MULTIPART_WITH_BINARY_ATTACHMENTS_PREAMBLE_EPILOGUE_BYTES));
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals("Storage failure", ex.getMessage());
+        }
+        Assert.assertTrue(created.get() > 0);
+        Assert.assertEquals(created.get(), disposed.get());
+    }
+
+    private static String dump(Entity entity) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        dump(entity, sb);
+        return sb.toString();
+    }
+
+    private static void dump(Entity entity, StringBuilder sb) throws IOException {
+        sb.append(entity.getHeader().getFields()).append('\n');
+        if (entity.getBody() instanceof Multipart) {
+            Multipart multipart = (Multipart) entity.getBody();
+            sb.append("multipart ").append(multipart.getPreamble()).append('\n');
+            for (Entity part : multipart.getBodyParts()) {
+                dump(part, sb);
+            }
+            sb.append("epilogue ").append(multipart.getEpilogue()).append('\n');
+        } else if (entity.getBody() instanceof Message) {
+            dump((Message) entity.getBody(), sb);
+        } else {
+            SingleBody body = (SingleBody) entity.getBody();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            body.writeTo(out);
+            sb.append(body.getClass().getSimpleName()).append(' ')
+                .append(ContentUtil.toString(out.toByteArray(), null)).append('\n');
+        }
+    }
+
+}
@@ -21,8 +21,10 @@ package org.apache.james.mime4j.utils.search;
 import com.google.common.collect.ImmutableList;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.Field;
 import org.apache.james.mime4j.stream.MimeConfig;
 import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.stream.RawField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,7 +32,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.nio.CharBuffer;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
@@ -193,9 +194,10 @@ public class MessageMatcher {
     }
 
     private boolean checkHeader(final CharBuffer buffer, MimeTokenStream parser) throws IOException {
-        final String value = parser.getField().getBody();
-        final StringReader reader = new StringReader(value);
-        return isFoundIn(reader, buffer);
+        final Field field = parser.getField();
+        final CharSequence value = field instanceof RawField
+                ? ((RawField) field).getBodyChars() : field.getBody();
+        return isFoundIn(value, buffer);
     }
 
     private boolean checkBody(final CharBuffer buffer, MimeTokenStream parser) throws IOException {
@@ -235,6 +237,16 @@ public class MessageMatcher {
         return false;
     }
 
+    public boolean isFoundIn(final CharSequence value, final CharBuffer buffer) {
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (matches(buffer, computeNextChar(isCaseInsensitive, value.charAt(i)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private char computeNextChar(boolean isCaseInsensitive, char read) {
         if (isCaseInsensitive) {
             return Character.toUpperCase(read);
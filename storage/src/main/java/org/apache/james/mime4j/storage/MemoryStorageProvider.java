@@ -22,8 +22,11 @@ package org.apache.james.mime4j.storage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ContentUtil;
 
 /**
  * A {@link StorageProvider} that stores the data entirely in memory.
@@ -63,7 +66,7 @@ public class MemoryStorageProvider extends AbstractStorageProvider {
         }
     }
 
-    static final class MemoryStorage implements Storage {
+    static final class MemoryStorage implements ChannelStorage {
         private byte[] data;
         private final int count;
 
@@ -79,6 +82,13 @@ public class MemoryStorageProvider extends AbstractStorageProvider {
             return new ByteArrayInputStream(data, 0, count);
         }
 
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            if (data == null)
+                throw new IllegalStateException("storage has been deleted");
+
+            ContentUtil.writeFully(ByteBuffer.wrap(data, 0, count), channel);
+        }
+
         public void delete() {
             data = null;
         }
@@ -21,6 +21,7 @@ package org.apache.james.mime4j.storage;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * <p>
@@ -42,7 +43,7 @@ import java.io.InputStream;
  * deletion</li>
  * </ul>
  */
-public class MultiReferenceStorage implements Storage {
+public class MultiReferenceStorage implements ChannelStorage {
 
     private final Storage storage;
     private int referenceCounter;
@@ -102,6 +103,18 @@ public class MultiReferenceStorage implements Storage {
         return storage.getInputStream();
     }
 
+    /**
+     * Writes the data of the inner <code>Storage</code> object to the given
+     * channel, directly if it is a {@link ChannelStorage} and through its
+     * input stream otherwise.
+     *
+     * @param channel
+     *            the channel to write to, in blocking mode.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        StorageUtil.writeTo(storage, channel);
+    }
+
     /**
      * Synchronized increment of reference count.
      *
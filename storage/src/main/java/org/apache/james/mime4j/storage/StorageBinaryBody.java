@@ -22,6 +22,7 @@ package org.apache.james.mime4j.storage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.james.mime4j.dom.BinaryBody;
 import org.apache.james.mime4j.util.ContentUtil;
@@ -54,10 +55,18 @@ class StorageBinaryBody extends BinaryBody {
         in.close();
     }
 
+    @Override
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (channel == null)
+            throw new IllegalArgumentException();
+
+        storage.writeTo(channel);
+    }
+
     @Override
     public StorageBinaryBody copy() {
         storage.addReference();
-        return new StorageBinaryBody(storage);
+        return copied(new StorageBinaryBody(storage));
     }
 
     /**
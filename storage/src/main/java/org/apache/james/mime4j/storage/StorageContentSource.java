@@ -0,0 +1,68 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.james.mime4j.io.BoundedInputStream;
+import org.apache.james.mime4j.message.ContentSource;
+
+/**
+ * {@link ContentSource} reading a message held in a {@link Storage}. A range
+ * is read by skipping to its start; file based storages skip without
+ * reading the data in between. The storage is not deleted by the source.
+ */
+public class StorageContentSource implements ContentSource {
+
+    private final Storage storage;
+
+    public StorageContentSource(Storage storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("Storage may not be null");
+        }
+        this.storage = storage;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return storage.getInputStream();
+    }
+
+    public InputStream getInputStream(long start, long end) throws IOException {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + "-" + end);
+        }
+        InputStream instream = storage.getInputStream();
+        long remaining = start;
+        while (remaining > 0) {
+            long n = instream.skip(remaining);
+            if (n <= 0) {
+                if (instream.read() == -1) {
+                    instream.close();
+                    throw new IOException("Unexpected end of stream at offset " + (start - remaining));
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+        return new BoundedInputStream(instream, end - start);
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 import org.apache.james.mime4j.dom.TextBody;
@@ -55,10 +56,18 @@ class StorageTextBody extends TextBody {
         return storage.getInputStream();
     }
 
+    @Override
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (channel == null)
+            throw new IllegalArgumentException();
+
+        storage.writeTo(channel);
+    }
+
     @Override
     public StorageTextBody copy() {
         storage.addReference();
-        return new StorageTextBody(storage, charset);
+        return copied(new StorageTextBody(storage, charset));
     }
 
     /**
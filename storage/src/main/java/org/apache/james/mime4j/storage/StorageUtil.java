@@ -0,0 +1,60 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.james.mime4j.util.ContentUtil;
+
+/**
+ * Static helper methods for {@link Storage} implementations.
+ */
+final class StorageUtil {
+
+    private StorageUtil() {
+    }
+
+    /**
+     * Writes the data of the given storage to a channel, directly if it is
+     * a {@link ChannelStorage} and through its input stream otherwise.
+     *
+     * @param storage
+     *            the storage to write.
+     * @param channel
+     *            the channel to write to, in blocking mode.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    static void writeTo(Storage storage, WritableByteChannel channel) throws IOException {
+        if (storage instanceof ChannelStorage) {
+            ((ChannelStorage) storage).writeTo(channel);
+        } else {
+            InputStream in = storage.getInputStream();
+            try {
+                ContentUtil.copy(in, channel);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+}
@@ -82,7 +82,7 @@ class StringTextBody extends TextBody {
 
     @Override
     public StringTextBody copy() {
-        return new StringTextBody(text, charset);
+        return copied(new StringTextBody(text, charset));
     }
 
 }
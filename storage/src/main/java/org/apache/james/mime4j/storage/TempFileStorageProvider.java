@@ -26,11 +26,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.james.mime4j.util.ContentUtil;
 
 /**
  * A {@link StorageProvider} that stores the data in temporary files. The files
@@ -142,7 +145,7 @@ public class TempFileStorageProvider extends AbstractStorageProvider {
         }
     }
 
-    private static final class TempFileStorage implements Storage {
+    private static final class TempFileStorage implements ChannelStorage {
 
         private File file;
 
@@ -185,6 +188,33 @@ public class TempFileStorageProvider extends AbstractStorageProvider {
             return new BufferedInputStream(new FileInputStream(file));
         }
 
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            if (file == null)
+                throw new IllegalStateException("storage has been deleted");
+
+            // the content is handed from the file to the channel by the
+            // operating system where possible
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel source = in.getChannel();
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long n = source.transferTo(position, size - position, channel);
+                    if (n <= 0) {
+                        // no progress, as for a file that is shorter than
+                        // expected: copy what is left up to its end
+                        source.position(position);
+                        ContentUtil.copy(in, channel);
+                        break;
+                    }
+                    position += n;
+                }
+            } finally {
+                in.close();
+            }
+        }
+
     }
 
 }
@@ -23,8 +23,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.james.mime4j.util.ByteArrayBuffer;
+import org.apache.james.mime4j.util.ContentUtil;
 
 /**
  * A {@link StorageProvider} that keeps small amounts of data in memory and
@@ -128,7 +131,7 @@ public class ThresholdStorageProvider extends AbstractStorageProvider {
 
     }
 
-    private static final class ThresholdStorage implements Storage {
+    private static final class ThresholdStorage implements ChannelStorage {
 
         private byte[] head;
         private final int headLen;
@@ -157,5 +160,13 @@ public class ThresholdStorageProvider extends AbstractStorageProvider {
             return new SequenceInputStream(headStream, tailStream);
         }
 
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            if (head == null)
+                throw new IllegalStateException("storage has been deleted");
+
+            ContentUtil.writeFully(ByteBuffer.wrap(head, 0, headLen), channel);
+            StorageUtil.writeTo(tail, channel);
+        }
+
     }
 }
@@ -0,0 +1,174 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mime4j.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import org.apache.james.mime4j.dom.Message;
+import org.apache.james.mime4j.message.ChannelMessageWriter;
+import org.apache.james.mime4j.message.DefaultMessageBuilder;
+import org.apache.james.mime4j.message.DefaultMessageWriter;
+import org.apache.james.mime4j.util.ContentUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChannelStorageTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("mime4j", ".msg");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        byte[] data = new byte[20000];
+        new Random(0).nextBytes(data);
+        StorageProvider[] providers = new StorageProvider[] {
+                new MemoryStorageProvider(),
+                new TempFileStorageProvider(),
+                new ThresholdStorageProvider(new TempFileStorageProvider(), 1000),
+                new ThresholdStorageProvider(new CipherStorageProvider(new TempFileStorageProvider()), 1000),
+                new CipherStorageProvider(new MemoryStorageProvider()) };
+        for (StorageProvider provider : providers) {
+            MultiReferenceStorage storage = new MultiReferenceStorage(
+                    provider.store(new ByteArrayInputStream(data)));
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(0);
+                    storage.writeTo(raf.getChannel());
+                } finally {
+                    raf.close();
+                }
+                Assert.assertArrayEquals(data, readFile());
+            } finally {
+                storage.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testWriteToChannelRefusingData() throws Exception {
+        byte[] data = new byte[20000];
+        new Random(0).nextBytes(data);
+        Storage storage = new TempFileStorageProvider().store(new ByteArrayInputStream(data));
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final WritableByteChannel target = Channels.newChannel(out);
+            WritableByteChannel channel = new WritableByteChannel() {
+                private boolean refused;
+
+                public int write(ByteBuffer src) throws IOException {
+                    if (!refused) {
+                        // the first write accepts nothing
+                        refused = true;
+                        return 0;
+                    }
+                    return target.write(src);
+                }
+
+                public boolean isOpen() {
+                    return true;
+                }
+
+                public void close() {
+                }
+            };
+            ((ChannelStorage) storage).writeTo(channel);
+            Assert.assertArrayEquals(data, out.toByteArray());
+        } finally {
+            storage.delete();
+        }
+    }
+
+    @Test
+    public void testWriteStoredMessage() throws Exception {
+        for (boolean contentDecoding : new boolean[] { true, false }) {
+            DefaultMessageBuilder builder = new DefaultMessageBuilder();
+            builder.setBodyFactory(new StorageBodyFactory(new TempFileStorageProvider(), null));
+            builder.setContentDecoding(contentDecoding);
+            Message message = builder.parseMessage(new ByteArrayInputStream(createMessage()));
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(0);
+                    FileChannel channel = raf.getChannel();
+                    new ChannelMessageWriter().writeMessage(message, channel);
+                } finally {
+                    raf.close();
+                }
+                Assert.assertArrayEquals(DefaultMessageWriter.asBytes(message), readFile());
+            } finally {
+                message.dispose();
+            }
+        }
+    }
+
+    private static byte[] createMessage() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("From: sender@example.org\r\n");
+        sb.append("Subject: Stored attachment\r\n");
+        sb.append("MIME-Version: 1.0\r\n");
+        sb.append("Content-Type: multipart/mixed; boundary=\"boundary\"\r\n");
+        sb.append("\r\n");
+        sb.append("preamble\r\n");
+        sb.append("--boundary\r\n");
+        sb.append("Content-Type: text/plain\r\n\r\n");
+        sb.append("See attachment.\r\n");
+        sb.append("--boundary\r\n");
+        sb.append("Content-Type: application/octet-stream\r\n");
+        sb.append("Content-Transfer-Encoding: base64\r\n\r\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVphYmNkZWZnaGlqa2xtbm9wcXJzdHV2d3h5ejAx\r\n");
+        }
+        sb.append("--boundary--\r\n");
+        sb.append("epilogue");
+        return ContentUtil.toAsciiByteArray(sb.toString());
+    }
+
+    private byte[] readFile() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return ContentUtil.buffer(in);
+        } finally {
+            in.close();
+        }
+    }
+
+}